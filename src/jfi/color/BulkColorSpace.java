@@ -0,0 +1,172 @@
+package jfi.color;
+
+/**
+ * Interface representing a color space with allocation-free conversions
+ * from/to RGB. In addition to the single-color conversions (where the result
+ * is stored in a given array), it provides bulk conversions of <tt>n</tt>
+ * colors between primitive arrays, with caller-supplied output buffers. The
+ * colors can be given as interleaved components (<tt>c0,c1,c2,c0,c1,...</tt>),
+ * as planar components (one array per component) or, in the case of RGB, as
+ * packed <tt>0xRRGGBB</tt> values (as the ones given by
+ * {@link java.awt.image.BufferedImage#getRGB(int, int, int, int, int[], int, int)}).
+ *
+ * <p>
+ * The results are the same as the ones of the {@link java.awt.color.ColorSpace}
+ * methods <code>fromRGB(float[])</code> and <code>toRGB(float[])</code>, but
+ * no array is allocated for each color.
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public interface BulkColorSpace {
+
+    /**
+     * Returns the number of components of this color space.
+     *
+     * @return the number of components.
+     */
+    public int getNumComponents();
+
+    /**
+     * Transforms a color value assumed to be in the RGB color space into this
+     * color space, storing the result in the given array.
+     *
+     * @param r the red component in [0..1].
+     * @param g the green component in [0..1].
+     * @param b the blue component in [0..1].
+     * @param out the array where the components are stored.
+     * @param offset the position of the first component in the output array.
+     */
+    public void fromRGB(float r, float g, float b, float out[], int offset);
+
+    /**
+     * Transforms a color value assumed to be in this color space into a value
+     * in the RGB color space, storing the result in the given array.
+     *
+     * @param colorvalue the array with the components.
+     * @param offset the position of the first component in the input array.
+     * @param rgb the array where the RGB values (in [0..1]) are stored.
+     * @param rgbOffset the position of the red component in the output array.
+     */
+    public void toRGB(float colorvalue[], int offset, float rgb[], int rgbOffset);
+
+    /**
+     * Transforms <tt>n</tt> interleaved RGB values into this color space.
+     *
+     * @param rgb the RGB values in [0..1], of length at least <tt>3*n</tt>.
+     * @param out the array where the interleaved components are stored, of
+     * length at least <tt>getNumComponents()*n</tt>. If <tt>null</tt>, a new
+     * one is created.
+     * @param n the number of colors.
+     * @return the output array.
+     */
+    default public float[] fromRGB(float rgb[], float out[], int n) {
+        int numComponents = getNumComponents();
+        if (out == null) {
+            out = new float[numComponents * n];
+        }
+        for (int i = 0, j = 0, k = 0; i < n; i++, j += 3, k += numComponents) {
+            fromRGB(rgb[j], rgb[j + 1], rgb[j + 2], out, k);
+        }
+        return out;
+    }
+
+    /**
+     * Transforms <tt>n</tt> packed RGB values (<tt>0xRRGGBB</tt>, the alpha
+     * byte is ignored) into this color space.
+     *
+     * @param rgb the packed RGB values, of length at least <tt>n</tt>.
+     * @param out the array where the interleaved components are stored, of
+     * length at least <tt>getNumComponents()*n</tt>. If <tt>null</tt>, a new
+     * one is created.
+     * @param n the number of colors.
+     * @return the output array.
+     */
+    default public float[] fromRGB(int rgb[], float out[], int n) {
+        int numComponents = getNumComponents();
+        if (out == null) {
+            out = new float[numComponents * n];
+        }
+        for (int i = 0, k = 0; i < n; i++, k += numComponents) {
+            int pixel = rgb[i];
+            fromRGB((float) ((pixel >> 16) & 0xFF) / 255.0f,
+                    (float) ((pixel >> 8) & 0xFF) / 255.0f,
+                    (float) (pixel & 0xFF) / 255.0f, out, k);
+        }
+        return out;
+    }
+
+    /**
+     * Transforms <tt>n</tt> planar RGB values into this color space. The
+     * output is planar too, that is, the <tt>c</tt>-th component of the
+     * <tt>i</tt>-th color is stored at <tt>out[c][i]</tt>.
+     *
+     * @param r the red components in [0..1].
+     * @param g the green components in [0..1].
+     * @param b the blue components in [0..1].
+     * @param out the arrays where the components are stored (one per
+     * component, of length at least <tt>n</tt>).
+     * @param n the number of colors.
+     */
+    default public void fromRGB(float r[], float g[], float b[], float out[][], int n) {
+        int numComponents = getNumComponents();
+        float color[] = new float[numComponents];
+        for (int i = 0; i < n; i++) {
+            fromRGB(r[i], g[i], b[i], color, 0);
+            for (int c = 0; c < numComponents; c++) {
+                out[c][i] = color[c];
+            }
+        }
+    }
+
+    /**
+     * Transforms <tt>n</tt> interleaved color values of this color space into
+     * RGB.
+     *
+     * @param colorvalue the interleaved components, of length at least
+     * <tt>getNumComponents()*n</tt>.
+     * @param rgb the array where the interleaved RGB values (in [0..1]) are
+     * stored, of length at least <tt>3*n</tt>. If <tt>null</tt>, a new one is
+     * created.
+     * @param n the number of colors.
+     * @return the output array.
+     */
+    default public float[] toRGB(float colorvalue[], float rgb[], int n) {
+        int numComponents = getNumComponents();
+        if (rgb == null) {
+            rgb = new float[3 * n];
+        }
+        for (int i = 0, j = 0, k = 0; i < n; i++, j += numComponents, k += 3) {
+            toRGB(colorvalue, j, rgb, k);
+        }
+        return rgb;
+    }
+
+    /**
+     * Transforms <tt>n</tt> interleaved color values of this color space into
+     * packed RGB values (<tt>0xRRGGBB</tt>, with the alpha byte set to 255).
+     *
+     * @param colorvalue the interleaved components, of length at least
+     * <tt>getNumComponents()*n</tt>.
+     * @param rgb the array where the packed RGB values are stored, of length
+     * at least <tt>n</tt>. If <tt>null</tt>, a new one is created.
+     * @param n the number of colors.
+     * @return the output array.
+     */
+    default public int[] toPackedRGB(float colorvalue[], int rgb[], int n) {
+        int numComponents = getNumComponents();
+        if (rgb == null) {
+            rgb = new int[n];
+        }
+        float color[] = new float[3];
+        for (int i = 0, j = 0; i < n; i++, j += numComponents) {
+            toRGB(colorvalue, j, color, 0);
+            int pixel = 0xFF;
+            for (int c = 0; c < 3; c++) {
+                float v = Math.max(0.0f, Math.min(color[c], 1.0f));
+                pixel = (pixel << 8) | (int) (v * 255.0f + 0.5f);
+            }
+            rgb[i] = pixel;
+        }
+        return rgb;
+    }
+}
@@ -5,9 +5,17 @@ import java.awt.color.ColorSpace;
 import java.awt.color.ICC_Profile;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
 import java.awt.image.IndexColorModel;
 import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
 /**
  * This class performs a pixel-by-pixel color conversion of the data in the
@@ -29,6 +37,15 @@ import java.awt.image.WritableRaster;
  * or to use the RGB one (in that case, if the source image is an RGB image, 
  * only one conversion is needed).
  * 
+ * <p>
+ * In the RGB-based conversion, if the source image is an 8-bit RGB image and
+ * the destination one is an 8-bit image in a {@link BulkColorSpace} (as the
+ * HSI, HSL, YCbCr and grey level color spaces of this package), a fast path is
+ * used: the data buffers are accessed directly, the rows are converted in
+ * parallel, the linear transforms are calculated by means of lookup tables
+ * and no object is allocated for each pixel. The result is the same as in the
+ * general case.
+ * 
  * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
  */
 public class ColorConvertOp extends java.awt.image.ColorConvertOp{
@@ -40,6 +57,16 @@ public class ColorConvertOp extends java.awt.image.ColorConvertOp{
      * The destination color space.
      */
     private ColorSpace dst_cspace = null;
+    /**
+     * Normalized value of each 8-bit component (used in the fast path).
+     */
+    private static final float NORM[] = new float[256];
+
+    static {
+        for (int v = 0; v < NORM.length; v++) {
+            NORM[v] = (float) v / 255.0f;
+        }
+    }
 
     /**
      * Constructs a new ColorConvertOp which will convert from a source color
@@ -224,7 +251,10 @@ public class ColorConvertOp extends java.awt.image.ColorConvertOp{
         // account the alpha component)
         BufferedImage output;
         if(src.getColorModel().getColorSpace().isCS_sRGB() && !src.getColorModel().hasAlpha()){
-            output = _filterRGB_NoAlpha(src,dst); // RGB & no-alpha
+            output = _filterFast(src,dst); // 8-bit RGB to jfi color spaces
+            if(output==null){
+                output = _filterRGB_NoAlpha(src,dst); // RGB & no-alpha
+            }
         } else {
             output = _filterGeneralCase(src,dst); // Any color space
         }
@@ -264,8 +294,8 @@ public class ColorConvertOp extends java.awt.image.ColorConvertOp{
         float[] dstColor;
         
         dstColor = dstHasAlpha ? new float[dstNumComp + 1] : new float[dstNumComp];
-        for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
                 spixel = srcRas.getDataElements(x, y, spixel);
                 color = srcCM.getNormalizedComponents(spixel, color, 0);
                 tmpColor = srcColorSpace.toRGB(color);
@@ -309,8 +339,8 @@ public class ColorConvertOp extends java.awt.image.ColorConvertOp{
         float[] srcColor = null;
         float[] dstColor;
         
-        for (int x = 0; x < w; x++) {
-            for (int y = 0; y < h; y++) {
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
                 pixel = srcRas.getDataElements(x, y, pixel); // RGB
                 srcColor = srcCM.getNormalizedComponents(pixel, srcColor, 0);
                 dstColor = dstColorSpace.fromRGB(srcColor);
@@ -321,6 +351,249 @@ public class ColorConvertOp extends java.awt.image.ColorConvertOp{
         return dst;
     }
     
+    /**
+     * Inner method called from _filter for the particular case of an 8-bit RGB
+     * source image without alpha component and an 8-bit destination image
+     * (without alpha component) in one of the color spaces of this package.
+     * The rows are converted in parallel, working directly on the data
+     * buffers when possible.
+     *
+     * @param src the source <code>BufferedImage</code> to be converted (in RGB
+     * and without alpha).
+     * @param dst the destination <code>BufferedImage</code> (not null).
+     *
+     * @return <code>dst</code> color converted from <code>src</code>, or
+     * <code>null</code> if the images or the destination color space are not
+     * supported by this method.
+     */
+    private BufferedImage _filterFast(BufferedImage src, BufferedImage dst) {
+        ColorModel srcCM = src.getColorModel();
+        ColorModel dstCM = dst.getColorModel();
+        if (!is8Bit(srcCM) || !is8Bit(dstCM) || dstCM.hasAlpha()
+                || !(dstCM instanceof ComponentColorModel)
+                || dstCM.getTransferType() != DataBuffer.TYPE_BYTE) {
+            return null;
+        }
+        PixelConverter converter = fastConverter(dstCM.getColorSpace());
+        ByteSamples dstSamples = ByteSamples.of(dst.getRaster());
+        if (converter == null || dstSamples == null) {
+            return null;
+        }
+        // Scaling of the normalized components to [0,1], as it is done by
+        // the ComponentColorModel for color spaces with non-standard ranges
+        int numComp = dstCM.getNumColorComponents();
+        float low[] = dstCM.getNormalizedComponents(new byte[numComp], null, 0);
+        byte max[] = new byte[numComp];
+        Arrays.fill(max, (byte) 255);
+        float high[] = dstCM.getNormalizedComponents(max, null, 0);
+        float scale[] = new float[numComp];
+        boolean nonStdScale = false;
+        for (int c = 0; c < numComp; c++) {
+            scale[c] = 1.0f / (high[c] - low[c]);
+            nonStdScale |= low[c] != 0.0f || high[c] != 1.0f;
+        }
+        final boolean scaled = nonStdScale;
+
+        int w = src.getWidth();
+        int h = src.getHeight();
+        int srcData[] = packedRGB(src);
+        ByteSamples srcSamples = srcData == null ? ByteSamples.of(src.getRaster()) : null;
+        IntStream.range(0, h).parallel().forEach(y -> {
+            int rgb[] = null;
+            if (srcData == null && srcSamples == null) {
+                rgb = src.getRGB(0, y, w, 1, null, 0, w);
+            }
+            float color[] = new float[numComp];
+            for (int x = 0; x < w; x++) {
+                int r, g, b;
+                if (srcData != null) {
+                    int pixel = srcData[y * w + x];
+                    r = (pixel >> 16) & 0xFF;
+                    g = (pixel >> 8) & 0xFF;
+                    b = pixel & 0xFF;
+                } else if (srcSamples != null) {
+                    r = srcSamples.get(0, x, y);
+                    g = srcSamples.get(1, x, y);
+                    b = srcSamples.get(2, x, y);
+                } else {
+                    r = (rgb[x] >> 16) & 0xFF;
+                    g = (rgb[x] >> 8) & 0xFF;
+                    b = rgb[x] & 0xFF;
+                }
+                converter.fromRGB(r, g, b, color);
+                for (int c = 0; c < numComp; c++) {
+                    float value = color[c];
+                    if (scaled) {
+                        value = (value - low[c]) * scale[c];
+                        if (value < 0.0f) {
+                            value = 0.0f;
+                        }
+                        if (value > 1.0f) {
+                            value = 1.0f;
+                        }
+                    }
+                    dstSamples.set(c, x, y, (byte) (value * 255.0f + 0.5f));
+                }
+            }
+        });
+        return dst;
+    }
+
+    /**
+     * Returns the converter from 8-bit RGB values to the given color space
+     * used in the fast path.
+     *
+     * @param cs the destination color space.
+     * @return the converter, or <code>null</code> if the color space is not
+     * supported.
+     */
+    private static PixelConverter fastConverter(ColorSpace cs) {
+        if (cs instanceof GreyColorSpace) {
+            GreyColorSpace grey = (GreyColorSpace) cs;
+            float lr[] = lut(grey.getRedWeight());
+            float lg[] = lut(grey.getGreenWeight());
+            float lb[] = lut(grey.getBlueWeight());
+            return (r, g, b, out) -> out[0] = lr[r] + lg[g] + lb[b];
+        }
+        if (cs instanceof YCbCrColorSpace) {
+            float yr[] = lut(YCbCrColorSpace.KR), yg[] = lut(YCbCrColorSpace.KG), yb[] = lut(YCbCrColorSpace.KB);
+            float cbr[] = lut(-0.1687f), cbg[] = lut(0.33126f), cbb[] = lut(0.50000f);
+            float crr[] = lut(0.50000f), crg[] = lut(0.41869f), crb[] = lut(0.08131f);
+            return (r, g, b, out) -> {
+                out[0] = yr[r] + yg[g] + yb[b];
+                out[1] = cbr[r] - cbg[g] + cbb[b];
+                out[2] = crr[r] - crg[g] - crb[b];
+            };
+        }
+        if (cs instanceof HSIColorSpace) {
+            // The hue formula is chosen once, instead of for each pixel
+            if (((HSIColorSpace) cs).getHueType() == HSIColorSpace.HUE_TYPE_ATAN) {
+                return (r, g, b, out) -> HSIColorSpace.fromRGBAtan(NORM[r], NORM[g], NORM[b], out, 0);
+            }
+            return (r, g, b, out) -> HSIColorSpace.fromRGBAcos(NORM[r], NORM[g], NORM[b], out, 0);
+        }
+        if (cs instanceof BulkColorSpace) {
+            BulkColorSpace bcs = (BulkColorSpace) cs;
+            return (r, g, b, out) -> bcs.fromRGB(NORM[r], NORM[g], NORM[b], out, 0);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the lookup table of the product of the given weight and each
+     * normalized 8-bit component.
+     *
+     * @param weight the weight.
+     * @return the lookup table.
+     */
+    private static float[] lut(float weight) {
+        float table[] = new float[NORM.length];
+        for (int v = 0; v < NORM.length; v++) {
+            table[v] = weight * NORM[v];
+        }
+        return table;
+    }
+
+    /**
+     * Checks if all the components of the given color model have 8 bits.
+     *
+     * @param cm the color model.
+     * @return <tt>true</tt> if all the components have 8 bits.
+     */
+    private static boolean is8Bit(ColorModel cm) {
+        for (int size : cm.getComponentSize()) {
+            if (size != 8) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the data of the given image if it is a (non-shared) image of
+     * type <tt>TYPE_INT_RGB</tt>, where each pixel is stored as a packed RGB
+     * value.
+     *
+     * @param image the image.
+     * @return the packed RGB values, or <code>null</code> if the image is not
+     * of that type.
+     */
+    private static int[] packedRGB(BufferedImage image) {
+        Raster raster = image.getRaster();
+        if (image.getType() != BufferedImage.TYPE_INT_RGB
+                || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)
+                || !(raster.getDataBuffer() instanceof DataBufferInt)
+                || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+                || raster.getDataBuffer().getOffset() != 0
+                || ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() != image.getWidth()) {
+            return null;
+        }
+        return ((DataBufferInt) raster.getDataBuffer()).getData();
+    }
+
+    /**
+     * Converter from 8-bit RGB values to a color space.
+     */
+    @FunctionalInterface
+    private interface PixelConverter {
+        void fromRGB(int r, int g, int b, float out[]);
+    }
+
+    /**
+     * Direct access to the samples of a raster of bytes based on a component
+     * sample model (interleaved or banded).
+     */
+    private static class ByteSamples {
+        private final byte data[][];
+        private final int offsets[];
+        private final int pixelStride, scanlineStride;
+        private final int translateX, translateY;
+
+        private ByteSamples(Raster raster) {
+            ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+            DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+            int bands = sm.getNumBands();
+            data = new byte[bands][];
+            offsets = new int[bands];
+            for (int b = 0; b < bands; b++) {
+                int bank = sm.getBankIndices()[b];
+                data[b] = buffer.getData(bank);
+                offsets[b] = buffer.getOffsets()[bank] + sm.getBandOffsets()[b];
+            }
+            pixelStride = sm.getPixelStride();
+            scanlineStride = sm.getScanlineStride();
+            translateX = raster.getSampleModelTranslateX();
+            translateY = raster.getSampleModelTranslateY();
+        }
+
+        /**
+         * Returns the direct access to the samples of the given raster.
+         *
+         * @param raster the raster.
+         * @return the direct access, or <code>null</code> if the raster is not
+         * a raster of bytes based on a component sample model.
+         */
+        static ByteSamples of(Raster raster) {
+            if (!(raster.getSampleModel() instanceof ComponentSampleModel)
+                    || !(raster.getDataBuffer() instanceof DataBufferByte)) {
+                return null;
+            }
+            return new ByteSamples(raster);
+        }
+
+        int get(int band, int x, int y) {
+            return data[band][index(band, x, y)] & 0xFF;
+        }
+
+        void set(int band, int x, int y, byte value) {
+            data[band][index(band, x, y)] = value;
+        }
+
+        private int index(int band, int x, int y) {
+            return offsets[band] + (y - translateY) * scanlineStride + (x - translateX) * pixelStride;
+        }
+    }
+    
     /**
      * Check if the filtering parameters are correct.
      * 
@@ -10,7 +10,7 @@ import java.awt.color.ICC_ColorSpace;
  *
  * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
  */
-public class GreyColorSpace extends ColorSpace {
+public class GreyColorSpace extends ColorSpace implements BulkColorSpace {
     /**
      * Number of components of this color space
      */
@@ -98,7 +98,7 @@ public class GreyColorSpace extends ColorSpace {
      * @return the weight of the blue component.
      */
     public float getBlueWeight(){
-        return this.redWeight;
+        return this.blueWeight;
     }
     
     /**
@@ -114,11 +114,30 @@ public class GreyColorSpace extends ColorSpace {
      */
     @Override
     public float[] toRGB(float[] colorvalue) {
-        float grey = colorvalue[0];
-        float[] rgb = {grey, grey, grey};
+        float[] rgb = new float[3];
+        toRGB(colorvalue, 0, rgb, 0);
         return rgb;
     }
 
+    /**
+     * Transforms a color value assumed to be in this color space into a value
+     * in the RGB color space, storing the result in the given array (so no new
+     * array is allocated). The three RGB components are equal to the grey
+     * level.
+     *
+     * @param colorvalue the array with the grey level.
+     * @param offset the position of the grey level in the input array.
+     * @param rgb the array where the RGB values are stored.
+     * @param rgbOffset the position of the red component in the output array.
+     */
+    @Override
+    public void toRGB(float colorvalue[], int offset, float rgb[], int rgbOffset) {
+        float grey = colorvalue[offset];
+        rgb[rgbOffset] = grey;
+        rgb[rgbOffset + 1] = grey;
+        rgb[rgbOffset + 2] = grey;
+    }
+
     /**
      * Transforms a color value assumed to be in the RGB color space into this
      * color space.
@@ -139,13 +158,26 @@ public class GreyColorSpace extends ColorSpace {
     @Override
     public float[] fromRGB(float[] rgbvalue) {   
         float[] greyLevel = new float[NUM_COMPONENTS];
-        float r = rgbvalue[0];
-        float g = rgbvalue[1];
-        float b = rgbvalue[2];
-        greyLevel[0] = (redWeight*r + greenWeight*g + blueWeight*b);
+        fromRGB(rgbvalue[0], rgbvalue[1], rgbvalue[2], greyLevel, 0);
         return greyLevel;
     }
 
+    /**
+     * Transforms a color value assumed to be in the RGB color space into this
+     * color space, storing the result in the given array (so no new array is
+     * allocated).
+     *
+     * @param r the red component in [0..1].
+     * @param g the green component in [0..1].
+     * @param b the blue component in [0..1].
+     * @param out the array where the grey level is stored.
+     * @param offset the position of the grey level in the output array.
+     */
+    @Override
+    public void fromRGB(float r, float g, float b, float out[], int offset) {
+        out[offset] = (redWeight*r + greenWeight*g + blueWeight*b);
+    }
+
     /**
      * Transforms a color value assumed to be in this color space into the
      * CS_CIEXYZ conversion color space.
@@ -9,7 +9,7 @@ import java.awt.color.ICC_ColorSpace;
  *
  * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
  */
-public class HSIColorSpace extends ColorSpace {
+public class HSIColorSpace extends ColorSpace implements BulkColorSpace {
     /**
      * Number of components of this color space
      */
@@ -55,20 +55,71 @@ public class HSIColorSpace extends ColorSpace {
     /**
      * Transforms a color value assumed to be in this color space into a value
      * in the RGB color space.
-     * 
-     * Not supported yet.
      *
      * @param hsi a float array with length of at least the number of
      * components in this ColorSpace.
      * @return a float array of length 3 with the RGB values.
      * @throws ArrayIndexOutOfBoundsException if array length is not at least
      * the number of components in this ColorSpace.
+     * @throws UnsupportedOperationException if the hue is calculated with the
+     * {@link #HUE_TYPE_ATAN} formula (it is not invertible).
      */
     @Override
     public float[] toRGB(float[] hsi) {
-        throw new UnsupportedOperationException("Transform to RGB from HSI is not supported yet."); 
+        float[] rgb = new float[3];
+        toRGB(hsi, 0, rgb, 0);
+        return rgb;
+    }
+
+    /**
+     * Transforms a color value assumed to be in this color space into a value
+     * in the RGB color space, storing the result in the given array (so no new
+     * array is allocated).
+     *
+     * <p>
+     * The inverse of the {@link #HUE_TYPE_ACOS} formula is used: the hue
+     * determines the sector of the RGB color (of 120 degrees), where the
+     * minimum component is <tt>I(1-S)</tt>. The {@link #HUE_TYPE_ATAN}
+     * formula is not invertible (it does not distinguish the order of the
+     * green and blue components), so the transform is not supported in that
+     * case.
+     *
+     * @param hsi the array with the HSI values.
+     * @param offset the position of the first component in the input array.
+     * @param rgb the array where the RGB values are stored.
+     * @param rgbOffset the position of the red component in the output array.
+     * @throws UnsupportedOperationException if the hue is calculated with the
+     * {@link #HUE_TYPE_ATAN} formula.
+     */
+    @Override
+    public void toRGB(float hsi[], int offset, float rgb[], int rgbOffset) {
+        if (hue_type != HUE_TYPE_ACOS) {
+            throw new UnsupportedOperationException("Transform to RGB from HSI is only supported for the acos hue.");
+        }
+        double h = hsi[offset] * PIx2, s = hsi[offset + 1], i = hsi[offset + 2];
+        if (Double.isNaN(s) || i <= 0.0) {
+            s = 0.0; //Black (undefined saturation)
+        }
+        if (s == 0.0 || Double.isNaN(h)) {
+            //Grey levels: the hue is undefined (fromRGB only returns a NaN
+            //hue for r=g=b), so the three components are equal to I
+            s = 0.0;
+            h = 0.0;
+        }
+        h = h % PIx2;
+        int sector = h < PIx2 / 3.0 ? 0 : (h < 2.0 * PIx2 / 3.0 ? 1 : 2);
+        h -= sector * PIx2 / 3.0;
+        double min = i * (1.0 - s);
+        double max = i * (1.0 + s * Math.cos(h) / Math.cos(Math.PI / 3.0 - h));
+        double mid = 3.0 * i - (min + max);
+        // Sector 0: (max,mid,min); sector 1: (min,max,mid); sector 2: (mid,min,max)
+        rgb[rgbOffset + sector] = (float) max;
+        rgb[rgbOffset + (sector + 1) % 3] = (float) mid;
+        rgb[rgbOffset + (sector + 2) % 3] = (float) min;
+        for (int c = rgbOffset; c < rgbOffset + 3; c++) {
+            rgb[c] = Math.max(0.0f, Math.min(1.0f, rgb[c]));
+        }
     }
-    
 
     /**
      * Transforms a color value assumed to be in the RGB color space into this
@@ -79,27 +130,81 @@ public class HSIColorSpace extends ColorSpace {
      * @throws ArrayIndexOutOfBoundsException if array length is not at least 3
      */
     @Override
-    public float[] fromRGB(float[] rgbvalue) {        
-        float r = rgbvalue[0];
-        float g = rgbvalue[1];
-        float b = rgbvalue[2];
-                
-        float[] hsl = new float[3];    
-        float i = (r+g+b) / 3.0f;  //In [0,1] 
-        hsl[1] = 1.0f - (Math.min(r, Math.min(g, b))/i); //In [0,1];
-        hsl[2] = i; //In [0,1];      
+    public float[] fromRGB(float[] rgbvalue) {
+        float[] hsi = new float[NUM_COMPONENTS];
+        fromRGB(rgbvalue[0], rgbvalue[1], rgbvalue[2], hsi, 0);
+        return hsi;
+    }
+
+    /**
+     * Transforms a color value assumed to be in the RGB color space into this
+     * color space, storing the result in the given array (so no new array is
+     * allocated).
+     *
+     * @param r the red component in [0..1].
+     * @param g the green component in [0..1].
+     * @param b the blue component in [0..1].
+     * @param out the array where the HSI values are stored.
+     * @param offset the position of the first component in the output array.
+     */
+    @Override
+    public void fromRGB(float r, float g, float b, float out[], int offset) {
         if (hue_type == HUE_TYPE_ATAN) {
-            //Transformation from paper “Fuzzy Homogeneity Measures for  
-            //Path-based Colour Image Segmentation”, FuzzIEEE 2005
-            float h = (float) Math.atan((SQRT3 * (g + b)) / (2.0 * r + g + b)); //In [-PI/2, PI/2]
-            hsl[0] = (float) ((h + PI2) / Math.PI); //In [0,1] 
+            fromRGBAtan(r, g, b, out, offset);
         } else {
-            //Transformation from Belen´s thesis (only hue changes)
-            float delta = (float) Math.acos(((r - g) + (r - b)) / (2.0 * Math.sqrt((r - g) * (r - g) + (r - b) * (g - b)))); //In [0, PI]
-            float h = b < g ? delta : (float) PIx2 - delta;
-            hsl[0] = (float) (h / PIx2); //In [0,1]
-        }        
-        return hsl;
+            fromRGBAcos(r, g, b, out, offset);
+        }
+    }
+
+    /**
+     * Transforms a RGB color value into this color space using the
+     * {@link #HUE_TYPE_ATAN} formula for the hue (see
+     * {@link #fromRGB(float, float, float, float[], int)}).
+     *
+     * @param r the red component in [0..1].
+     * @param g the green component in [0..1].
+     * @param b the blue component in [0..1].
+     * @param out the array where the HSI values are stored.
+     * @param offset the position of the first component in the output array.
+     */
+    static void fromRGBAtan(float r, float g, float b, float out[], int offset) {
+        intensitySaturation(r, g, b, out, offset);
+        //Transformation from paper “Fuzzy Homogeneity Measures for  
+        //Path-based Colour Image Segmentation”, FuzzIEEE 2005
+        float h = (float) Math.atan((SQRT3 * (g + b)) / (2.0 * r + g + b)); //In [-PI/2, PI/2]
+        out[offset] = (float) ((h + PI2) / Math.PI); //In [0,1] 
+    }
+
+    /**
+     * Transforms a RGB color value into this color space using the
+     * {@link #HUE_TYPE_ACOS} formula for the hue (see
+     * {@link #fromRGB(float, float, float, float[], int)}).
+     *
+     * @param r the red component in [0..1].
+     * @param g the green component in [0..1].
+     * @param b the blue component in [0..1].
+     * @param out the array where the HSI values are stored.
+     * @param offset the position of the first component in the output array.
+     */
+    static void fromRGBAcos(float r, float g, float b, float out[], int offset) {
+        intensitySaturation(r, g, b, out, offset);
+        //Transformation from Belen´s thesis (only hue changes)
+        //The cosine is clamped to [-1,1], since it can be out of range
+        //by rounding (for example, if r<g=b); it is NaN for grey levels
+        double cos = ((r - g) + (r - b)) / (2.0 * Math.sqrt((r - g) * (r - g) + (r - b) * (g - b)));
+        float delta = (float) Math.acos(Math.max(-1.0, Math.min(1.0, cos))); //In [0, PI]
+        float h = b < g ? delta : (float) PIx2 - delta;
+        out[offset] = (float) (h / PIx2); //In [0,1]
+    }
+
+    /*
+     * Stores the intensity and saturation of the given RGB value (common to
+     * both hue formulas).
+     */
+    private static void intensitySaturation(float r, float g, float b, float out[], int offset) {
+        float i = (r+g+b) / 3.0f;  //In [0,1] 
+        out[offset + 1] = 1.0f - (Math.min(r, Math.min(g, b))/i); //In [0,1];
+        out[offset + 2] = i; //In [0,1];      
     }
 
     /**
@@ -194,4 +299,14 @@ public class HSIColorSpace extends ColorSpace {
         }
         this.hue_type = hue_type;
     }    
+
+    /**
+     * Returns the formula type used to calculate the hue value.
+     *
+     * @return the formula type ({@link #HUE_TYPE_ATAN} or
+     * {@link #HUE_TYPE_ACOS}).
+     */
+    public int getHueType() {
+        return hue_type;
+    }
 }
@@ -14,7 +14,7 @@ import java.awt.color.ICC_ColorSpace;
  *
  * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
  */
-public class HSLColorSpace extends ColorSpace {
+public class HSLColorSpace extends ColorSpace implements BulkColorSpace {
     /**
      * Number of components of this color space
      */
@@ -50,9 +50,25 @@ public class HSLColorSpace extends ColorSpace {
     @Override
     public float[] toRGB(float[] hsl) {
         float[] rgb = new float[3];
-        float H = hsl[0];
-        float S = hsl[1];
-        float L = hsl[2];
+        toRGB(hsl, 0, rgb, 0);
+        return rgb;
+    }
+
+    /**
+     * Transforms a color value assumed to be in this color space into a value
+     * in the RGB color space, storing the result in the given array (so no new
+     * array is allocated).
+     *
+     * @param hsl the array with the HSL values.
+     * @param offset the position of the first component in the input array.
+     * @param rgb the array where the RGB values are stored.
+     * @param rgbOffset the position of the red component in the output array.
+     */
+    @Override
+    public void toRGB(float hsl[], int offset, float rgb[], int rgbOffset) {
+        float H = hsl[offset];
+        float S = hsl[offset + 1];
+        float L = hsl[offset + 2];
         float R, G, B, var_1, var_2;
 
         if (S == 0) //HSL values = 0 1
@@ -72,16 +88,14 @@ public class HSLColorSpace extends ColorSpace {
             B = (255.0f * Hue_2_RGB(var_1, var_2, H - (1.0f / 3.0f)));
         }
 
-        rgb[0] = R / 255.0f;
-        rgb[1] = G / 255.0f;
-        rgb[2] = B / 255.0f;
-        for (int i = 0; i < rgb.length; i++) {
+        rgb[rgbOffset] = R / 255.0f;
+        rgb[rgbOffset + 1] = G / 255.0f;
+        rgb[rgbOffset + 2] = B / 255.0f;
+        for (int i = rgbOffset; i < rgbOffset + 3; i++) {
             if (rgb[i] > 1.0f) {
                 rgb[i] = 1.0f;
             }
         }
-
-        return rgb;
     }
     
     /*
@@ -116,10 +130,25 @@ public class HSLColorSpace extends ColorSpace {
      */
     @Override
     public float[] fromRGB(float[] rgbvalue) {
+        float[] hsl = new float[NUM_COMPONENTS];
+        fromRGB(rgbvalue[0], rgbvalue[1], rgbvalue[2], hsl, 0);
+        return hsl;
+    }
+
+    /**
+     * Transforms a color value assumed to be in the RGB color space into this
+     * color space, storing the result in the given array (so no new array is
+     * allocated).
+     *
+     * @param var_R the red component in [0..1].
+     * @param var_G the green component in [0..1].
+     * @param var_B the blue component in [0..1].
+     * @param out the array where the HSL values are stored.
+     * @param offset the position of the first component in the output array.
+     */
+    @Override
+    public void fromRGB(float var_R, float var_G, float var_B, float out[], int offset) {
         float H = 0, S, L;
-        float var_R = rgbvalue[0];
-        float var_G = rgbvalue[1];
-        float var_B = rgbvalue[2];
 
         float var_Max = (float) Math.max(var_R, Math.max(var_G, var_B));
         float var_Min = (float) Math.min(var_R, Math.min(var_G, var_B));
@@ -156,12 +185,9 @@ public class HSLColorSpace extends ColorSpace {
             }
         }
 
-        float[] hsl = new float[3];
-        hsl[0] = H * (float) this.getMaxValue(0);
-        hsl[1] = S * (float) this.getMaxValue(1);
-        hsl[2] = L * (float) this.getMaxValue(2);
-        
-        return hsl;
+        out[offset] = H * (float) this.getMaxValue(0);
+        out[offset + 1] = S * (float) this.getMaxValue(1);
+        out[offset + 2] = L * (float) this.getMaxValue(2);
     }
 
     /**
@@ -15,7 +15,7 @@ import java.awt.color.ICC_ColorSpace;
  *
  * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
  */
-public class YCbCrColorSpace extends ColorSpace {
+public class YCbCrColorSpace extends ColorSpace implements BulkColorSpace {
     /**
      * Number of components of this color space
      */
@@ -71,13 +71,28 @@ public class YCbCrColorSpace extends ColorSpace {
     @Override
     public float[] toRGB(float[] yCbCr) {
         float[] rgb = new float[3];
-        rgb[0] = Math.max(0, Math.min(yCbCr[0] + 1.4020f * yCbCr[2], 1));
-        rgb[1] = Math.max(0, Math.min(yCbCr[0] - 0.3441f * yCbCr[1] - 0.7141f * yCbCr[2], 1));
-        rgb[2] = Math.max(0, Math.min(yCbCr[0] + 1.7720f * yCbCr[1], 1));
-
+        toRGB(yCbCr, 0, rgb, 0);
         return rgb;
     }
 
+    /**
+     * Transforms a color value assumed to be in this color space into a value
+     * in the RGB color space, storing the result in the given array (so no new
+     * array is allocated).
+     *
+     * @param yCbCr the array with the YCbCr values.
+     * @param offset the position of the first component in the input array.
+     * @param rgb the array where the RGB values are stored.
+     * @param rgbOffset the position of the red component in the output array.
+     */
+    @Override
+    public void toRGB(float yCbCr[], int offset, float rgb[], int rgbOffset) {
+        float y = yCbCr[offset], cb = yCbCr[offset + 1], cr = yCbCr[offset + 2];
+        rgb[rgbOffset] = Math.max(0, Math.min(y + 1.4020f * cr, 1));
+        rgb[rgbOffset + 1] = Math.max(0, Math.min(y - 0.3441f * cb - 0.7141f * cr, 1));
+        rgb[rgbOffset + 2] = Math.max(0, Math.min(y + 1.7720f * cb, 1));
+    }
+
     /**
      * Transforms a color value assumed to be in the RGB color space into this
      * color space.
@@ -99,15 +114,28 @@ public class YCbCrColorSpace extends ColorSpace {
     @Override
     public float[] fromRGB(float[] rgbvalue) {
         float[] yCbCr = new float[NUM_COMPONENTS];
-        float r = rgbvalue[0];
-        float g = rgbvalue[1];
-        float b = rgbvalue[2];
-        yCbCr[0] = (KR * r + KG * g + KB * b);
-        yCbCr[1] = (-0.1687f * r - 0.33126f * g + 0.50000f * b);
-        yCbCr[2] = (0.50000f * r - 0.41869f * g - 0.08131f * b);
+        fromRGB(rgbvalue[0], rgbvalue[1], rgbvalue[2], yCbCr, 0);
         return yCbCr;
     }
 
+    /**
+     * Transforms a color value assumed to be in the RGB color space into this
+     * color space, storing the result in the given array (so no new array is
+     * allocated).
+     *
+     * @param r the red component in [0..1].
+     * @param g the green component in [0..1].
+     * @param b the blue component in [0..1].
+     * @param out the array where the YCbCr values are stored.
+     * @param offset the position of the first component in the output array.
+     */
+    @Override
+    public void fromRGB(float r, float g, float b, float out[], int offset) {
+        out[offset] = (KR * r + KG * g + KB * b);
+        out[offset + 1] = (-0.1687f * r - 0.33126f * g + 0.50000f * b);
+        out[offset + 2] = (0.50000f * r - 0.41869f * g - 0.08131f * b);
+    }
+
     /**
      * Transforms a color value assumed to be in this color space into the
      * CS_CIEXYZ conversion color space.
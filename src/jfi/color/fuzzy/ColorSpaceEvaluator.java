@@ -0,0 +1,123 @@
+package jfi.color.fuzzy;
+
+import java.util.ArrayList;
+import jfi.fuzzy.FuzzySetCollection.PossibilityDistributionItem;
+import jfi.geometry.Point3D;
+
+/**
+ * Interface representing an evaluator of a whole fuzzy color space, that is,
+ * an object that calculates the membership degrees of a crisp color to all the
+ * fuzzy colors of a space at once. Depending on the kind of space, the
+ * evaluator may take advantage of its structure (for example, indexing the
+ * supports of the fuzzy colors, or sharing the distances to the prototypes
+ * among the fuzzy colors), so the evaluation is faster than the one of each
+ * fuzzy color separately.
+ *
+ * <p>
+ * The evaluators are built from the fuzzy colors at construction time, so
+ * they must be rebuilt if the fuzzy colors change. The degrees are the same
+ * as the ones given by the fuzzy colors (except for rounding errors, depending
+ * on the evaluator).
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public interface ColorSpaceEvaluator {
+
+    /**
+     * Returns the evaluated fuzzy color space.
+     *
+     * @return the fuzzy color space.
+     */
+    public FuzzyColorSpace<Point3D> getFuzzyColorSpace();
+
+    /**
+     * Calculates the non-zero membership degrees of the given color to the
+     * fuzzy colors of the space.
+     *
+     * @param x the first component of the color.
+     * @param y the second component of the color.
+     * @param z the third component of the color.
+     * @param indices the array where the positions (in the fuzzy color space)
+     * of the fuzzy colors with non-zero degree are stored. Its length must be
+     * at least the number of fuzzy colors of the space.
+     * @param degrees the array where the non-zero degrees are stored (in the
+     * same order as the positions). Its length must be at least the number of
+     * fuzzy colors of the space.
+     * @return the number of fuzzy colors with non-zero degree.
+     */
+    public int nonZeroDegrees(double x, double y, double z, int indices[], double degrees[]);
+
+    /**
+     * Calculates the membership degrees of the given color to each fuzzy
+     * color of the space.
+     *
+     * @param x the first component of the color.
+     * @param y the second component of the color.
+     * @param z the third component of the color.
+     * @param out the output array, where the degree to the <tt>i</tt>-th
+     * fuzzy color of the space is stored at the position <tt>i</tt>. If
+     * <tt>null</tt>, a new one is created.
+     * @return the membership degrees.
+     */
+    public double[] membershipDegrees(double x, double y, double z, double out[]);
+
+    /**
+     * Returns the number of fuzzy colors of the evaluated space.
+     *
+     * @return the number of fuzzy colors.
+     */
+    default public int size() {
+        return getFuzzyColorSpace().size();
+    }
+
+    /**
+     * Returns the possibility distribution for the given color, as it is
+     * returned by
+     * {@link jfi.fuzzy.FuzzySetCollection#getPossibilityDistribution(java.lang.Object)}.
+     *
+     * @param p the color.
+     * @return the possibility distribution.
+     */
+    default public ArrayList<PossibilityDistributionItem> getPossibilityDistribution(Point3D p) {
+        FuzzyColorSpace<Point3D> fcs = getFuzzyColorSpace();
+        double degrees[] = membershipDegrees(p.getX(), p.getY(), p.getZ(), null);
+        ArrayList<PossibilityDistributionItem> output = new ArrayList();
+        for (int i = 0; i < degrees.length; i++) {
+            if (degrees[i] > 0.0) {
+                output.add(fcs.new PossibilityDistributionItem(degrees[i], fcs.get(i)));
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Returns the most suitable evaluator for the given fuzzy color space: a
+     * {@link SphericalColorIndex} for sphere-based spaces, a
+     * {@link PrototypeColorEvaluator} for fuzzy c-means and nearest
+     * neighbour spaces, the {@link FuzzyColorCube} for the spaces of a
+     * membership cube, or <tt>null</tt> if there is no specific evaluator
+     * for the space.
+     *
+     * @param fcs the fuzzy color space.
+     * @return the evaluator, or <tt>null</tt> if there is no specific
+     * evaluator for the space.
+     */
+    public static ColorSpaceEvaluator of(FuzzyColorSpace<Point3D> fcs) {
+        if (fcs == null || fcs.isEmpty()) {
+            return null;
+        }
+        if (fcs.get(0) instanceof FuzzyColorCube.CubeColor) {
+            FuzzyColorCube cube = ((FuzzyColorCube.CubeColor) fcs.get(0)).getCube();
+            if (cube.isCubeSpace(fcs)) {
+                return cube;
+            }
+        }
+        if (SphericalColorIndex.isIndexable(fcs)) {
+            return new SphericalColorIndex(fcs);
+        }
+        if (PrototypeColorEvaluator.isApplicable(fcs)) {
+            return new PrototypeColorEvaluator(fcs);
+        }
+        return null;
+    }
+}
@@ -111,4 +111,24 @@ public class FuzzyCMeamsColor implements FuzzyColor<Point3D>, Prototyped<Point3D
     public Point3D getPrototype() {
         return this.color_prototype;
     }
+
+    /**
+     * Returns the set of all the prototypes of the fuzzy partition to which
+     * this fuzzy color belongs.
+     * 
+     * @return the set of all the prototypes.
+     */
+    public Point3D[] getPrototypes() {
+        return this.all_prototypes;
+    }
+    
+    /**
+     * Returns the parameter <tt>m</tt> of the Fuzzy C-Means membership
+     * function.
+     * 
+     * @return the parameter <tt>m</tt>.
+     */
+    public double getM() {
+        return this.m_fcmParameter;
+    }
 }
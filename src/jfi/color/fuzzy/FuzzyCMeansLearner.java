@@ -0,0 +1,596 @@
+package jfi.color.fuzzy;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.stream.IntStream;
+import jfi.geometry.Point3D;
+
+/**
+ * Class for learning color prototypes from image data by means of the fuzzy
+ * c-means algorithm, and for building fuzzy color spaces from them.
+ *
+ * <p>
+ * The sample pixels (from images or given directly as packed RGB values) are
+ * accumulated into a color histogram, so the learning is performed on the
+ * distinct colors weighted by their frequency; in this way, the cost of each
+ * iteration does not depend on the number of pixels (there are at most
+ * 2<sup>24</sup> distinct colors), and hundreds of millions of pixels can be
+ * used. The prototypes are initialized by means of the k-means++ seeding, and
+ * then the following steps are iterated until the prototypes move less than
+ * {@link #getTolerance()} or {@link #getIterations()} iterations are reached:
+ * <ul>
+ * <li>The membership degree of each color to each cluster is calculated as
+ * <tt>u<sub>k</sub> = d<sub>k</sub><sup>-e</sup> / &Sigma;<sub>j</sub>
+ * d<sub>j</sub><sup>-e</sup></tt> with <tt>e=2/(m-1)</tt> (the one of
+ * {@link FuzzyCMeamsColor}).</li>
+ * <li>Each prototype is moved to the mean of the colors weighted by
+ * <tt>u<sub>k</sub><sup>m</sup></tt> and their frequency.</li>
+ * </ul>
+ * Both the seeding and the iterations are calculated in parallel, by means of
+ * partial sums over fixed chunks of colors (so the result does not depend on
+ * the number of processors). Optionally, mini-batch updates can be used (see
+ * {@link #setBatchSize(int)}): in each iteration, only a random subset of the
+ * colors is used, and each prototype is moved towards the mean of the subset
+ * with a learning rate given by the inverse of its accumulated weight.
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class FuzzyCMeansLearner {
+    /**
+     * Number of clusters (fuzzy colors) to be learnt.
+     */
+    private int numClusters;
+    /**
+     * Parameter <tt>m</tt> of the fuzzy c-means algorithm.
+     */
+    private double m = FuzzyCMeamsColor.DEFAULT_M;
+    /**
+     * Maximum number of iterations.
+     */
+    private int iterations = DEFAULT_ITERATIONS;
+    /**
+     * Maximum movement of the prototypes (in RGB units) for stopping the
+     * iterations.
+     */
+    private double tolerance = DEFAULT_TOLERANCE;
+    /**
+     * Number of colors used in each mini-batch iteration (0 for using all the
+     * colors).
+     */
+    private int batchSize = 0;
+    /**
+     * Seed of the random generator.
+     */
+    private long seed = 0L;
+    /**
+     * Histogram of the sample pixels (indexed by packed RGB value).
+     */
+    private int histogram[] = null;
+    /**
+     * Number of sample pixels.
+     */
+    private long numSamples = 0;
+    /**
+     * Learnt prototypes (null if the learning has not been performed).
+     */
+    private Point3D prototypes[] = null;
+    /**
+     * Default number of iterations.
+     */
+    public static final int DEFAULT_ITERATIONS = 100;
+    /**
+     * Default tolerance.
+     */
+    public static final double DEFAULT_TOLERANCE = 0.01;
+    /**
+     * Number of chunks used for the parallel partial sums.
+     */
+    private static final int CHUNKS = 256;
+    /**
+     * Minimum number of pixels for adding the samples in parallel.
+     */
+    private static final int PARALLEL_SAMPLES = 1 << 16;
+
+    /**
+     * Constructs a new fuzzy c-means learner.
+     *
+     * @param numClusters the number of clusters (fuzzy colors) to be learnt.
+     */
+    public FuzzyCMeansLearner(int numClusters) {
+        this.setNumClusters(numClusters);
+    }
+
+    /**
+     * Adds the pixels of the given image to the samples. The rows are read in
+     * parallel, by bands of about {@link #PARALLEL_SAMPLES} pixels.
+     *
+     * @param image the image.
+     */
+    public void addImage(BufferedImage image) {
+        if (image == null) {
+            throw new NullPointerException("Image is null");
+        }
+        int width = image.getWidth(), height = image.getHeight();
+        int bandHeight = Math.max(1, Math.min(height, PARALLEL_SAMPLES / Math.max(1, width)));
+        int band[] = new int[bandHeight * width];
+        for (int y0 = 0; y0 < height; y0 += bandHeight) {
+            int rows = Math.min(bandHeight, height - y0), top = y0;
+            IntStream.range(0, rows).parallel().forEach(y -> {
+                image.getRGB(0, top + y, width, 1, band, y * width, width);
+            });
+            addSamples(band, 0, rows * width);
+        }
+    }
+
+    /**
+     * Adds the given pixels (as packed RGB values <tt>0xRRGGBB</tt>, the
+     * alpha byte is ignored) to the samples. If there are many pixels, they
+     * are sorted in parallel and each run of equal colors is added to the
+     * histogram at once (the histogram is too large for a copy per thread).
+     *
+     * @param rgb the packed RGB values.
+     * @param offset the position of the first pixel.
+     * @param n the number of pixels.
+     */
+    public void addSamples(int rgb[], int offset, int n) {
+        if (histogram == null) {
+            histogram = new int[1 << 24];
+        }
+        if (n < PARALLEL_SAMPLES) {
+            for (int i = offset; i < offset + n; i++) {
+                histogram[rgb[i] & 0xFFFFFF]++;
+            }
+        } else {
+            int sorted[] = new int[n];
+            IntStream.range(0, n).parallel().forEach(i -> sorted[i] = rgb[offset + i] & 0xFFFFFF);
+            Arrays.parallelSort(sorted);
+            for (int i = 0; i < n;) {
+                int j = i + 1;
+                while (j < n && sorted[j] == sorted[i]) {
+                    j++;
+                }
+                histogram[sorted[i]] += j - i;
+                i = j;
+            }
+        }
+        numSamples += n;
+        prototypes = null;
+    }
+
+    /**
+     * Removes all the samples.
+     */
+    public void clearSamples() {
+        histogram = null;
+        numSamples = 0;
+        prototypes = null;
+    }
+
+    /**
+     * Returns the number of sample pixels.
+     *
+     * @return the number of sample pixels.
+     */
+    public long getNumSamples() {
+        return numSamples;
+    }
+
+    /**
+     * Learns the prototypes from the samples.
+     *
+     * @return the learnt prototypes.
+     * @throws IllegalStateException if there are not samples.
+     */
+    public Point3D[] learn() {
+        if (numSamples == 0) {
+            throw new IllegalStateException("There are not samples");
+        }
+        // Distinct colors and their frequencies
+        int n = 0;
+        for (int count : histogram) {
+            if (count > 0) {
+                n++;
+            }
+        }
+        int colors[] = new int[n], weights[] = new int[n];
+        for (int color = 0, i = 0; color < histogram.length; color++) {
+            if (histogram[color] > 0) {
+                colors[i] = color;
+                weights[i++] = histogram[color];
+            }
+        }
+        int c = Math.min(numClusters, n);
+        Random random = new Random(seed);
+        double v[] = seeding(colors, weights, c, random);
+        if (batchSize > 0 && batchSize < n) {
+            miniBatch(colors, weights, v, random);
+        } else {
+            for (int iteration = 0; iteration < iterations; iteration++) {
+                double sums[] = accumulate(colors, weights, null, n, v);
+                if (update(v, sums) < tolerance) {
+                    break;
+                }
+            }
+        }
+        prototypes = new Point3D[c];
+        for (int k = 0; k < c; k++) {
+            prototypes[k] = new Point3D(v[3 * k], v[3 * k + 1], v[3 * k + 2]);
+        }
+        return prototypes.clone();
+    }
+
+    /**
+     * Returns the learnt prototypes, learning them if needed.
+     *
+     * @return the learnt prototypes.
+     */
+    public Point3D[] getPrototypes() {
+        return prototypes != null ? prototypes.clone() : learn();
+    }
+
+    /**
+     * Creates a new fuzzy color space based on the fuzzy c-means membership
+     * functions (see
+     * {@link FuzzyColorSpace.Factory#createFuzzyCMeansFCS(java.util.Map, double)})
+     * from the learnt prototypes (learning them if needed), with the same
+     * parameter <tt>m</tt> used for learning.
+     *
+     * @return a new fuzzy color space.
+     */
+    public FuzzyColorSpace<Point3D> createFuzzyCMeansFCS() {
+        return FuzzyColorSpace.Factory.createFuzzyCMeansFCS(prototypeMap(), m);
+    }
+
+    /**
+     * Creates a new fuzzy color space based on spherical membership functions
+     * (see
+     * {@link FuzzyColorSpace.Factory#createSphereBasedFCS(java.util.Map, double)})
+     * from the learnt prototypes (learning them if needed).
+     *
+     * @param kernel_factor the kernel factor (between 0 and 1).
+     * @return a new fuzzy color space.
+     */
+    public FuzzyColorSpace<Point3D> createSphereBasedFCS(double kernel_factor) {
+        return FuzzyColorSpace.Factory.createSphereBasedFCS(prototypeMap(), kernel_factor);
+    }
+
+    /**
+     * Returns the learnt prototypes (learning them if needed) with the labels
+     * <tt>"Color i"</tt>.
+     */
+    private LinkedHashMap<String, Point3D> prototypeMap() {
+        Point3D v[] = getPrototypes();
+        LinkedHashMap<String, Point3D> map = new LinkedHashMap(v.length);
+        for (int i = 0; i < v.length; i++) {
+            map.put("Color " + i, v[i]);
+        }
+        return map;
+    }
+
+    /**
+     * Chooses the initial prototypes by means of the k-means++ seeding: the
+     * first one is a random color (with probability proportional to its
+     * frequency), and each of the next ones is a random color with probability
+     * proportional to its frequency and the squared distance to its nearest
+     * prototype.
+     */
+    private double[] seeding(int colors[], int weights[], int c, Random random) {
+        int n = colors.length;
+        double v[] = new double[3 * c];
+        double dist2[] = new double[n];
+        Arrays.fill(dist2, Double.MAX_VALUE);
+        long total = 0;
+        for (int w : weights) {
+            total += w;
+        }
+        // First prototype
+        long target = (long) (random.nextDouble() * total), cumulative = 0;
+        int chosen = n - 1;
+        for (int i = 0; i < n; i++) {
+            cumulative += weights[i];
+            if (cumulative > target) {
+                chosen = i;
+                break;
+            }
+        }
+        setPrototype(v, 0, colors[chosen]);
+        for (int k = 1; k < c; k++) {
+            // Squared distances to the nearest prototype (and their weighted
+            // sum), updated with the last prototype
+            final int last = k - 1;
+            double partial[] = new double[CHUNKS];
+            IntStream.range(0, CHUNKS).parallel().forEach(chunk -> {
+                double s = 0.0;
+                int from = (int) ((long) chunk * n / CHUNKS), to = (int) ((long) (chunk + 1) * n / CHUNKS);
+                for (int i = from; i < to; i++) {
+                    int color = colors[i];
+                    double dr = ((color >> 16) & 0xFF) - v[3 * last];
+                    double dg = ((color >> 8) & 0xFF) - v[3 * last + 1];
+                    double db = (color & 0xFF) - v[3 * last + 2];
+                    dist2[i] = Math.min(dist2[i], dr * dr + dg * dg + db * db);
+                    s += weights[i] * dist2[i];
+                }
+                partial[chunk] = s;
+            });
+            double sum = 0.0;
+            for (double s : partial) {
+                sum += s;
+            }
+            if (sum <= 0.0) { // All the colors are prototypes
+                for (int j = k; j < c; j++) {
+                    System.arraycopy(v, 0, v, 3 * j, 3);
+                }
+                break;
+            }
+            double r = random.nextDouble() * sum, acc = 0.0;
+            chosen = -1;
+            for (int i = 0; i < n; i++) {
+                acc += weights[i] * dist2[i];
+                if (acc > r && dist2[i] > 0.0) {
+                    chosen = i;
+                    break;
+                }
+            }
+            if (chosen < 0) { // Rounding problems: the farthest color is used
+                chosen = 0;
+                for (int i = 1; i < n; i++) {
+                    if (dist2[i] > dist2[chosen]) {
+                        chosen = i;
+                    }
+                }
+            }
+            setPrototype(v, k, colors[chosen]);
+        }
+        return v;
+    }
+
+    /**
+     * Sets the given prototype to the given packed RGB color.
+     */
+    private static void setPrototype(double v[], int k, int color) {
+        v[3 * k] = (color >> 16) & 0xFF;
+        v[3 * k + 1] = (color >> 8) & 0xFF;
+        v[3 * k + 2] = color & 0xFF;
+    }
+
+    /**
+     * Performs the mini-batch iterations: in each one, a random subset of the
+     * colors is used, and each prototype is moved towards the weighted mean of
+     * the subset with a learning rate given by the inverse of its accumulated
+     * weight.
+     */
+    private void miniBatch(int colors[], int weights[], double v[], Random random) {
+        int c = v.length / 3;
+        int batch[] = new int[batchSize];
+        double accumulated[] = new double[c];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int i = 0; i < batchSize; i++) {
+                batch[i] = random.nextInt(colors.length);
+            }
+            double sums[] = accumulate(colors, weights, batch, batchSize, v);
+            double movement = 0.0;
+            for (int k = 0; k < c; k++) {
+                double weight = sums[4 * k + 3];
+                if (weight > 0.0) {
+                    accumulated[k] += weight;
+                    double rate = weight / accumulated[k];
+                    for (int j = 0; j < 3; j++) {
+                        double delta = rate * (sums[4 * k + j] / weight - v[3 * k + j]);
+                        v[3 * k + j] += delta;
+                        movement = Math.max(movement, Math.abs(delta));
+                    }
+                }
+            }
+            if (movement < tolerance) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Calculates (in parallel) the weighted sums of the fuzzy c-means update:
+     * for each cluster <tt>k</tt>, <tt>&Sigma;w&middot;u<sub>k</sub><sup>m
+     * </sup>&middot;x</tt> (three values) and
+     * <tt>&Sigma;w&middot;u<sub>k</sub><sup>m</sup></tt>.
+     *
+     * @param colors the packed RGB colors.
+     * @param weights the frequencies of the colors.
+     * @param indices the positions of the colors to be used (<tt>null</tt>
+     * for using the first <tt>n</tt> ones).
+     * @param n the number of colors to be used.
+     * @param v the current prototypes.
+     * @return the sums (four values per cluster).
+     */
+    private double[] accumulate(int colors[], int weights[], int indices[], int n, double v[]) {
+        int c = v.length / 3;
+        double exponent = 2.0 / (m - 1.0);
+        boolean quadratic = (m == 2.0);
+        double partial[][] = new double[CHUNKS][];
+        IntStream.range(0, CHUNKS).parallel().forEach(chunk -> {
+            double s[] = new double[4 * c], inv[] = new double[c];
+            int from = (int) ((long) chunk * n / CHUNKS), to = (int) ((long) (chunk + 1) * n / CHUNKS);
+            for (int p = from; p < to; p++) {
+                int i = indices != null ? indices[p] : p;
+                int color = colors[i];
+                double r = (color >> 16) & 0xFF, g = (color >> 8) & 0xFF, b = color & 0xFF;
+                // Inverse of the distances raised to the exponent
+                double sum = 0.0;
+                int zero = -1;
+                for (int k = 0; k < c; k++) {
+                    double dr = r - v[3 * k], dg = g - v[3 * k + 1], db = b - v[3 * k + 2];
+                    double d2 = dr * dr + dg * dg + db * db;
+                    if (d2 == 0.0) {
+                        zero = k;
+                        break;
+                    }
+                    inv[k] = quadratic ? 1.0 / d2 : Math.pow(d2, -exponent / 2.0);
+                    sum += inv[k];
+                }
+                double w = weights[i];
+                if (zero >= 0) { // The color is a prototype
+                    s[4 * zero] += w * r;
+                    s[4 * zero + 1] += w * g;
+                    s[4 * zero + 2] += w * b;
+                    s[4 * zero + 3] += w;
+                } else {
+                    for (int k = 0; k < c; k++) {
+                        double u = inv[k] / sum;
+                        double um = w * (quadratic ? u * u : Math.pow(u, m));
+                        s[4 * k] += um * r;
+                        s[4 * k + 1] += um * g;
+                        s[4 * k + 2] += um * b;
+                        s[4 * k + 3] += um;
+                    }
+                }
+            }
+            partial[chunk] = s;
+        });
+        double sums[] = new double[4 * c];
+        for (double s[] : partial) {
+            for (int j = 0; j < sums.length; j++) {
+                sums[j] += s[j];
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Moves the prototypes to the weighted means given by the sums, returning
+     * the maximum movement.
+     */
+    private static double update(double v[], double sums[]) {
+        double movement = 0.0;
+        for (int k = 0; k < v.length / 3; k++) {
+            double weight = sums[4 * k + 3];
+            if (weight > 0.0) { // If not, the prototype is not changed
+                for (int j = 0; j < 3; j++) {
+                    double value = sums[4 * k + j] / weight;
+                    movement = Math.max(movement, Math.abs(value - v[3 * k + j]));
+                    v[3 * k + j] = value;
+                }
+            }
+        }
+        return movement;
+    }
+
+    /**
+     * Returns the number of clusters (fuzzy colors) to be learnt.
+     *
+     * @return the number of clusters.
+     */
+    public int getNumClusters() {
+        return numClusters;
+    }
+
+    /**
+     * Set the number of clusters (fuzzy colors) to be learnt. If there are
+     * less distinct colors in the samples, one cluster per color is learnt.
+     *
+     * @param numClusters the number of clusters. It must be greater than 0.
+     */
+    public final void setNumClusters(int numClusters) {
+        if (numClusters < 1) {
+            throw new IllegalArgumentException("The number of clusters must be greater than 0");
+        }
+        this.numClusters = numClusters;
+        prototypes = null;
+    }
+
+    /**
+     * Returns the parameter <tt>m</tt> of the fuzzy c-means algorithm.
+     *
+     * @return the parameter <tt>m</tt>.
+     */
+    public double getM() {
+        return m;
+    }
+
+    /**
+     * Set the parameter <tt>m</tt> of the fuzzy c-means algorithm (by
+     * default, {@link FuzzyCMeamsColor#DEFAULT_M}).
+     *
+     * @param m the parameter <tt>m</tt>. It must be greater than 1.
+     */
+    public void setM(double m) {
+        if (!(m > 1.0)) {
+            throw new IllegalArgumentException("The parameter m must be greater than 1");
+        }
+        this.m = m;
+        prototypes = null;
+    }
+
+    /**
+     * Returns the maximum number of iterations.
+     *
+     * @return the maximum number of iterations.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Set the maximum number of iterations.
+     *
+     * @param iterations the maximum number of iterations.
+     */
+    public void setIterations(int iterations) {
+        this.iterations = Math.max(0, iterations);
+        prototypes = null;
+    }
+
+    /**
+     * Returns the tolerance, that is, the maximum movement of the prototypes
+     * (in RGB units) for stopping the iterations.
+     *
+     * @return the tolerance.
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Set the tolerance, that is, the maximum movement of the prototypes (in
+     * RGB units) for stopping the iterations.
+     *
+     * @param tolerance the tolerance.
+     */
+    public void setTolerance(double tolerance) {
+        this.tolerance = Math.max(0.0, tolerance);
+        prototypes = null;
+    }
+
+    /**
+     * Returns the number of colors used in each mini-batch iteration (0 if
+     * all the colors are used).
+     *
+     * @return the size of the mini-batches.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Set the number of colors used in each mini-batch iteration. If 0 (by
+     * default), or greater than the number of distinct colors, all the colors
+     * are used in each iteration.
+     *
+     * @param batchSize the size of the mini-batches.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(0, batchSize);
+        prototypes = null;
+    }
+
+    /**
+     * Set the seed of the random generator used in the seeding and the
+     * mini-batches.
+     *
+     * @param seed the seed.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        prototypes = null;
+    }
+}
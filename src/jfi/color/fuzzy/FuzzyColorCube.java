@@ -0,0 +1,586 @@
+package jfi.color.fuzzy;
+
+import java.awt.Color;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.stream.IntStream;
+import jfi.geometry.Point3D;
+
+/**
+ * Class representing a membership cube of a fuzzy color space, that is, the
+ * membership degrees of the colors of a quantized RGB grid to each fuzzy color
+ * of the space, precalculated and stored on disk. The cube is memory-mapped
+ * (read-only) when opened, so it can be shared by any number of processes
+ * through the page cache, and the membership degrees are obtained by a lookup
+ * instead of being calculated.
+ *
+ * <p>
+ * The file starts with a header containing a magic number, the format
+ * version, the number of bits per RGB component of the grid, the number of
+ * fuzzy colors and the offset of the data (as big-endian integers), followed
+ * by a description of the fuzzy color space and the labels of its fuzzy
+ * colors (as modified UTF-8 strings). The data starts at the next page
+ * boundary, and stores <tt>k</tt> bytes per grid cell (one per fuzzy color,
+ * 255 for a membership degree of 1.0 and 0 for 0.0), with the cells in RGB
+ * order (the blue component varying fastest). Each cell stores the degrees of
+ * its center color.
+ *
+ * <p>
+ * The membership cube can be used as a fuzzy color space (see
+ * {@link #getFuzzyColorSpace()}), whose fuzzy colors are evaluated by means of
+ * the lookup table. It is also a {@link ColorSpaceEvaluator} of that space.
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class FuzzyColorCube implements ColorSpaceEvaluator, Closeable {
+    /**
+     * Magic number identifying the file format.
+     */
+    private static final int MAGIC = 0x4A464943; // "JFIC"
+    /**
+     * Version of the file format.
+     */
+    private static final int VERSION = 1;
+    /**
+     * Alignment of the data in the file.
+     */
+    private static final int PAGE_SIZE = 4096;
+    /**
+     * Maximum level of the stored degrees (associated to the membership degree
+     * 1.0).
+     */
+    public static final int MAX_LEVEL = 255;
+    /**
+     * Default number of bits per RGB component of the grid.
+     */
+    public static final int DEFAULT_BITS = 6;
+    /**
+     * Number of bits per RGB component of the grid.
+     */
+    private final int bits;
+    /**
+     * Labels of the fuzzy colors.
+     */
+    private final String labels[];
+    /**
+     * Description of the fuzzy color space.
+     */
+    private final String description;
+    /**
+     * The file associated to this cube.
+     */
+    private final RandomAccessFile file;
+    /**
+     * The memory-mapped data.
+     */
+    private final MappedByteBuffer data;
+    /**
+     * The fuzzy color space associated to this cube.
+     */
+    private final FuzzyColorSpace<Point3D> fcs;
+
+    /**
+     * Constructs a new membership cube from an already opened file.
+     */
+    private FuzzyColorCube(RandomAccessFile file, MappedByteBuffer data, int bits, String description, String labels[]) {
+        this.file = file;
+        this.data = data;
+        this.bits = bits;
+        this.description = description;
+        this.labels = labels;
+        this.fcs = new FuzzyColorSpace();
+        for (int i = 0; i < labels.length; i++) {
+            fcs.add(new CubeColor(i));
+        }
+    }
+
+    /**
+     * Creates the membership cube of the given fuzzy color space on the given
+     * file, and opens it. If the file exists, it is overwritten. The degrees
+     * are calculated in parallel, using the evaluator of the space (see
+     * {@link ColorSpaceEvaluator#of(jfi.color.fuzzy.FuzzyColorSpace)}) if
+     * available.
+     *
+     * @param f the file.
+     * @param fcs the fuzzy color space.
+     * @param bits the number of bits per RGB component of the grid (from 1 to
+     * 8, that is, from 2 to 256 levels per component).
+     * @param description a description of the fuzzy color space (for example,
+     * its parameters).
+     * @return the membership cube.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static FuzzyColorCube create(File f, FuzzyColorSpace<Point3D> fcs, int bits, String description) throws IOException {
+        if (fcs == null) {
+            throw new NullPointerException("Fuzzy color space is null");
+        }
+        if (fcs.isEmpty()) {
+            throw new IllegalArgumentException("Fuzzy color space is empty");
+        }
+        if (bits < 1 || bits > 8) {
+            throw new IllegalArgumentException("The number of bits must be between 1 and 8");
+        }
+        int k = fcs.size(), levels = 1 << bits;
+        long dataSize = (long) levels * levels * levels * k;
+        if (dataSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The membership cube is too large; use a lower number of bits");
+        }
+        // Header
+        int dataOffset;
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(f))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(bits);
+            out.writeInt(k);
+            out.writeInt(0); // Data offset (unknown yet)
+            out.writeUTF(description != null ? description : "");
+            for (FuzzyColor<Point3D> fc : fcs) {
+                out.writeUTF(fc.getLabel() != null ? fc.getLabel() : "");
+            }
+            dataOffset = (out.size() + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+        }
+        // Data
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.seek(16);
+            raf.writeInt(dataOffset);
+            raf.setLength(dataOffset + dataSize);
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, dataOffset, dataSize);
+            ColorSpaceEvaluator evaluator = ColorSpaceEvaluator.of(fcs);
+            int step = 256 / levels;
+            double center[] = new double[levels];
+            for (int i = 0; i < levels; i++) {
+                center[i] = i * step + (step - 1) / 2.0;
+            }
+            IntStream.range(0, levels).parallel().forEach(r -> {
+                byte slab[] = new byte[levels * levels * k];
+                double x[] = new double[levels], y[] = new double[levels], z[] = new double[levels];
+                double degrees[] = new double[Math.max(k, levels)];
+                for (int g = 0; g < levels; g++) {
+                    int offset = g * levels * k;
+                    if (evaluator != null) {
+                        for (int b = 0; b < levels; b++) {
+                            evaluator.membershipDegrees(center[r], center[g], center[b], degrees);
+                            for (int c = 0; c < k; c++) {
+                                slab[offset + b * k + c] = (byte) (degrees[c] * MAX_LEVEL);
+                            }
+                        }
+                    } else {
+                        for (int b = 0; b < levels; b++) {
+                            x[b] = center[r];
+                            y[b] = center[g];
+                            z[b] = center[b];
+                        }
+                        for (int c = 0; c < k; c++) {
+                            fcs.get(c).membershipDegrees(x, y, z, degrees, levels);
+                            for (int b = 0; b < levels; b++) {
+                                slab[offset + b * k + c] = (byte) (degrees[b] * MAX_LEVEL);
+                            }
+                        }
+                    }
+                }
+                ByteBuffer view = buffer.duplicate();
+                view.position(r * slab.length);
+                view.put(slab);
+            });
+            buffer.force();
+        }
+        return open(f);
+    }
+
+    /**
+     * Creates the membership cube of the given fuzzy color space on the given
+     * file, with {@link #DEFAULT_BITS} bits per RGB component, and opens it.
+     * If the file exists, it is overwritten.
+     *
+     * @param f the file.
+     * @param fcs the fuzzy color space.
+     * @param description a description of the fuzzy color space.
+     * @return the membership cube.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static FuzzyColorCube create(File f, FuzzyColorSpace<Point3D> fcs, String description) throws IOException {
+        return create(f, fcs, DEFAULT_BITS, description);
+    }
+
+    /**
+     * Opens an existing membership cube, memory-mapping its data (read-only).
+     *
+     * @param f the file.
+     * @return the membership cube.
+     * @throws IOException if an I/O error occurs or the file format is not
+     * valid.
+     */
+    public static FuzzyColorCube open(File f) throws IOException {
+        int bits, k, dataOffset;
+        String description, labels[];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(f))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a membership cube file: " + f);
+            }
+            if (in.readInt() != VERSION) {
+                throw new IOException("Unsupported membership cube version: " + f);
+            }
+            bits = in.readInt();
+            k = in.readInt();
+            dataOffset = in.readInt();
+            // The header is validated before allocating the labels
+            if (bits < 1 || bits > 8 || k <= 0 || k > (Integer.MAX_VALUE >> (3 * bits)) || dataOffset < 0) {
+                throw new IOException("Not valid membership cube header: " + f);
+            }
+            if (f.length() < dataOffset + (1L << (3 * bits)) * k) {
+                throw new IOException("Truncated membership cube file: " + f);
+            }
+            description = in.readUTF();
+            labels = new String[k];
+            for (int i = 0; i < k; i++) {
+                labels[i] = in.readUTF();
+            }
+        }
+        long dataSize = (1L << (3 * bits)) * k;
+        RandomAccessFile raf = new RandomAccessFile(f, "r");
+        try {
+            if (raf.length() < dataOffset + dataSize) {
+                throw new IOException("Truncated membership cube file: " + f);
+            }
+            MappedByteBuffer data = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, dataOffset, dataSize);
+            return new FuzzyColorCube(raf, data, bits, description, labels);
+        } catch (IOException | RuntimeException ex) {
+            // The file is only kept open by a successfully created cube
+            raf.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the number of bits per RGB component of the grid.
+     *
+     * @return the number of bits.
+     */
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * Returns the description of the fuzzy color space.
+     *
+     * @return the description.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Returns the label of the given fuzzy color.
+     *
+     * @param color the position of the fuzzy color.
+     * @return the label.
+     */
+    public String getLabel(int color) {
+        return labels[color];
+    }
+
+    /**
+     * Returns the number of fuzzy colors of this cube.
+     *
+     * @return the number of fuzzy colors.
+     */
+    @Override
+    public int size() {
+        return labels.length;
+    }
+
+    /**
+     * Returns the fuzzy color space associated to this cube, whose fuzzy
+     * colors are evaluated by means of the lookup table. The labels of the
+     * fuzzy colors are the stored ones.
+     *
+     * @return the fuzzy color space.
+     */
+    @Override
+    public FuzzyColorSpace<Point3D> getFuzzyColorSpace() {
+        return fcs;
+    }
+
+    /**
+     * Checks that the given RGB components are in [0,255].
+     *
+     * @throws IllegalArgumentException if any component is out of range.
+     */
+    private static void checkComponents(int r, int g, int b) {
+        if ((r | g | b) < 0 || r > 255 || g > 255 || b > 255) {
+            throw new IllegalArgumentException("The RGB components must be between 0 and 255");
+        }
+    }
+
+    /**
+     * Returns the position of the first degree of the cell of the given RGB
+     * color (with components in [0,255]).
+     */
+    private int cell(int r, int g, int b) {
+        int shift = 8 - bits;
+        return (((r >> shift) << bits | (g >> shift)) << bits | (b >> shift)) * labels.length;
+    }
+
+    /**
+     * Returns the position of the first degree of the cell of the given color
+     * (whose components are rounded and clipped to [0,255]).
+     */
+    private int cell(double x, double y, double z) {
+        return cell(clip(x), clip(y), clip(z));
+    }
+
+    /**
+     * Rounds and clips a component to [0,255].
+     */
+    private static int clip(double v) {
+        return v >= 255.0 ? 255 : (v > 0.0 ? (int) (v + 0.5) : 0);
+    }
+
+    /**
+     * Returns the stored level (in [0,{@link #MAX_LEVEL}]) of the membership
+     * degree of the given RGB color to the given fuzzy color.
+     *
+     * @param color the position of the fuzzy color.
+     * @param r the red component in [0,255].
+     * @param g the green component in [0,255].
+     * @param b the blue component in [0,255].
+     * @return the level of the membership degree.
+     * @throws IllegalArgumentException if the fuzzy color or the components
+     * are out of range.
+     */
+    public int getLevel(int color, int r, int g, int b) {
+        if (color < 0 || color >= labels.length) {
+            throw new IllegalArgumentException("Fuzzy color out of range");
+        }
+        checkComponents(r, g, b);
+        return data.get(cell(r, g, b) + color) & 0xFF;
+    }
+
+    /**
+     * Copies the stored levels (in [0,{@link #MAX_LEVEL}]) of the membership
+     * degrees of the given RGB color to each fuzzy color.
+     *
+     * @param r the red component in [0,255].
+     * @param g the green component in [0,255].
+     * @param b the blue component in [0,255].
+     * @param out the output array (of length at least the number of fuzzy
+     * colors). If <tt>null</tt>, a new one is created.
+     * @return the levels of the membership degrees.
+     * @throws IllegalArgumentException if the components are out of range.
+     */
+    public byte[] getLevels(int r, int g, int b, byte out[]) {
+        checkComponents(r, g, b);
+        if (out == null) {
+            out = new byte[labels.length];
+        }
+        int position = cell(r, g, b);
+        for (int c = 0; c < labels.length; c++) {
+            out[c] = data.get(position + c);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the membership degree of the given RGB color to the given fuzzy
+     * color.
+     *
+     * @param color the position of the fuzzy color.
+     * @param r the red component in [0,255].
+     * @param g the green component in [0,255].
+     * @param b the blue component in [0,255].
+     * @return the membership degree.
+     * @throws IllegalArgumentException if the fuzzy color or the components
+     * are out of range.
+     */
+    public double membershipDegree(int color, int r, int g, int b) {
+        return getLevel(color, r, g, b) / (double) MAX_LEVEL;
+    }
+
+    /**
+     * Calculates the non-zero membership degrees of the given color to the
+     * fuzzy colors of the cube.
+     *
+     * @param x the red component of the color.
+     * @param y the green component of the color.
+     * @param z the blue component of the color.
+     * @param indices the array where the positions of the fuzzy colors with
+     * non-zero degree are stored.
+     * @param degrees the array where the non-zero degrees are stored.
+     * @return the number of fuzzy colors with non-zero degree.
+     */
+    @Override
+    public int nonZeroDegrees(double x, double y, double z, int indices[], double degrees[]) {
+        int position = cell(x, y, z), count = 0;
+        for (int c = 0; c < labels.length; c++) {
+            int level = data.get(position + c) & 0xFF;
+            if (level > 0) {
+                indices[count] = c;
+                degrees[count++] = level / (double) MAX_LEVEL;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Calculates the membership degrees of the given color to each fuzzy
+     * color of the cube.
+     *
+     * @param x the red component of the color.
+     * @param y the green component of the color.
+     * @param z the blue component of the color.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @return the membership degrees.
+     */
+    @Override
+    public double[] membershipDegrees(double x, double y, double z, double out[]) {
+        if (out == null) {
+            out = new double[labels.length];
+        }
+        int position = cell(x, y, z);
+        for (int c = 0; c < labels.length; c++) {
+            out[c] = (data.get(position + c) & 0xFF) / (double) MAX_LEVEL;
+        }
+        return out;
+    }
+
+    /**
+     * Checks if the given fuzzy color space is the one associated to this
+     * cube, that is, if its fuzzy colors are the ones of this cube (in the
+     * same order).
+     *
+     * @param fcs the fuzzy color space.
+     * @return <tt>true</tt> if the fuzzy color space is the one of this cube.
+     */
+    public boolean isCubeSpace(FuzzyColorSpace<?> fcs) {
+        if (fcs.size() != labels.length) {
+            return false;
+        }
+        for (int i = 0; i < labels.length; i++) {
+            if (!(fcs.get(i) instanceof CubeColor) || ((CubeColor) fcs.get(i)).getCube() != this
+                    || ((CubeColor) fcs.get(i)).index != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Closes the file associated to this cube. The mapped data remains valid
+     * until it is garbage collected.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Inner class representing a fuzzy color of the cube, whose membership
+     * degrees are obtained from the lookup table.
+     */
+    public class CubeColor implements FuzzyColor<Point3D> {
+        /**
+         * Position of this fuzzy color in the cube.
+         */
+        private final int index;
+        /**
+         * Label of this fuzzy color.
+         */
+        private String label;
+
+        /**
+         * Constructs the fuzzy color at the given position of the cube.
+         *
+         * @param index the position of the fuzzy color.
+         */
+        private CubeColor(int index) {
+            this.index = index;
+            this.label = labels[index];
+        }
+
+        /**
+         * Returns the cube of this fuzzy color.
+         *
+         * @return the cube of this fuzzy color.
+         */
+        public FuzzyColorCube getCube() {
+            return FuzzyColorCube.this;
+        }
+
+        @Override
+        public String getLabel() {
+            return label;
+        }
+
+        @Override
+        public void setLabel(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Returns the membership degree of the given color (whose components
+         * are rounded and clipped to [0,255]) to this fuzzy color.
+         *
+         * @param p a point representing a crisp color.
+         * @return the membership degree.
+         */
+        @Override
+        public double membershipDegree(Point3D p) {
+            return (data.get(cell(p.getX(), p.getY(), p.getZ()) + index) & 0xFF) / (double) MAX_LEVEL;
+        }
+
+        /**
+         * Returns the membership degree of the given crisp color to this
+         * fuzzy color.
+         *
+         * @param c a crisp color.
+         * @return the membership degree.
+         */
+        @Override
+        public double membershipDegree(Color c) {
+            return FuzzyColorCube.this.membershipDegree(index, c.getRed(), c.getGreen(), c.getBlue());
+        }
+
+        /**
+         * Returns the membership degrees of the first <tt>n</tt> colors given
+         * by their components.
+         *
+         * @param x the red components.
+         * @param y the green components.
+         * @param z the blue components.
+         * @param out the output array. If <tt>null</tt>, a new one is created.
+         * @param n the number of colors.
+         * @return the membership degrees.
+         */
+        @Override
+        public double[] membershipDegrees(double x[], double y[], double z[], double out[], int n) {
+            if (out == null) {
+                out = new double[n];
+            }
+            for (int i = 0; i < n; i++) {
+                out[i] = (data.get(cell(x[i], y[i], z[i]) + index) & 0xFF) / (double) MAX_LEVEL;
+            }
+            return out;
+        }
+
+        /**
+         * Returns a string representation of this fuzzy color.
+         *
+         * @return a string representation of this fuzzy color.
+         */
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+}
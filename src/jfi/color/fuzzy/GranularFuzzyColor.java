@@ -3,7 +3,11 @@ package jfi.color.fuzzy;
 import java.awt.Color;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import jfi.fuzzy.FuzzySet;
 import jfi.fuzzy.GranularFuzzySet;
 import jfi.fuzzy.membershipfunction.SphericalFunction;
@@ -27,6 +31,10 @@ public class GranularFuzzyColor extends GranularFuzzySet<Point3D> implements Fuz
      * The default t-norm used for the union.  
      */
     private static TConorm DEFAULT_TCONORM = TConorm.BOUNDED_SUM;
+    /**
+     * Logger used for tracing the connectivity enhancement.
+     */
+    private static final Logger LOGGER = Logger.getLogger(GranularFuzzyColor.class.getName());
     
     /**
      * Constructs an empty granular fuzzy color with the
@@ -255,6 +263,16 @@ public class GranularFuzzyColor extends GranularFuzzySet<Point3D> implements Fuz
             }
         }
         
+        /**
+         * Enhances the connectivity of the given granular fuzzy color. While
+         * the graph associated to the granular color has more than one
+         * connected component, the nearest single fuzzy colors belonging to
+         * different components are bridged by a new spherical fuzzy color
+         * placed between their supports.
+         *
+         * @param gfc the granular fuzzy color, compound by spherical fuzzy
+         * colors and using the bounded sum as t-conorm.
+         */
         static public void enhanceConnectivity(GranularFuzzyColor gfc){
             SphericalFuzzyColor sfc_i, sfc_j, sfc_rho;
             Point3D pi, pj, u_ij, rho_ij;
@@ -265,9 +283,8 @@ public class GranularFuzzyColor extends GranularFuzzySet<Point3D> implements Fuz
             GranularFuzzyColor.Graph graph = gfc.new Graph();
             max_iterations = graph.num_components -1;
             
-            //Salida para pruebas (provisional)
-            System.out.println(gfc.label+" (#"+gfc.size()+"): #C="+graph.num_components);
-            //Fin salida
+            LOGGER.log(Level.FINE, "{0} (#{1}): #C={2}", 
+                    new Object[]{gfc.label, gfc.size(), graph.num_components});
             
             while(graph.num_components>1 && iteration<max_iterations){
                 //First, the neartest single fuzzy colors belonging to different 
@@ -291,21 +308,17 @@ public class GranularFuzzyColor extends GranularFuzzySet<Point3D> implements Fuz
                 //Third, the parameter arho y brho are calculated
                 arho = Math.max(dist_irho-bi, 0.0);
                 brho = Math.max(bi-ai, bj-aj)+(dist_irho-bi);
-                //The granular color and its graph are updated
+                //The granular color and its graph are updated (only the new 
+                //vertex is added to the graph)
                 sfc_rho = new SphericalFuzzyColor("", rho_ij, arho, brho);
                 gfc.add(sfc_rho);                
-                graph.updateGraph();
+                graph.addNewVertices();
                 iteration++;
                 
-                //Salida para pruebas (provisional)
-                System.out.println("Iteración "+iteration+" ("+gfc.size()+",#C:"+graph.num_components+"): "+nearest+" rho:"+rho_ij);
-                //Fin salida
-                
+                LOGGER.log(Level.FINER, "Iteration {0} ({1},#C:{2}): {3} rho:{4}", 
+                        new Object[]{iteration, gfc.size(), graph.num_components, nearest, rho_ij});
             }
-            
-            //Salida para pruebas (provisional)
-            System.out.println("#CFinal="+graph.num_components);
-            //Fin salida
+            LOGGER.log(Level.FINE, "#CFinal={0}", graph.num_components);
         }
         
     } // End of Factory class
@@ -316,18 +329,54 @@ public class GranularFuzzyColor extends GranularFuzzySet<Point3D> implements Fuz
      *
      * This implementation is developed only for granular fuzzy colors compound 
      * by spherical fuzzy colors and using the bounded sum as t-conorm.
-     *
+     * 
+     * The connected components are maintained by means of a union-find 
+     * structure, so the vertices added to the granular color can be
+     * incorporated to the graph without rebuilding it (see 
+     * {@link #addNewVertices()}). In addition, the vertices are indexed in a 
+     * uniform grid on the basis of their centers, so the nearest vertices 
+     * belonging to different components are found by searching only the cells
+     * around each vertex.
      */
     public class Graph{
         /**
-         * Adjacency matrix of this graph.
+         * Adjacency matrix of this graph (with <code>NaN</code> for the 
+         * unconnected vertices). Its capacity may be greater than the number
+         * of vertices.
+         */
+        private double adjacencyMatrix[][];
+        /**
+         * Parent of each vertex in the union-find structure of the connected
+         * components.
+         */
+        private int parent[];
+        /**
+         * Rank of each vertex in the union-find structure of the connected
+         * components.
+         */
+        private int rank[];
+        /**
+         * Coordinates of the center of each vertex.
+         */
+        private double cx[], cy[], cz[];
+        /**
+         * Nearest vertex belonging to a different component of each vertex (-1
+         * if it has not been calculated yet), and its distance.
+         */
+        private int nearest[];
+        private double nearestDistance[];
+        /**
+         * Uniform grid of the vertices (indexed by cell).
+         */
+        private HashMap<Long, ArrayList<Integer>> grid;
+        /**
+         * Size of the grid cells.
          */
-        private  Double adjacencyMatrix[][];
+        private double cellSize;
         /**
-         * Vector for storing the connected component index associated to each 
-         * vertex
+         * Range of the non-empty grid cells.
          */
-        private  Integer component[];  
+        private int minCell[], maxCell[];
         /**
          * Epsilon constant
          */
@@ -353,11 +402,57 @@ public class GranularFuzzyColor extends GranularFuzzySet<Point3D> implements Fuz
         }
         
         /**
-         * Updates the adjacency matrix and the components vector.
+         * Updates the adjacency matrix and the connected components, building
+         * the graph from all the single colors of the granular color.
          */
         public final void updateGraph() {
-            num_vertices = size();
-            if (num_vertices > 0) {
+            num_vertices = num_edges = num_components = 0;
+            int n = size();
+            adjacencyMatrix = new double[Math.max(n, 1)][];
+            parent = new int[Math.max(n, 1)];
+            rank = new int[parent.length];
+            cx = new double[parent.length];
+            cy = new double[parent.length];
+            cz = new double[parent.length];
+            nearest = new int[parent.length];
+            nearestDistance = new double[parent.length];
+            grid = new HashMap();
+            minCell = new int[]{Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE};
+            maxCell = new int[]{Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+            // The cell size is set for having about one vertex per cell
+            double min[] = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+            double max[] = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+            for (FuzzySet<Point3D> fs : GranularFuzzyColor.this) {
+                if (fs instanceof SphericalFuzzyColor) {
+                    Point3D c = ((SphericalFuzzyColor) fs).getCenter();
+                    double coords[] = {c.getX(), c.getY(), c.getZ()};
+                    for (int k = 0; k < 3; k++) {
+                        min[k] = Math.min(min[k], coords[k]);
+                        max[k] = Math.max(max[k], coords[k]);
+                    }
+                }
+            }
+            double extent = 0.0;
+            for (int k = 0; k < 3; k++) {
+                extent = Math.max(extent, max[k] - min[k]);
+            }
+            cellSize = extent > 0.0 ? extent / Math.ceil(Math.cbrt(n)) : 1.0;
+            addNewVertices();
+        }
+        
+        /**
+         * Updates the adjacency matrix and the connected components, adding 
+         * to the graph the single colors added to the granular color since the
+         * last update. The previous single colors are assumed not to have been
+         * modified (otherwise, {@link #updateGraph()} should be used).
+         */
+        public final void addNewVertices() {
+            int n = size();
+            if (n < num_vertices) {
+                updateGraph();
+                return;
+            }
+            if (n > 0) {
                 if (!(get(0) instanceof SphericalFuzzyColor)) {
                     throw new InvalidParameterException("Spherical fuzzy color "
                             + "are needed for graph building");
@@ -366,73 +461,230 @@ public class GranularFuzzyColor extends GranularFuzzySet<Point3D> implements Fuz
                     throw new InvalidParameterException("Bounded sum is needed "
                             + "as t-conorm for graph building");
                 }
-                this.setAdjacency();
-                this.setComponents();
+            }
+            for (int v = num_vertices; v < n; v++) {
+                if (!(get(v) instanceof SphericalFuzzyColor)) {
+                    throw new InvalidParameterException("Spherical fuzzy color "
+                            + "are needed for graph building");
+                }
+                addVertex((SphericalFuzzyColor) get(v));
             }
         }
         
         /**
-         * Set the adjacency matrix of this graph.
+         * Adds a new vertex to this graph, connecting it to the previous ones
+         * and updating the connected components.
+         * 
+         * @param sfc_v the single color associated to the new vertex.
          */
-        private void setAdjacency(){            
-            SphericalFuzzyColor sfc_i, sfc_j;
-            double dist_ij;
+        private void addVertex(SphericalFuzzyColor sfc_v) {
+            SphericalFuzzyColor sfc_i;
+            double dist_iv;
+            int v = num_vertices;
             
-            adjacencyMatrix = new Double[num_vertices][num_vertices];
-            for (int i = 0; i < num_vertices; i++) {
+            ensureCapacity(v + 1);
+            Point3D center = sfc_v.getCenter();
+            cx[v] = center.getX();
+            cy[v] = center.getY();
+            cz[v] = center.getZ();
+            parent[v] = v;
+            rank[v] = 0;
+            nearest[v] = -1;
+            num_vertices++;
+            num_components++;
+            double row[] = new double[adjacencyMatrix.length];
+            Arrays.fill(row, Double.NaN);
+            row[v] = 0.0;
+            adjacencyMatrix[v] = row;
+            for (int i = 0; i < v; i++) {
                 sfc_i = (SphericalFuzzyColor) get(i);
-                adjacencyMatrix[i][i] = 0.0;
-                for (int j = i + 1; j < num_vertices; j++) {
-                    sfc_j = (SphericalFuzzyColor) get(j);
-                    dist_ij = sfc_i.getCenter().distance(sfc_j.getCenter());
-                    // In the sphere-based case, and assuming that we use the 
-                    // bounded sum of as t-conorm, it is easy to show that the 
-                    // union of e Ci and e Cj has a connected kernel iff the 
-                    // kernel of e Ci reaches the support of e Cj , and viceversa.
-                    // This occurs if and only if the sphere associated to the 
-                    // kernel of e Ci (resp. e Cj) intersects with the sphere 
-                    // associated to the support of e Cj (resp. e Ci), that is,
-                    // when the sum of their radii is greater than or equal to 
-                    // the distance between their centers.
-                    if (sfc_i.getKernelRadius() + sfc_j.getSupportRadius() + EPSILON >= dist_ij && 
-                        sfc_j.getKernelRadius() + sfc_i.getSupportRadius() + EPSILON >= dist_ij) {
-                        adjacencyMatrix[i][j] = adjacencyMatrix[j][i] = dist_ij;
-                        num_edges++;
+                dist_iv = distance(i, v);
+                // In the sphere-based case, and assuming that we use the 
+                // bounded sum of as t-conorm, it is easy to show that the 
+                // union of e Ci and e Cj has a connected kernel iff the 
+                // kernel of e Ci reaches the support of e Cj , and viceversa.
+                // This occurs if and only if the sphere associated to the 
+                // kernel of e Ci (resp. e Cj) intersects with the sphere 
+                // associated to the support of e Cj (resp. e Ci), that is,
+                // when the sum of their radii is greater than or equal to 
+                // the distance between their centers.
+                if (sfc_i.getKernelRadius() + sfc_v.getSupportRadius() + EPSILON >= dist_iv && 
+                    sfc_v.getKernelRadius() + sfc_i.getSupportRadius() + EPSILON >= dist_iv) {
+                    adjacencyMatrix[i][v] = adjacencyMatrix[v][i] = dist_iv;
+                    num_edges++;
+                    union(i, v);
+                }
+            }
+            // The new vertex may be the nearest unconnected one of the previous
+            // vertices (the ones whose nearest vertex is now connected will be
+            // recalculated when needed)
+            for (int i = 0; i < v; i++) {
+                if (nearest[i] >= 0 && find(i) != find(v)) {
+                    dist_iv = distance(i, v);
+                    if (dist_iv < nearestDistance[i]) {
+                        nearest[i] = v;
+                        nearestDistance[i] = dist_iv;
                     }
                 }
             }
+            // The new vertex is indexed in the grid
+            int cell[] = cell(v);
+            for (int k = 0; k < 3; k++) {
+                minCell[k] = Math.min(minCell[k], cell[k]);
+                maxCell[k] = Math.max(maxCell[k], cell[k]);
+            }
+            ArrayList<Integer> list = grid.get(key(cell[0], cell[1], cell[2]));
+            if (list == null) {
+                list = new ArrayList();
+                grid.put(key(cell[0], cell[1], cell[2]), list);
+            }
+            list.add(v);
         }
-
+        
         /**
-         * Calculates the connected components of this graph.
+         * Ensures that the arrays of this graph can store the given number of
+         * vertices.
+         * 
+         * @param capacity the number of vertices.
          */
-        private void setComponents(){
-            num_components = 0;
-            component = new Integer[num_vertices];
-            for (int i = 0; i < num_vertices; i++) {
-                if (component[i] == null) {
-                    setComponentValue(i, num_components++);
+        private void ensureCapacity(int capacity) {
+            if (capacity > parent.length) {
+                int length = Math.max(capacity, 2 * parent.length);
+                parent = Arrays.copyOf(parent, length);
+                rank = Arrays.copyOf(rank, length);
+                cx = Arrays.copyOf(cx, length);
+                cy = Arrays.copyOf(cy, length);
+                cz = Arrays.copyOf(cz, length);
+                nearest = Arrays.copyOf(nearest, length);
+                nearestDistance = Arrays.copyOf(nearestDistance, length);
+                adjacencyMatrix = Arrays.copyOf(adjacencyMatrix, length);
+                for (int i = 0; i < num_vertices; i++) {
+                    int old = adjacencyMatrix[i].length;
+                    adjacencyMatrix[i] = Arrays.copyOf(adjacencyMatrix[i], length);
+                    Arrays.fill(adjacencyMatrix[i], old, length, Double.NaN);
                 }
             }
         }
         
         /**
-         * Set the given component value to the i-th vertex and to all the
-         * vertices connected to it.
-         * 
-         * @param i the vertex index.
-         * @param value the component index
-         */
-        private void setComponentValue(int i, int value) {
-            component[i] = value;
-            for (int j = 0; j < size(); j++) {
-                if (i != j && component[j] == null
-                        && adjacencyMatrix[i][j] != null) {
-                    setComponentValue(j, value); // Recursive call    
+         * Returns the distance between the centers of two vertices (calculated
+         * as in {@link jfi.geometry.Point3D#distance(jfi.geometry.Point3D)}).
+         */
+        private double distance(int i, int j) {
+            double px = cx[j] - cx[i];
+            double py = cy[j] - cy[i];
+            double pz = cz[j] - cz[i];
+            return Math.sqrt(px*px + py*py + pz*pz);
+        }
+        
+        /**
+         * Returns the representative vertex of the component of the given
+         * vertex.
+         */
+        private int find(int i) {
+            while (parent[i] != i) {
+                parent[i] = parent[parent[i]]; // Path halving
+                i = parent[i];
+            }
+            return i;
+        }
+        
+        /**
+         * Joins the components of the given vertices.
+         */
+        private void union(int i, int j) {
+            int ri = find(i), rj = find(j);
+            if (ri != rj) {
+                if (rank[ri] < rank[rj]) {
+                    parent[ri] = rj;
+                } else if (rank[ri] > rank[rj]) {
+                    parent[rj] = ri;
+                } else {
+                    parent[rj] = ri;
+                    rank[ri]++;
                 }
+                num_components--;
             }
         }
         
+        /**
+         * Returns the grid cell of the center of the given vertex.
+         */
+        private int[] cell(int i) {
+            return new int[]{(int) Math.floor(cx[i] / cellSize),
+                (int) Math.floor(cy[i] / cellSize),
+                (int) Math.floor(cz[i] / cellSize)};
+        }
+        
+        /**
+         * Returns the key of a grid cell.
+         */
+        private long key(int x, int y, int z) {
+            return (((long) x & 0x1FFFFF) << 42) | (((long) y & 0x1FFFFF) << 21) | ((long) z & 0x1FFFFF);
+        }
+        
+        /**
+         * Calculates the nearest vertex belonging to a different component of
+         * the given vertex (in case of ties, the one with the lowest index),
+         * by searching the grid cells in rings of increasing size around the
+         * vertex.
+         */
+        private void updateNearest(int i) {
+            int c[] = cell(i), best = -1, ri = find(i);
+            double min = Double.MAX_VALUE;
+            int maxRing = 0;
+            for (int k = 0; k < 3; k++) {
+                maxRing = Math.max(maxRing, Math.max(c[k] - minCell[k], maxCell[k] - c[k]));
+            }
+            // The vertices in the ring r are further than (r-1)*cellSize, so 
+            // the search stops when the nearest one is not further than that
+            for (int r = 0; r <= maxRing && !(best >= 0 && min <= (r - 1) * cellSize); r++) {
+                for (int x = c[0] - r; x <= c[0] + r; x++) {
+                    for (int y = c[1] - r; y <= c[1] + r; y++) {
+                        boolean inner = Math.abs(x - c[0]) < r && Math.abs(y - c[1]) < r;
+                        for (int z = c[2] - r; z <= c[2] + r; z += (inner ? 2 * r : 1)) {
+                            ArrayList<Integer> list = grid.get(key(x, y, z));
+                            if (list != null) {
+                                for (int j : list) {
+                                    if (find(j) != ri) {
+                                        double dist_ij = distance(i, j);
+                                        if (dist_ij < min || (dist_ij == min && j < best)) {
+                                            min = dist_ij;
+                                            best = j;
+                                        }
+                                    }
+                                }
+                            }
+                            if (r == 0) {
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+            nearest[i] = best;
+            nearestDistance[i] = min;
+        }
+        
+        /**
+         * Returns a lower bound of the distance from the given vertex to its
+         * nearest vertex belonging to a different component.
+         */
+        private double lowerBound(int i) {
+            return nearest[i] < 0 ? 0.0 : nearestDistance[i];
+        }
+        
+        /**
+         * Returns <code>true</code> if the pair given by the i-th vertex and 
+         * its nearest unconnected one is nearer than the pair (left,right) at
+         * distance min (or it is at the same distance but with lower indices).
+         */
+        private boolean isNearer(int i, double min, int left, int right) {
+            int l = Math.min(i, nearest[i]), r = Math.max(i, nearest[i]);
+            return nearestDistance[i] < min || (nearestDistance[i] == min
+                    && (l < left || (l == left && r < right)));
+        }
+        
         /**
          * Returns the number of vertices of this graph.
          * 
@@ -469,7 +721,7 @@ public class GranularFuzzyColor extends GranularFuzzySet<Point3D> implements Fuz
          * @return <code>true</code> if the vertices are connected.
          */
         public boolean isConnected(int i, int j){
-            return adjacencyMatrix[i][j] != null;
+            return !Double.isNaN(adjacencyMatrix[i][j]);
         }
         
         /**
@@ -481,7 +733,7 @@ public class GranularFuzzyColor extends GranularFuzzySet<Point3D> implements Fuz
          * connected)
          */
         public Double edgeWeight(int i, int j) {
-            return adjacencyMatrix[i][j];
+            return isConnected(i, j) ? adjacencyMatrix[i][j] : null;
         }
         
         /**
@@ -495,11 +747,10 @@ public class GranularFuzzyColor extends GranularFuzzySet<Point3D> implements Fuz
             Pair<Integer, Integer> output = null;
 
             if (num_edges > 0) {
-                Double min = Double.MAX_VALUE;
+                double min = Double.MAX_VALUE;
                 for (int i = 0; i < num_vertices; i++) {
-                    for (int j = i; j < num_vertices; j++) {
-                        if (i != j && adjacencyMatrix[i][j] != null
-                                   && adjacencyMatrix[i][j] < min) {
+                    for (int j = i + 1; j < num_vertices; j++) {
+                        if (adjacencyMatrix[i][j] < min) { // False for NaN
                             min = adjacencyMatrix[i][j];
                             output = new Pair(i, j);
                         }
@@ -510,30 +761,48 @@ public class GranularFuzzyColor extends GranularFuzzySet<Point3D> implements Fuz
         }
         
         /**
-         * Returns the neartest vertices belonging to different components.
+         * Returns the neartest vertices belonging to different components (in
+         * case of ties, the pair with the lowest indices).
          *
          * @return the neartest vertices belonging to different components
          * (<code>null</code> if this graph is a single component graph).
          */
         public Pair<Integer, Integer> nearestUnconnectedVertices() {
             Pair<Integer, Integer> output = null;
-            Point3D pi,pj;
-
-            Double min = Double.MAX_VALUE, dist_ij;
+            
             if (num_components > 1) {
+                double min = Double.MAX_VALUE;
+                int left = -1, right = -1;
+                ArrayList<Integer> outdated = new ArrayList();
                 for (int i = 0; i < num_vertices; i++) {
-                    for (int j = i + 1; j < num_vertices; j++) {
-                        if (!component[i].equals(component[j])) {
-                            pi = ((SphericalFuzzyColor) get(i)).getCenter();
-                            pj = ((SphericalFuzzyColor) get(j)).getCenter();
-                            dist_ij = pi.distance(pj);
-                            if (dist_ij < min) {
-                                min = dist_ij;
-                                output = new Pair(i, j);
-                            }
-                        }
+                    // The nearest vertex has to be recalculated if it is 
+                    // unknown or it has been connected
+                    if (nearest[i] < 0 || find(nearest[i]) == find(i)) {
+                        outdated.add(i);
+                    } else if (isNearer(i, min, left, right)) {
+                        min = nearestDistance[i];
+                        left = Math.min(i, nearest[i]);
+                        right = Math.max(i, nearest[i]);
                     }
                 }
+                // The previous distance of an outdated vertex is a lower bound
+                // of its new one (the set of unconnected vertices only shrinks,
+                // except for the new vertices, which are checked when added),
+                // so only the outdated vertices that can improve the current
+                // minimum are recalculated
+                outdated.sort((i, j) -> Double.compare(lowerBound(i), lowerBound(j)));
+                for (int i : outdated) {
+                    if (lowerBound(i) > min) {
+                        break;
+                    }
+                    updateNearest(i);
+                    if (isNearer(i, min, left, right)) {
+                        min = nearestDistance[i];
+                        left = Math.min(i, nearest[i]);
+                        right = Math.max(i, nearest[i]);
+                    }
+                }
+                output = new Pair(left, right);
             }
             return output;
         }
@@ -546,10 +815,10 @@ public class GranularFuzzyColor extends GranularFuzzySet<Point3D> implements Fuz
         @Override
         public String toString() {
             String out = "[";
-            for (int i = 0; i < size(); i++) {
-                out += "("+component[i]+") ";
-                for (int j = 0; j < size(); j++) {
-                    out += adjacencyMatrix[i][j] != null ? 
+            for (int i = 0; i < num_vertices; i++) {
+                out += "("+find(i)+") ";
+                for (int j = 0; j < num_vertices; j++) {
+                    out += isConnected(i, j) ? 
                            String.format("%.1f ", adjacencyMatrix[i][j]) : "NoC ";
                 }
                 out += "\n ";
@@ -99,4 +99,14 @@ public class NearestNeighbourColor implements FuzzyColor<Point3D>, Prototyped<Po
     public Point3D getPrototype() {
         return this.color_prototype;
     }
+
+    /**
+     * Returns the set of all the prototypes of the partition to which this
+     * color belongs.
+     * 
+     * @return the set of all the prototypes.
+     */
+    public Point3D[] getPrototypes() {
+        return this.all_prototypes;
+    }
 }
@@ -0,0 +1,472 @@
+package jfi.color.fuzzy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import jfi.geometry.Point3D;
+import jfi.utils.Prototyped;
+
+/**
+ * Class representing an evaluator of a prototype-based fuzzy color space, that
+ * is, a fuzzy color space where all the fuzzy colors are
+ * {@link FuzzyCMeamsColor} objects (as the ones created by
+ * {@link FuzzyColorSpace.Factory#createFuzzyCMeansFCS(java.util.Map, double)})
+ * or {@link NearestNeighbourColor} objects (as the ones created by
+ * {@link FuzzyColorSpace.Factory#createNearestNeighbourFCS(java.util.Map)}),
+ * sharing the same set of prototypes.
+ *
+ * <p>
+ * The membership degree of a color to each of these fuzzy colors depends on
+ * the distances from the color to all the prototypes, so evaluating each fuzzy
+ * color separately needs O(k<sup>2</sup>) distances for a space of <tt>k</tt>
+ * fuzzy colors. This evaluator calculates the <tt>k</tt> distances once, and
+ * derives all the degrees from them:
+ * <ul>
+ * <li>For fuzzy c-means colors, taking into account that
+ * <tt>1/u<sub>i</sub> = d<sub>i</sub><sup>e</sup> &middot; &Sigma;<sub>k</sub>
+ * d<sub>k</sub><sup>-e</sup></tt> with <tt>e=2/(m-1)</tt>, so the sum is
+ * calculated once for all the colors (the degrees may differ from the ones of
+ * the fuzzy colors in the last digits because of rounding).</li>
+ * <li>For nearest neighbour colors, as the colors whose prototype is at the
+ * minimum distance. In addition, a Voronoi lookup table over the RGB cube is
+ * precalculated: for each block of 8x8x8 colors, only the prototypes that can
+ * be the nearest one of any color in the block are stored, so most colors are
+ * labelled without calculating any distance (the blocks inside a Voronoi
+ * cell) or with a few of them (the blocks crossed by a Voronoi border). The
+ * degrees are the same as the ones of the fuzzy colors.</li>
+ * </ul>
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class PrototypeColorEvaluator implements ColorSpaceEvaluator {
+    /**
+     * Fuzzy c-means type.
+     */
+    public static final int TYPE_FUZZY_C_MEANS = 1;
+    /**
+     * Nearest neighbour type.
+     */
+    public static final int TYPE_NEAREST_NEIGHBOUR = 2;
+    /**
+     * Size (in each axis) of the blocks of the Voronoi lookup table.
+     */
+    private static final int BLOCK_SIZE = 8;
+    /**
+     * Number of blocks in each axis of the Voronoi lookup table (covering the
+     * RGB cube).
+     */
+    private static final int NUM_BLOCKS = 256 / BLOCK_SIZE;
+    /**
+     * The evaluated fuzzy color space.
+     */
+    private final FuzzyColorSpace<Point3D> fcs;
+    /**
+     * Type of the fuzzy color space.
+     */
+    private final int type;
+    /**
+     * Coordinates of the prototype of each fuzzy color.
+     */
+    private final double cx[], cy[], cz[];
+    /**
+     * Coordinates of the shared prototypes.
+     */
+    private final double px[], py[], pz[];
+    /**
+     * Exponent <tt>2/(m-1)</tt> of the fuzzy c-means membership function.
+     */
+    private final double exponent;
+    /**
+     * For each block of the Voronoi lookup table, the shared prototypes that
+     * can be the nearest one of a color in the block (only for the nearest
+     * neighbour type).
+     */
+    private int blockPrototypes[][];
+    /**
+     * For each block of the Voronoi lookup table, the fuzzy colors that can
+     * have a non-zero degree for a color in the block (only for the nearest
+     * neighbour type).
+     */
+    private int blockColors[][];
+    /**
+     * All the shared prototypes and all the fuzzy colors (used for the colors
+     * outside the RGB cube).
+     */
+    private final int allPrototypes[], allColors[];
+
+    /**
+     * Constructs the evaluator of the given prototype-based fuzzy color
+     * space.
+     *
+     * @param fcs the fuzzy color space.
+     * @throws NullPointerException if the fuzzy color space is null.
+     * @throws IllegalArgumentException if the fuzzy color space is not a
+     * fuzzy c-means or nearest neighbour space (see
+     * {@link #isApplicable(jfi.color.fuzzy.FuzzyColorSpace)}).
+     */
+    public PrototypeColorEvaluator(FuzzyColorSpace<Point3D> fcs) {
+        if (fcs == null) {
+            throw new NullPointerException("Fuzzy color space is null");
+        }
+        if (!isApplicable(fcs)) {
+            throw new IllegalArgumentException("The fuzzy color space must be a fuzzy c-means or nearest neighbour space");
+        }
+        this.fcs = fcs;
+        int k = fcs.size();
+        Point3D prototypes[];
+        if (fcs.get(0) instanceof FuzzyCMeamsColor) {
+            type = TYPE_FUZZY_C_MEANS;
+            FuzzyCMeamsColor fc = (FuzzyCMeamsColor) fcs.get(0);
+            prototypes = fc.getPrototypes();
+            exponent = 2.0 / (fc.getM() - 1.0);
+        } else {
+            type = TYPE_NEAREST_NEIGHBOUR;
+            prototypes = ((NearestNeighbourColor) fcs.get(0)).getPrototypes();
+            exponent = 0.0;
+        }
+        cx = new double[k];
+        cy = new double[k];
+        cz = new double[k];
+        for (int i = 0; i < k; i++) {
+            Point3D p = ((Prototyped<Point3D>) fcs.get(i)).getPrototype();
+            cx[i] = p.getX();
+            cy[i] = p.getY();
+            cz[i] = p.getZ();
+        }
+        int n = prototypes.length;
+        px = new double[n];
+        py = new double[n];
+        pz = new double[n];
+        for (int j = 0; j < n; j++) {
+            px[j] = prototypes[j].getX();
+            py[j] = prototypes[j].getY();
+            pz[j] = prototypes[j].getZ();
+        }
+        allPrototypes = range(n);
+        allColors = range(k);
+        if (type == TYPE_NEAREST_NEIGHBOUR) {
+            buildVoronoiTable();
+        }
+    }
+
+    /**
+     * Checks if the given fuzzy color space can be evaluated by this class,
+     * that is, if it is not empty and all its fuzzy colors are
+     * {@link FuzzyCMeamsColor} objects (with the same parameter <tt>m</tt>)
+     * or {@link NearestNeighbourColor} objects, sharing the same set of
+     * prototypes.
+     *
+     * @param fcs the fuzzy color space.
+     * @return <tt>true</tt> if the fuzzy color space can be evaluated.
+     */
+    public static boolean isApplicable(FuzzyColorSpace<?> fcs) {
+        if (fcs.isEmpty()) {
+            return false;
+        }
+        Object first = fcs.get(0);
+        for (FuzzyColor fc : fcs) {
+            if (first instanceof FuzzyCMeamsColor && fc instanceof FuzzyCMeamsColor) {
+                FuzzyCMeamsColor fcm = (FuzzyCMeamsColor) fc, fcm0 = (FuzzyCMeamsColor) first;
+                if (fcm.getPrototypes() != fcm0.getPrototypes() || fcm.getM() != fcm0.getM()) {
+                    return false;
+                }
+            } else if (first instanceof NearestNeighbourColor && fc instanceof NearestNeighbourColor) {
+                if (((NearestNeighbourColor) fc).getPrototypes() != ((NearestNeighbourColor) first).getPrototypes()) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the type of the evaluated fuzzy color space.
+     *
+     * @return {@link #TYPE_FUZZY_C_MEANS} or {@link #TYPE_NEAREST_NEIGHBOUR}.
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Returns the evaluated fuzzy color space.
+     *
+     * @return the fuzzy color space.
+     */
+    @Override
+    public FuzzyColorSpace<Point3D> getFuzzyColorSpace() {
+        return fcs;
+    }
+
+    /**
+     * Returns the number of fuzzy colors of the evaluated space.
+     *
+     * @return the number of fuzzy colors.
+     */
+    @Override
+    public int size() {
+        return cx.length;
+    }
+
+    /**
+     * Calculates the non-zero membership degrees of the given color to the
+     * fuzzy colors of the space.
+     *
+     * @param x the first component of the color.
+     * @param y the second component of the color.
+     * @param z the third component of the color.
+     * @param indices the array where the positions (in the fuzzy color space)
+     * of the fuzzy colors with non-zero degree are stored. Its length must be
+     * at least the number of fuzzy colors of the space.
+     * @param degrees the array where the non-zero degrees are stored (in the
+     * same order as the positions). Its length must be at least the number of
+     * fuzzy colors of the space.
+     * @return the number of fuzzy colors with non-zero degree.
+     */
+    @Override
+    public int nonZeroDegrees(double x, double y, double z, int indices[], double degrees[]) {
+        int count = 0;
+        if (type == TYPE_FUZZY_C_MEANS) {
+            double sum = inverseSum(x, y, z);
+            for (int i = 0; i < cx.length; i++) {
+                double degree = fuzzyCMeansDegree(i, x, y, z, sum);
+                if (degree > 0.0) {
+                    indices[count] = i;
+                    degrees[count++] = degree;
+                }
+            }
+        } else {
+            int block = block(x, y, z);
+            int prototypes[] = block < 0 ? allPrototypes : blockPrototypes[block];
+            int colors[] = block < 0 ? allColors : blockColors[block];
+            if (colors.length == 1 && prototypes.length == 1) {
+                // Inside a Voronoi cell
+                indices[0] = colors[0];
+                degrees[0] = 1.0;
+                return 1;
+            }
+            double min = minDistance(prototypes, x, y, z);
+            for (int i : colors) {
+                double d = distance(cx[i], cy[i], cz[i], x, y, z);
+                if (d <= 0.0 || d <= min) {
+                    indices[count] = i;
+                    degrees[count++] = 1.0;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Calculates the membership degrees of the given color to each fuzzy
+     * color of the space.
+     *
+     * @param x the first component of the color.
+     * @param y the second component of the color.
+     * @param z the third component of the color.
+     * @param out the output array, where the degree to the <tt>i</tt>-th
+     * fuzzy color of the space is stored at the position <tt>i</tt>. If
+     * <tt>null</tt>, a new one is created.
+     * @return the membership degrees.
+     */
+    @Override
+    public double[] membershipDegrees(double x, double y, double z, double out[]) {
+        if (out == null) {
+            out = new double[size()];
+        }
+        if (type == TYPE_FUZZY_C_MEANS) {
+            double sum = inverseSum(x, y, z);
+            for (int i = 0; i < cx.length; i++) {
+                out[i] = fuzzyCMeansDegree(i, x, y, z, sum);
+            }
+        } else {
+            Arrays.fill(out, 0, size(), 0.0);
+            int indices[] = new int[size()];
+            double degrees[] = new double[size()];
+            int n = nonZeroDegrees(x, y, z, indices, degrees);
+            for (int c = 0; c < n; c++) {
+                out[indices[c]] = degrees[c];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns the position (in the fuzzy color space) of the first fuzzy
+     * color with the nearest prototype to the given color. For nearest
+     * neighbour spaces, it is the label of the color.
+     *
+     * @param x the first component of the color.
+     * @param y the second component of the color.
+     * @param z the third component of the color.
+     * @return the position of the nearest fuzzy color.
+     */
+    public int nearest(double x, double y, double z) {
+        int block = type == TYPE_NEAREST_NEIGHBOUR ? block(x, y, z) : -1;
+        int colors[] = block < 0 ? allColors : blockColors[block];
+        int nearest = -1;
+        double min = Double.MAX_VALUE;
+        for (int i : colors) {
+            double d = distance(cx[i], cy[i], cz[i], x, y, z);
+            if (d < min || nearest < 0) {
+                min = d;
+                nearest = i;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Returns the sum of the inverses of the distances (raised to the fuzzy
+     * c-means exponent) from the given color to all the shared prototypes.
+     */
+    private double inverseSum(double x, double y, double z) {
+        double sum = 0.0;
+        for (int j = 0; j < px.length; j++) {
+            sum += 1.0 / Math.pow(distance(px[j], py[j], pz[j], x, y, z), exponent);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the fuzzy c-means degree of the given color to the <tt>i</tt>-th
+     * fuzzy color, given the sum of the inverses of the distances.
+     */
+    private double fuzzyCMeansDegree(int i, double x, double y, double z, double sum) {
+        double d = distance(cx[i], cy[i], cz[i], x, y, z);
+        return d > 0.0 ? 1.0 / (Math.pow(d, exponent) * sum) : 1.0;
+    }
+
+    /**
+     * Returns the minimum distance from the given color to the given shared
+     * prototypes.
+     */
+    private double minDistance(int prototypes[], double x, double y, double z) {
+        double min = Double.MAX_VALUE;
+        for (int j : prototypes) {
+            min = Math.min(min, distance(px[j], py[j], pz[j], x, y, z));
+        }
+        return min;
+    }
+
+    /**
+     * Returns the distance between two points (calculated as in
+     * {@link jfi.geometry.Point3D#distance(double, double, double)}).
+     */
+    private static double distance(double x0, double y0, double z0, double x, double y, double z) {
+        double dx = x - x0, dy = y - y0, dz = z - z0;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Returns the block of the Voronoi lookup table of the given color, or -1
+     * if the color is outside the RGB cube.
+     */
+    private static int block(double x, double y, double z) {
+        if (!(x >= 0.0 && y >= 0.0 && z >= 0.0 && x < 256.0 && y < 256.0 && z < 256.0)) {
+            return -1;
+        }
+        int bx = (int) x / BLOCK_SIZE, by = (int) y / BLOCK_SIZE, bz = (int) z / BLOCK_SIZE;
+        return (bz * NUM_BLOCKS + by) * NUM_BLOCKS + bx;
+    }
+
+    /**
+     * Builds the Voronoi lookup table. For each block, the maximum distance
+     * from the block to its nearest prototype is an upper bound of the
+     * distance from any color of the block to its nearest prototype, so the
+     * prototypes farther than that bound are discarded.
+     */
+    private void buildVoronoiTable() {
+        int numBlocks = NUM_BLOCKS * NUM_BLOCKS * NUM_BLOCKS;
+        blockPrototypes = new int[numBlocks][];
+        blockColors = new int[numBlocks][];
+        ArrayList<Integer> list = new ArrayList();
+        for (int bz = 0; bz < NUM_BLOCKS; bz++) {
+            for (int by = 0; by < NUM_BLOCKS; by++) {
+                for (int bx = 0; bx < NUM_BLOCKS; bx++) {
+                    double x0 = bx * BLOCK_SIZE, y0 = by * BLOCK_SIZE, z0 = bz * BLOCK_SIZE;
+                    double bound = Double.MAX_VALUE;
+                    for (int j = 0; j < px.length; j++) {
+                        bound = Math.min(bound, maxDistance(px[j], py[j], pz[j], x0, y0, z0));
+                    }
+                    // A small margin is added for avoiding rounding problems
+                    bound += 1e-9 * (1.0 + bound);
+                    int block = (bz * NUM_BLOCKS + by) * NUM_BLOCKS + bx;
+                    list.clear();
+                    for (int j = 0; j < px.length; j++) {
+                        if (minDistance(px[j], py[j], pz[j], x0, y0, z0) <= bound) {
+                            list.add(j);
+                        }
+                    }
+                    blockPrototypes[block] = toArray(list);
+                    list.clear();
+                    for (int i = 0; i < cx.length; i++) {
+                        if (minDistance(cx[i], cy[i], cz[i], x0, y0, z0) <= bound) {
+                            list.add(i);
+                        }
+                    }
+                    blockColors[block] = toArray(list);
+                }
+            }
+        }
+        // The shortcut for the blocks inside a Voronoi cell is valid only if
+        // the candidate color has the candidate prototype
+        for (int b = 0; b < numBlocks; b++) {
+            if (blockColors[b].length == 1 && blockPrototypes[b].length == 1) {
+                int i = blockColors[b][0], j = blockPrototypes[b][0];
+                if (cx[i] != px[j] || cy[i] != py[j] || cz[i] != pz[j]) {
+                    blockPrototypes[b] = allPrototypes;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the minimum distance from a point to a block.
+     */
+    private static double minDistance(double x, double y, double z, double x0, double y0, double z0) {
+        double dx = axisDistance(x, x0), dy = axisDistance(y, y0), dz = axisDistance(z, z0);
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Returns the distance from a coordinate to the interval of a block in one
+     * axis.
+     */
+    private static double axisDistance(double c, double start) {
+        return c < start ? start - c : (c > start + BLOCK_SIZE ? c - start - BLOCK_SIZE : 0.0);
+    }
+
+    /**
+     * Returns the maximum distance from a point to a block.
+     */
+    private static double maxDistance(double x, double y, double z, double x0, double y0, double z0) {
+        double dx = Math.max(Math.abs(x - x0), Math.abs(x - x0 - BLOCK_SIZE));
+        double dy = Math.max(Math.abs(y - y0), Math.abs(y - y0 - BLOCK_SIZE));
+        double dz = Math.max(Math.abs(z - z0), Math.abs(z - z0 - BLOCK_SIZE));
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Returns the array <tt>{0,1,...,n-1}</tt>.
+     */
+    private static int[] range(int n) {
+        int array[] = new int[n];
+        for (int i = 0; i < n; i++) {
+            array[i] = i;
+        }
+        return array;
+    }
+
+    /**
+     * Returns the given list as an array.
+     */
+    private static int[] toArray(ArrayList<Integer> list) {
+        int array[] = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+}
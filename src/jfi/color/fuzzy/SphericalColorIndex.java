@@ -0,0 +1,363 @@
+package jfi.color.fuzzy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import jfi.fuzzy.FuzzySetCollection.PossibilityDistributionItem;
+import jfi.geometry.Point3D;
+
+/**
+ * Class representing a spatial index of the supports of a sphere-based fuzzy
+ * color space, that is, a fuzzy color space where all the fuzzy colors are
+ * {@link SphericalFuzzyColor} objects (as the ones created by
+ * {@link FuzzyColorSpace.Factory#createSphereBasedFCS(java.util.Map, double)}).
+ *
+ * <p>
+ * Since the membership degree of a color to a spherical fuzzy color is zero
+ * outside its support (the sphere of radius <tt>b</tt>), only a few fuzzy
+ * colors of the space can be non-zero for a given color. This index stores
+ * the supports in a uniform 3D grid, so for each color only the fuzzy colors
+ * whose support reaches the grid cell of that color are evaluated. Thus, the
+ * evaluation of the whole space is near O(1) per color instead of O(k) for a
+ * space of <tt>k</tt> fuzzy colors.
+ *
+ * <p>
+ * The index is built from the parameters (center, kernel and support radius)
+ * of the fuzzy colors at construction time, so it must be rebuilt if the
+ * fuzzy colors change. The degrees are the same as the ones given by the
+ * fuzzy colors.
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class SphericalColorIndex implements ColorSpaceEvaluator {
+    /**
+     * Maximum number of grid cells in each axis.
+     */
+    private static final int MAX_CELLS = 64;
+    /**
+     * The indexed fuzzy color space.
+     */
+    private final FuzzyColorSpace<Point3D> fcs;
+    /**
+     * Centers (coordinates), kernel radius and support radius of each fuzzy
+     * color.
+     */
+    private final double cx[], cy[], cz[], a[], b[];
+    /**
+     * Origin of the grid and size of its cells.
+     */
+    private final double minX, minY, minZ, cellSize;
+    /**
+     * Number of cells in each axis.
+     */
+    private final int nx, ny, nz;
+    /**
+     * Indices of the fuzzy colors whose support intersects each cell.
+     */
+    private final int cells[][];
+    /**
+     * Indices of the fuzzy colors whose support exceeds the grid (the ones to
+     * be evaluated for the colors outside the grid).
+     */
+    private final int outer[];
+
+    /**
+     * Constructs the index of the given sphere-based fuzzy color space.
+     *
+     * @param fcs the fuzzy color space.
+     * @throws NullPointerException if the fuzzy color space is null.
+     * @throws IllegalArgumentException if any of the fuzzy colors of the space
+     * is not a {@link SphericalFuzzyColor}.
+     */
+    public SphericalColorIndex(FuzzyColorSpace<Point3D> fcs) {
+        if (fcs == null) {
+            throw new NullPointerException("Fuzzy color space is null");
+        }
+        if (!isIndexable(fcs)) {
+            throw new IllegalArgumentException("All the fuzzy colors must be spherical fuzzy colors");
+        }
+        this.fcs = fcs;
+        int k = fcs.size();
+        cx = new double[k];
+        cy = new double[k];
+        cz = new double[k];
+        a = new double[k];
+        b = new double[k];
+        for (int i = 0; i < k; i++) {
+            SphericalFuzzyColor fc = (SphericalFuzzyColor) fcs.get(i);
+            Point3D center = fc.getCenter();
+            cx[i] = center.getX();
+            cy[i] = center.getY();
+            cz[i] = center.getZ();
+            a[i] = fc.getKernelRadius();
+            b[i] = fc.getSupportRadius();
+        }
+
+        // The grid covers the centers expanded by the median support radius,
+        // with cells of that size (at most MAX_CELLS per axis). So, each
+        // support usually intersects a few cells
+        double radius = 0.0;
+        if (k > 0) {
+            double sorted[] = Arrays.copyOf(b, k);
+            Arrays.sort(sorted);
+            radius = Math.max(0.0, sorted[k / 2]);
+            if (Double.isInfinite(radius) || Double.isNaN(radius)) {
+                radius = 0.0;
+            }
+        }
+        double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE, z0 = Double.MAX_VALUE;
+        double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE, z1 = -Double.MAX_VALUE;
+        for (int i = 0; i < k; i++) {
+            x0 = Math.min(x0, cx[i] - radius);
+            y0 = Math.min(y0, cy[i] - radius);
+            z0 = Math.min(z0, cz[i] - radius);
+            x1 = Math.max(x1, cx[i] + radius);
+            y1 = Math.max(y1, cy[i] + radius);
+            z1 = Math.max(z1, cz[i] + radius);
+        }
+        if (k == 0) {
+            x0 = y0 = z0 = x1 = y1 = z1 = 0.0;
+        }
+        double extent = Math.max(x1 - x0, Math.max(y1 - y0, z1 - z0));
+        double size = Math.max(radius, extent / MAX_CELLS);
+        cellSize = size > 0.0 ? size : 1.0;
+        minX = x0;
+        minY = y0;
+        minZ = z0;
+        nx = numCells(x1 - x0);
+        ny = numCells(y1 - y0);
+        nz = numCells(z1 - z0);
+
+        // Each fuzzy color is stored in the cells intersecting its support. A
+        // small margin is added to the support for avoiding rounding problems
+        // in the cell boundaries
+        ArrayList<Integer> lists[] = new ArrayList[nx * ny * nz];
+        ArrayList<Integer> outerList = new ArrayList();
+        double margin = cellSize * 1e-6;
+        for (int i = 0; i < k; i++) {
+            double r = b[i] + margin;
+            if (cx[i] - r < minX || cy[i] - r < minY || cz[i] - r < minZ
+                    || cx[i] + r > minX + nx * cellSize || cy[i] + r > minY + ny * cellSize
+                    || cz[i] + r > minZ + nz * cellSize) {
+                outerList.add(i);
+            }
+            if (!(r >= 0.0)) {
+                continue; // Empty support
+            }
+            int i0 = clampCell(cx[i] - r, minX, nx), i1 = clampCell(cx[i] + r, minX, nx);
+            int j0 = clampCell(cy[i] - r, minY, ny), j1 = clampCell(cy[i] + r, minY, ny);
+            int l0 = clampCell(cz[i] - r, minZ, nz), l1 = clampCell(cz[i] + r, minZ, nz);
+            for (int l = l0; l <= l1; l++) {
+                for (int j = j0; j <= j1; j++) {
+                    for (int ii = i0; ii <= i1; ii++) {
+                        if (distanceToCell(i, ii, j, l) <= r) {
+                            int cell = (l * ny + j) * nx + ii;
+                            if (lists[cell] == null) {
+                                lists[cell] = new ArrayList();
+                            }
+                            lists[cell].add(i);
+                        }
+                    }
+                }
+            }
+        }
+        cells = new int[lists.length][];
+        for (int c = 0; c < lists.length; c++) {
+            cells[c] = lists[c] == null ? new int[0] : toArray(lists[c]);
+        }
+        outer = toArray(outerList);
+    }
+
+    /**
+     * Checks if the given fuzzy color space can be indexed, that is, if all
+     * its fuzzy colors are {@link SphericalFuzzyColor} objects.
+     *
+     * @param fcs the fuzzy color space.
+     * @return <tt>true</tt> if the fuzzy color space can be indexed.
+     */
+    public static boolean isIndexable(FuzzyColorSpace<?> fcs) {
+        for (FuzzyColor fc : fcs) {
+            if (!(fc instanceof SphericalFuzzyColor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the indexed fuzzy color space.
+     *
+     * @return the fuzzy color space.
+     */
+    @Override
+    public FuzzyColorSpace<Point3D> getFuzzyColorSpace() {
+        return fcs;
+    }
+
+    /**
+     * Returns the number of fuzzy colors of the indexed space.
+     *
+     * @return the number of fuzzy colors.
+     */
+    @Override
+    public int size() {
+        return cx.length;
+    }
+
+    /**
+     * Calculates the non-zero membership degrees of the given color to the
+     * fuzzy colors of the space.
+     *
+     * @param x the first component of the color.
+     * @param y the second component of the color.
+     * @param z the third component of the color.
+     * @param indices the array where the positions (in the fuzzy color space)
+     * of the fuzzy colors with non-zero degree are stored. Its length must be
+     * at least the number of fuzzy colors of the space.
+     * @param degrees the array where the non-zero degrees are stored (in the
+     * same order as the positions). Its length must be at least the number of
+     * fuzzy colors of the space.
+     * @return the number of fuzzy colors with non-zero degree.
+     */
+    @Override
+    public int nonZeroDegrees(double x, double y, double z, int indices[], double degrees[]) {
+        int candidates[] = candidates(x, y, z);
+        int count = 0;
+        for (int i : candidates) {
+            double degree = degree(i, x, y, z);
+            if (degree > 0.0) {
+                indices[count] = i;
+                degrees[count++] = degree;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Calculates the membership degrees of the given color to each fuzzy
+     * color of the space.
+     *
+     * @param x the first component of the color.
+     * @param y the second component of the color.
+     * @param z the third component of the color.
+     * @param out the output array, where the degree to the <tt>i</tt>-th
+     * fuzzy color of the space is stored at the position <tt>i</tt>. If
+     * <tt>null</tt>, a new one is created.
+     * @return the membership degrees.
+     */
+    @Override
+    public double[] membershipDegrees(double x, double y, double z, double out[]) {
+        if (out == null) {
+            out = new double[size()];
+        } else {
+            Arrays.fill(out, 0, size(), 0.0);
+        }
+        for (int i : candidates(x, y, z)) {
+            out[i] = degree(i, x, y, z);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the possibility distribution for the given color, as it is
+     * returned by
+     * {@link jfi.fuzzy.FuzzySetCollection#getPossibilityDistribution(java.lang.Object)}
+     * (but evaluating only the candidate fuzzy colors).
+     *
+     * @param p the color.
+     * @return the possibility distribution.
+     */
+    @Override
+    public ArrayList<PossibilityDistributionItem> getPossibilityDistribution(Point3D p) {
+        ArrayList<PossibilityDistributionItem> output = new ArrayList();
+        int candidates[] = candidates(p.getX(), p.getY(), p.getZ()).clone();
+        Arrays.sort(candidates); // In the order of the space
+        for (int i : candidates) {
+            double degree = degree(i, p.getX(), p.getY(), p.getZ());
+            if (degree > 0.0) {
+                output.add(fcs.new PossibilityDistributionItem(degree, fcs.get(i)));
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Returns the fuzzy colors whose support may contain the given color.
+     *
+     * @param x the first component of the color.
+     * @param y the second component of the color.
+     * @param z the third component of the color.
+     * @return the indices of the candidate fuzzy colors.
+     */
+    private int[] candidates(double x, double y, double z) {
+        int i = (int) Math.floor((x - minX) / cellSize);
+        int j = (int) Math.floor((y - minY) / cellSize);
+        int l = (int) Math.floor((z - minZ) / cellSize);
+        if (i < 0 || j < 0 || l < 0 || i >= nx || j >= ny || l >= nz) {
+            return outer;
+        }
+        return cells[(l * ny + j) * nx + i];
+    }
+
+    /**
+     * Returns the membership degree of the given color to the <tt>i</tt>-th
+     * fuzzy color (as it is calculated by the spherical function).
+     *
+     * @param i the index of the fuzzy color.
+     * @param x the first component of the color.
+     * @param y the second component of the color.
+     * @param z the third component of the color.
+     * @return the membership degree.
+     */
+    private double degree(int i, double x, double y, double z) {
+        double px = x - cx[i], py = y - cy[i], pz = z - cz[i];
+        double d = Math.sqrt(px * px + py * py + pz * pz);
+        double f = a[i] != b[i] ? (b[i] - d) / (b[i] - a[i]) : (d <= b[i] ? 1.0 : 0.0);
+        return Math.max(Math.min(1.0, f), 0.0);
+    }
+
+    /**
+     * Returns the distance from the center of the <tt>i</tt>-th fuzzy color to
+     * the given cell.
+     */
+    private double distanceToCell(int i, int ci, int cj, int cl) {
+        double dx = axisDistance(cx[i], minX + ci * cellSize);
+        double dy = axisDistance(cy[i], minY + cj * cellSize);
+        double dz = axisDistance(cz[i], minZ + cl * cellSize);
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Returns the distance from a coordinate to the interval of a cell in one
+     * axis.
+     */
+    private double axisDistance(double c, double start) {
+        return c < start ? start - c : (c > start + cellSize ? c - start - cellSize : 0.0);
+    }
+
+    /**
+     * Returns the number of cells needed for covering the given extent.
+     */
+    private int numCells(double extent) {
+        return (int) Math.max(1, Math.min(MAX_CELLS, Math.ceil(extent / cellSize)));
+    }
+
+    /**
+     * Returns the cell of the given coordinate in one axis, clamped to the
+     * grid.
+     */
+    private int clampCell(double c, double origin, int n) {
+        double cell = Math.floor((c - origin) / cellSize);
+        return (int) Math.max(0, Math.min(n - 1, cell));
+    }
+
+    /**
+     * Returns the given list as an array.
+     */
+    private static int[] toArray(ArrayList<Integer> list) {
+        int array[] = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+}
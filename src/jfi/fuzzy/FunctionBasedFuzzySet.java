@@ -108,6 +108,38 @@ public class FunctionBasedFuzzySet<D> implements FuzzySet<D>, AlphaCuttable {
     public double membershipDegree(D e) {
         return mfunction.apply(e);
     }
+    
+    /**
+     * Returns the membership degrees of the first <tt>n</tt> values of the
+     * given array, by means of the batch evaluation of the membership
+     * function.
+     *
+     * @param in elements of the fuzzy set domain.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param n the number of elements.
+     * @return the membership degrees.
+     */
+    @Override
+    public double[] membershipDegrees(double in[], double out[], int n) {
+        return mfunction.apply(in, out, n);
+    }
+    
+    /**
+     * Returns the membership degrees of the first <tt>n</tt> points given by
+     * their coordinates, by means of the batch evaluation of the membership
+     * function.
+     *
+     * @param x the x-coordinates of the points.
+     * @param y the y-coordinates of the points.
+     * @param z the z-coordinates of the points.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param n the number of points.
+     * @return the membership degrees.
+     */
+    @Override
+    public double[] membershipDegrees(double x[], double y[], double z[], double out[], int n) {
+        return mfunction.apply(x, y, z, out, n);
+    }
 
     /**
      * Returns the alpha-cut of the fuzzy set for a given alpha if available for
@@ -1,5 +1,7 @@
 package jfi.fuzzy;
 
+import jfi.geometry.Point3D;
+
 /**
  * An interface representing a fuzzy set on a given domain.
  *
@@ -43,4 +45,57 @@ public interface FuzzySet<D> {
      * @return the membership degree.
      */
     public double membershipDegree(D e);
+    
+    /**
+     * Returns the membership degrees of the first <tt>n</tt> values of the
+     * given array (batch evaluation). It is only valid for fuzzy sets whose
+     * domain is numeric; by default, the degree of each value (boxed as a
+     * {@link Double}) is calculated.
+     *
+     * @param in elements of the fuzzy set domain.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param n the number of elements.
+     * @return the membership degrees.
+     * @throws ClassCastException if the domain of this fuzzy set is not
+     * numeric.
+     */
+    default public double[] membershipDegrees(double in[], double out[], int n) {
+        if (out == null) {
+            out = new double[n];
+        }
+        for (int i = 0; i < n; i++) {
+            out[i] = membershipDegree((D) Double.valueOf(in[i]));
+        }
+        return out;
+    }
+    
+    /**
+     * Returns the membership degrees of the first <tt>n</tt> points given by
+     * their coordinates (batch evaluation, with the points stored as a
+     * structure of arrays). It is only valid for fuzzy sets whose domain is
+     * {@link jfi.geometry.Point3D}; by default, the degree of each point is
+     * calculated.
+     *
+     * @param x the x-coordinates of the points.
+     * @param y the y-coordinates of the points.
+     * @param z the z-coordinates of the points.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param n the number of points.
+     * @return the membership degrees.
+     * @throws ClassCastException if the domain of this fuzzy set is not
+     * {@link jfi.geometry.Point3D}.
+     */
+    default public double[] membershipDegrees(double x[], double y[], double z[], double out[], int n) {
+        if (out == null) {
+            out = new double[n];
+        }
+        Point3D p = new Point3D();
+        for (int i = 0; i < n; i++) {
+            p.x = x[i];
+            p.y = y[i];
+            p.z = z[i];
+            out[i] = membershipDegree((D) p);
+        }
+        return out;
+    }
 }
@@ -2,6 +2,7 @@ package jfi.fuzzy.membershipfunction;
 
 import jfi.fuzzy.AlphaCuttable;
 import java.util.function.Function;
+import jfi.geometry.Point3D;
 /**
  * Class representing a membership function of a fuzzy set. 
  * 
@@ -40,4 +41,59 @@ public interface MembershipFunction<D> extends Function<D, Double>, AlphaCuttabl
     default public <R> R alphaCut(double alpha){
         return null;
     }  
+    
+    /**
+     * Applies this membership function to the first <tt>n</tt> values of the
+     * given array (batch evaluation). It is only valid for functions whose
+     * domain is numeric. By default, the function is applied to each value
+     * (boxed as a {@link Double}); functions on numeric domains should
+     * override this method with a primitive loop.
+     *
+     * @param in the function arguments.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param n the number of values.
+     * @return the function results.
+     * @throws ClassCastException if the domain of this function is not
+     * numeric.
+     */
+    default public double[] apply(double in[], double out[], int n) {
+        if (out == null) {
+            out = new double[n];
+        }
+        for (int i = 0; i < n; i++) {
+            out[i] = apply((D) Double.valueOf(in[i]));
+        }
+        return out;
+    }
+    
+    /**
+     * Applies this membership function to the first <tt>n</tt> points given
+     * by their coordinates (batch evaluation, with the points stored as a
+     * structure of arrays). It is only valid for functions whose domain is
+     * {@link jfi.geometry.Point3D}. By default, the function is applied to
+     * each point; functions on three-dimensional domains should override
+     * this method with a primitive loop.
+     *
+     * @param x the x-coordinates of the points.
+     * @param y the y-coordinates of the points.
+     * @param z the z-coordinates of the points.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param n the number of points.
+     * @return the function results.
+     * @throws ClassCastException if the domain of this function is not
+     * {@link jfi.geometry.Point3D}.
+     */
+    default public double[] apply(double x[], double y[], double z[], double out[], int n) {
+        if (out == null) {
+            out = new double[n];
+        }
+        Point3D p = new Point3D();
+        for (int i = 0; i < n; i++) {
+            p.x = x[i];
+            p.y = y[i];
+            p.z = z[i];
+            out[i] = apply((D) p);
+        }
+        return out;
+    }
 }
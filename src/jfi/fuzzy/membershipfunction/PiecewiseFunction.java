@@ -1,6 +1,7 @@
 package jfi.fuzzy.membershipfunction;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 
 /**
@@ -52,6 +53,58 @@ public class PiecewiseFunction<D> extends ArrayList<MembershipFunction> implemen
         return output;
     }
     
+    /**
+     * Applies this membership function to the first <tt>n</tt> values of the
+     * given array. Each sub-function is applied in batch.
+     *
+     * @param in the function arguments.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param n the number of values.
+     * @return the function results.
+     */
+    @Override
+    public double[] apply(double in[], double out[], int n) {
+        if (out == null) {
+            out = new double[n];
+        }
+        Arrays.fill(out, 0, n, 0.0);
+        double partial[] = new double[n];
+        for (MembershipFunction f : this) {
+            f.apply(in, partial, n);
+            for (int i = 0; i < n; i++) {
+                out[i] = Math.max(out[i], partial[i]);
+            }
+        }
+        return out;
+    }
+    
+    /**
+     * Applies this membership function to the first <tt>n</tt> points given
+     * by their coordinates. Each sub-function is applied in batch.
+     *
+     * @param x the x-coordinates of the points.
+     * @param y the y-coordinates of the points.
+     * @param z the z-coordinates of the points.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param n the number of points.
+     * @return the function results.
+     */
+    @Override
+    public double[] apply(double x[], double y[], double z[], double out[], int n) {
+        if (out == null) {
+            out = new double[n];
+        }
+        Arrays.fill(out, 0, n, 0.0);
+        double partial[] = new double[n];
+        for (MembershipFunction f : this) {
+            f.apply(x, y, z, partial, n);
+            for (int i = 0; i < n; i++) {
+                out[i] = Math.max(out[i], partial[i]);
+            }
+        }
+        return out;
+    }
+    
     /**
      * Returns an alpha-cut associated to the membership function. Specifically, 
      * returns a list of alpha-cuts, one for each sub-function of this 
@@ -5,11 +5,19 @@ import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jfi.geometry.Line3D;
+import jfi.geometry.PlanarPolygon;
+import jfi.geometry.Plane;
 import jfi.geometry.Point3D;
 import jfi.geometry.Polyhedron;
 
 /**
  * Class representing a membership function in a polyhedral shape.
+ * 
+ * The polyhedra are compiled (the first time the function is applied) into a
+ * half-space representation, where the planes of the faces are stored in
+ * primitive arrays, so the membership degree is calculated with a few dot
+ * products and without creating objects. If the volumes are modified after
+ * that, {@link #compile()} has to be called for updating that representation.
  *
  * @author Míriam Mengíbar Rodríguez (mirismr@correo.ugr.es)
  */
@@ -26,6 +34,18 @@ public class PolyhedralFunction implements MembershipFunction<Point3D> {
      * Point representing the polyhedron centroid.
      */
     private final Point3D centroid;
+    
+    /**
+     * Half-space representation of the volumes (in the same order), or 
+     * <code>null</code> if they could not be compiled (in that case, the
+     * polyhedra are used directly).
+     */
+    private volatile HalfSpaces halfSpaces[] = null;
+    
+    /**
+     * Whether the volumes have been compiled.
+     */
+    private volatile boolean compiled = false;
         
     /**
      * Creates a polyhedral-based function.
@@ -48,6 +68,10 @@ public class PolyhedralFunction implements MembershipFunction<Point3D> {
      */
     @Override
     public Double apply(Point3D pointToEvaluate) {
+        HalfSpaces hs[] = compiledVolumes();
+        if (hs != null) {
+            return apply(hs, pointToEvaluate.getX(), pointToEvaluate.getY(), pointToEvaluate.getZ());
+        }
         Double membershipDegree = 0.0;
         Polyhedron kernelPolytope = volumes.get(0);
         Polyhedron supportPolytope = volumes.get(volumes.size() - 1);
@@ -101,6 +125,93 @@ public class PolyhedralFunction implements MembershipFunction<Point3D> {
         return membershipDegree;
     }
 
+    /**
+     * Applies this membership function to the first <tt>n</tt> points given
+     * by their coordinates.
+     *
+     * @param x the x-coordinates of the points.
+     * @param y the y-coordinates of the points.
+     * @param z the z-coordinates of the points.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param n the number of points.
+     * @return the function results.
+     */
+    @Override
+    public double[] apply(double x[], double y[], double z[], double out[], int n) {
+        HalfSpaces hs[] = compiledVolumes();
+        if (hs == null) {
+            return MembershipFunction.super.apply(x, y, z, out, n);
+        }
+        if (out == null) {
+            out = new double[n];
+        }
+        for (int i = 0; i < n; i++) {
+            out[i] = apply(hs, x[i], y[i], z[i]);
+        }
+        return out;
+    }
+    
+    /**
+     * Applies this membership function to the given point by means of the
+     * half-space representation of the volumes. The result is the same as the
+     * one obtained by means of the polyhedra.
+     */
+    private double apply(HalfSpaces hs[], double x, double y, double z) {
+        HalfSpaces kernel = hs[0], support = hs[hs.length - 1];
+        // check if point is in the support
+        if (!support.isPointInside(x, y, z) || support.isPointInFace(x, y, z)) {
+            return 0.0;
+        }
+        // check if is in the kernel
+        if (kernel.isPointInside(x, y, z)) {
+            return 1.0;
+        }
+        // distance to each polytope along the ray from the centroid
+        double vx = x - centroid.getX(), vy = y - centroid.getY(), vz = z - centroid.getZ();
+        double a = hs[0].exitDistance(vx, vy, vz);
+        double b = hs[1].exitDistance(vx, vy, vz);
+        double c = hs[2].exitDistance(vx, vy, vz);
+        // calculate the distance between point and centroid
+        double distPointToCentroide = Math.sqrt(0.0 + vx * vx + vy * vy + vz * vz);
+        if (a < distPointToCentroide && distPointToCentroide <= b) {
+            return ((b - distPointToCentroide) + (b - a)) / (2 * (b - a));
+        } else {
+            return (c - distPointToCentroide) / (2 * (c - b));
+        }
+    }
+    
+    /**
+     * Returns the half-space representation of the volumes, compiling them if
+     * needed.
+     */
+    private HalfSpaces[] compiledVolumes() {
+        if (!compiled) {
+            compile();
+        }
+        return halfSpaces;
+    }
+    
+    /**
+     * Compiles the volumes of this function into a half-space representation.
+     * It is done automatically the first time the function is applied, so it
+     * only has to be called if the volumes (or their inner points) are
+     * modified after that. If some volume is <code>null</code> or has no inner
+     * point, the polyhedra are used directly.
+     */
+    public void compile() {
+        HalfSpaces hs[] = new HalfSpaces[volumes.size()];
+        for (int i = 0; i < hs.length; i++) {
+            Polyhedron volume = volumes.get(i);
+            if (volume == null || volume.getInnerPoint() == null) {
+                hs = null;
+                break;
+            }
+            hs[i] = new HalfSpaces(volume, centroid);
+        }
+        halfSpaces = hs;
+        compiled = true;
+    }
+
     /**
      * Returns the volumes associated to this function which corresponds to the
      * kernel, 0.5 alpha-cut and support of this polyhedral-based fuzzy color.
@@ -119,4 +230,140 @@ public class PolyhedralFunction implements MembershipFunction<Point3D> {
     public Point3D getCentroid() {
         return centroid;
     }
+    
+    /**
+     * Half-space representation of a polyhedron. For each face, the plane
+     * <tt>n&middot;p + b = 0</tt> is stored together with its evaluation at
+     * the inner point of the polyhedron (which gives the inner side) and the
+     * numerator <tt>-b - n&middot;c</tt> of the intersection with the rays
+     * starting at the centroid <tt>c</tt>. The calculations follow the ones
+     * of {@link jfi.geometry.Polyhedron} and {@link jfi.geometry.Plane}, so
+     * the results are the same.
+     */
+    private static class HalfSpaces {
+        /**
+         * Epsilon used for checking the side of a point.
+         */
+        private static final double INSIDE_EPSILON = 0.00001;
+        /**
+         * Epsilon used for checking if a point is in a plane.
+         */
+        private static final double PLANE_EPSILON = 0.0001;
+        /**
+         * Epsilon used for checking the direction of the intersections.
+         */
+        private static final double DIRECTION_EPSILON = 0.0001;
+        /**
+         * Normal vectors of the planes, stored as <tt>{nx,ny,nz,...}</tt>.
+         */
+        private final double normals[];
+        /**
+         * Independent terms of the planes.
+         */
+        private final double offsets[];
+        /**
+         * Evaluation of the planes at the inner point.
+         */
+        private final double inner[];
+        /**
+         * Numerators of the intersections with the rays from the centroid.
+         */
+        private final double numerators[];
+        /**
+         * Coordinates of the centroid.
+         */
+        private final double cx, cy, cz;
+
+        /**
+         * Compiles the given polyhedron.
+         *
+         * @param polyhedron the polyhedron (with its inner point).
+         * @param centroid the origin of the rays.
+         */
+        HalfSpaces(Polyhedron polyhedron, Point3D centroid) {
+            List<PlanarPolygon> faces = polyhedron.getFaces();
+            int n = faces.size();
+            normals = new double[3 * n];
+            offsets = new double[n];
+            inner = new double[n];
+            numerators = new double[n];
+            cx = centroid.getX();
+            cy = centroid.getY();
+            cz = centroid.getZ();
+            Point3D innerPoint = polyhedron.getInnerPoint();
+            for (int f = 0, k = 0; f < n; f++, k += 3) {
+                Plane plane = faces.get(f).getPlane();
+                Point3D normal = plane.getOrthogonalVector().getCoordinates();
+                normals[k] = normal.getX();
+                normals[k + 1] = normal.getY();
+                normals[k + 2] = normal.getZ();
+                offsets[f] = plane.getIndependentTerm();
+                inner[f] = evaluate(f, innerPoint.getX(), innerPoint.getY(), innerPoint.getZ());
+                numerators[f] = -offsets[f] - normals[k] * cx - normals[k + 1] * cy - normals[k + 2] * cz;
+            }
+        }
+
+        /**
+         * Evaluates the point in the plane of the given face.
+         */
+        private double evaluate(int f, double x, double y, double z) {
+            int k = 3 * f;
+            return 0.0 + x * normals[k] + y * normals[k + 1] + z * normals[k + 2] + offsets[f];
+        }
+
+        /**
+         * Checks if a point is in the polyhedron, that is, if it is in the
+         * inner side of all the planes.
+         */
+        boolean isPointInside(double x, double y, double z) {
+            for (int f = 0; f < offsets.length; f++) {
+                if (inner[f] * evaluate(f, x, y, z) < -INSIDE_EPSILON) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Checks if a point is in the plane of any face.
+         */
+        boolean isPointInFace(double x, double y, double z) {
+            for (int f = 0; f < offsets.length; f++) {
+                double eval = evaluate(f, x, y, z);
+                if (eval > -PLANE_EPSILON && eval < PLANE_EPSILON) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the distance from the centroid to the nearest intersection
+         * between the planes and the ray starting at the centroid with the
+         * given direction, or -1 if there is no intersection.
+         */
+        double exitDistance(double vx, double vy, double vz) {
+            double min = Double.MAX_VALUE, vmodule = Math.sqrt(0.0 + vx * vx + vy * vy + vz * vz);
+            boolean found = false;
+            for (int f = 0, k = 0; f < offsets.length; f++, k += 3) {
+                double denominator = 0.0 + normals[k] * vx + normals[k + 1] * vy + normals[k + 2] * vz;
+                double lambda = numerators[f] / denominator;
+                if (!(lambda > 0.0)) { // Behind the centroid (or parallel)
+                    continue;
+                }
+                // Vector from the centroid to the intersection point
+                double wx = (cx + vx * lambda) - cx;
+                double wy = (cy + vy * lambda) - cy;
+                double wz = (cz + vz * lambda) - cz;
+                double wmodule = Math.sqrt(0.0 + wx * wx + wy * wy + wz * wz);
+                // Only the intersections in the direction of the ray are valid
+                double alpha = (0.0 + wx * vx + wy * vy + wz * vz) / (vmodule * wmodule);
+                if (1 - DIRECTION_EPSILON < alpha && alpha < 1 + DIRECTION_EPSILON && wmodule < min) {
+                    min = wmodule;
+                    found = true;
+                }
+            }
+            return found ? min : -1.0;
+        }
+    }
 }
@@ -244,8 +244,15 @@ public class PolynomialFunction implements MembershipFunction<List<Double>> {
             throw new InvalidParameterException("Empty list of arguments.");
         }
         Double x1 = x.get(0);
-        List<Double> x2toN = x.subList(1, x.size());
-        return apply(x1, (Double[]) x2toN.toArray());
+        if (dimension == 1) {
+            return apply(x1);
+        }
+        // Only the variables used by the polynomial are extracted
+        Double x2toN[] = new Double[dimension - 1];
+        for (int i = 1; i < dimension; i++) {
+            x2toN[i - 1] = x.get(i);
+        }
+        return apply(x1, x2toN);
     }
 
     /**
@@ -267,6 +274,123 @@ public class PolynomialFunction implements MembershipFunction<List<Double>> {
         if (output > 1) return 1.0;
         return output;
     }
+    
+    /**
+     * Applies this membership function (of dimension 1) to the first
+     * <tt>n</tt> values of the given array. The polynomial is evaluated by
+     * means of the Horner's rule.
+     *
+     * @param in the function arguments.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param n the number of values.
+     * @return the function results.
+     * @throws InvalidParameterException if the dimension is not 1.
+     */
+    @Override
+    public double[] apply(double in[], double out[], int n) {
+        if (out == null) {
+            out = new double[n];
+        }
+        if (dimension != 1) {
+            throw new InvalidParameterException("The polynomial must be of dimension 1.");
+        }
+        if (coefficients == null) {
+            for (int i = 0; i < n; i++) {
+                out[i] = apply(in[i]);
+            }
+            return out;
+        }
+        for (int i = 0; i < n; i++) {
+            out[i] = clip(horner(in[i]));
+        }
+        return out;
+    }
+    
+    /**
+     * Applies this membership function (of dimension 2) to the first
+     * <tt>n</tt> pairs of values of the given arrays.
+     *
+     * @param x1 the values of the first variable.
+     * @param x2 the values of the second variable.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param n the number of pairs.
+     * @return the function results.
+     * @throws InvalidParameterException if the dimension is not 2.
+     */
+    public double[] apply(double x1[], double x2[], double out[], int n) {
+        if (out == null) {
+            out = new double[n];
+        }
+        if (dimension != 2) {
+            throw new InvalidParameterException("The polynomial must be of dimension 2.");
+        }
+        if (coefficients == null) {
+            for (int i = 0; i < n; i++) {
+                out[i] = apply(x1[i], x2[i]);
+            }
+            return out;
+        }
+        double powers1[] = new double[polynomial_degree + 1];
+        double powers2[] = new double[polynomial_degree + 1];
+        for (int i = 0; i < n; i++) {
+            out[i] = clip(bivariate(x1[i], x2[i], powers1, powers2));
+        }
+        return out;
+    }
+    
+    /**
+     * Clips the value of the polynomial to the unit interval.
+     *
+     * @param output the value of the polynomial.
+     * @return the clipped value.
+     */
+    private static double clip(double output) {
+        if (output < 0) return 0.0;
+        if (output > 1) return 1.0;
+        return output;
+    }
+    
+    /**
+     * Evaluates the unidimensional polynomial by means of the Horner's rule.
+     *
+     * @param x the variable.
+     * @return the value of the polynomial.
+     */
+    private double horner(double x) {
+        double result = coefficients[polynomial_degree];
+        for (int k = polynomial_degree - 1; k >= 0; k--) {
+            result = result * x + coefficients[k];
+        }
+        return result;
+    }
+    
+    /**
+     * Evaluates the bidimensional polynomial. The powers of the variables are
+     * calculated incrementally (instead of using <tt>Math.pow</tt> for each
+     * term).
+     *
+     * @param x1 the first variable.
+     * @param x2 the second variable.
+     * @param powers1 buffer for the powers of the first variable.
+     * @param powers2 buffer for the powers of the second variable.
+     * @return the value of the polynomial.
+     */
+    private double bivariate(double x1, double x2, double powers1[], double powers2[]) {
+        powers1[0] = powers2[0] = 1.0;
+        for (int k = 1; k <= polynomial_degree; k++) {
+            powers1[k] = powers1[k - 1] * x1;
+            powers2[k] = powers2[k - 1] * x2;
+        }
+        double result = 0.0;
+        int coeff_index = 0;
+        for (int i = 0; i <= polynomial_degree; i++) {
+            for (int j = 0; j <= i; j++) {
+                result += coefficients[coeff_index] * powers1[j] * powers2[i - j];
+                coeff_index++;
+            }
+        }
+        return result;
+    }
 
     /**
      * Inner class representing an unidimensional polynomial-based function. It
@@ -285,11 +409,7 @@ public class PolynomialFunction implements MembershipFunction<List<Double>> {
          */
         @Override
         public Double apply(Double x1, Double... x2toN) {
-            double result = 0.0;
-            for (int n = 0; n <= polynomial_degree; n++) {
-                result += coefficients[n] * Math.pow(x1, n);
-            }
-            return result;
+            return horner(x1);
         }
     }
 
@@ -310,16 +430,8 @@ public class PolynomialFunction implements MembershipFunction<List<Double>> {
          */
         @Override
         public Double apply(Double x1, Double... x2toN) {
-            double result = 0.0;
-            double x2 = x2toN[0];
-            int coeff_index = 0;
-            for (int i = 0; i <= polynomial_degree; i++) {
-                for (int j = 0; j <= i; j++) {
-                    result += coefficients[coeff_index] * Math.pow(x1, j) * Math.pow(x2, i - j);
-                    coeff_index++;
-                }
-            }
-            return result;
+            int size = polynomial_degree + 1;
+            return bivariate(x1, x2toN[0], new double[size], new double[size]);
         }
     }
 
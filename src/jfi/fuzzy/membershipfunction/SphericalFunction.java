@@ -57,6 +57,32 @@ public class SphericalFunction implements MembershipFunction<Point3D>{
         double f = a != b ? (b - d) / (b - a) : (d <= b ? 1.0 : 0.0);
         return Math.max(Math.min(1.0, f), 0.0);
     }
+    
+    /**
+     * Applies this membership function to the first <tt>n</tt> points given
+     * by their coordinates.
+     *
+     * @param x the x-coordinates of the points.
+     * @param y the y-coordinates of the points.
+     * @param z the z-coordinates of the points.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param n the number of points.
+     * @return the function results.
+     */
+    @Override
+    public double[] apply(double x[], double y[], double z[], double out[], int n) {
+        if (out == null) {
+            out = new double[n];
+        }
+        double cx = center.getX(), cy = center.getY(), cz = center.getZ();
+        for (int i = 0; i < n; i++) {
+            double px = x[i] - cx, py = y[i] - cy, pz = z[i] - cz;
+            double d = Math.sqrt(px * px + py * py + pz * pz);
+            double f = a != b ? (b - d) / (b - a) : (d <= b ? 1.0 : 0.0);
+            out[i] = Math.max(Math.min(1.0, f), 0.0);
+        }
+        return out;
+    }
 
     /**
      * Set the parameters of the circular function.
@@ -75,6 +75,29 @@ public class TrapezoidalFunction<D extends Number> implements MembershipFunction
 
     }
 
+    /**
+     * Applies this membership function to the first <tt>n</tt> values of the
+     * given array.
+     *
+     * @param in the function arguments.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param n the number of values.
+     * @return the function results.
+     */
+    @Override
+    public double[] apply(double in[], double out[], int n) {
+        if (out == null) {
+            out = new double[n];
+        }
+        for (int i = 0; i < n; i++) {
+            double xd = in[i];
+            double f1 = b != a ? (xd - a) / (b - a) : (xd >= a ? 1.0 : 0.0);
+            double f2 = d != c ? (d - xd) / (d - c) : (xd <= c ? 1.0 : 0.0);
+            out[i] = Math.max(Math.min(Math.min(f1, 1), f2), 0);
+        }
+        return out;
+    }
+
     /**
      * Set the parameters of the trapezoidal function.
      * 
@@ -67,6 +67,29 @@ public class TriangularFunction<D extends Number> implements MembershipFunction<
         return Math.max(Math.min(f1, f2), 0.0);
     }
 
+    /**
+     * Applies this membership function to the first <tt>n</tt> values of the
+     * given array.
+     *
+     * @param in the function arguments.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param n the number of values.
+     * @return the function results.
+     */
+    @Override
+    public double[] apply(double in[], double out[], int n) {
+        if (out == null) {
+            out = new double[n];
+        }
+        for (int i = 0; i < n; i++) {
+            double xd = in[i];
+            double f1 = a != b ? (xd - a) / (b - a) : (xd >= a ? 1.0 : 0.0);
+            double f2 = b != c ? (c - xd) / (c - b) : (xd <= c ? 1.0 : 0.0);
+            out[i] = Math.max(Math.min(f1, f2), 0.0);
+        }
+        return out;
+    }
+
     /**
      * Set the parameters of the triangular function.
      * 
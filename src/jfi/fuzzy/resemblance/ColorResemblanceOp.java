@@ -3,12 +3,12 @@ package jfi.fuzzy.resemblance;
 import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
 import jfi.color.ISCCColorMap;
 import jfi.color.fuzzy.FuzzyColor;
 import jfi.color.fuzzy.FuzzyColorSpace;
 import jfi.geometry.Point3D;
-import jfi.image.fuzzy.FuzzyMappingOp;
-import jfi.image.fuzzy.PixelFuzzyMappingOp;
+import jfi.image.fuzzy.ColorSpaceMappingOp;
 import java.awt.Color;
 import jfi.fuzzy.membershipfunction.TrapezoidalFunction;
 
@@ -128,10 +128,10 @@ public class ColorResemblanceOp implements PixelResemblanceOp<Point> {
         } else {
             maps.clear();
         }
-        FuzzyMappingOp mapColor;
-        for (FuzzyColor fc : fcs) {
-            mapColor = new PixelFuzzyMappingOp(fc);
-            maps.add(mapColor.filter(this.source, null, false));
+        // All the fuzzy colors are mapped in a single pass
+        if (!fcs.isEmpty()) {
+            ColorSpaceMappingOp mapSpace = new ColorSpaceMappingOp(fcs);
+            maps.addAll(Arrays.asList(mapSpace.filter(this.source)));
         }
     }
 
@@ -4,10 +4,11 @@ import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Arrays;
-import jfi.image.fuzzy.FuzzyMappingOp;
-import jfi.image.fuzzy.TiledFuzzyMappingOp;
+import jfi.image.GreyPlane;
+import jfi.image.fuzzy.TextureSpaceMappingOp;
 import jfi.texture.fuzzy.FuzzyTexture;
 import jfi.texture.fuzzy.FuzzyTextureFactory;
+import jfi.texture.fuzzy.FuzzyTextureSpace;
 
 /**
  * Class representing a pixel resemblance operator where the resemblance is
@@ -52,6 +53,12 @@ public class TextureResemblanceOp implements PixelResemblanceOp<Point> {
      * Flag to set whether the points in the border are processed or not. 
      */
     boolean analyzeBorder = false;
+    /**
+     * Grey plane of the last (not associated) image on which this operator was
+     * applied. It avoids the color conversion of the windows in each call, so
+     * the image should not be modified between calls.
+     */
+    private volatile CachedPlane lastPlane = null;
     
     /**
      * Constructs a new texture resemblance operator using the default fuzzy
@@ -115,11 +122,11 @@ public class TextureResemblanceOp implements PixelResemblanceOp<Point> {
         } else {
             maps.clear();
         }
-        FuzzyMappingOp mapTexture;
-        for (FuzzyTexture ft : fuzzyTextures) {
-            mapTexture = new TiledFuzzyMappingOp(ft, this.width, this.height);
-            maps.add(mapTexture.filter(this.source, null, false));
-        }
+        // All the fuzzy textures are mapped in a single pass (the measures
+        // shared by several of them are calculated once)
+        TextureSpaceMappingOp mapTexture = new TextureSpaceMappingOp(
+                new FuzzyTextureSpace(fuzzyTextures), this.width, this.height);
+        maps.addAll(Arrays.asList(mapTexture.filter(this.source)));
     }
     
     /**
@@ -148,12 +155,13 @@ public class TextureResemblanceOp implements PixelResemblanceOp<Point> {
         y = Math.max(0,t.y-half_height);
         w = t.x+width < image.getWidth() ? width : image.getWidth()-t.x+1;
         h = t.y+height < image.getHeight() ? height : image.getHeight()-t.y+1;
-        BufferedImage imt = image.getSubimage(x, y, w, h);
+        GreyPlane plane = greyPlane(image);
+        GreyPlane imt = plane.getWindow(x, y, w, h);
         x = Math.max(0,u.x-half_width);
         y = Math.max(0,u.y-half_height);
         w = u.x+width < image.getWidth() ? width : image.getWidth()-u.x+1;
         h = u.y+height < image.getHeight() ? height : image.getHeight()-u.y+1;
-        BufferedImage imu = image.getSubimage(x, y, w, h);
+        GreyPlane imu = plane.getWindow(x, y, w, h);
         
         //The resemblance is calculated on the basis of the texture fuzzy sets. 
         //It is assumed that the resemblance between two fuzzy sets is 1.0 if
@@ -184,6 +192,23 @@ public class TextureResemblanceOp implements PixelResemblanceOp<Point> {
         return resemblance;
     }
        
+    /**
+     * Returns the grey plane of the given image. The plane of the last image
+     * is cached, so it is calculated only once for a sequence of calls on the
+     * same image.
+     *
+     * @param image the image.
+     * @return the grey plane of the image.
+     */
+    private GreyPlane greyPlane(BufferedImage image) {
+        CachedPlane cached = lastPlane;
+        if (cached == null || cached.image != image) {
+            cached = new CachedPlane(image, GreyPlane.of(image));
+            lastPlane = cached;
+        }
+        return cached.plane;
+    }
+    
     /**
      * Apply this resemblance operator to the associated image (if available).
      * 
@@ -291,4 +316,17 @@ public class TextureResemblanceOp implements PixelResemblanceOp<Point> {
     public void analyzeBorder(boolean b) {
         this.analyzeBorder = b;
     }
+    
+    /**
+     * Inner class storing an image together with its grey plane.
+     */
+    private static class CachedPlane {
+        private final BufferedImage image;
+        private final GreyPlane plane;
+
+        private CachedPlane(BufferedImage image, GreyPlane plane) {
+            this.image = image;
+            this.plane = plane;
+        }
+    }
 }
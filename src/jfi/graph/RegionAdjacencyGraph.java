@@ -0,0 +1,157 @@
+package jfi.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class representing a region adjacency graph, that is, a graph where each
+ * node is associated to an image region and two nodes are connected if their
+ * regions are adjacent.
+ *
+ * <p>
+ * The graph is built from a label plane, where the label of each pixel is the
+ * index of the node (region) it belongs to. Two regions are adjacent if there
+ * are two 8-connected pixels, one in each region. The adjacency is stored as
+ * primitive arrays of neighbour indexes.
+ *
+ * @param <T> domain of the property associated to the nodes
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class RegionAdjacencyGraph<T> {
+    /**
+     * The nodes of the graph.
+     */
+    private final List<Node<T>> nodes;
+    /**
+     * Neighbour indexes of each node (sorted in increasing order).
+     */
+    private final int adjacency[][];
+
+    /**
+     * Constructs a new region adjacency graph.
+     *
+     * @param sources the property associated to each node. The index of each
+     * property in the list will be the label of its region.
+     * @param labels the label plane in row-major order. The labels must be
+     * between 0 and <code>sources.size()-1</code>.
+     * @param width the width of the label plane.
+     * @param height the height of the label plane.
+     */
+    public RegionAdjacencyGraph(List<T> sources, int labels[], int width, int height) {
+        int size = sources.size();
+        nodes = new ArrayList(size);
+        for (T source : sources) {
+            nodes.add(new Node(source));
+        }
+        //Neighbour lists (as growable arrays, since each region has few
+        //neighbours)
+        int lists[][] = new int[size][4];
+        int counts[] = new int[size];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0, i = y * width; x < width; x++, i++) {
+                int label = labels[i];
+                //Only the forward neighbours are checked (right, and the three
+                //ones in the next row); the edges are added in both directions
+                if (x + 1 < width) addEdge(lists, counts, label, labels[i + 1]);
+                if (y + 1 < height) {
+                    if (x > 0) addEdge(lists, counts, label, labels[i + width - 1]);
+                    addEdge(lists, counts, label, labels[i + width]);
+                    if (x + 1 < width) addEdge(lists, counts, label, labels[i + width + 1]);
+                }
+            }
+        }
+        adjacency = new int[size][];
+        for (int i = 0; i < size; i++) {
+            adjacency[i] = Arrays.copyOf(lists[i], counts[i]);
+            Arrays.sort(adjacency[i]);
+        }
+    }
+
+    /**
+     * Adds (in both directions) the edge between the given nodes, if it does
+     * not exist.
+     */
+    private static void addEdge(int lists[][], int counts[], int a, int b) {
+        if (a == b) return;
+        for (int i = 0; i < counts[a]; i++) {
+            if (lists[a][i] == b) return;
+        }
+        append(lists, counts, a, b);
+        append(lists, counts, b, a);
+    }
+
+    /**
+     * Appends a neighbour to the list of the given node.
+     */
+    private static void append(int lists[][], int counts[], int a, int b) {
+        if (counts[a] == lists[a].length) {
+            lists[a] = Arrays.copyOf(lists[a], 2 * lists[a].length);
+        }
+        lists[a][counts[a]++] = b;
+    }
+
+    /**
+     * Returns the number of nodes of this graph.
+     *
+     * @return the number of nodes.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Returns the node of the given index (that is, the node of the region
+     * labelled with that index).
+     *
+     * @param index the index of the node.
+     * @return the node.
+     */
+    public Node<T> getNode(int index) {
+        return nodes.get(index);
+    }
+
+    /**
+     * Returns the nodes of this graph.
+     *
+     * @return the nodes of this graph.
+     */
+    public List<Node<T>> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the indexes of the nodes adjacent to the given one. The internal
+     * array is returned (it must not be modified).
+     *
+     * @param index the index of the node.
+     * @return the indexes of the adjacent nodes, in increasing order.
+     */
+    public int[] getNeighbours(int index) {
+        return adjacency[index];
+    }
+
+    /**
+     * Checks if the given nodes are adjacent.
+     *
+     * @param a the index of the first node.
+     * @param b the index of the second node.
+     * @return <tt>true</tt> if the nodes are adjacent.
+     */
+    public boolean isAdjacent(int a, int b) {
+        return Arrays.binarySearch(adjacency[a], b) >= 0;
+    }
+
+    /**
+     * Returns the number of edges of this graph.
+     *
+     * @return the number of edges.
+     */
+    public int getNumEdges() {
+        int count = 0;
+        for (int neighbours[] : adjacency) {
+            count += neighbours.length;
+        }
+        return count / 2;
+    }
+}
@@ -330,6 +330,18 @@ public abstract class BufferedImageIterator<T> implements Iterator<T> {
          */
         @Override
         public BufferedImage next() {
+            skip();
+            return source.getSubimage(x, y, tileWidth, tileHeight);
+        }
+        
+        /**
+         * Moves to the next element in the iteration without building its
+         * subimage. It is useful when the tile data is accessed by other means
+         * (see {@link #getTileX()} and {@link #getTileY()}).
+         *
+         * @throws NoSuchElementException if the iteration has no more elements.
+         */
+        public void skip() {
             if (pos >= length) {
                 throw new NoSuchElementException("No more pixels");
             }
@@ -337,8 +349,24 @@ public abstract class BufferedImageIterator<T> implements Iterator<T> {
             y = pos / in_width;
             // The current position is updated
             pos++;
-            
-            return source.getSubimage(x, y, tileWidth, tileHeight);
+        }
+        
+        /**
+         * Returns the x-coordiante of the top-left corner of the current tile.
+         *
+         * @return the x-coordiante of the current tile.
+         */
+        public int getTileX() {
+            return x;
+        }
+        
+        /**
+         * Returns the y-coordiante of the top-left corner of the current tile.
+         *
+         * @return the y-coordiante of the current tile.
+         */
+        public int getTileY() {
+            return y;
         }
 
         /**
@@ -0,0 +1,296 @@
+package jfi.image;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Class implementing a tile store on disk. The image is stored in a binary
+ * file where each tile has a fixed slot, so any tile can be read or written
+ * independently (and concurrently) without loading the whole image.
+ *
+ * <p>
+ * The file starts with a header of {@link #HEADER_SIZE} bytes containing a
+ * magic number, the image size and the tile size (as big-endian integers),
+ * followed by the tile slots in row-major order. Each slot stores
+ * <code>tileWidth*tileHeight</code> packed RGB integers in row-major order; in
+ * the last column (row), only the left (top) part of the slot is used.
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class FileTileStore implements TileStore, Closeable {
+    /**
+     * Magic number identifying the file format.
+     */
+    private static final int MAGIC = 0x4A464954; // "JFIT"
+    /**
+     * Size in bytes of the file header.
+     */
+    public static final int HEADER_SIZE = 32;
+    /**
+     * The size of the image.
+     */
+    private final int width, height;
+    /**
+     * The size of the tiles.
+     */
+    private final int tileWidth, tileHeight;
+    /**
+     * The file associated to this store.
+     */
+    private final RandomAccessFile file;
+    /**
+     * Channel used for the positional reads and writes.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Constructs a new tile store from an already opened file.
+     */
+    private FileTileStore(RandomAccessFile file, int width, int height, int tileWidth, int tileHeight) {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.width = width;
+        this.height = height;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+    }
+
+    /**
+     * Creates a new (black filled) tile store on the given file. If the file
+     * exists, it is overwritten.
+     *
+     * @param f the file.
+     * @param width the width of the image.
+     * @param height the height of the image.
+     * @param tileWidth the width of the tiles.
+     * @param tileHeight the height of the tiles.
+     * @return the new tile store.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static FileTileStore create(File f, int width, int height, int tileWidth, int tileHeight) throws IOException {
+        if (width <= 0 || height <= 0 || tileWidth <= 0 || tileHeight <= 0) {
+            throw new IllegalArgumentException("Image and tile sizes must be positive");
+        }
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        try {
+            raf.setLength(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(width).putInt(height).putInt(tileWidth).putInt(tileHeight);
+            header.rewind();
+            raf.getChannel().write(header, 0);
+            raf.setLength(fileLength(width, height, tileWidth, tileHeight));
+            return new FileTileStore(raf, width, height, tileWidth, tileHeight);
+        } catch (IOException | RuntimeException ex) {
+            raf.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Creates a new tile store on the given file from an image in memory. If
+     * the file exists, it is overwritten.
+     *
+     * @param f the file.
+     * @param image the source image.
+     * @param tileWidth the width of the tiles.
+     * @param tileHeight the height of the tiles.
+     * @return the new tile store.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static FileTileStore create(File f, BufferedImage image, int tileWidth, int tileHeight) throws IOException {
+        FileTileStore store = create(f, image.getWidth(), image.getHeight(), tileWidth, tileHeight);
+        try {
+            for (int ty = 0; ty < store.getNumYTiles(); ty++) {
+                for (int tx = 0; tx < store.getNumXTiles(); tx++) {
+                    int x = tx * tileWidth, y = ty * tileHeight;
+                    store.writeTile(tx, ty, image.getSubimage(x, y,
+                            Math.min(tileWidth, image.getWidth() - x),
+                            Math.min(tileHeight, image.getHeight() - y)));
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            store.close();
+            throw ex;
+        }
+        return store;
+    }
+
+    /**
+     * Opens an existing tile store.
+     *
+     * @param f the file.
+     * @param writable if <tt>true</tt>, the tiles can be written.
+     * @return the tile store.
+     * @throws IOException if an I/O error occurs or the file format is not
+     * valid (including files whose length does not match the one given by the
+     * header).
+     */
+    public static FileTileStore open(File f, boolean writable) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(f, writable ? "rw" : "r");
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (raf.getChannel().read(header, header.position()) < 0) break;
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("Not a tile store file: " + f);
+            }
+            int width = header.getInt(), height = header.getInt();
+            int tileWidth = header.getInt(), tileHeight = header.getInt();
+            if (width <= 0 || height <= 0 || tileWidth <= 0 || tileHeight <= 0) {
+                throw new IOException("Not valid tile store header: " + f);
+            }
+            if (raf.length() != fileLength(width, height, tileWidth, tileHeight)) {
+                throw new IOException("Truncated or corrupt tile store file: " + f);
+            }
+            return new FileTileStore(raf, width, height, tileWidth, tileHeight);
+        } catch (IOException | RuntimeException ex) {
+            raf.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the length in bytes of a tile store file with the given image
+     * and tile sizes (header included).
+     *
+     * @throws IOException if the length does not fit in a <code>long</code>.
+     */
+    private static long fileLength(int width, int height, int tileWidth, int tileHeight) throws IOException {
+        long numXTiles = (width + (long) tileWidth - 1) / tileWidth;
+        long numYTiles = (height + (long) tileHeight - 1) / tileHeight;
+        try {
+            long slot = Math.multiplyExact((long) tileWidth * tileHeight, 4L);
+            return Math.addExact(HEADER_SIZE, Math.multiplyExact(numXTiles * numYTiles, slot));
+        } catch (ArithmeticException ex) {
+            throw new IOException("Tile store too large");
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    @Override
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    /**
+     * Returns the offset in the file of the given tile slot.
+     *
+     * @param slot the index of the slot (in row-major tile order).
+     * @return the offset in bytes.
+     */
+    private long slotOffset(int slot) {
+        return HEADER_SIZE + (long) slot * tileWidth * tileHeight * 4;
+    }
+
+    /**
+     * Returns a new image of type {@link BufferedImage#TYPE_INT_RGB} with the
+     * pixels of the given rectangle. Only the rows of the intersecting tiles
+     * are read from disk.
+     *
+     * @param x the x-coordinate of the upper-left corner of the region.
+     * @param y the y-coordinate of the upper-left corner of the region.
+     * @param w the width of the region.
+     * @param h the height of the region.
+     * @return the image region.
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public BufferedImage readRegion(int x, int y, int w, int h) throws IOException {
+        if (x < 0 || y < 0 || w <= 0 || h <= 0 || x + w > width || y + h > height) {
+            throw new IllegalArgumentException("Region outside the image bounds");
+        }
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        int row[] = new int[w];
+        for (int ty = y / tileHeight; ty <= (y + h - 1) / tileHeight; ty++) {
+            int r0 = Math.max(y, ty * tileHeight) - ty * tileHeight;
+            int r1 = Math.min(y + h, (ty + 1) * tileHeight) - ty * tileHeight;
+            for (int tx = x / tileWidth; tx <= (x + w - 1) / tileWidth; tx++) {
+                int c0 = Math.max(x, tx * tileWidth) - tx * tileWidth;
+                int c1 = Math.min(x + w, (tx + 1) * tileWidth) - tx * tileWidth;
+                //The rows r0..r1-1 of the tile are read at once
+                IntBuffer data = read(slotOffset(ty * getNumXTiles() + tx) + (long) r0 * tileWidth * 4,
+                        (r1 - r0) * tileWidth);
+                for (int r = r0; r < r1; r++) {
+                    data.position((r - r0) * tileWidth + c0);
+                    data.get(row, 0, c1 - c0);
+                    out.setRGB(tx * tileWidth + c0 - x, ty * tileHeight + r - y, c1 - c0, 1, row, 0, w);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Writes the given image into a tile. The size of the image must be the
+     * one of the tile.
+     *
+     * @param tx the column of the tile.
+     * @param ty the row of the tile.
+     * @param tile the image to be written.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeTile(int tx, int ty, BufferedImage tile) throws IOException {
+        int w = Math.min(tileWidth, width - tx * tileWidth);
+        int h = Math.min(tileHeight, height - ty * tileHeight);
+        if (tile.getWidth() != w || tile.getHeight() != h) {
+            throw new IllegalArgumentException("Tile size mismatch");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(tileWidth * h * 4);
+        IntBuffer data = buffer.asIntBuffer();
+        int row[] = new int[w];
+        for (int r = 0; r < h; r++) {
+            tile.getRGB(0, r, w, 1, row, 0, w);
+            data.position(r * tileWidth);
+            data.put(row);
+        }
+        long position = slotOffset(ty * getNumXTiles() + tx);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Reads the given number of integers from the given position.
+     */
+    private IntBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length * 4);
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) break; //Unwritten data is read as zero
+        }
+        buffer.rewind();
+        return buffer.asIntBuffer();
+    }
+
+    /**
+     * Closes the file associated to this store.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
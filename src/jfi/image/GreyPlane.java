@@ -0,0 +1,220 @@
+package jfi.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+import java.util.stream.IntStream;
+import jfi.color.ColorConvertOp;
+import jfi.color.GreyColorSpace;
+
+/**
+ * Class representing a primitive view of the grey levels of an image.
+ *
+ * <p>
+ * The grey levels are stored in an <code>int</code> array in row-major order;
+ * a view is defined by the offset of its top-left pixel in that array, the
+ * number of elements between two consecutive rows (scanline stride) and its
+ * size. Windows of a view share the same array, so a grey plane calculated
+ * once for a source image can be used (without copying or converting the
+ * data again) for any number of subimages.
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class GreyPlane {
+    /**
+     * The grey levels (shared among the views of the same plane).
+     */
+    private final int data[];
+    /**
+     * Index in {@link #data} of the top-left pixel of this view.
+     */
+    private final int offset;
+    /**
+     * Number of elements between two consecutive rows.
+     */
+    private final int scanline;
+    /**
+     * Size of this view.
+     */
+    private final int width, height;
+
+    /**
+     * Constructs a new grey plane from the given grey levels.
+     *
+     * @param data the grey levels in row-major order. It is not copied.
+     * @param width the width of the plane.
+     * @param height the height of the plane.
+     */
+    public GreyPlane(int data[], int width, int height) {
+        this(data, 0, width, width, height);
+    }
+
+    /**
+     * Constructs a new view on the given grey levels.
+     *
+     * @param data the grey levels in row-major order. It is not copied.
+     * @param offset index of the top-left pixel of the view.
+     * @param scanline number of elements between two consecutive rows.
+     * @param width the width of the view.
+     * @param height the height of the view.
+     */
+    public GreyPlane(int data[], int offset, int scanline, int width, int height) {
+        if (data == null) {
+            throw new NullPointerException("Data is null");
+        }
+        if (width < 0 || height < 0 || scanline < width || offset < 0
+                || (height > 0 && offset + (height - 1) * scanline + width > data.length)) {
+            throw new IllegalArgumentException("Invalid view bounds");
+        }
+        this.data = data;
+        this.offset = offset;
+        this.scanline = scanline;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Calculates the grey plane of the given image. If the image has only one
+     * band, its samples are used; if not, the image is converted to the
+     * {@link jfi.color.GreyColorSpace} color space.
+     *
+     * @param image the source image.
+     * @return the grey plane of the image.
+     */
+    public static GreyPlane of(BufferedImage image) {
+        if (image == null) {
+            throw new NullPointerException("Source image is null");
+        }
+        int width = image.getWidth(), height = image.getHeight();
+        ColorModel cm = image.getColorModel();
+        if (cm.getColorSpace().isCS_sRGB() && !cm.hasAlpha() && cm.getPixelSize() == 24) {
+            // 8-bit RGB images are converted by rows, without creating an
+            // intermediate grey level image
+            GreyColorSpace cs = new GreyColorSpace();
+            int data[] = new int[width * height];
+            IntStream.range(0, height).parallel().forEach(y -> {
+                int rgb[] = image.getRGB(0, y, width, 1, null, 0, width);
+                float grey[] = cs.fromRGB(rgb, null, width);
+                for (int x = 0, i = y * width; x < width; x++, i++) {
+                    data[i] = (int) (grey[x] * 255.0f + 0.5f);
+                }
+            });
+            return new GreyPlane(data, width, height);
+        }
+        BufferedImage grey = image;
+        if (image.getRaster().getNumBands() != 1) {
+            ColorConvertOp op = new ColorConvertOp(new GreyColorSpace(), null);
+            grey = op.filter(image, null, false);
+        }
+        int data[] = grey.getRaster().getSamples(0, 0, width, height, 0, (int[]) null);
+        return new GreyPlane(data, width, height);
+    }
+
+    /**
+     * Returns a window of this view. The returned view shares the data of this
+     * one.
+     *
+     * @param x the x-coordinate of the top-left pixel of the window.
+     * @param y the y-coordinate of the top-left pixel of the window.
+     * @param w the width of the window.
+     * @param h the height of the window.
+     * @return the window.
+     */
+    public GreyPlane getWindow(int x, int y, int w, int h) {
+        if (x < 0 || y < 0 || w < 0 || h < 0 || x + w > width || y + h > height) {
+            throw new IllegalArgumentException("Window outside the plane bounds");
+        }
+        return new GreyPlane(data, offset + y * scanline + x, scanline, w, h);
+    }
+
+    /**
+     * Returns the grey level of the given pixel.
+     *
+     * @param x the x-coordinate of the pixel.
+     * @param y the y-coordinate of the pixel.
+     * @return the grey level.
+     */
+    public int getSample(int x, int y) {
+        return data[offset + y * scanline + x];
+    }
+
+    /**
+     * Returns the array where the grey levels are stored. It is shared among
+     * the views of the same plane (it is not copied), so the pixel
+     * <tt>(x,y)</tt> of this view is located at
+     * <tt>getOffset()+y*getScanline()+x</tt>.
+     *
+     * @return the grey levels array.
+     */
+    public int[] getData() {
+        return data;
+    }
+
+    /**
+     * Returns the index of the top-left pixel of this view in the data array.
+     *
+     * @return the offset of this view.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the number of elements between two consecutive rows in the data
+     * array.
+     *
+     * @return the scanline stride.
+     */
+    public int getScanline() {
+        return scanline;
+    }
+
+    /**
+     * Returns the width of this view.
+     *
+     * @return the width of this view.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of this view.
+     *
+     * @return the height of this view.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Copies the grey levels of this view in row-major order (without gaps
+     * between rows).
+     *
+     * @param out the output array (of length at least
+     * <tt>width*height</tt>). If <tt>null</tt>, a new one is created.
+     * @return the grey levels of this view.
+     */
+    public int[] getSamples(int out[]) {
+        if (out == null) {
+            out = new int[width * height];
+        }
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(data, offset + y * scanline, out, y * width, width);
+        }
+        return out;
+    }
+
+    /**
+     * Returns a grey level image with the content of this view (the grey
+     * levels are expected to be between 0 and 255).
+     *
+     * @return a new image of type {@link BufferedImage#TYPE_BYTE_GRAY}.
+     */
+    public BufferedImage toImage() {
+        BufferedImage image = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_BYTE_GRAY);
+        WritableRaster raster = image.getRaster();
+        raster.setSamples(0, 0, width, height, 0, getSamples(null));
+        return image;
+    }
+}
@@ -0,0 +1,127 @@
+package jfi.image;
+
+/**
+ * Class representing an integral image (summed-area table), that is, a table
+ * where each position stores the sum of all the values above and to the left
+ * of it. Once it is calculated, the sum of the values in any rectangular
+ * window is obtained with four lookups, regardless of the window size.
+ *
+ * <p>
+ * The sums are stored as <code>long</code> values, so the integral images of
+ * the powers of grey levels (for example, for calculating the moments of each
+ * window) are exact.
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class IntegralImage {
+    /**
+     * Size of the image.
+     */
+    private final int width, height;
+    /**
+     * Summed-area table, of size <tt>(width+1)*(height+1)</tt>. The position
+     * <tt>(x,y)</tt> stores the sum of the values in <tt>[0,x)*[0,y)</tt>.
+     */
+    private final long table[];
+
+    /**
+     * Constructs the integral image of the given values.
+     *
+     * @param values the values in row-major order.
+     * @param width the width of the image.
+     * @param height the height of the image.
+     */
+    public IntegralImage(long values[], int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.table = new long[(width + 1) * (height + 1)];
+        int stride = width + 1;
+        for (int y = 0; y < height; y++) {
+            long row = 0;
+            for (int x = 0, i = y * width; x < width; x++, i++) {
+                row += values[i];
+                table[(y + 1) * stride + x + 1] = table[y * stride + x + 1] + row;
+            }
+        }
+    }
+
+    /**
+     * Constructs the integral image of the given power of the grey levels of
+     * a plane.
+     *
+     * @param plane the grey plane.
+     * @param power the power of the grey levels (1 for the grey levels
+     * themselves, 2 for their squares, etc.).
+     */
+    public IntegralImage(GreyPlane plane, int power) {
+        this.width = plane.getWidth();
+        this.height = plane.getHeight();
+        this.table = new long[(width + 1) * (height + 1)];
+        int data[] = plane.getData();
+        int stride = width + 1;
+        for (int y = 0; y < height; y++) {
+            long row = 0;
+            int i = plane.getOffset() + y * plane.getScanline();
+            for (int x = 0; x < width; x++, i++) {
+                long value = data[i], p = value;
+                for (int k = 1; k < power; k++) {
+                    p *= value;
+                }
+                row += power == 0 ? 1 : p;
+                table[(y + 1) * stride + x + 1] = table[y * stride + x + 1] + row;
+            }
+        }
+    }
+
+    /**
+     * Returns the integral images of the powers <tt>1..maxPower</tt> of the
+     * grey levels of the given plane. They allow to calculate the raw moments
+     * of any window (and, from them, its mean, variance, etc.) with a constant
+     * number of lookups.
+     *
+     * @param plane the grey plane.
+     * @param maxPower the maximum power.
+     * @return the integral images; the one of power <tt>k</tt> is stored at
+     * the position <tt>k-1</tt>.
+     */
+    public static IntegralImage[] moments(GreyPlane plane, int maxPower) {
+        IntegralImage moments[] = new IntegralImage[maxPower];
+        for (int k = 1; k <= maxPower; k++) {
+            moments[k - 1] = new IntegralImage(plane, k);
+        }
+        return moments;
+    }
+
+    /**
+     * Returns the sum of the values in the given window.
+     *
+     * @param x the x-coordinate of the top-left pixel of the window.
+     * @param y the y-coordinate of the top-left pixel of the window.
+     * @param w the width of the window.
+     * @param h the height of the window.
+     * @return the sum of the values in the window.
+     */
+    public long sum(int x, int y, int w, int h) {
+        int stride = width + 1;
+        int top = y * stride, bottom = (y + h) * stride;
+        return table[bottom + x + w] - table[bottom + x] - table[top + x + w] + table[top + x];
+    }
+
+    /**
+     * Returns the width of the image.
+     *
+     * @return the width of the image.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the image.
+     *
+     * @return the height of the image.
+     */
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,159 @@
+package jfi.image;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Represents an image split into tiles, so only a part of it needs to be in
+ * memory at a time. It is intended for images that do not fit in memory (for
+ * example, large mosaics stored on disk); the tiles are loaded on demand by
+ * means of the {@link #readRegion(int, int, int, int)} method.
+ *
+ * <p>
+ * The tiles form a regular grid starting at the top-left corner of the image.
+ * The tiles in the last column (row) may be narrower (shorter) than the
+ * others.
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public interface TileStore {
+    /**
+     * Returns the width of the whole image.
+     *
+     * @return the width of the image.
+     */
+    public int getWidth();
+
+    /**
+     * Returns the height of the whole image.
+     *
+     * @return the height of the image.
+     */
+    public int getHeight();
+
+    /**
+     * Returns the (nominal) width of the tiles.
+     *
+     * @return the width of the tiles.
+     */
+    public int getTileWidth();
+
+    /**
+     * Returns the (nominal) height of the tiles.
+     *
+     * @return the height of the tiles.
+     */
+    public int getTileHeight();
+
+    /**
+     * Returns a new image with the pixels of the given rectangle. The
+     * rectangle may cross the tile boundaries, but it must be inside the image
+     * bounds.
+     *
+     * @param x the x-coordinate of the upper-left corner of the region.
+     * @param y the y-coordinate of the upper-left corner of the region.
+     * @param width the width of the region.
+     * @param height the height of the region.
+     * @return the image region.
+     * @throws IOException if an I/O error occurs.
+     */
+    public BufferedImage readRegion(int x, int y, int width, int height) throws IOException;
+
+    /**
+     * Returns the number of tile columns.
+     *
+     * @return the number of tile columns.
+     */
+    default int getNumXTiles() {
+        return (getWidth() + getTileWidth() - 1) / getTileWidth();
+    }
+
+    /**
+     * Returns the number of tile rows.
+     *
+     * @return the number of tile rows.
+     */
+    default int getNumYTiles() {
+        return (getHeight() + getTileHeight() - 1) / getTileHeight();
+    }
+
+    /**
+     * Returns the image associated to the given tile.
+     *
+     * @param tx the column of the tile.
+     * @param ty the row of the tile.
+     * @return the tile image.
+     * @throws IOException if an I/O error occurs.
+     */
+    default BufferedImage readTile(int tx, int ty) throws IOException {
+        int x = tx * getTileWidth(), y = ty * getTileHeight();
+        return readRegion(x, y, Math.min(getTileWidth(), getWidth() - x),
+                Math.min(getTileHeight(), getHeight() - y));
+    }
+
+    /**
+     * Inner class implementing a tile store over an image already in memory.
+     * It allows to use the tile-based operators on standard images.
+     */
+    public static class Memory implements TileStore {
+        /**
+         * The source image.
+         */
+        private final BufferedImage source;
+        /**
+         * The size of the tiles.
+         */
+        private final int tileWidth, tileHeight;
+
+        /**
+         * Constructs a new tile store over the given image.
+         *
+         * @param source the source image.
+         * @param tileWidth the width of the tiles.
+         * @param tileHeight the height of the tiles.
+         */
+        public Memory(BufferedImage source, int tileWidth, int tileHeight) {
+            if (source == null) {
+                throw new NullPointerException("Source image is null");
+            }
+            this.source = source;
+            this.tileWidth = Math.max(1, tileWidth);
+            this.tileHeight = Math.max(1, tileHeight);
+        }
+
+        @Override
+        public int getWidth() {
+            return source.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return source.getHeight();
+        }
+
+        @Override
+        public int getTileWidth() {
+            return tileWidth;
+        }
+
+        @Override
+        public int getTileHeight() {
+            return tileHeight;
+        }
+
+        /**
+         * Returns the given region of the source image. The returned image
+         * shares the data with the source one.
+         *
+         * @param x the x-coordinate of the upper-left corner of the region.
+         * @param y the y-coordinate of the upper-left corner of the region.
+         * @param width the width of the region.
+         * @param height the height of the region.
+         * @return the image region.
+         */
+        @Override
+        public BufferedImage readRegion(int x, int y, int width, int height) {
+            return source.getSubimage(x, y, width, height);
+        }
+    } // End of inner class Memory
+}
@@ -0,0 +1,249 @@
+package jfi.image.fuzzy;
+
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.stream.IntStream;
+import jfi.color.GreyColorSpace;
+import jfi.color.fuzzy.FuzzyColorSpace;
+import jfi.color.fuzzy.ColorSpaceEvaluator;
+import jfi.geometry.Point3D;
+
+/**
+ * Class representing a fuzzy filtering on an image on the basis of all the
+ * fuzzy colors of a fuzzy color space. For each pixel of the source image
+ * (represented as a three-dimensional point with its RGB components), the
+ * membership degree to each fuzzy color is calculated, so the output has one
+ * band per fuzzy color.
+ *
+ * <p>
+ * Unlike applying a {@link jfi.image.fuzzy.PixelFuzzyMappingOp} for each fuzzy
+ * color, the image is traversed once (in parallel, by rows). In addition, if
+ * there is a specific {@link ColorSpaceEvaluator} for the space (see
+ * {@link ColorSpaceEvaluator#of(jfi.color.fuzzy.FuzzyColorSpace)}), it is used
+ * for evaluating all the fuzzy colors at once; for example, for sphere-based
+ * spaces only the fuzzy colors whose support reaches each pixel are evaluated,
+ * and for fuzzy c-means and nearest neighbour spaces the distances to the
+ * prototypes are calculated once per pixel.
+ *
+ * <p>
+ * As in {@link jfi.image.fuzzy.PixelFuzzyMappingOp}, if the image has few
+ * distinct colors with respect to its number of pixels, the fuzzy colors are
+ * evaluated once per distinct color and the degrees are scattered back to the
+ * pixels (see {@link #setDeduplicationRatio(double)}).
+ *
+ * @see jfi.image.fuzzy.PixelFuzzyMappingOp
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class ColorSpaceMappingOp {
+    /**
+     * Fuzzy color space associated to this operator.
+     */
+    private FuzzyColorSpace<Point3D> fcs;
+    /**
+     * Maximum ratio between the number of distinct colors and the number of
+     * pixels for evaluating the fuzzy colors once per distinct color.
+     */
+    private double deduplicationRatio = DistinctColors.DEFAULT_RATIO;
+    /**
+     * Number of distinct colors evaluated in each parallel task.
+     */
+    private static final int CHUNK_SIZE = 4096;
+
+    /**
+     * Constructs a new fuzzy mapping operator.
+     *
+     * @param fcs the fuzzy color space of this operator.
+     */
+    public ColorSpaceMappingOp(FuzzyColorSpace<Point3D> fcs) {
+        this.setFuzzyColorSpace(fcs);
+    }
+
+    /**
+     * Set the fuzzy color space of this mapping operator.
+     *
+     * @param fcs the new fuzzy color space.
+     * @throws NullPointerException if the fuzzy color space is null.
+     */
+    public final void setFuzzyColorSpace(FuzzyColorSpace<Point3D> fcs) {
+        if (fcs == null) {
+            throw new NullPointerException("Fuzzy color space is null");
+        }
+        this.fcs = fcs;
+    }
+
+    /**
+     * Returns the fuzzy color space of this mapping operator.
+     *
+     * @return the fuzzy color space.
+     */
+    public FuzzyColorSpace<Point3D> getFuzzyColorSpace() {
+        return fcs;
+    }
+
+    /**
+     * Performs the fuzzy mapping of the given image. The output raster has one
+     * band per fuzzy color of the space (in the same order), where the degree
+     * of each pixel is stored as a grey level (255 for a membership degree of
+     * 1.0, and 0 for 0.0).
+     *
+     * @param src the image to be filtered.
+     * @return the banded raster of membership degrees.
+     * @throws IllegalArgumentException if the fuzzy color space is empty.
+     */
+    public WritableRaster map(BufferedImage src) {
+        if (src == null) {
+            throw new NullPointerException("Source image is null");
+        }
+        if (fcs.isEmpty()) {
+            throw new IllegalArgumentException("Fuzzy color space is empty");
+        }
+        int width = src.getWidth(), height = src.getHeight(), k = fcs.size();
+        WritableRaster raster = Raster.createBandedRaster(DataBuffer.TYPE_BYTE, width, height, k, null);
+        DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+        byte bands[][] = new byte[k][];
+        for (int c = 0; c < k; c++) {
+            bands[c] = buffer.getData(c);
+        }
+        ColorSpaceEvaluator index = ColorSpaceEvaluator.of(fcs);
+        DistinctColors distinct = deduplicationRatio > 0.0 ? DistinctColors.of(src, deduplicationRatio) : null;
+        if (distinct != null) {
+            map(distinct, index, bands);
+            return raster;
+        }
+        IntStream.range(0, height).parallel().forEach(y -> {
+            int rgb[] = src.getRGB(0, y, width, 1, null, 0, width);
+            if (index != null) {
+                int indices[] = new int[k];
+                double degrees[] = new double[k];
+                for (int x = 0, i = y * width; x < width; x++, i++) {
+                    int n = index.nonZeroDegrees((rgb[x] >> 16) & 0xFF, (rgb[x] >> 8) & 0xFF, rgb[x] & 0xFF, indices, degrees);
+                    for (int c = 0; c < n; c++) {
+                        bands[indices[c]][i] = (byte) (degrees[c] * FuzzyMappingOp.MAX_LEVEL);
+                    }
+                }
+            } else {
+                double red[] = new double[width], green[] = new double[width], blue[] = new double[width];
+                double degrees[] = new double[width];
+                for (int x = 0; x < width; x++) {
+                    red[x] = (rgb[x] >> 16) & 0xFF;
+                    green[x] = (rgb[x] >> 8) & 0xFF;
+                    blue[x] = rgb[x] & 0xFF;
+                }
+                for (int c = 0; c < k; c++) {
+                    fcs.get(c).membershipDegrees(red, green, blue, degrees, width);
+                    for (int x = 0, i = y * width; x < width; x++, i++) {
+                        bands[c][i] = (byte) (degrees[x] * FuzzyMappingOp.MAX_LEVEL);
+                    }
+                }
+            }
+        });
+        return raster;
+    }
+
+    /**
+     * Calculates the membership degrees of each pixel by evaluating the fuzzy
+     * colors once per distinct color.
+     *
+     * @param distinct the distinct colors of the image.
+     * @param index the evaluator of the fuzzy color space (<tt>null</tt> if
+     * the fuzzy colors are evaluated one by one).
+     * @param bands the bands where the degrees are stored.
+     */
+    private void map(DistinctColors distinct, ColorSpaceEvaluator index, byte bands[][]) {
+        int n = distinct.size(), k = bands.length;
+        byte table[] = new byte[n * k];
+        IntStream.range(0, (n + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel().forEach(chunk -> {
+            int from = chunk * CHUNK_SIZE, length = Math.min(n, from + CHUNK_SIZE) - from;
+            double red[] = new double[length], green[] = new double[length], blue[] = new double[length];
+            distinct.components(from, from + length, red, green, blue);
+            if (index != null) {
+                int indices[] = new int[k];
+                double degrees[] = new double[k];
+                for (int j = 0; j < length; j++) {
+                    int m = index.nonZeroDegrees((int) red[j], (int) green[j], (int) blue[j], indices, degrees);
+                    for (int c = 0; c < m; c++) {
+                        table[(from + j) * k + indices[c]] = (byte) (degrees[c] * FuzzyMappingOp.MAX_LEVEL);
+                    }
+                }
+            } else {
+                double degrees[] = new double[length];
+                for (int c = 0; c < k; c++) {
+                    fcs.get(c).membershipDegrees(red, green, blue, degrees, length);
+                    for (int j = 0; j < length; j++) {
+                        table[(from + j) * k + c] = (byte) (degrees[j] * FuzzyMappingOp.MAX_LEVEL);
+                    }
+                }
+            }
+        });
+        int pixels = distinct.index.length;
+        IntStream.range(0, (pixels + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel().forEach(chunk -> {
+            int end = Math.min(pixels, (chunk + 1) * CHUNK_SIZE);
+            for (int i = chunk * CHUNK_SIZE; i < end; i++) {
+                int offset = distinct.index[i] * k;
+                for (int c = 0; c < k; c++) {
+                    if (table[offset + c] != 0) {
+                        bands[c][i] = table[offset + c];
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the maximum ratio between the number of distinct colors and the
+     * number of pixels for evaluating the fuzzy colors once per distinct
+     * color.
+     *
+     * @return the maximum ratio.
+     */
+    public double getDeduplicationRatio() {
+        return deduplicationRatio;
+    }
+
+    /**
+     * Set the maximum ratio between the number of distinct colors and the
+     * number of pixels for evaluating the fuzzy colors once per distinct color
+     * (by default, 0.25). If the image has more distinct colors, each pixel is
+     * evaluated directly. A value of 0 disables the evaluation by distinct
+     * colors, and a value of 1 forces it.
+     *
+     * @param ratio the maximum ratio, in [0,1].
+     */
+    public void setDeduplicationRatio(double ratio) {
+        if (ratio < 0.0 || ratio > 1.0) {
+            throw new IllegalArgumentException("The ratio must be between 0 and 1");
+        }
+        this.deduplicationRatio = ratio;
+    }
+
+    /**
+     * Performs the fuzzy mapping of the given image, returning a grey level
+     * image for each fuzzy color of the space (as the ones produced by
+     * {@link jfi.image.fuzzy.PixelFuzzyMappingOp}). The images share the data
+     * of the bands of {@link #map(java.awt.image.BufferedImage)}.
+     *
+     * @param src the image to be filtered.
+     * @return the images of membership degrees (one per fuzzy color).
+     */
+    public BufferedImage[] filter(BufferedImage src) {
+        WritableRaster raster = map(src);
+        DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+        int width = raster.getWidth(), height = raster.getHeight();
+        ColorModel cm = new ComponentColorModel(new GreyColorSpace(), new int[]{8},
+                false, true, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+        BufferedImage output[] = new BufferedImage[fcs.size()];
+        for (int c = 0; c < output.length; c++) {
+            DataBufferByte band = new DataBufferByte(buffer.getData(c), width * height);
+            WritableRaster wr = Raster.createInterleavedRaster(band, width, height, width, 1, new int[]{0}, null);
+            output[c] = new BufferedImage(cm, wr, false, null);
+        }
+        return output;
+    }
+}
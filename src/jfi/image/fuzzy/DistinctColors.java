@@ -0,0 +1,209 @@
+package jfi.image.fuzzy;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
+
+/**
+ * Class representing the distinct colors of an image, used for evaluating the
+ * fuzzy colors once per distinct color (instead of once per pixel) in the
+ * mapping operators. The distinct packed RGB values are collected in one pass
+ * by means of a primitive open-addressing hash table, storing for each pixel
+ * the position of its color in the list of distinct colors. The pass (and the
+ * allocation of the index of the pixels) is only performed if the image is
+ * expected to have few distinct colors.
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+class DistinctColors {
+    /**
+     * Default maximum ratio between the number of distinct colors and the
+     * number of pixels for using the distinct colors in the mapping.
+     */
+    static final double DEFAULT_RATIO = 0.25;
+    /**
+     * Empty slot of the hash table (not a valid packed RGB value).
+     */
+    private static final int EMPTY = -1;
+    /**
+     * Maximum number of pixels of the sample used for estimating the ratio of
+     * distinct colors.
+     */
+    private static final int SAMPLE_SIZE = 1 << 16;
+    /**
+     * The distinct packed RGB values (<tt>0xRRGGBB</tt>).
+     */
+    final int colors[];
+    /**
+     * For each pixel (in row-major order), the position of its color in the
+     * list of distinct colors.
+     */
+    final int index[];
+
+    /**
+     * Constructs a new set of distinct colors.
+     */
+    private DistinctColors(int colors[], int index[]) {
+        this.colors = colors;
+        this.index = index;
+    }
+
+    /**
+     * Collects the distinct colors of the given image, if there are not more
+     * than the given ratio of the number of pixels (in other case, the direct
+     * evaluation of the pixels is expected to be faster).
+     *
+     * <p>
+     * Before allocating the index of the pixels, it is decided whether the
+     * ratio is expected to be satisfied. For images with a color palette, the
+     * size of the palette is checked. For the others, the distinct colors of
+     * a sample of rows (evenly spaced, with up to {@link #SAMPLE_SIZE} pixels)
+     * are counted; since the ratio of distinct colors of a sample is not
+     * expected to be lower than the one of the whole image, the image is
+     * discarded if the sample exceeds the ratio. In any case, the collection
+     * is stopped (returning <tt>null</tt>) as soon as the number of distinct
+     * colors exceeds the ratio.
+     *
+     * @param src the image.
+     * @param maxRatio the maximum ratio between the number of distinct colors
+     * and the number of pixels.
+     * @return the distinct colors, or <tt>null</tt> if there are too many.
+     */
+    static DistinctColors of(BufferedImage src, double maxRatio) {
+        int width = src.getWidth(), height = src.getHeight();
+        long pixels = (long) width * height;
+        if (pixels > Integer.MAX_VALUE) {
+            return null;
+        }
+        int maxColors = (int) Math.min(1 << 24, (long) (maxRatio * pixels));
+        if (maxColors < 1) {
+            return null;
+        }
+        int rgb[] = new int[width];
+        ColorModel cm = src.getColorModel();
+        boolean palette = cm instanceof IndexColorModel && ((IndexColorModel) cm).getMapSize() <= maxColors;
+        if (!palette && pixels > SAMPLE_SIZE) {
+            ColorTable sample = new ColorTable();
+            int rows = Math.max(1, Math.min(height, SAMPLE_SIZE / width));
+            for (int j = 0; j < rows; j++) {
+                src.getRGB(0, (int) ((long) j * height / rows), width, 1, rgb, 0, width);
+                for (int x = 0; x < width; x++) {
+                    sample.add(rgb[x] & 0xFFFFFF);
+                }
+            }
+            if (sample.size > maxRatio * rows * width) {
+                return null;
+            }
+        }
+        ColorTable table = new ColorTable();
+        int index[] = new int[(int) pixels];
+        for (int y = 0, i = 0; y < height; y++) {
+            src.getRGB(0, y, width, 1, rgb, 0, width);
+            for (int x = 0; x < width; x++, i++) {
+                index[i] = table.add(rgb[x] & 0xFFFFFF);
+                if (table.size > maxColors) {
+                    return null;
+                }
+            }
+        }
+        return new DistinctColors(Arrays.copyOf(table.colors, table.size), index);
+    }
+
+    /**
+     * Primitive open-addressing hash table of packed RGB values, storing the
+     * position of each color in the order they were added. It is kept at most
+     * half full (doubling its capacity when needed), and linear probing is
+     * used.
+     */
+    private static class ColorTable {
+        /**
+         * Slots of the hash table (colors and positions).
+         */
+        int keys[] = new int[1024], values[] = new int[1024];
+        /**
+         * Colors in the order they were added.
+         */
+        int colors[] = new int[512];
+        /**
+         * Number of colors.
+         */
+        int size = 0;
+
+        /**
+         * Constructs a new empty table.
+         */
+        ColorTable() {
+            Arrays.fill(keys, EMPTY);
+        }
+
+        /**
+         * Adds the given color (if it is not in the table).
+         *
+         * @param color the packed RGB value.
+         * @return the position of the color.
+         */
+        int add(int color) {
+            int slot = find(color);
+            if (keys[slot] != EMPTY) {
+                return values[slot];
+            }
+            if (size == colors.length) {
+                colors = Arrays.copyOf(colors, 2 * size);
+                keys = new int[2 * keys.length];
+                values = new int[keys.length];
+                Arrays.fill(keys, EMPTY);
+                for (int j = 0; j < size; j++) {
+                    int s = find(colors[j]);
+                    keys[s] = colors[j];
+                    values[s] = j;
+                }
+                slot = find(color);
+            }
+            keys[slot] = color;
+            values[slot] = size;
+            colors[size] = color;
+            return size++;
+        }
+
+        /**
+         * Returns the slot containing the given color, or the empty slot where
+         * it should be inserted.
+         */
+        private int find(int color) {
+            int mask = keys.length - 1;
+            int slot = (color * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(keys.length));
+            while (keys[slot] != color && keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * Returns the number of distinct colors.
+     *
+     * @return the number of distinct colors.
+     */
+    int size() {
+        return colors.length;
+    }
+
+    /**
+     * Copies the RGB components of the distinct colors in the given range
+     * into the given arrays.
+     *
+     * @param from the position of the first color.
+     * @param to the position after the last color.
+     * @param red the array for the red components.
+     * @param green the array for the green components.
+     * @param blue the array for the blue components.
+     */
+    void components(int from, int to, double red[], double green[], double blue[]) {
+        for (int i = from, j = 0; i < to; i++, j++) {
+            red[j] = (colors[i] >> 16) & 0xFF;
+            green[j] = (colors[i] >> 8) & 0xFF;
+            blue[j] = colors[i] & 0xFF;
+        }
+    }
+}
@@ -58,7 +58,7 @@ public class FuzzyMappingOp<T> extends BufferedImageOpAdapter{
     /**
      * The maximum grey level value.
      */
-    static final private int MAX_LEVEL = 255;
+    static final int MAX_LEVEL = 255;
     
     /**
      * Constructs a new fuzzy mapping operator.
@@ -167,15 +167,7 @@ public class FuzzyMappingOp<T> extends BufferedImageOpAdapter{
         WritableRaster destRaster = originalColors?dest.getAlphaRaster():dest.getRaster();
         // The fuzzy filtering is applied pixel by pixel using the iterator
         try {
-            double degree;
-            T item;
-            iterator.setImage(src);
-            while (iterator.hasNext()) {
-                item = (T) iterator.next();
-                degree = fuzzyset.membershipDegree(item);
-                destRaster.setSample(iterator.getX(), iterator.getY(), 0, 
-                                    (byte)(degree * MAX_LEVEL));
-            }
+            map(src, destRaster);
         } catch (Exception ex) {
             System.err.println("Error in fuzzy filtering: "+ex);
         }
@@ -186,6 +178,27 @@ public class FuzzyMappingOp<T> extends BufferedImageOpAdapter{
         return dest;
     }
     
+    /**
+     * Calculates the membership degree of each pixel of the source image and
+     * stores it in the given raster. The pixels are visited by means of the
+     * iterator of this operator. Subclasses may override this method in order
+     * to provide a more efficient mapping.
+     *
+     * @param src the image to be filtered.
+     * @param destRaster the raster where the degrees are stored.
+     */
+    protected void map(BufferedImage src, WritableRaster destRaster) {
+        double degree;
+        T item;
+        iterator.setImage(src);
+        while (iterator.hasNext()) {
+            item = (T) iterator.next();
+            degree = fuzzyset.membershipDegree(item);
+            destRaster.setSample(iterator.getX(), iterator.getY(), 0,
+                                (byte)(degree * MAX_LEVEL));
+        }
+    }
+    
     /**
      * Creates a a destination image with the same size of the source one. By
      * default, a zeroed grey level image is created.
@@ -1,5 +1,8 @@
 package jfi.image.fuzzy;
 
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.stream.IntStream;
 import jfi.fuzzy.FuzzySet;
 import jfi.geometry.Point3D;
 import jfi.image.BufferedImageIterator;
@@ -8,11 +11,29 @@ import jfi.image.BufferedImageIterator;
  * Class representing a fuzzy filtering on an image where the domain of the 
  * fuzzy set is a three-dimensional point. 
  * 
+ * <p>
+ * If the image has few distinct colors with respect to its number of pixels
+ * (as graphics, masks or compressed photos), the fuzzy set is evaluated once
+ * per distinct color (in parallel), and the degrees are scattered back to the
+ * pixels. The distinct colors are collected in a first pass over the image;
+ * if there are more than a given ratio of the number of pixels (see
+ * {@link #setDeduplicationRatio(double)}), each pixel is evaluated directly.
+ * 
  * @see jfi.image.fuzzy.FuzzyMappingOp
  *
  * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
  */
 public class PixelFuzzyMappingOp extends FuzzyMappingOp<Point3D>{
+    /**
+     * Maximum ratio between the number of distinct colors and the number of
+     * pixels for evaluating the fuzzy set once per distinct color.
+     */
+    private double deduplicationRatio = DistinctColors.DEFAULT_RATIO;
+    /**
+     * Number of distinct colors evaluated in each parallel task.
+     */
+    private static final int CHUNK_SIZE = 4096;
+    
     /**
      * Constructs a new fuzzy mapping operator.
      * 
@@ -21,4 +42,95 @@ public class PixelFuzzyMappingOp extends FuzzyMappingOp<Point3D>{
     public PixelFuzzyMappingOp(FuzzySet<Point3D> fuzzyset){
         super(fuzzyset, new BufferedImageIterator.Pixel(null));
     }
+    
+    /**
+     * Calculates the membership degree of each pixel of the source image. The
+     * pixels are processed by rows, using the batch evaluation of the fuzzy
+     * set (see
+     * {@link jfi.fuzzy.FuzzySet#membershipDegrees(double[], double[], double[], double[], int)}).
+     *
+     * @param src the image to be filtered.
+     * @param destRaster the raster where the degrees are stored.
+     */
+    @Override
+    protected void map(BufferedImage src, WritableRaster destRaster) {
+        DistinctColors distinct = deduplicationRatio > 0.0 ? DistinctColors.of(src, deduplicationRatio) : null;
+        if (distinct != null) {
+            map(src, destRaster, distinct);
+            return;
+        }
+        int width = src.getWidth(), height = src.getHeight();
+        int rgb[] = new int[width], levels[] = new int[width];
+        double red[] = new double[width], green[] = new double[width], blue[] = new double[width];
+        double degrees[] = new double[width];
+        for (int y = 0; y < height; y++) {
+            src.getRGB(0, y, width, 1, rgb, 0, width);
+            for (int x = 0; x < width; x++) {
+                red[x] = (rgb[x] >> 16) & 0xFF;
+                green[x] = (rgb[x] >> 8) & 0xFF;
+                blue[x] = rgb[x] & 0xFF;
+            }
+            fuzzyset.membershipDegrees(red, green, blue, degrees, width);
+            for (int x = 0; x < width; x++) {
+                levels[x] = (byte) (degrees[x] * MAX_LEVEL);
+            }
+            destRaster.setSamples(0, y, width, 1, 0, levels);
+        }
+    }
+    
+    /**
+     * Calculates the membership degree of each pixel of the source image by
+     * evaluating the fuzzy set once per distinct color.
+     *
+     * @param src the image to be filtered.
+     * @param destRaster the raster where the degrees are stored.
+     * @param distinct the distinct colors of the image.
+     */
+    private void map(BufferedImage src, WritableRaster destRaster, DistinctColors distinct) {
+        int width = src.getWidth(), height = src.getHeight(), n = distinct.size();
+        byte levels[] = new byte[n];
+        IntStream.range(0, (n + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel().forEach(chunk -> {
+            int from = chunk * CHUNK_SIZE, length = Math.min(n, from + CHUNK_SIZE) - from;
+            double red[] = new double[length], green[] = new double[length], blue[] = new double[length];
+            double degrees[] = new double[length];
+            distinct.components(from, from + length, red, green, blue);
+            fuzzyset.membershipDegrees(red, green, blue, degrees, length);
+            for (int j = 0; j < length; j++) {
+                levels[from + j] = (byte) (degrees[j] * MAX_LEVEL);
+            }
+        });
+        int row[] = new int[width];
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                row[x] = levels[distinct.index[i]];
+            }
+            destRaster.setSamples(0, y, width, 1, 0, row);
+        }
+    }
+    
+    /**
+     * Returns the maximum ratio between the number of distinct colors and the
+     * number of pixels for evaluating the fuzzy set once per distinct color.
+     *
+     * @return the maximum ratio.
+     */
+    public double getDeduplicationRatio() {
+        return deduplicationRatio;
+    }
+    
+    /**
+     * Set the maximum ratio between the number of distinct colors and the
+     * number of pixels for evaluating the fuzzy set once per distinct color
+     * (by default, 0.25). If the image has more distinct colors, each pixel is
+     * evaluated directly. A value of 0 disables the evaluation by distinct
+     * colors, and a value of 1 forces it.
+     *
+     * @param ratio the maximum ratio, in [0,1].
+     */
+    public void setDeduplicationRatio(double ratio) {
+        if (ratio < 0.0 || ratio > 1.0) {
+            throw new IllegalArgumentException("The ratio must be between 0 and 1");
+        }
+        this.deduplicationRatio = ratio;
+    }
 }
@@ -0,0 +1,274 @@
+package jfi.image.fuzzy;
+
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.stream.IntStream;
+import jfi.color.GreyColorSpace;
+import jfi.image.GreyPlane;
+import jfi.texture.MeasureCache;
+import jfi.texture.TextureMeasure;
+import jfi.texture.fuzzy.FuzzyTexture;
+import jfi.texture.fuzzy.FuzzyTextureSpace;
+import jfi.texture.fuzzy.TextureMembershipFunction;
+
+/**
+ * Class representing a fuzzy filtering on an image on the basis of all the
+ * fuzzy textures of a fuzzy texture space. For each pixel of the source image,
+ * the membership degree of the window centered on that pixel to each fuzzy
+ * texture is calculated, so the output has one band per fuzzy texture.
+ *
+ * <p>
+ * Unlike applying a {@link jfi.image.fuzzy.TiledFuzzyMappingOp} for each fuzzy
+ * texture, the grey plane of the source image is calculated once, each texture
+ * measure is calculated once for each window (even if it is used by several
+ * fuzzy textures), and all the membership functions are evaluated in a single
+ * parallel sweep over the windows.
+ *
+ * @see jfi.image.fuzzy.TiledFuzzyMappingOp
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class TextureSpaceMappingOp {
+    /**
+     * Fuzzy texture space associated to this operator.
+     */
+    private FuzzyTextureSpace space;
+    /**
+     * Size of the tile (window) in pixels.
+     */
+    private int tileWidth, tileHeight;
+    /**
+     * Cache of texture measure values (if not available, a new one is used in
+     * each mapping).
+     */
+    private MeasureCache cache = null;
+
+    /**
+     * Constructs a new fuzzy mapping operator.
+     *
+     * @param space the fuzzy texture space of this operator.
+     * @param tileWidth the width of the tile in pixels.
+     * @param tileHeight the height of the tile in pixels.
+     */
+    public TextureSpaceMappingOp(FuzzyTextureSpace space, int tileWidth, int tileHeight) {
+        this.setFuzzyTextureSpace(space);
+        this.setTileSize(tileWidth, tileHeight);
+    }
+
+    /**
+     * Set the fuzzy texture space of this mapping operator.
+     *
+     * @param space the new fuzzy texture space.
+     * @throws NullPointerException if the fuzzy texture space is null.
+     */
+    public final void setFuzzyTextureSpace(FuzzyTextureSpace space) {
+        if (space == null) {
+            throw new NullPointerException("Fuzzy texture space is null");
+        }
+        this.space = space;
+    }
+
+    /**
+     * Returns the fuzzy texture space of this mapping operator.
+     *
+     * @return the fuzzy texture space.
+     */
+    public FuzzyTextureSpace getFuzzyTextureSpace() {
+        return space;
+    }
+
+    /**
+     * Set the size of the tile.
+     *
+     * @param tileWidth the width of the tile in pixels. It must be a value
+     * greater than 1 (if not, it is set automatically to 1).
+     * @param tileHeight the height of the tile in pixels. It must be a value
+     * greater than 1 (if not, it is set automatically to 1).
+     */
+    public final void setTileSize(int tileWidth, int tileHeight) {
+        this.tileWidth = Math.max(1, tileWidth);
+        this.tileHeight = Math.max(1, tileHeight);
+    }
+
+    /**
+     * Returns the width of the tile in pixels.
+     *
+     * @return the width of the tile.
+     */
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    /**
+     * Returns the height of the tile in pixels.
+     *
+     * @return the height of the tile.
+     */
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    /**
+     * Sets the cache of texture measure values. If the same cache is used by
+     * other operators applied on the same image, the grey plane and the
+     * values of the shared measures are calculated only once.
+     *
+     * @param cache the cache of measure values ({@code null} for using a new
+     * one in each mapping).
+     */
+    public void setMeasureCache(MeasureCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the cache of texture measure values.
+     *
+     * @return the cache of measure values ({@code null} if it is not set).
+     */
+    public MeasureCache getMeasureCache() {
+        return cache;
+    }
+
+    /**
+     * Calculates the membership degrees of every window of the tile size in
+     * the given plane to each fuzzy texture of the space. The position
+     * <tt>y*(width-tileWidth+1)+x</tt> of the <tt>k</tt>-th dense map stores
+     * the degree of the window whose top-left pixel is <tt>(x,y)</tt> to the
+     * <tt>k</tt>-th fuzzy texture.
+     *
+     * @param plane the grey plane.
+     * @return the dense maps of membership degrees (one per fuzzy texture).
+     */
+    public double[][] membershipDegrees(GreyPlane plane) {
+        int mapWidth = Math.max(0, plane.getWidth() - tileWidth + 1);
+        int mapHeight = Math.max(0, plane.getHeight() - tileHeight + 1);
+        double degrees[][] = new double[space.size()][mapWidth * mapHeight];
+        sweep(plane, mapWidth, mapHeight, (k, x, y, degree) -> degrees[k][y * mapWidth + x] = degree);
+        return degrees;
+    }
+
+    /**
+     * Performs the fuzzy mapping of the given image. The output raster has one
+     * band per fuzzy texture of the space (in the same order), where the
+     * degree of each pixel is stored as a grey level (255 for a membership
+     * degree of 1.0, and 0 for 0.0). The pixels in the border (where the
+     * window centered on them is not inside the image) are zeroed.
+     *
+     * @param src the image to be filtered.
+     * @return the banded raster of membership degrees.
+     */
+    public WritableRaster map(BufferedImage src) {
+        if (src == null) {
+            throw new NullPointerException("Source image is null");
+        }
+        int width = src.getWidth(), height = src.getHeight();
+        WritableRaster raster = Raster.createBandedRaster(DataBuffer.TYPE_BYTE, width, height, space.size(), null);
+        DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+        byte bands[][] = new byte[space.size()][];
+        for (int k = 0; k < bands.length; k++) {
+            bands[k] = buffer.getData(k);
+        }
+        GreyPlane plane = cache != null ? cache.plane(src) : GreyPlane.of(src);
+        int mapWidth = Math.max(0, width - tileWidth + 1);
+        int mapHeight = Math.max(0, height - tileHeight + 1);
+        // The degree of each window is stored in the pixel at its center
+        int dx = tileWidth / 2, dy = tileHeight / 2;
+        sweep(plane, mapWidth, mapHeight, (k, x, y, degree)
+                -> bands[k][(y + dy) * width + x + dx] = (byte) (degree * FuzzyMappingOp.MAX_LEVEL));
+        return raster;
+    }
+
+    /**
+     * Performs the fuzzy mapping of the given image, returning a grey level
+     * image for each fuzzy texture of the space (as the ones produced by
+     * {@link jfi.image.fuzzy.TiledFuzzyMappingOp}). The images share the data
+     * of the bands of {@link #map(java.awt.image.BufferedImage)}.
+     *
+     * @param src the image to be filtered.
+     * @return the images of membership degrees (one per fuzzy texture).
+     */
+    public BufferedImage[] filter(BufferedImage src) {
+        WritableRaster raster = map(src);
+        DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+        int width = raster.getWidth(), height = raster.getHeight();
+        ColorModel cm = new ComponentColorModel(new GreyColorSpace(), new int[]{8},
+                false, true, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+        BufferedImage output[] = new BufferedImage[space.size()];
+        for (int k = 0; k < output.length; k++) {
+            DataBufferByte band = new DataBufferByte(buffer.getData(k), width * height);
+            WritableRaster wr = Raster.createInterleavedRaster(band, width, height, width, 1, new int[]{0}, null);
+            output[k] = new BufferedImage(cm, wr, false, null);
+        }
+        return output;
+    }
+
+    /**
+     * Calculates the membership degrees of every window to each fuzzy texture
+     * and passes them to the given consumer. The dense maps of the measures
+     * (each one calculated once) are obtained first; then, the membership
+     * functions are evaluated in parallel (by rows of windows), applying each
+     * one to a whole row of measure values.
+     *
+     * @param plane the grey plane.
+     * @param mapWidth the number of windows in each row.
+     * @param mapHeight the number of rows of windows.
+     * @param consumer the consumer of the degrees.
+     */
+    private void sweep(GreyPlane plane, int mapWidth, int mapHeight, DegreeConsumer consumer) {
+        if (mapWidth == 0 || mapHeight == 0) {
+            return;
+        }
+        MeasureCache measures = cache != null ? cache : new MeasureCache();
+        int n = space.size();
+        TextureMembershipFunction functions[] = new TextureMembershipFunction[n];
+        double maps1[][] = new double[n][], maps2[][] = new double[n][], degrees[][] = new double[n][];
+        for (int k = 0; k < n; k++) {
+            FuzzyTexture ft = space.get(k);
+            if (ft.getMembershipFunction() instanceof TextureMembershipFunction) {
+                functions[k] = (TextureMembershipFunction) ft.getMembershipFunction();
+                TextureMeasure m[] = functions[k].getMeasures();
+                maps1[k] = measures.applyDense(m[0], plane, tileWidth, tileHeight);
+                maps2[k] = m.length > 1 ? measures.applyDense(m[1], plane, tileWidth, tileHeight) : null;
+            } else {
+                degrees[k] = ft.membershipDegrees(plane, tileWidth, tileHeight, null, measures);
+            }
+        }
+        IntStream.range(0, mapHeight).parallel().forEach(y -> {
+            // The membership functions are evaluated on each row of the
+            // measure maps at once (batch evaluation of the polynomials)
+            double row1[] = new double[mapWidth], row2[] = new double[mapWidth];
+            double rowDegrees[][] = new double[n][];
+            int offset = y * mapWidth;
+            for (int k = 0; k < n; k++) {
+                if (functions[k] == null) {
+                    continue;
+                }
+                System.arraycopy(maps1[k], offset, row1, 0, mapWidth);
+                if (maps2[k] != null) {
+                    System.arraycopy(maps2[k], offset, row2, 0, mapWidth);
+                }
+                rowDegrees[k] = functions[k].apply(row1, maps2[k] != null ? row2 : null, null, mapWidth);
+            }
+            for (int x = 0; x < mapWidth; x++) {
+                for (int k = 0; k < n; k++) {
+                    double degree = functions[k] == null ? degrees[k][offset + x] : rowDegrees[k][x];
+                    consumer.accept(k, x, y, degree);
+                }
+            }
+        });
+    }
+
+    /**
+     * Consumer of the membership degree of a window to a fuzzy texture.
+     */
+    @FunctionalInterface
+    private interface DegreeConsumer {
+        void accept(int texture, int x, int y, double degree);
+    }
+}
@@ -1,8 +1,12 @@
 package jfi.image.fuzzy;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
 import jfi.fuzzy.FuzzySet;
 import jfi.image.BufferedImageIterator;
+import jfi.image.GreyPlane;
+import jfi.texture.MeasureCache;
+import jfi.texture.fuzzy.FuzzyTexture;
 
 /**
  * Class representing a fuzzy filtering on an image where the domain of the
@@ -14,11 +18,22 @@ import jfi.image.BufferedImageIterator;
  * each pixel of the source image, the membership of the subimage (window)
  * centered on that pixel is calculated and stored as result. 
  * 
+ * <p>
+ * If the fuzzy set is a {@link jfi.texture.fuzzy.FuzzyTexture}, the grey
+ * levels of the source image are calculated only once, and the texture
+ * measures are applied on that grey plane by means of their dense
+ * algorithms (instead of converting each subimage).
+ * 
  * @see jfi.image.fuzzy.FuzzyMappingOp
  *
  * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
  */
 public class TiledFuzzyMappingOp extends FuzzyMappingOp<BufferedImage>{    
+    /**
+     * Cache of texture measure values (only used with fuzzy textures).
+     */
+    private MeasureCache cache = null;
+    
     /**
      * Constructs a new fuzzy mapping operator with a tile size of 1x1.
      * 
@@ -53,6 +68,62 @@ public class TiledFuzzyMappingOp extends FuzzyMappingOp<BufferedImage>{
                 setTileSize(Math.max(1,tileWidth),Math.max(1,tileHeight));
     } 
     
+    /**
+     * Calculates the membership degree of each pixel of the source image. In
+     * the case of fuzzy textures, the grey plane of the source image is
+     * calculated once, and the degrees of all the tiles are obtained as a
+     * dense map (so the texture measures can use their own algorithms for
+     * calculating all the windows at once).
+     *
+     * @param src the image to be filtered.
+     * @param destRaster the raster where the degrees are stored.
+     */
+    @Override
+    protected void map(BufferedImage src, WritableRaster destRaster) {
+        if (!(fuzzyset instanceof FuzzyTexture)) {
+            super.map(src, destRaster);
+            return;
+        }
+        FuzzyTexture ftexture = (FuzzyTexture) fuzzyset;
+        BufferedImageIterator.Tile tiles = (BufferedImageIterator.Tile) iterator;
+        GreyPlane plane = cache != null ? cache.plane(src) : GreyPlane.of(src);
+        int width = tiles.getTileWidth(), height = tiles.getTileHeight();
+        if (width > plane.getWidth() || height > plane.getHeight()) {
+            super.map(src, destRaster);
+            return;
+        }
+        // Dense map of degrees, indexed by the top-left pixel of each tile
+        double degrees[] = ftexture.membershipDegrees(plane, width, height, null, cache);
+        int mapWidth = plane.getWidth() - width + 1;
+        tiles.setImage(src);
+        while (tiles.hasNext()) {
+            tiles.skip();
+            double degree = degrees[tiles.getTileY() * mapWidth + tiles.getTileX()];
+            destRaster.setSample(tiles.getX(), tiles.getY(), 0, (byte) (degree * MAX_LEVEL));
+        }
+    }
+    
+    /**
+     * Sets the cache of texture measure values used with fuzzy textures. If
+     * the same cache is set in several operators applied on the same image,
+     * the grey plane and the values of the measures shared by their fuzzy
+     * textures are calculated only once.
+     *
+     * @param cache the cache of measure values ({@code null} for no cache).
+     */
+    public void setMeasureCache(MeasureCache cache) {
+        this.cache = cache;
+    }
+    
+    /**
+     * Returns the cache of texture measure values used with fuzzy textures.
+     *
+     * @return the cache of measure values ({@code null} if there is no cache).
+     */
+    public MeasureCache getMeasureCache() {
+        return cache;
+    }
+    
     /**
      * Returns the width of the tile in pixels.
      * 
@@ -0,0 +1,140 @@
+package jfi.region;
+
+import java.awt.Color;
+import jfi.geometry.Point3D;
+
+/**
+ * Class representing the descriptor of a superpixel, that is, a small compact
+ * region of an image with homogeneous color. It stores the aggregated color
+ * and texture information of the superpixel pixels.
+ *
+ * @see jfi.region.SuperpixelOp
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class Superpixel {
+    /**
+     * The label (index) of this superpixel.
+     */
+    private final int label;
+    /**
+     * Number of pixels of this superpixel.
+     */
+    private final int size;
+    /**
+     * Centroid of this superpixel.
+     */
+    private final double centroidX, centroidY;
+    /**
+     * Mean RGB color of this superpixel.
+     */
+    private final Point3D mean;
+    /**
+     * Standard deviation of each RGB component.
+     */
+    private final Point3D deviation;
+
+    /**
+     * Constructs a new superpixel descriptor.
+     *
+     * @param label the label (index) of the superpixel.
+     * @param size the number of pixels.
+     * @param centroidX the x-coordinate of the centroid.
+     * @param centroidY the y-coordinate of the centroid.
+     * @param mean the mean RGB color.
+     * @param deviation the standard deviation of each RGB component.
+     */
+    public Superpixel(int label, int size, double centroidX, double centroidY, Point3D mean, Point3D deviation) {
+        this.label = label;
+        this.size = size;
+        this.centroidX = centroidX;
+        this.centroidY = centroidY;
+        this.mean = mean;
+        this.deviation = deviation;
+    }
+
+    /**
+     * Returns the label (index) of this superpixel.
+     *
+     * @return the label of this superpixel.
+     */
+    public int getLabel() {
+        return label;
+    }
+
+    /**
+     * Returns the number of pixels of this superpixel.
+     *
+     * @return the number of pixels.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the x-coordinate of the centroid of this superpixel.
+     *
+     * @return the x-coordinate of the centroid.
+     */
+    public double getCentroidX() {
+        return centroidX;
+    }
+
+    /**
+     * Returns the y-coordinate of the centroid of this superpixel.
+     *
+     * @return the y-coordinate of the centroid.
+     */
+    public double getCentroidY() {
+        return centroidY;
+    }
+
+    /**
+     * Returns the mean RGB color of this superpixel as a three-dimensional
+     * point.
+     *
+     * @return the mean color.
+     */
+    public Point3D getMean() {
+        return mean;
+    }
+
+    /**
+     * Returns the mean RGB color of this superpixel.
+     *
+     * @return the mean color.
+     */
+    public Color getColor() {
+        return new Color((int) Math.round(mean.x), (int) Math.round(mean.y), (int) Math.round(mean.z));
+    }
+
+    /**
+     * Returns the standard deviation of each RGB component of this
+     * superpixel, as a three-dimensional point.
+     *
+     * @return the standard deviation of each component.
+     */
+    public Point3D getDeviation() {
+        return deviation;
+    }
+
+    /**
+     * Returns a texture descriptor of this superpixel, defined as the mean of
+     * the standard deviations of the three RGB components.
+     *
+     * @return the texture descriptor.
+     */
+    public double getTexture() {
+        return (deviation.x + deviation.y + deviation.z) / 3.0;
+    }
+
+    /**
+     * Returns a string representation of this object.
+     *
+     * @return a string representation of this object.
+     */
+    @Override
+    public String toString() {
+        return "Superpixel " + label + " [" + size + " pixels, mean=" + mean + "]";
+    }
+}
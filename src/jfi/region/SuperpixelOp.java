@@ -0,0 +1,351 @@
+package jfi.region;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import jfi.geometry.Point3D;
+
+/**
+ * Class implementing a superpixel segmentation operator based on the SLIC
+ * (Simple Linear Iterative Clustering) approach.
+ *
+ * <p>
+ * The image is initially divided into a regular grid of cells of size
+ * {@link #getSuperpixelSize()}; a cluster center is placed in each cell (moved
+ * to the lowest gradient position in its 3x3 neighborhood). Then, the
+ * following steps are iterated:
+ * <ul>
+ * <li>Assignment: each pixel is assigned to the nearest center among the ones
+ * of its cell and its eight neighbour cells. The distance combines the RGB
+ * distance and the spatial distance weighted by the compactness
+ * parameter.</li>
+ * <li>Update: each center is moved to the mean color and position of its
+ * pixels.</li>
+ * </ul>
+ * Both steps are calculated in parallel. Finally, the connectivity of the
+ * superpixels is enforced, merging the small disconnected fragments into an
+ * adjacent superpixel.
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class SuperpixelOp {
+    /**
+     * Nominal size (in pixels) of the superpixels side.
+     */
+    private int superpixelSize;
+    /**
+     * Compactness parameter (weight of the spatial distance).
+     */
+    private double compactness = DEFAULT_COMPACTNESS;
+    /**
+     * Number of iterations.
+     */
+    private int iterations = DEFAULT_ITERATIONS;
+    /**
+     * Default superpixel size.
+     */
+    public static final int DEFAULT_SUPERPIXEL_SIZE = 16;
+    /**
+     * Default compactness.
+     */
+    public static final double DEFAULT_COMPACTNESS = 20.0;
+    /**
+     * Default number of iterations.
+     */
+    public static final int DEFAULT_ITERATIONS = 10;
+
+    /**
+     * Constructs a new superpixel operator.
+     *
+     * @param superpixelSize the nominal size (in pixels) of the superpixels
+     * side. It must be a value greater than 1 (if not, it is set automatically
+     * to 1).
+     */
+    public SuperpixelOp(int superpixelSize) {
+        this.setSuperpixelSize(superpixelSize);
+    }
+
+    /**
+     * Constructs a new superpixel operator using the default parameters.
+     */
+    public SuperpixelOp() {
+        this(DEFAULT_SUPERPIXEL_SIZE);
+    }
+
+    /**
+     * Apply this operator to the given image.
+     *
+     * @param image the image to be segmented.
+     * @return the superpixel segmentation.
+     */
+    public SuperpixelSegmentation apply(BufferedImage image) {
+        int width = image.getWidth(), height = image.getHeight();
+        int rgb[] = image.getRGB(0, 0, width, height, null, 0, width);
+        //Grid of cluster centers
+        int gridX = Math.max(1, Math.round((float) width / superpixelSize));
+        int gridY = Math.max(1, Math.round((float) height / superpixelSize));
+        double stepX = (double) width / gridX, stepY = (double) height / gridY;
+        int k = gridX * gridY;
+        //Centers: r, g, b, x, y (5 values per center)
+        double centers[] = new double[5 * k];
+        for (int cy = 0; cy < gridY; cy++) {
+            for (int cx = 0; cx < gridX; cx++) {
+                initCenter(rgb, width, height, (int) ((cx + 0.5) * stepX),
+                        (int) ((cy + 0.5) * stepY), centers, 5 * (cy * gridX + cx));
+            }
+        }
+        double spatialWeight = compactness * compactness / (stepX * stepY);
+        int labels[] = new int[width * height];
+        int bands = Math.min(height, Runtime.getRuntime().availableProcessors());
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            //Assignment step (parallel by rows)
+            final double c[] = centers;
+            IntStream.range(0, height).parallel().forEach(y -> {
+                int cellY = Math.min(gridY - 1, (int) (y / stepY));
+                for (int x = 0, i = y * width; x < width; x++, i++) {
+                    int cellX = Math.min(gridX - 1, (int) (x / stepX));
+                    int r = (rgb[i] >> 16) & 0xFF, g = (rgb[i] >> 8) & 0xFF, b = rgb[i] & 0xFF;
+                    double best = Double.MAX_VALUE;
+                    int bestLabel = 0;
+                    for (int ny = Math.max(0, cellY - 1); ny <= Math.min(gridY - 1, cellY + 1); ny++) {
+                        for (int nx = Math.max(0, cellX - 1); nx <= Math.min(gridX - 1, cellX + 1); nx++) {
+                            int label = ny * gridX + nx, o = 5 * label;
+                            double dr = r - c[o], dg = g - c[o + 1], db = b - c[o + 2];
+                            double dx = x - c[o + 3], dy = y - c[o + 4];
+                            double d = dr * dr + dg * dg + db * db + spatialWeight * (dx * dx + dy * dy);
+                            if (d < best) {
+                                best = d;
+                                bestLabel = label;
+                            }
+                        }
+                    }
+                    labels[i] = bestLabel;
+                }
+            });
+            //Update step (parallel partial sums by bands of rows)
+            double sums[] = accumulate(rgb, labels, width, height, k, bands, false);
+            for (int label = 0; label < k; label++) {
+                double count = sums[6 * label + 5];
+                if (count > 0) {
+                    for (int j = 0; j < 5; j++) {
+                        centers[5 * label + j] = sums[6 * label + j] / count;
+                    }
+                }
+            }
+        }
+        //Connectivity enforcement
+        int minSize = (int) (stepX * stepY / 4);
+        int numLabels = enforceConnectivity(labels, width, height, minSize);
+        //Superpixel descriptors
+        double sums[] = accumulate(rgb, labels, width, height, numLabels, bands, true);
+        List<Superpixel> superpixels = new ArrayList(numLabels);
+        for (int label = 0; label < numLabels; label++) {
+            int o = 9 * label;
+            double count = Math.max(1, sums[o + 5]);
+            Point3D mean = new Point3D(sums[o] / count, sums[o + 1] / count, sums[o + 2] / count);
+            Point3D deviation = new Point3D(
+                    Math.sqrt(Math.max(0, sums[o + 6] / count - mean.x * mean.x)),
+                    Math.sqrt(Math.max(0, sums[o + 7] / count - mean.y * mean.y)),
+                    Math.sqrt(Math.max(0, sums[o + 8] / count - mean.z * mean.z)));
+            superpixels.add(new Superpixel(label, (int) sums[o + 5], sums[o + 3] / count,
+                    sums[o + 4] / count, mean, deviation));
+        }
+        return new SuperpixelSegmentation(width, height, labels, superpixels);
+    }
+
+    /**
+     * Initializes a cluster center at the lowest gradient position in the 3x3
+     * neighborhood of the given location.
+     */
+    private static void initCenter(int rgb[], int width, int height, int x, int y, double centers[], int offset) {
+        double best = Double.MAX_VALUE;
+        int bx = x, by = y;
+        for (int ny = Math.max(1, y - 1); ny <= Math.min(height - 2, y + 1); ny++) {
+            for (int nx = Math.max(1, x - 1); nx <= Math.min(width - 2, x + 1); nx++) {
+                int i = ny * width + nx;
+                double gradient = colorDistance2(rgb[i + 1], rgb[i - 1])
+                        + colorDistance2(rgb[i + width], rgb[i - width]);
+                if (gradient < best) {
+                    best = gradient;
+                    bx = nx;
+                    by = ny;
+                }
+            }
+        }
+        int color = rgb[by * width + bx];
+        centers[offset] = (color >> 16) & 0xFF;
+        centers[offset + 1] = (color >> 8) & 0xFF;
+        centers[offset + 2] = color & 0xFF;
+        centers[offset + 3] = bx;
+        centers[offset + 4] = by;
+    }
+
+    /**
+     * Returns the squared RGB distance between two packed colors.
+     */
+    private static double colorDistance2(int c1, int c2) {
+        int dr = ((c1 >> 16) & 0xFF) - ((c2 >> 16) & 0xFF);
+        int dg = ((c1 >> 8) & 0xFF) - ((c2 >> 8) & 0xFF);
+        int db = (c1 & 0xFF) - (c2 & 0xFF);
+        return dr * dr + dg * dg + db * db;
+    }
+
+    /**
+     * Calculates, for each label, the sums of the RGB components, the
+     * coordinates and the number of pixels (and, optionally, the sums of the
+     * squared RGB components). The sums are calculated in parallel by bands of
+     * rows.
+     *
+     * @return the sums (6 or 9 values per label).
+     */
+    private static double[] accumulate(int rgb[], int labels[], int width, int height,
+            int k, int bands, boolean squares) {
+        int stride = squares ? 9 : 6;
+        double partial[][] = new double[bands][];
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            double s[] = new double[stride * k];
+            for (int y = band * height / bands; y < (band + 1) * height / bands; y++) {
+                for (int x = 0, i = y * width; x < width; x++, i++) {
+                    int o = stride * labels[i];
+                    int r = (rgb[i] >> 16) & 0xFF, g = (rgb[i] >> 8) & 0xFF, b = rgb[i] & 0xFF;
+                    s[o] += r;
+                    s[o + 1] += g;
+                    s[o + 2] += b;
+                    s[o + 3] += x;
+                    s[o + 4] += y;
+                    s[o + 5]++;
+                    if (squares) {
+                        s[o + 6] += r * r;
+                        s[o + 7] += g * g;
+                        s[o + 8] += b * b;
+                    }
+                }
+            }
+            partial[band] = s;
+        });
+        double sums[] = partial[0];
+        for (int band = 1; band < bands; band++) {
+            for (int j = 0; j < sums.length; j++) {
+                sums[j] += partial[band][j];
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Relabels the connected components (4-connectivity) of the label plane,
+     * merging the ones smaller than the given size into an adjacent
+     * component.
+     *
+     * @param labels the label plane (it is modified).
+     * @param width the width of the label plane.
+     * @param height the height of the label plane.
+     * @param minSize the minimum size of a component.
+     * @return the number of labels after the relabelling.
+     */
+    private static int enforceConnectivity(int labels[], int width, int height, int minSize) {
+        int n = width * height;
+        int newLabels[] = new int[n];
+        Arrays.fill(newLabels, -1);
+        int queue[] = new int[n];
+        int dx[] = {-1, 1, 0, 0}, dy[] = {0, 0, -1, 1};
+        int next = 0;
+        for (int start = 0; start < n; start++) {
+            if (newLabels[start] >= 0) continue;
+            //An adjacent label already assigned (used for merging)
+            int adjacent = -1;
+            int sx = start % width, sy = start / width;
+            for (int d = 0; d < 4 && adjacent < 0; d++) {
+                int nx = sx + dx[d], ny = sy + dy[d];
+                if (nx >= 0 && nx < width && ny >= 0 && ny < height && newLabels[ny * width + nx] >= 0) {
+                    adjacent = newLabels[ny * width + nx];
+                }
+            }
+            //Flood fill of the component
+            int head = 0, tail = 0;
+            queue[tail++] = start;
+            newLabels[start] = next;
+            while (head < tail) {
+                int i = queue[head++], x = i % width, y = i / width;
+                for (int d = 0; d < 4; d++) {
+                    int nx = x + dx[d], ny = y + dy[d];
+                    if (nx >= 0 && nx < width && ny >= 0 && ny < height) {
+                        int j = ny * width + nx;
+                        if (newLabels[j] < 0 && labels[j] == labels[start]) {
+                            newLabels[j] = next;
+                            queue[tail++] = j;
+                        }
+                    }
+                }
+            }
+            if (tail < minSize && adjacent >= 0) {
+                for (int j = 0; j < tail; j++) {
+                    newLabels[queue[j]] = adjacent;
+                }
+            } else {
+                next++;
+            }
+        }
+        System.arraycopy(newLabels, 0, labels, 0, n);
+        return next;
+    }
+
+    /**
+     * Returns the nominal size (in pixels) of the superpixels side.
+     *
+     * @return the superpixel size.
+     */
+    public int getSuperpixelSize() {
+        return superpixelSize;
+    }
+
+    /**
+     * Set the nominal size (in pixels) of the superpixels side.
+     *
+     * @param superpixelSize the superpixel size. It must be a value greater
+     * than 1 (if not, it is set automatically to 1).
+     */
+    public final void setSuperpixelSize(int superpixelSize) {
+        this.superpixelSize = Math.max(1, superpixelSize);
+    }
+
+    /**
+     * Returns the compactness parameter.
+     *
+     * @return the compactness parameter.
+     */
+    public double getCompactness() {
+        return compactness;
+    }
+
+    /**
+     * Set the compactness parameter, that is, the weight of the spatial
+     * distance in relation to the color one. Higher values produce more
+     * compact (and regular) superpixels.
+     *
+     * @param compactness the compactness parameter.
+     */
+    public void setCompactness(double compactness) {
+        this.compactness = Math.max(0.0, compactness);
+    }
+
+    /**
+     * Returns the number of iterations.
+     *
+     * @return the number of iterations.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Set the number of iterations.
+     *
+     * @param iterations the number of iterations.
+     */
+    public void setIterations(int iterations) {
+        this.iterations = Math.max(1, iterations);
+    }
+}
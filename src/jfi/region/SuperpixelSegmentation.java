@@ -0,0 +1,130 @@
+package jfi.region;
+
+import java.util.Collections;
+import java.util.List;
+import jfi.graph.RegionAdjacencyGraph;
+
+/**
+ * Class representing a superpixel segmentation of an image, that is, a
+ * partition of the image into superpixels. It is represented by means of a
+ * label plane (the index of the superpixel of each pixel) and the list of
+ * superpixel descriptors.
+ *
+ * @see jfi.region.SuperpixelOp
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class SuperpixelSegmentation {
+    /**
+     * Size of the segmented image.
+     */
+    private final int width, height;
+    /**
+     * Label plane (row-major order).
+     */
+    private final int labels[];
+    /**
+     * Superpixel descriptors, indexed by label.
+     */
+    private final List<Superpixel> superpixels;
+    /**
+     * Region adjacency graph (calculated on demand).
+     */
+    private RegionAdjacencyGraph<Superpixel> graph = null;
+
+    /**
+     * Constructs a new superpixel segmentation. The given data is not copied.
+     *
+     * @param width the width of the segmented image.
+     * @param height the height of the segmented image.
+     * @param labels the label plane in row-major order.
+     * @param superpixels the superpixel descriptors, indexed by label.
+     */
+    public SuperpixelSegmentation(int width, int height, int labels[], List<Superpixel> superpixels) {
+        this.width = width;
+        this.height = height;
+        this.labels = labels;
+        this.superpixels = superpixels;
+    }
+
+    /**
+     * Returns the width of the segmented image.
+     *
+     * @return the width of the segmented image.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the segmented image.
+     *
+     * @return the height of the segmented image.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of superpixels.
+     *
+     * @return the number of superpixels.
+     */
+    public int size() {
+        return superpixels.size();
+    }
+
+    /**
+     * Returns the label (superpixel index) of the given pixel.
+     *
+     * @param x x-coordinate of the pixel.
+     * @param y y-coordinate of the pixel.
+     * @return the label of the pixel.
+     */
+    public int getLabel(int x, int y) {
+        return labels[y * width + x];
+    }
+
+    /**
+     * Returns the label plane in row-major order. The internal array is
+     * returned (it is not copied).
+     *
+     * @return the label plane.
+     */
+    public int[] getLabelData() {
+        return labels;
+    }
+
+    /**
+     * Returns the descriptor of the given superpixel.
+     *
+     * @param label the label of the superpixel.
+     * @return the superpixel descriptor.
+     */
+    public Superpixel getSuperpixel(int label) {
+        return superpixels.get(label);
+    }
+
+    /**
+     * Returns the superpixel descriptors, indexed by label.
+     *
+     * @return an unmodifiable view of the superpixel descriptors.
+     */
+    public List<Superpixel> getSuperpixels() {
+        return Collections.unmodifiableList(superpixels);
+    }
+
+    /**
+     * Returns the region adjacency graph of this segmentation. The node of
+     * index <tt>i</tt> is associated to the superpixel of label <tt>i</tt>.
+     * It is calculated the first time this method is called.
+     *
+     * @return the region adjacency graph.
+     */
+    public RegionAdjacencyGraph<Superpixel> getAdjacencyGraph() {
+        if (graph == null) {
+            graph = new RegionAdjacencyGraph(superpixels, labels, width, height);
+        }
+        return graph;
+    }
+}
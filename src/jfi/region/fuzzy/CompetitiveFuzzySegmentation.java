@@ -0,0 +1,295 @@
+package jfi.region.fuzzy;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+
+/**
+ * Class representing the output of a competitive fuzzy segmentation, that is, a
+ * segmentation where each pixel is claimed by only one seed (the one offering
+ * the highest degree).
+ *
+ * <p>
+ * It is represented by means of a label plane (the index of the seed that
+ * claims each pixel) and a degree plane (the membership degree of the pixel to
+ * the region of that seed). Optionally, the runner-up degree (the highest
+ * degree offered to the pixel by any other seed) is also stored.
+ *
+ * @see jfi.region.fuzzy.CompetitiveFuzzySegmentationOp
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class CompetitiveFuzzySegmentation {
+    /**
+     * Label associated to the pixels not claimed by any seed.
+     */
+    public static final int NO_LABEL = -1;
+    /**
+     * Size of the segmented image.
+     */
+    private final int width, height;
+    /**
+     * Number of labels (seeds) of this segmentation.
+     */
+    private final int numLabels;
+    /**
+     * Label plane (row-major order).
+     */
+    private final int labels[];
+    /**
+     * Degree plane (row-major order).
+     */
+    private final double degrees[];
+    /**
+     * Runner-up degree plane (row-major order). It is <code>null</code> if it
+     * was not calculated.
+     */
+    private final double runnerUpDegrees[];
+
+    /**
+     * Constructs a new competitive fuzzy segmentation. The given arrays are
+     * not copied.
+     *
+     * @param width the width of the segmented image.
+     * @param height the height of the segmented image.
+     * @param numLabels number of labels (seeds).
+     * @param labels the label plane in row-major order.
+     * @param degrees the degree plane in row-major order.
+     * @param runnerUpDegrees the runner-up degree plane in row-major order (it
+     * may be <code>null</code>).
+     */
+    CompetitiveFuzzySegmentation(int width, int height, int numLabels, int labels[],
+            double degrees[], double runnerUpDegrees[]) {
+        this.width = width;
+        this.height = height;
+        this.numLabels = numLabels;
+        this.labels = labels;
+        this.degrees = degrees;
+        this.runnerUpDegrees = runnerUpDegrees;
+    }
+
+    /**
+     * Returns the width of the segmented image.
+     *
+     * @return the width of the segmented image.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the segmented image.
+     *
+     * @return the height of the segmented image.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of labels (seeds) of this segmentation.
+     *
+     * @return the number of labels.
+     */
+    public int getNumLabels() {
+        return numLabels;
+    }
+
+    /**
+     * Returns the label of the given pixel, that is, the index of the seed that
+     * claims it (or {@link #NO_LABEL} if it is not claimed by any seed).
+     *
+     * @param x x-coordinate of the pixel.
+     * @param y y-coordinate of the pixel.
+     * @return the label of the pixel.
+     */
+    public int getLabel(int x, int y) {
+        return labels[y * width + x];
+    }
+
+    /**
+     * Returns the label of the given pixel.
+     *
+     * @param p the pixel.
+     * @return the label of the pixel.
+     */
+    public int getLabel(Point p) {
+        return getLabel(p.x, p.y);
+    }
+
+    /**
+     * Returns the membership degree of the given pixel to the region of the
+     * seed that claims it.
+     *
+     * @param x x-coordinate of the pixel.
+     * @param y y-coordinate of the pixel.
+     * @return the membership degree.
+     */
+    public double membershipDegree(int x, int y) {
+        return degrees[y * width + x];
+    }
+
+    /**
+     * Returns the membership degree of the given pixel to the region of the
+     * seed that claims it.
+     *
+     * @param p the pixel.
+     * @return the membership degree.
+     */
+    public double membershipDegree(Point p) {
+        return membershipDegree(p.x, p.y);
+    }
+
+    /**
+     * Checks if the runner-up degrees are available in this segmentation.
+     *
+     * @return <tt>true</tt> if the runner-up degrees are available.
+     */
+    public boolean hasRunnerUpDegrees() {
+        return runnerUpDegrees != null;
+    }
+
+    /**
+     * Returns the runner-up degree of the given pixel, that is, the highest
+     * degree offered to that pixel by a seed different from the one that
+     * claims it. Since the pixels claimed by a seed are not crossed by the
+     * others, this degree will be non-zero only for pixels reached by several
+     * seeds (usually, the ones near the boundaries between regions).
+     *
+     * @param x x-coordinate of the pixel.
+     * @param y y-coordinate of the pixel.
+     * @return the runner-up degree.
+     * @throws IllegalStateException if the runner-up degrees were not
+     * calculated.
+     */
+    public double runnerUpDegree(int x, int y) {
+        if (runnerUpDegrees == null) {
+            throw new IllegalStateException("Runner-up degrees not calculated");
+        }
+        return runnerUpDegrees[y * width + x];
+    }
+
+    /**
+     * Returns the label plane in row-major order. The internal array is
+     * returned (it is not copied).
+     *
+     * @return the label plane.
+     */
+    public int[] getLabelData() {
+        return labels;
+    }
+
+    /**
+     * Returns the degree plane in row-major order. The internal array is
+     * returned (it is not copied).
+     *
+     * @return the degree plane.
+     */
+    public double[] getDegreeData() {
+        return degrees;
+    }
+
+    /**
+     * Returns the runner-up degree plane in row-major order (or
+     * <code>null</code> if it was not calculated). The internal array is
+     * returned (it is not copied).
+     *
+     * @return the runner-up degree plane.
+     */
+    public double[] getRunnerUpDegreeData() {
+        return runnerUpDegrees;
+    }
+
+    /**
+     * Returns the label plane as an image of type
+     * {@link java.awt.image.BufferedImage#TYPE_USHORT_GRAY}, where the sample
+     * value of each pixel is its label plus one (so, zero is associated to the
+     * unclaimed pixels).
+     *
+     * @return the label image.
+     * @throws IllegalStateException if the number of labels does not fit in an
+     * unsigned short sample (more than 65535 labels); in that case, use
+     * {@link #getLabelData()} instead.
+     */
+    public BufferedImage getLabelImage() {
+        if (numLabels > 0xFFFF) {
+            throw new IllegalStateException("Too many labels for a TYPE_USHORT_GRAY image: " + numLabels);
+        }
+        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_USHORT_GRAY);
+        WritableRaster raster = out.getRaster();
+        int row[] = new int[width];
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                row[x] = labels[i] + 1;
+            }
+            raster.setSamples(0, y, width, 1, 0, row);
+        }
+        return out;
+    }
+
+    /**
+     * Returns the degree plane as a fuzzy region (a grey level image without
+     * alpha component).
+     *
+     * @return the degree plane as a fuzzy region.
+     */
+    public FuzzyRegion getDegreeRegion() {
+        return createRegion(null, NO_LABEL);
+    }
+
+    /**
+     * Returns the fuzzy region associated to the given label. The membership
+     * degree of the pixels claimed by other seeds is set to zero.
+     *
+     * @param label the label of the region.
+     * @param source the source image. If it is not <code>null</code>, a color
+     * region with alpha channel is created; if not, a grey level one is
+     * created.
+     * @return the fuzzy region associated to the given label.
+     */
+    public FuzzyRegion getFuzzyRegion(int label, BufferedImage source) {
+        if (label < 0 || label >= numLabels) {
+            throw new IndexOutOfBoundsException("Label " + label + " out of range");
+        }
+        return createRegion(source, label);
+    }
+
+    /**
+     * Converts this segmentation into a standard fuzzy segmentation, with one
+     * fuzzy region per label.
+     *
+     * @param source the source image. If it is not <code>null</code>, color
+     * regions with alpha channel are created; if not, grey level ones are
+     * created.
+     * @return the fuzzy segmentation.
+     */
+    public FuzzySegmentation toFuzzySegmentation(BufferedImage source) {
+        FuzzySegmentation fSegmentation = new FuzzySegmentation();
+        for (int label = 0; label < numLabels; label++) {
+            fSegmentation.add(createRegion(source, label));
+        }
+        return fSegmentation;
+    }
+
+    /**
+     * Creates a fuzzy region with the degrees of the given label (or with all
+     * the degrees if the label is {@link #NO_LABEL}).
+     *
+     * @param source the source image (it may be <code>null</code>).
+     * @param label the label.
+     * @return the fuzzy region.
+     */
+    private FuzzyRegion createRegion(BufferedImage source, int label) {
+        FuzzyRegion fRegion = source != null
+                ? new FuzzyRegion(source)
+                : new FuzzyRegion(width, height);
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                if (label == NO_LABEL || labels[i] == label) {
+                    fRegion.setMembershipDegree(x, y, degrees[i]);
+                }
+            }
+        }
+        return fRegion;
+    }
+}
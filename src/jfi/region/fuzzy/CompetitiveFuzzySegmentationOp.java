@@ -0,0 +1,251 @@
+package jfi.region.fuzzy;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import jfi.fuzzy.operator.TNorm;
+import jfi.fuzzy.resemblance.PixelResemblanceOp;
+
+/**
+ * Class implementing a competitive fuzzy segmentation based on a region
+ * growing process.
+ *
+ * <p>
+ * Unlike {@link jfi.region.fuzzy.FuzzySegmentationOp}, where a region growing
+ * process is run for each seed (so each pixel is visited once per seed), in
+ * this operator all the seeds grow at the same time from a shared priority
+ * queue (in the style of the fuzzy watershed or the relative fuzzy
+ * connectedness approaches). Each pixel is claimed by the seed offering the
+ * highest degree, and it is not visited again by the other seeds. As a
+ * result, the segmentation is calculated in a single pass regardless of the
+ * number of seeds.
+ *
+ * <p>
+ * The degree offered by a seed to a pixel is calculated as in
+ * {@link jfi.region.fuzzy.FuzzySegmentationOp}, that is, as the aggregation
+ * (by means of a t-norm) of the degree of the neighbour pixel from which it is
+ * reached and the resemblance between both pixels.
+ *
+ * @see jfi.region.fuzzy.CompetitiveFuzzySegmentation
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class CompetitiveFuzzySegmentationOp {
+    /**
+     * The seeds of this segmentation.
+     */
+    private final List<Point> seeds;
+    /**
+     * Pixel resemblance operator used to compare adjacent pixels
+     */
+    PixelResemblanceOp resemblanceOp;
+    /**
+     * T-norm used to aggregate resemblances.
+     */
+    TNorm tnorm = TNorm.PRODUCT;
+    /**
+     * A flag to set if the runner-up degrees are calculated.
+     */
+    private boolean runnerUp = false;
+
+    /**
+     * Constructs a new competitive fuzzy segmentation operator. The default
+     * resemblance operator of {@link FuzzySegmentationOp} is used.
+     *
+     * @param seed the first seed.
+     * @param seeds the others seeds.
+     */
+    public CompetitiveFuzzySegmentationOp(Point seed, Point... seeds) {
+        this.seeds = new ArrayList(Arrays.asList(seeds));
+        this.seeds.add(0, seed);
+        this.resemblanceOp = FuzzySegmentationOp.DEFAULT_RESEMBLANCE;
+    }
+
+    /**
+     * Constructs a new competitive fuzzy segmentation operator using as seeds
+     * the ones in the given collection. The default resemblance
+     * operator of {@link FuzzySegmentationOp} is used.
+     *
+     * @param seeds list of seeds.
+     */
+    public CompetitiveFuzzySegmentationOp(Collection<Point> seeds) {
+        this.seeds = new ArrayList(seeds); //A copy is created
+        this.resemblanceOp = FuzzySegmentationOp.DEFAULT_RESEMBLANCE;
+    }
+
+    /**
+     * Apply this operator to the given image. The label of each pixel will be
+     * the index of the seed (in the list of seeds) that claims it.
+     *
+     * @param image the image to be segmented.
+     * @return the competitive image segmentation.
+     */
+    public CompetitiveFuzzySegmentation apply(BufferedImage image) {
+        Point p = new Point(), q = new Point();
+        return grow(image.getWidth(), image.getHeight(), seeds, tnorm, runnerUp,
+                (x, y, nx, ny) -> {
+                    p.setLocation(x, y);
+                    q.setLocation(nx, ny);
+                    return resemblanceOp.apply(p, q, image);
+                });
+    }
+
+    /**
+     * Functional interface representing the resemblance between a pixel and
+     * one of its neighbours.
+     */
+    @FunctionalInterface
+    interface NeighbourResemblance {
+        /**
+         * Returns the resemblance between the pixel <tt>(x,y)</tt> and its
+         * neighbour <tt>(nx,ny)</tt>.
+         *
+         * @param x x-coordinate of the pixel.
+         * @param y y-coordinate of the pixel.
+         * @param nx x-coordinate of the neighbour.
+         * @param ny y-coordinate of the neighbour.
+         * @return the resemblance between both pixels.
+         */
+        double apply(int x, int y, int nx, int ny);
+    }
+
+    /**
+     * Competitive region growing process from all the given seeds.
+     *
+     * @param width the width of the image.
+     * @param height the height of the image.
+     * @param seeds the seeds.
+     * @param tnorm t-norm used to aggregate resemblances.
+     * @param runnerUp if <tt>true</tt>, the runner-up degrees are calculated.
+     * @param resemblance the resemblance between adjacent pixels.
+     * @return the competitive image segmentation.
+     */
+    static CompetitiveFuzzySegmentation grow(int width, int height, List<Point> seeds,
+            TNorm tnorm, boolean runnerUp, NeighbourResemblance resemblance) {
+        int n = width * height;
+        int labels[] = new int[n];
+        double degrees[] = new double[n];
+        double second[] = runnerUp ? new double[n] : null;
+        boolean done[] = new boolean[n];
+        Arrays.fill(labels, CompetitiveFuzzySegmentation.NO_LABEL);
+
+        PixelPriorityQueue queue = new PixelPriorityQueue(2 * (width + height));
+        //All the seeds are added to the shared queue. If two seeds share the
+        //same location, the first one claims the pixel.
+        for (int label = 0; label < seeds.size(); label++) {
+            Point seed = seeds.get(label);
+            if (seed.x >= 0 && seed.x < width && seed.y >= 0 && seed.y < height) {
+                int index = seed.y * width + seed.x;
+                if (labels[index] == CompetitiveFuzzySegmentation.NO_LABEL) {
+                    labels[index] = label;
+                    degrees[index] = 1.0;
+                    queue.push(index, 1.0, label);
+                }
+            }
+        }
+        //Competitive region growing process
+        int index, label, nindex, x, y, newx, newy;
+        double degree;
+        while (queue.poll()) {
+            index = queue.lastPixel();
+            //Entries superseded by a better offer are discarded
+            if (done[index] || queue.lastTag() != labels[index]
+                    || queue.lastDegree() < degrees[index]) {
+                continue;
+            }
+            done[index] = true;
+            label = labels[index];
+            x = index % width;
+            y = index / width;
+            for (int iy = -1; iy <= 1; iy++) {
+                for (int ix = -1; ix <= 1; ix++) {
+                    newx = x + ix;
+                    newy = y + iy;
+                    if ((ix != 0 || iy != 0) && newx >= 0 && newx < width
+                            && newy >= 0 && newy < height) {
+                        nindex = newy * width + newx;
+                        if (done[nindex] && (second == null || labels[nindex] == label)) {
+                            continue;
+                        }
+                        degree = tnorm.apply(degrees[index], resemblance.apply(x, y, newx, newy));
+                        if (done[nindex]) {
+                            //Only the runner-up degree can be updated
+                            second[nindex] = Math.max(second[nindex], degree);
+                        } else if (labels[nindex] == label) {
+                            if (degree > degrees[nindex]) {
+                                degrees[nindex] = degree;
+                                queue.push(nindex, degree, label);
+                            }
+                        } else if (labels[nindex] == CompetitiveFuzzySegmentation.NO_LABEL
+                                || degree > degrees[nindex]) {
+                            //The pixel is claimed by this seed; the previous
+                            //offer (if any) becomes the runner-up one
+                            if (second != null && labels[nindex] != CompetitiveFuzzySegmentation.NO_LABEL) {
+                                second[nindex] = Math.max(second[nindex], degrees[nindex]);
+                            }
+                            labels[nindex] = label;
+                            degrees[nindex] = degree;
+                            queue.push(nindex, degree, label);
+                        } else if (second != null) {
+                            second[nindex] = Math.max(second[nindex], degree);
+                        }
+                    }
+                }
+            }
+        }
+        return new CompetitiveFuzzySegmentation(width, height, seeds.size(),
+                labels, degrees, second);
+    }
+
+    /**
+     * Adds the specified seed to the list of seeds.
+     *
+     * @param seed seed to be appended to this list
+     * @return <tt>true</tt> if added.
+     */
+    public boolean addSeed(Point seed) {
+        return seeds.add(seed);
+    }
+
+    /**
+     * Returns the list of seeds of this operator.
+     *
+     * @return the list of seeds.
+     */
+    public List<Point> getSeeds() {
+        return seeds;
+    }
+
+    /**
+     * Set the pixel resemblance operator for this object. It allows the use of
+     * lambda expressions
+     *
+     * @param op the new pixel resemblance operator.
+     */
+    final public void setPixelResemblanceOp(PixelResemblanceOp op) {
+        if (op != null) this.resemblanceOp = op;
+    }
+
+    /**
+     * Set the t-norm used to aggregate resemblances.
+     *
+     * @param tnorm t-norm used to aggregate resemblances.
+     */
+    public void setTNorm(TNorm tnorm) {
+        if (tnorm != null) this.tnorm = tnorm;
+    }
+
+    /**
+     * Set if the runner-up degrees (the highest degree offered to each pixel
+     * by a seed different from the one that claims it) are calculated. By
+     * default, they are not calculated.
+     *
+     * @param runnerUp if <tt>true</tt>, the runner-up degrees are calculated.
+     */
+    public void setRunnerUpDegree(boolean runnerUp) {
+        this.runnerUp = runnerUp;
+    }
+}
@@ -13,6 +13,11 @@ import java.util.Collection;
 import java.util.List;
 import java.util.TreeSet;
 import jfi.fuzzy.operator.TNorm;
+import jfi.fuzzy.resemblance.ResemblanceOp;
+import jfi.graph.RegionAdjacencyGraph;
+import jfi.region.Superpixel;
+import jfi.region.SuperpixelOp;
+import jfi.region.SuperpixelSegmentation;
 
 /**
  * Class implementing a fuzyy segmentation based on a region growing process.
@@ -38,6 +43,12 @@ public class FuzzySegmentationOp {
      * A flag to set if the seeds are calculated automatically. 
      */
     private boolean auto;
+    /**
+     * Operator used to calculate the seeds automatically. If it is
+     * <code>null</code>, a {@link jfi.region.fuzzy.SeedSelectionOp} based on
+     * the resemblance operator of this object is used.
+     */
+    private SeedSelectionOp seedSelectionOp = null;
     /**
      * Pixel resemblance operator used to compare adjacent pixels
      */
@@ -45,7 +56,7 @@ public class FuzzySegmentationOp {
     /**
      * Pixel resemblance operator used by default.
      */
-    static private PixelResemblanceOp DEFAULT_RESEMBLANCE = new DefaultResemblanceOp();
+    static PixelResemblanceOp DEFAULT_RESEMBLANCE = new DefaultResemblanceOp();
     /**
      * T-norm used to aggregate resemblances.
      */
@@ -55,6 +66,15 @@ public class FuzzySegmentationOp {
      * images or color ones with alpha channel.
      */
     private boolean outputAsGrayImage = false;
+    /**
+     * Superpixel operator used to pre-segment the image. If it is
+     * <code>null</code>, the region growing process is applied on pixels.
+     */
+    private SuperpixelOp superpixelOp = null;
+    /**
+     * Resemblance operator used to compare adjacent superpixels.
+     */
+    private ResemblanceOp<Superpixel> superpixelResemblanceOp = new DefaultSuperpixelResemblanceOp();
     
     /**
      * Constructs a new fuzzy segmentation operator. The resemblance operator
@@ -94,6 +114,7 @@ public class FuzzySegmentationOp {
      */
     public FuzzySegmentationOp(PixelResemblanceOp resemblanceOp) {
         this.seeds = new ArrayList(); //Empty list
+        this.candidates = new TreeSet();
         //Seeds should be calculated automatically for each image.
         this.auto = true;
         this.resemblanceOp = resemblanceOp;
@@ -118,9 +139,12 @@ public class FuzzySegmentationOp {
     public FuzzySegmentation apply(BufferedImage image){
         if(auto){
             seeds.clear();
-            //TODO: Call to the method that calculates the seeds automatically
-            throw new UnsupportedOperationException("Automatically seed selection "
-                    + "is not supported yet."); 
+            SeedSelectionOp selector = seedSelectionOp != null ?
+                    seedSelectionOp : new SeedSelectionOp(resemblanceOp);
+            seeds.addAll(selector.apply(image));
+        }
+        if (superpixelOp != null) {
+            return applySuperpixels(image);
         }
         FuzzySegmentation fSegmentation = new FuzzySegmentation();
         //The check image is created as a binary (1-bit) image
@@ -136,6 +160,71 @@ public class FuzzySegmentationOp {
         return fSegmentation;
     }
     
+    /**
+     * Apply this operator to the given image using the superpixel
+     * pre-segmentation. The region growing process is applied on the region
+     * adjacency graph of the superpixels (so each superpixel is processed as a
+     * single node), and the degrees are projected back to the pixels.
+     * 
+     * @param image the image to be segmented.
+     * @return the image segmentation
+     */
+    private FuzzySegmentation applySuperpixels(BufferedImage image){
+        SuperpixelSegmentation superpixels = superpixelOp.apply(image);
+        RegionAdjacencyGraph<Superpixel> graph = superpixels.getAdjacencyGraph();
+        //The resemblance between adjacent superpixels is calculated only once
+        //for all the seeds
+        double weights[][] = new double[graph.size()][];
+        for (int i = 0; i < graph.size(); i++) {
+            int neighbours[] = graph.getNeighbours(i);
+            weights[i] = new double[neighbours.length];
+            for (int j = 0; j < neighbours.length; j++) {
+                weights[i][j] = superpixelResemblanceOp.apply(graph.getNode(i).getSource(),
+                        graph.getNode(neighbours[j]).getSource());
+            }
+        }
+        FuzzySegmentation fSegmentation = new FuzzySegmentation();
+        PixelPriorityQueue queue = new PixelPriorityQueue(graph.size());
+        int labels[] = superpixels.getLabelData();
+        for (Point seed : seeds) {
+            if (seed.x >= 0 && seed.x < image.getWidth() && seed.y >= 0 && seed.y < image.getHeight()) {
+                //Region growing process on the graph
+                double degrees[] = new double[graph.size()];
+                boolean visited[] = new boolean[graph.size()];
+                int start = superpixels.getLabel(seed.x, seed.y);
+                degrees[start] = 1.0;
+                queue.clear();
+                queue.push(start, 1.0, 0);
+                while (queue.poll()) {
+                    int node = queue.lastPixel();
+                    if (visited[node] || queue.lastDegree() < degrees[node]) continue;
+                    visited[node] = true;
+                    int neighbours[] = graph.getNeighbours(node);
+                    for (int j = 0; j < neighbours.length; j++) {
+                        if (!visited[neighbours[j]]) {
+                            double degree = tnorm.apply(degrees[node], weights[node][j]);
+                            if (degree > degrees[neighbours[j]]) {
+                                degrees[neighbours[j]] = degree;
+                                queue.push(neighbours[j], degree, 0);
+                            }
+                        }
+                    }
+                }
+                //Projection of the degrees to the pixels
+                FuzzyRegion fRegion = outputAsGrayImage ? 
+                          new FuzzyRegion(image.getWidth(),image.getHeight()) //Grey image
+                        : new FuzzyRegion(image);      // Color image with alpha channel
+                for (int y = 0, i = 0; y < image.getHeight(); y++) {
+                    for (int x = 0; x < image.getWidth(); x++, i++) {
+                        fRegion.setMembershipDegree(x, y, degrees[labels[i]]);
+                    }
+                }
+                fSegmentation.add(fRegion);
+            }
+        }
+        return fSegmentation;
+    }
+    
     /**
      * Calculates the fuzzy region associated to the given seed.
      * 
@@ -259,6 +348,28 @@ public class FuzzySegmentationOp {
         return seeds.add(seed);
     }
     
+    /**
+     * Set the operator used to calculate the seeds automatically (only used if
+     * this object was constructed without seeds).
+     *
+     * @param op the new seed selection operator. If it is <code>null</code>,
+     * a {@link jfi.region.fuzzy.SeedSelectionOp} based on the resemblance
+     * operator of this object is used.
+     */
+    public void setSeedSelectionOp(SeedSelectionOp op) {
+        this.seedSelectionOp = op;
+    }
+
+    /**
+     * Returns the operator used to calculate the seeds automatically.
+     *
+     * @return the seed selection operator (<code>null</code> if the default
+     * one is used).
+     */
+    public SeedSelectionOp getSeedSelectionOp() {
+        return seedSelectionOp;
+    }
+
     /**
      * Set the pixel resemblance operator for this object. It allows the use of
      * lambda expressions
@@ -300,6 +411,31 @@ public class FuzzySegmentationOp {
         this.outputAsGrayImage = gray;
     }
     
+    /**
+     * Set the superpixel operator used to pre-segment the image. If it is not
+     * <code>null</code>, the region growing process is applied on the region
+     * adjacency graph of the superpixels instead of on the pixels, and the
+     * degrees of each superpixel are projected back to its pixels. This
+     * reduces drastically the number of elements processed in high resolution
+     * images, at the cost of the superpixel resolution.
+     * 
+     * @param op the superpixel operator (<code>null</code> for the pixel 
+     * based process, the default one).
+     */
+    public void setSuperpixelOp(SuperpixelOp op){
+        this.superpixelOp = op;
+    }
+    
+    /**
+     * Set the resemblance operator used to compare adjacent superpixels (only
+     * used if a superpixel operator is set).
+     * 
+     * @param op the new superpixel resemblance operator.
+     */
+    public void setSuperpixelResemblanceOp(ResemblanceOp<Superpixel> op){
+        if(op!=null) this.superpixelResemblanceOp = op;
+    }
+    
     /**
      * Check if the given point is inside the image bounds.
      * 
@@ -440,4 +576,30 @@ public class FuzzySegmentationOp {
        
     }
     
+    /**
+     * Functional (inner) class implementing a superpixel resemblance operator.
+     */
+    static public class DefaultSuperpixelResemblanceOp implements ResemblanceOp<Superpixel> {
+        static private final double MAX_RGBDIST = 441.673; //~sqrt(255^2+255^2+255^2) 
+        
+        /**
+         * Apply this resemblance operator. The operator is based on the RGB
+         * distance between the mean colors of the superpixels; specifically,
+         * it is defined as:
+         * 
+         * 1.0 - MIN(1.0, RGBDiff/MAX_RGBDIST)
+         * 
+         * with RGBDiff the Euclidean distance between the mean colors.
+         * 
+         * @param t first superpixel.
+         * @param u second superpixel.
+         * @return the resemblance between superpixels.
+         */
+        @Override
+        public Double apply(Superpixel t, Superpixel u) {
+            double dif = t.getMean().distance(u.getMean());
+            return 1.0-( Math.min(1.0,dif/MAX_RGBDIST));
+        }
+    }
+    
 }
@@ -39,6 +39,12 @@ public class FuzzySegmentationOrderedListOp {
      * A flag to set if the seeds are calculated automatically.
      */
     private boolean auto;
+    /**
+     * Operator used to calculate the seeds automatically. If it is
+     * <code>null</code>, a {@link jfi.region.fuzzy.SeedSelectionOp} based on
+     * the resemblance operator of this object is used.
+     */
+    private SeedSelectionOp seedSelectionOp = null;
     /**
      * Pixel resemblance operator used to compare adjacent pixels
      */
@@ -101,6 +107,7 @@ public class FuzzySegmentationOrderedListOp {
      */
     public FuzzySegmentationOrderedListOp(PixelResemblanceOp resemblanceOp) {
         this.seeds = new ArrayList(); //Empty list
+        this.candidates = new OrderedList();
         //Seeds should be calculated automatically for each image.
         this.auto = true;
         this.resemblanceOp = resemblanceOp;
@@ -125,9 +132,9 @@ public class FuzzySegmentationOrderedListOp {
     public FuzzySegmentation apply(BufferedImage image) {
         if (auto) {
             seeds.clear();
-            //TODO: Call to the method that calculates the seeds automatically
-            throw new UnsupportedOperationException("Automatically seed selection "
-                    + "is not supported yet.");
+            SeedSelectionOp selector = seedSelectionOp != null ?
+                    seedSelectionOp : new SeedSelectionOp(resemblanceOp);
+            seeds.addAll(selector.apply(image));
         }
         FuzzySegmentation fSegmentation = new FuzzySegmentation();
         //The check image is created as a binary (1-bit) image
@@ -249,6 +256,28 @@ public class FuzzySegmentationOrderedListOp {
         return seeds.add(seed);
     }
 
+    /**
+     * Set the operator used to calculate the seeds automatically (only used if
+     * this object was constructed without seeds).
+     *
+     * @param op the new seed selection operator. If it is <code>null</code>,
+     * a {@link jfi.region.fuzzy.SeedSelectionOp} based on the resemblance
+     * operator of this object is used.
+     */
+    public void setSeedSelectionOp(SeedSelectionOp op) {
+        this.seedSelectionOp = op;
+    }
+
+    /**
+     * Returns the operator used to calculate the seeds automatically.
+     *
+     * @return the seed selection operator (<code>null</code> if the default
+     * one is used).
+     */
+    public SeedSelectionOp getSeedSelectionOp() {
+        return seedSelectionOp;
+    }
+
     /**
      * Set the pixel resemblance operator for this object. It allows the use of
      * lambda expressions
@@ -0,0 +1,414 @@
+package jfi.region.fuzzy;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import jfi.fuzzy.operator.TNorm;
+import jfi.fuzzy.resemblance.PixelResemblanceOp;
+
+/**
+ * Class implementing an interactive fuzzy segmentation session on a given
+ * image. It is intended for applications where the seeds are added, moved or
+ * removed repeatedly on the same image (for example, annotation tools), so the
+ * segmentation has to be recalculated many times.
+ *
+ * <p>
+ * The region growing process is the one of
+ * {@link jfi.region.fuzzy.FuzzySegmentationOp}, but the state that does not
+ * depend on the seeds is calculated only once and reused in every query:
+ * <ul>
+ * <li>The resemblance between each pixel and its eight neighbours is
+ * calculated (in parallel) when the session is created, so the resemblance
+ * operator is never applied again. In order to reduce the memory usage, the
+ * resemblances are stored in single precision and, since the resemblance is
+ * symmetric, only the ones with four of the neighbours (east, south-west,
+ * south and south-east) are stored for each pixel; the others are read from
+ * the corresponding neighbour.</li>
+ * <li>The buffers used in the growing process (priority queue and visited
+ * flags) are allocated once and reused.</li>
+ * <li>Since the fuzzy region of a seed does not depend on the other seeds,
+ * the regions already calculated are cached (up to
+ * {@link #getCacheSize()} regions), so adding, moving or removing a seed only
+ * needs to calculate the regions of the new seed locations.</li>
+ * </ul>
+ *
+ * <p>
+ * A session holds mutable state associated to its image (the seeds, the
+ * cached regions and the buffers of the growing process), so it is not
+ * thread-safe: it must not be shared between threads (for example, by
+ * parallel operators) without external synchronization. Independent
+ * sessions can be used concurrently.
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class FuzzySegmentationSession {
+    /**
+     * Offsets of the eight neighbours. The last four ones (east, south-west,
+     * south and south-east) are the opposite of the first four ones in
+     * reverse order, that is, the neighbour <tt>k</tt> is the opposite of the
+     * neighbour <tt>7-k</tt>.
+     */
+    private static final int DX[] = {-1, 0, 1, -1, 1, -1, 0, 1};
+    private static final int DY[] = {-1, -1, -1, 0, 0, 1, 1, 1};
+    /**
+     * Default maximum number of cached regions.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 16;
+    /**
+     * The image associated to this session.
+     */
+    private final BufferedImage image;
+    /**
+     * The size of the image.
+     */
+    private final int width, height;
+    /**
+     * Resemblance between each pixel and its neighbours. The resemblance
+     * between the pixel <tt>i</tt> (in row-major order) and its neighbour
+     * <tt>k</tt>, with <tt>k&ge;4</tt>, is stored in the position
+     * <tt>4*i+k-4</tt> (see {@link #weight(int, int)} for the other
+     * neighbours).
+     */
+    private final float weights[];
+    /**
+     * T-norm used to aggregate resemblances.
+     */
+    private final TNorm tnorm;
+    /**
+     * The current seeds.
+     */
+    private final List<Point> seeds = new ArrayList();
+    /**
+     * Degrees of the regions already calculated, indexed by seed location.
+     */
+    private final LinkedHashMap<Point, double[]> cache;
+    /**
+     * Maximum number of cached regions.
+     */
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    /**
+     * Priority queue reused in the growing process.
+     */
+    private final PixelPriorityQueue queue;
+    /**
+     * Visited flags reused in the growing process. A pixel is visited in the
+     * current process if its value is equal to {@link #stamp}, so the flags
+     * do not need to be reset.
+     */
+    private final int visited[];
+    private int stamp = 0;
+
+    /**
+     * Constructs a new segmentation session on the given image. The
+     * resemblance between adjacent pixels is calculated in this call.
+     *
+     * @param image the image to be segmented.
+     * @param resemblanceOp the pixel resemblance operator used to compare
+     * adjacent pixels. It must be thread-safe and symmetric.
+     * @param tnorm the t-norm used to aggregate resemblances.
+     */
+    public FuzzySegmentationSession(BufferedImage image, PixelResemblanceOp resemblanceOp, TNorm tnorm) {
+        if (image == null) {
+            throw new NullPointerException("Source image is null");
+        }
+        this.image = image;
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.tnorm = tnorm != null ? tnorm : TNorm.PRODUCT;
+        this.weights = calculateWeights(image, resemblanceOp != null
+                ? resemblanceOp : new FuzzySegmentationOp.DefaultResemblanceOp());
+        this.queue = new PixelPriorityQueue(2 * (width + height));
+        this.visited = new int[width * height];
+        this.cache = new LinkedHashMap<Point, double[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Point, double[]> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Constructs a new segmentation session on the given image using the
+     * default resemblance operator and the product t-norm.
+     *
+     * @param image the image to be segmented.
+     */
+    public FuzzySegmentationSession(BufferedImage image) {
+        this(image, null, null);
+    }
+
+    /**
+     * Calculates the resemblance between each pixel and its east, south-west,
+     * south and south-east neighbours.
+     *
+     * @param image the image.
+     * @param resemblanceOp the pixel resemblance operator.
+     * @return the resemblances.
+     */
+    private static float[] calculateWeights(BufferedImage image, PixelResemblanceOp resemblanceOp) {
+        int width = image.getWidth(), height = image.getHeight();
+        float weights[] = new float[4 * width * height];
+        IntStream.range(0, height).parallel().forEach(y -> {
+            Point p = new Point(), q = new Point();
+            for (int x = 0; x < width; x++) {
+                p.setLocation(x, y);
+                int base = 4 * (y * width + x) - 4;
+                for (int k = 4; k < 8; k++) {
+                    int nx = x + DX[k], ny = y + DY[k];
+                    if (nx >= 0 && nx < width && ny >= 0 && ny < height) {
+                        q.setLocation(nx, ny);
+                        weights[base + k] = resemblanceOp.apply(p, q, image).floatValue();
+                    }
+                }
+            }
+        });
+        return weights;
+    }
+
+    /**
+     * Returns the image associated to this session.
+     *
+     * @return the image associated to this session.
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Adds a new seed.
+     *
+     * @param seed the new seed.
+     * @return <tt>true</tt> if added (that is, if it is inside the image
+     * bounds).
+     */
+    public boolean addSeed(Point seed) {
+        if (!isInsideImageBounds(seed)) return false;
+        return seeds.add(new Point(seed));
+    }
+
+    /**
+     * Moves the seed at the given position of the list of seeds.
+     *
+     * @param index the index of the seed.
+     * @param location the new location of the seed.
+     * @return <tt>true</tt> if moved (that is, if the new location is inside
+     * the image bounds).
+     */
+    public boolean moveSeed(int index, Point location) {
+        if (!isInsideImageBounds(location)) return false;
+        seeds.set(index, new Point(location));
+        return true;
+    }
+
+    /**
+     * Removes the given seed.
+     *
+     * @param seed the seed to be removed.
+     * @return <tt>true</tt> if removed.
+     */
+    public boolean removeSeed(Point seed) {
+        return seeds.remove(seed);
+    }
+
+    /**
+     * Removes all the seeds (the cached regions are kept).
+     */
+    public void clearSeeds() {
+        seeds.clear();
+    }
+
+    /**
+     * Returns the current seeds.
+     *
+     * @return an unmodifiable view of the current seeds.
+     */
+    public List<Point> getSeeds() {
+        return Collections.unmodifiableList(seeds);
+    }
+
+    /**
+     * Returns the membership degrees of the region associated to the given
+     * seed, in row-major order. If the region was calculated previously, the
+     * cached degrees are returned (the array must not be modified).
+     *
+     * @param seed the region seed.
+     * @return the membership degrees of the region.
+     */
+    public double[] getDegreeData(Point seed) {
+        if (!isInsideImageBounds(seed)) {
+            throw new IllegalArgumentException("Seed outside the image bounds");
+        }
+        double degrees[] = cache.get(seed);
+        if (degrees == null) {
+            degrees = grow(seed.y * width + seed.x);
+            cache.put(new Point(seed), degrees);
+        }
+        return degrees;
+    }
+
+    /**
+     * Returns the fuzzy region associated to the given seed.
+     *
+     * @param seed the region seed.
+     * @param gray if <tt>true</tt>, a grey image is used as output; else, a
+     * color one with alpha channel.
+     * @return the fuzzy region.
+     */
+    public FuzzyRegion getFuzzyRegion(Point seed, boolean gray) {
+        double degrees[] = getDegreeData(seed);
+        FuzzyRegion fRegion = gray ? new FuzzyRegion(width, height) : new FuzzyRegion(image);
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                fRegion.setMembershipDegree(x, y, degrees[i]);
+            }
+        }
+        return fRegion;
+    }
+
+    /**
+     * Returns the fuzzy segmentation associated to the current seeds (a fuzzy
+     * region per seed). Only the regions not cached are calculated.
+     *
+     * @param gray if <tt>true</tt>, gray images are used as output; else,
+     * color ones with alpha channel.
+     * @return the fuzzy segmentation.
+     */
+    public FuzzySegmentation getSegmentation(boolean gray) {
+        FuzzySegmentation fSegmentation = new FuzzySegmentation();
+        for (Point seed : seeds) {
+            fSegmentation.add(getFuzzyRegion(seed, gray));
+        }
+        return fSegmentation;
+    }
+
+    /**
+     * Returns the competitive segmentation associated to the current seeds
+     * (see {@link jfi.region.fuzzy.CompetitiveFuzzySegmentationOp}), using the
+     * precalculated resemblances.
+     *
+     * @param runnerUp if <tt>true</tt>, the runner-up degrees are calculated.
+     * @return the competitive segmentation.
+     */
+    public CompetitiveFuzzySegmentation getCompetitiveSegmentation(boolean runnerUp) {
+        return CompetitiveFuzzySegmentationOp.grow(width, height, seeds, tnorm, runnerUp,
+                (x, y, nx, ny) -> weight(y * width + x, neighbour(nx - x, ny - y)));
+    }
+
+    /**
+     * Returns the resemblance between the given pixel and its neighbour
+     * <tt>k</tt>, which must be inside the image. The resemblances with the
+     * first four neighbours are read from the neighbour itself (as its
+     * resemblance with the opposite neighbour <tt>7-k</tt>).
+     *
+     * @param index the index of the pixel (row-major order).
+     * @param k the index of the neighbour (see {@link #DX} and {@link #DY}).
+     * @return the resemblance.
+     */
+    private float weight(int index, int k) {
+        if (k >= 4) {
+            return weights[4 * index + k - 4];
+        }
+        return weights[4 * (index + DY[k] * width + DX[k]) + 3 - k];
+    }
+
+    /**
+     * Returns the index of the neighbour with the given offset.
+     *
+     * @param dx x-offset of the neighbour (-1, 0 or 1).
+     * @param dy y-offset of the neighbour (-1, 0 or 1).
+     * @return the index of the neighbour (see {@link #DX} and {@link #DY}).
+     */
+    private static int neighbour(int dx, int dy) {
+        int k = (dy + 1) * 3 + dx + 1;
+        return k > 4 ? k - 1 : k; // The center (k=4) is skipped
+    }
+
+    /**
+     * Region growing process from the given seed using the precalculated
+     * resemblances.
+     *
+     * @param seedIndex the index of the seed (row-major order).
+     * @return the membership degrees.
+     */
+    private double[] grow(int seedIndex) {
+        double degrees[] = new double[width * height];
+        if (++stamp == 0) { //Overflow: the flags have to be reset
+            Arrays.fill(visited, 0);
+            stamp = 1;
+        }
+        queue.clear();
+        degrees[seedIndex] = 1.0;
+        queue.push(seedIndex, 1.0, 0);
+        int index, x, y, nx, ny, nindex;
+        double degree;
+        while (queue.poll()) {
+            index = queue.lastPixel();
+            if (visited[index] == stamp || queue.lastDegree() < degrees[index]) {
+                continue;
+            }
+            visited[index] = stamp;
+            x = index % width;
+            y = index / width;
+            for (int k = 0; k < 8; k++) {
+                nx = x + DX[k];
+                ny = y + DY[k];
+                if (nx >= 0 && nx < width && ny >= 0 && ny < height) {
+                    nindex = ny * width + nx;
+                    if (visited[nindex] != stamp) {
+                        degree = tnorm.apply(degrees[index], (double) weight(index, k));
+                        if (degree > degrees[nindex]) {
+                            degrees[nindex] = degree;
+                            queue.push(nindex, degree, 0);
+                        }
+                    }
+                }
+            }
+        }
+        return degrees;
+    }
+
+    /**
+     * Returns the maximum number of cached regions.
+     *
+     * @return the maximum number of cached regions.
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Set the maximum number of cached regions. When the limit is exceeded,
+     * the least recently used regions are discarded.
+     *
+     * @param cacheSize the maximum number of cached regions.
+     */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = Math.max(0, cacheSize);
+        while (cache.size() > this.cacheSize) {
+            cache.remove(cache.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Removes all the cached regions.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * Check if the given point is inside the image bounds.
+     *
+     * @param p the point to be checked.
+     * @return <tt>true</tt> if the point is inside; <tt>false</tt> otherwise.
+     */
+    private boolean isInsideImageBounds(Point p) {
+        return p != null && p.x >= 0 && p.x < width && p.y >= 0 && p.y < height;
+    }
+}
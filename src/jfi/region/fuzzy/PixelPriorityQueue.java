@@ -0,0 +1,180 @@
+package jfi.region.fuzzy;
+
+import java.util.Arrays;
+
+/**
+ * A max-priority queue of pixels used in the region growing processes. Each
+ * entry stores the pixel index (<code>y*width+x</code>), the degree used as
+ * priority and an integer tag (for example, the label of the seed offering
+ * that degree).
+ *
+ * <p>
+ * The queue is implemented as a binary heap over primitive arrays, so no
+ * object is allocated per entry. Entries are never updated inside the heap:
+ * when a pixel receives a better degree, a new entry is pushed and the old
+ * one must be discarded by the caller when it is polled (lazy deletion).
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+class PixelPriorityQueue {
+    /**
+     * Degrees (priorities) of the heap entries.
+     */
+    private double degrees[];
+    /**
+     * Pixel indexes of the heap entries.
+     */
+    private int pixels[];
+    /**
+     * Tags of the heap entries.
+     */
+    private int tags[];
+    /**
+     * Number of entries in the heap.
+     */
+    private int size;
+    /**
+     * Data of the last polled entry.
+     */
+    private double lastDegree;
+    private int lastPixel, lastTag;
+
+    /**
+     * Constructs a new empty queue with the given initial capacity.
+     *
+     * @param capacity the initial capacity.
+     */
+    PixelPriorityQueue(int capacity) {
+        capacity = Math.max(16, capacity);
+        degrees = new double[capacity];
+        pixels = new int[capacity];
+        tags = new int[capacity];
+        size = 0;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this queue contains no entries.
+     *
+     * @return <tt>true</tt> if this queue contains no entries.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of entries in this queue.
+     *
+     * @return the number of entries in this queue.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes all the entries of this queue (the allocated capacity is kept,
+     * so the queue can be reused without new allocations).
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the degree of the entry at the top of the queue (without
+     * removing it).
+     *
+     * @return the greatest degree in the queue.
+     */
+    double peekDegree() {
+        return degrees[0];
+    }
+
+    /**
+     * Inserts a new entry.
+     *
+     * @param pixel the pixel index.
+     * @param degree the degree of the entry (the priority).
+     * @param tag the tag of the entry.
+     */
+    void push(int pixel, double degree, int tag) {
+        if (size == degrees.length) {
+            int capacity = size << 1;
+            degrees = Arrays.copyOf(degrees, capacity);
+            pixels = Arrays.copyOf(pixels, capacity);
+            tags = Arrays.copyOf(tags, capacity);
+        }
+        //Sift up
+        int i = size++, parent;
+        while (i > 0) {
+            parent = (i - 1) >>> 1;
+            if (degrees[parent] >= degree) break;
+            degrees[i] = degrees[parent];
+            pixels[i] = pixels[parent];
+            tags[i] = tags[parent];
+            i = parent;
+        }
+        degrees[i] = degree;
+        pixels[i] = pixel;
+        tags[i] = tag;
+    }
+
+    /**
+     * Removes the entry with the greatest degree. Its data can be accessed by
+     * means of {@link #lastPixel()}, {@link #lastDegree()} and
+     * {@link #lastTag()}.
+     *
+     * @return <tt>false</tt> if the queue is empty.
+     */
+    boolean poll() {
+        if (size == 0) return false;
+        lastDegree = degrees[0];
+        lastPixel = pixels[0];
+        lastTag = tags[0];
+        size--;
+        if (size > 0) {
+            //Sift down the last entry from the root
+            double degree = degrees[size];
+            int pixel = pixels[size], tag = tags[size];
+            int i = 0, child, half = size >>> 1;
+            while (i < half) {
+                child = (i << 1) + 1;
+                if (child + 1 < size && degrees[child + 1] > degrees[child]) child++;
+                if (degree >= degrees[child]) break;
+                degrees[i] = degrees[child];
+                pixels[i] = pixels[child];
+                tags[i] = tags[child];
+                i = child;
+            }
+            degrees[i] = degree;
+            pixels[i] = pixel;
+            tags[i] = tag;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the pixel index of the last polled entry.
+     *
+     * @return the pixel index of the last polled entry.
+     */
+    int lastPixel() {
+        return lastPixel;
+    }
+
+    /**
+     * Returns the degree of the last polled entry.
+     *
+     * @return the degree of the last polled entry.
+     */
+    double lastDegree() {
+        return lastDegree;
+    }
+
+    /**
+     * Returns the tag of the last polled entry.
+     *
+     * @return the tag of the last polled entry.
+     */
+    int lastTag() {
+        return lastTag;
+    }
+}
@@ -0,0 +1,272 @@
+package jfi.region.fuzzy;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import jfi.fuzzy.resemblance.PixelResemblanceOp;
+
+/**
+ * Class implementing an automatic seed selection operator for the region
+ * growing segmentations.
+ *
+ * <p>
+ * The seeds are selected as the local maxima of a homogeneity map, where the
+ * homogeneity of a pixel is defined as the minimum resemblance between that
+ * pixel and its eight neighbours (so, pixels inside homogeneous areas have
+ * high values, and pixels near edges have low values). A pixel is a local
+ * maximum if its homogeneity is not lower than the one of any of its eight
+ * neighbours (so every pixel of a plateau is a local maximum). In order to
+ * control the seed density, the image is divided into cells of size
+ * {@link #getSeedSpacing()}; the local maximum with the greatest homogeneity
+ * in each cell is a candidate (the maxima are checked across the cell
+ * borders, so a pixel in the border of a cell is not a candidate if it is
+ * lower than a pixel of the adjacent cell), and the candidates are accepted
+ * (in decreasing order of homogeneity) if their homogeneity is at least
+ * {@link #getHomogeneityThreshold()} and there is not an accepted seed closer
+ * than the seed spacing.
+ *
+ * <p>
+ * The homogeneity map and the cell candidates are calculated in parallel, so
+ * the resemblance operator must be thread-safe (as the ones provided in the
+ * library).
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class SeedSelectionOp {
+    /**
+     * Pixel resemblance operator used to compare adjacent pixels.
+     */
+    private PixelResemblanceOp resemblanceOp;
+    /**
+     * Minimum distance (in pixels) between seeds.
+     */
+    private int seedSpacing;
+    /**
+     * Minimum homogeneity of a seed.
+     */
+    private double homogeneityThreshold = DEFAULT_HOMOGENEITY_THRESHOLD;
+    /**
+     * Maximum number of seeds (0 means no limit).
+     */
+    private int maxSeeds = 0;
+    /**
+     * Default minimum distance between seeds.
+     */
+    public static final int DEFAULT_SEED_SPACING = 32;
+    /**
+     * Default minimum homogeneity of a seed.
+     */
+    public static final double DEFAULT_HOMOGENEITY_THRESHOLD = 0.9;
+
+    /**
+     * Constructs a new seed selection operator.
+     *
+     * @param resemblanceOp the pixel resemblance operator used to compare
+     * adjacent pixels.
+     * @param seedSpacing minimum distance (in pixels) between seeds. It must
+     * be at least 1 (lower values are replaced by 1).
+     */
+    public SeedSelectionOp(PixelResemblanceOp resemblanceOp, int seedSpacing) {
+        this.setPixelResemblanceOp(resemblanceOp);
+        this.setSeedSpacing(seedSpacing);
+    }
+
+    /**
+     * Constructs a new seed selection operator using the default seed spacing.
+     *
+     * @param resemblanceOp the pixel resemblance operator used to compare
+     * adjacent pixels.
+     */
+    public SeedSelectionOp(PixelResemblanceOp resemblanceOp) {
+        this(resemblanceOp, DEFAULT_SEED_SPACING);
+    }
+
+    /**
+     * Calculates the seeds of the given image.
+     *
+     * @param image the image to be analyzed.
+     * @return the list of seeds, in decreasing order of homogeneity.
+     */
+    public List<Point> apply(BufferedImage image) {
+        int width = image.getWidth(), height = image.getHeight();
+        double homogeneity[] = homogeneityMap(image);
+        //Candidates: the local maximum with the greatest homogeneity in each
+        //cell
+        int cellsX = (width + seedSpacing - 1) / seedSpacing;
+        int cellsY = (height + seedSpacing - 1) / seedSpacing;
+        int candidates[] = new int[cellsX * cellsY];
+        IntStream.range(0, cellsY).parallel().forEach(cy -> {
+            for (int cx = 0; cx < cellsX; cx++) {
+                int best = -1;
+                for (int y = cy * seedSpacing; y < Math.min(height, (cy + 1) * seedSpacing); y++) {
+                    for (int x = cx * seedSpacing, i = y * width + x; x < Math.min(width, (cx + 1) * seedSpacing); x++, i++) {
+                        if (homogeneity[i] >= homogeneityThreshold
+                                && (best < 0 || homogeneity[i] > homogeneity[best])
+                                && isLocalMaximum(homogeneity, width, height, x, y)) {
+                            best = i;
+                        }
+                    }
+                }
+                candidates[cy * cellsX + cx] = best;
+            }
+        });
+        //The candidates are accepted in decreasing order of homogeneity if
+        //there is not a closer accepted seed (only the neighbour cells need
+        //to be checked)
+        List<Integer> sorted = new ArrayList();
+        for (int candidate : candidates) {
+            if (candidate >= 0) sorted.add(candidate);
+        }
+        sorted.sort((i, j) -> Double.compare(homogeneity[j], homogeneity[i]));
+        Point accepted[] = new Point[cellsX * cellsY];
+        List<Point> seeds = new ArrayList();
+        long minDistance2 = (long) seedSpacing * seedSpacing;
+        for (int candidate : sorted) {
+            if (maxSeeds > 0 && seeds.size() >= maxSeeds) break;
+            int x = candidate % width, y = candidate / width;
+            int cx = x / seedSpacing, cy = y / seedSpacing;
+            boolean isFar = true;
+            for (int ny = Math.max(0, cy - 1); ny <= Math.min(cellsY - 1, cy + 1) && isFar; ny++) {
+                for (int nx = Math.max(0, cx - 1); nx <= Math.min(cellsX - 1, cx + 1) && isFar; nx++) {
+                    Point p = accepted[ny * cellsX + nx];
+                    if (p != null) {
+                        long dx = p.x - x, dy = p.y - y;
+                        isFar = dx * dx + dy * dy >= minDistance2;
+                    }
+                }
+            }
+            if (isFar) {
+                Point seed = new Point(x, y);
+                accepted[cy * cellsX + cx] = seed;
+                seeds.add(seed);
+            }
+        }
+        return seeds;
+    }
+
+    /**
+     * Checks if the given pixel is a local maximum of the homogeneity map,
+     * that is, if its homogeneity is not lower than the one of its eight
+     * neighbours.
+     *
+     * @param homogeneity the homogeneity map in row-major order.
+     * @param width the width of the map.
+     * @param height the height of the map.
+     * @param x x-coordinate of the pixel.
+     * @param y y-coordinate of the pixel.
+     * @return <tt>true</tt> if the pixel is a local maximum.
+     */
+    private static boolean isLocalMaximum(double homogeneity[], int width, int height, int x, int y) {
+        double value = homogeneity[y * width + x];
+        for (int ny = Math.max(0, y - 1); ny <= Math.min(height - 1, y + 1); ny++) {
+            for (int nx = Math.max(0, x - 1); nx <= Math.min(width - 1, x + 1); nx++) {
+                if (homogeneity[ny * width + nx] > value) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculates the homogeneity map of the given image, that is, the minimum
+     * resemblance between each pixel and its eight neighbours. The rows are
+     * calculated in parallel.
+     *
+     * @param image the image to be analyzed.
+     * @return the homogeneity map in row-major order.
+     */
+    public double[] homogeneityMap(BufferedImage image) {
+        int width = image.getWidth(), height = image.getHeight();
+        double homogeneity[] = new double[width * height];
+        IntStream.range(0, height).parallel().forEach(y -> {
+            Point p = new Point(), q = new Point();
+            for (int x = 0; x < width; x++) {
+                double min = 1.0;
+                p.setLocation(x, y);
+                for (int ny = Math.max(0, y - 1); ny <= Math.min(height - 1, y + 1); ny++) {
+                    for (int nx = Math.max(0, x - 1); nx <= Math.min(width - 1, x + 1); nx++) {
+                        if (nx != x || ny != y) {
+                            q.setLocation(nx, ny);
+                            min = Math.min(min, resemblanceOp.apply(p, q, image));
+                        }
+                    }
+                }
+                homogeneity[y * width + x] = min;
+            }
+        });
+        return homogeneity;
+    }
+
+    /**
+     * Set the pixel resemblance operator for this object.
+     *
+     * @param op the new pixel resemblance operator.
+     * @throws NullPointerException if the operator is null.
+     */
+    public final void setPixelResemblanceOp(PixelResemblanceOp op) {
+        if (op == null) {
+            throw new NullPointerException("Resemblance operator is null");
+        }
+        this.resemblanceOp = op;
+    }
+
+    /**
+     * Returns the minimum distance (in pixels) between seeds.
+     *
+     * @return the minimum distance between seeds.
+     */
+    public int getSeedSpacing() {
+        return seedSpacing;
+    }
+
+    /**
+     * Set the minimum distance (in pixels) between seeds. It controls the
+     * seed density: at most one seed per square cell of this size is selected.
+     *
+     * @param seedSpacing minimum distance between seeds. It must be at least 1
+     * (lower values are replaced by 1).
+     */
+    public final void setSeedSpacing(int seedSpacing) {
+        this.seedSpacing = Math.max(1, seedSpacing);
+    }
+
+    /**
+     * Returns the minimum homogeneity of a seed.
+     *
+     * @return the minimum homogeneity of a seed.
+     */
+    public double getHomogeneityThreshold() {
+        return homogeneityThreshold;
+    }
+
+    /**
+     * Set the minimum homogeneity of a seed.
+     *
+     * @param threshold the minimum homogeneity of a seed (between 0 and 1).
+     */
+    public void setHomogeneityThreshold(double threshold) {
+        this.homogeneityThreshold = Math.max(0.0, Math.min(1.0, threshold));
+    }
+
+    /**
+     * Returns the maximum number of seeds (0 means no limit).
+     *
+     * @return the maximum number of seeds.
+     */
+    public int getMaxSeeds() {
+        return maxSeeds;
+    }
+
+    /**
+     * Set the maximum number of seeds. If there are more candidates, the ones
+     * with the greatest homogeneity are selected.
+     *
+     * @param maxSeeds the maximum number of seeds (0 means no limit).
+     */
+    public void setMaxSeeds(int maxSeeds) {
+        this.maxSeeds = Math.max(0, maxSeeds);
+    }
+}
@@ -0,0 +1,403 @@
+package jfi.region.fuzzy;
+
+import java.awt.Point;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import jfi.fuzzy.FuzzySet;
+
+/**
+ * A class representing a fuzzy region of a tiled image (see
+ * {@link jfi.image.TileStore}). The membership degrees are stored by tiles in
+ * a file on disk, so only the tiles in use need to be in memory and it can be
+ * used for images that do not fit in memory. If no file is given, a temporary
+ * one is created (and deleted when the region is closed).
+ *
+ * <p>
+ * The region must be closed (see {@link #close()}) when it is no longer used,
+ * in order to release the file.
+ *
+ * <p>
+ * In the file, each tile has a fixed slot of <code>tileWidth*tileHeight</code>
+ * single precision floats (row-major order), so the degrees are rounded to
+ * <code>float</code> when they are stored. The tiles that have not been written
+ * have membership degree 0.0 for all their pixels. The last tiles read by
+ * {@link #membershipDegree(int, int)} are cached in memory, so the point
+ * lookups do not access the disk for each pixel.
+ *
+ * @see jfi.region.fuzzy.TiledFuzzySegmentationOp
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class TiledFuzzyRegion implements FuzzySet<Point>, Closeable {
+    /**
+     * The label associated to the fuzzy set.
+     */
+    protected String label = "";
+    /**
+     * The size of the image.
+     */
+    private final int width, height;
+    /**
+     * The size of the tiles.
+     */
+    private final int tileWidth, tileHeight;
+    /**
+     * Number of tile columns and rows.
+     */
+    private final int numXTiles, numYTiles;
+    /**
+     * The file where the tiles are stored.
+     */
+    private final RandomAccessFile file;
+    /**
+     * The temporary file to be deleted when the region is closed
+     * (<code>null</code> if the file was given by the user).
+     */
+    private final File temporary;
+    /**
+     * The directory of the region file (where the side file of frames is
+     * created).
+     */
+    private final File directory;
+    /**
+     * Channel used for the positional reads and writes.
+     */
+    private final FileChannel channel;
+    /**
+     * Number of tiles kept in the cache of {@link #membershipDegree(int, int)}.
+     */
+    private static final int CACHE_SIZE = 4;
+    /**
+     * Tiles recently read by {@link #membershipDegree(int, int)}, indexed by
+     * slot (in access order). It is also used as the lock of the cache.
+     */
+    private final Map<Integer, float[]> cache = new LinkedHashMap<Integer, float[]>(2 * CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, float[]> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    /**
+     * Side file where the border degrees of the tiles are stored during the
+     * segmentation (see {@link #writeFrame(int, int, float[])}). It is
+     * <code>null</code> until the first frame is written.
+     */
+    private File frameFile = null;
+    /**
+     * Channel of the side file of border degrees.
+     */
+    private FileChannel frameChannel = null;
+
+    /**
+     * Constructs a new tiled fuzzy region. By default, the membership degrees
+     * are initialized to 0.0.
+     *
+     * @param width the width of the image.
+     * @param height the height of the image.
+     * @param tileWidth the width of the tiles.
+     * @param tileHeight the height of the tiles.
+     * @param f the file where the degrees are stored (it is overwritten). If
+     * it is <code>null</code>, a temporary file is created in the default
+     * temporary-file directory.
+     * @throws IOException if an I/O error occurs.
+     */
+    public TiledFuzzyRegion(int width, int height, int tileWidth, int tileHeight, File f) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.numXTiles = (width + tileWidth - 1) / tileWidth;
+        this.numYTiles = (height + tileHeight - 1) / tileHeight;
+        if (f == null) {
+            f = File.createTempFile("region", ".deg");
+            f.deleteOnExit();
+            temporary = f;
+        } else {
+            temporary = null;
+        }
+        directory = f.getAbsoluteFile().getParentFile();
+        file = new RandomAccessFile(f, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+    }
+
+    /**
+     * Returns the width of the image.
+     *
+     * @return the width of the image.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the image.
+     *
+     * @return the height of the image.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the (nominal) width of the tiles.
+     *
+     * @return the width of the tiles.
+     */
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    /**
+     * Returns the (nominal) height of the tiles.
+     *
+     * @return the height of the tiles.
+     */
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    /**
+     * Returns the membership degrees of the given tile as an array of
+     * <code>tileWidth*tileHeight</code> values in row-major order (with
+     * <code>tileWidth</code> as row stride, also for the narrower tiles). A
+     * new array is returned in each call.
+     *
+     * @param tx the column of the tile.
+     * @param ty the row of the tile.
+     * @return the membership degrees of the tile.
+     * @throws IOException if an I/O error occurs.
+     */
+    public double[] readTile(int tx, int ty) throws IOException {
+        float degrees[] = readFloats(channel, slotOffset(ty * numXTiles + tx), tileWidth * tileHeight);
+        double out[] = new double[degrees.length];
+        for (int i = 0; i < degrees.length; i++) {
+            out[i] = degrees[i];
+        }
+        return out;
+    }
+
+    /**
+     * Stores the membership degrees of the given tile (rounded to
+     * <code>float</code>). The array must have the layout described in
+     * {@link #readTile(int, int)}.
+     *
+     * @param tx the column of the tile.
+     * @param ty the row of the tile.
+     * @param degrees the membership degrees of the tile.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeTile(int tx, int ty, double degrees[]) throws IOException {
+        if (degrees.length != tileWidth * tileHeight) {
+            throw new IllegalArgumentException("Tile size mismatch");
+        }
+        int slot = ty * numXTiles + tx;
+        float data[] = new float[degrees.length];
+        for (int i = 0; i < degrees.length; i++) {
+            data[i] = (float) degrees[i];
+        }
+        writeFloats(channel, slotOffset(slot), data);
+        synchronized (cache) {
+            cache.remove(slot);
+        }
+    }
+
+    /**
+     * Returns the offset in the file of the given tile slot.
+     *
+     * @param slot the index of the slot (in row-major tile order).
+     * @return the offset in bytes.
+     */
+    private long slotOffset(int slot) {
+        return (long) slot * tileWidth * tileHeight * 4;
+    }
+
+    /**
+     * Reads the given number of floats from the given position. The data
+     * beyond the end of the file is read as zero.
+     */
+    private static float[] readFloats(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length * 4);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) break;
+        }
+        buffer.rewind();
+        float out[] = new float[length];
+        buffer.asFloatBuffer().get(out);
+        return out;
+    }
+
+    /**
+     * Writes the given floats at the given position.
+     */
+    private static void writeFloats(FileChannel channel, long position, float data[]) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(data.length * 4);
+        buffer.asFloatBuffer().put(data);
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Returns the border degrees of the given tile stored by
+     * {@link #writeFrame(int, int, float[])}, or <code>null</code> if no frame
+     * has been written yet.
+     *
+     * @param tx the column of the tile.
+     * @param ty the row of the tile.
+     * @param length the length of the frame.
+     * @return the border degrees of the tile.
+     * @throws IOException if an I/O error occurs.
+     */
+    float[] readFrame(int tx, int ty, int length) throws IOException {
+        if (frameChannel == null) return null;
+        return readFloats(frameChannel, frameOffset(ty * numXTiles + tx), length);
+    }
+
+    /**
+     * Stores the border degrees of the given tile in the side file of frames
+     * (created in the directory of the region file the first time). Each tile
+     * has a fixed slot of <code>2*(tileWidth+tileHeight)</code> floats.
+     *
+     * @param tx the column of the tile.
+     * @param ty the row of the tile.
+     * @param frame the border degrees of the tile.
+     * @throws IOException if an I/O error occurs.
+     */
+    void writeFrame(int tx, int ty, float frame[]) throws IOException {
+        if (frame.length > 2 * (tileWidth + tileHeight)) {
+            throw new IllegalArgumentException("Frame size mismatch");
+        }
+        if (frameChannel == null) {
+            frameFile = File.createTempFile("frames", ".tmp", directory);
+            frameFile.deleteOnExit();
+            frameChannel = new RandomAccessFile(frameFile, "rw").getChannel();
+        }
+        writeFloats(frameChannel, frameOffset(ty * numXTiles + tx), frame);
+    }
+
+    /**
+     * Closes and deletes the side file of frames (if any).
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    void discardFrames() throws IOException {
+        if (frameChannel != null) {
+            frameChannel.close();
+            frameFile.delete();
+            frameChannel = null;
+            frameFile = null;
+        }
+    }
+
+    /**
+     * Returns the offset in the side file of the given frame slot.
+     */
+    private long frameOffset(int slot) {
+        return (long) slot * 2 * (tileWidth + tileHeight) * 4;
+    }
+
+    /**
+     * Returns the membership degree of the pixel of coordinates
+     * <tt>(x,y)</tt>.
+     *
+     * @param x x-coordinate of the pixel.
+     * @param y y-coordinate of the pixel.
+     * @return the membership degree.
+     */
+    public double membershipDegree(int x, int y) {
+        int slot = (y / tileHeight) * numXTiles + x / tileWidth;
+        int offset = (y % tileHeight) * tileWidth + x % tileWidth;
+        synchronized (cache) {
+            float degrees[] = cache.get(slot);
+            if (degrees == null) {
+                try {
+                    degrees = readFloats(channel, slotOffset(slot), tileWidth * tileHeight);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                cache.put(slot, degrees);
+            }
+            return degrees[offset];
+        }
+    }
+
+    /**
+     * Return the membership degree of the pixel <tt>p</tt>.
+     *
+     * @param p the pixel
+     * @return the membership degree
+     */
+    @Override
+    public double membershipDegree(Point p) {
+        return membershipDegree(p.x, p.y);
+    }
+
+    /**
+     * Return the label associated to the fuzzy set
+     *
+     * @return the label associated to the fuzzy set
+     */
+    @Override
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Set the label associated to the fuzzy set
+     *
+     * @param label the new label
+     */
+    @Override
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Converts this region into a standard (in memory) fuzzy region. It should
+     * be used only if the image fits in memory.
+     *
+     * @return the fuzzy region.
+     * @throws IOException if an I/O error occurs.
+     */
+    public FuzzyRegion toFuzzyRegion() throws IOException {
+        FuzzyRegion fRegion = new FuzzyRegion(width, height);
+        for (int ty = 0; ty < numYTiles; ty++) {
+            for (int tx = 0; tx < numXTiles; tx++) {
+                double degrees[] = readTile(tx, ty);
+                int w = Math.min(tileWidth, width - tx * tileWidth);
+                int h = Math.min(tileHeight, height - ty * tileHeight);
+                for (int y = 0; y < h; y++) {
+                    for (int x = 0; x < w; x++) {
+                        fRegion.setMembershipDegree(tx * tileWidth + x, ty * tileHeight + y,
+                                degrees[y * tileWidth + x]);
+                    }
+                }
+            }
+        }
+        return fRegion;
+    }
+
+    /**
+     * Closes the file associated to this region. If it is a temporary file, it
+     * is deleted.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (cache) {
+            cache.clear();
+        }
+        discardFrames();
+        file.close();
+        if (temporary != null) temporary.delete();
+    }
+}
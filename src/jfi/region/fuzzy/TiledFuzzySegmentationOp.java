@@ -0,0 +1,435 @@
+package jfi.region.fuzzy;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import jfi.fuzzy.operator.TNorm;
+import jfi.fuzzy.resemblance.PixelResemblanceOp;
+import jfi.image.TileStore;
+
+/**
+ * Class implementing a fuzzy segmentation based on a region growing process
+ * for very large images stored by tiles (see {@link jfi.image.TileStore}).
+ *
+ * <p>
+ * The region growing process is the one of
+ * {@link jfi.region.fuzzy.FuzzySegmentationOp}: the degree of a pixel is
+ * the greatest degree that can be propagated from the seed through a path of
+ * adjacent pixels, where each step aggregates (by means of a t-norm) the
+ * current degree and the resemblance between the pixels. In this operator,
+ * however, the region is grown inside each tile independently and the degrees
+ * in the tile borders are exchanged between adjacent tiles:
+ * <ul>
+ * <li>In each round, the active tiles are processed in parallel. Each tile is
+ * loaded (with a one-pixel margin) and its degrees are increased from the
+ * seeds inside it and from the border degrees of its neighbour tiles
+ * calculated in the previous round.</li>
+ * <li>The tiles whose border degrees change activate their neighbour tiles for
+ * the next round.</li>
+ * <li>The process finishes when no border degree changes.</li>
+ * </ul>
+ * Since degrees can only increase and every degree is the one of an actual
+ * path, the result converges to the degrees of the monolithic region growing
+ * process.
+ *
+ * <p>
+ * Only the tiles being processed (one per working thread) and the border
+ * degrees of the active tiles and their neighbours are kept in memory; the
+ * other border degrees are stored in a side file of the region (deleted when
+ * the region is calculated), and the membership degrees are stored in a
+ * {@link jfi.region.fuzzy.TiledFuzzyRegion}, backed by a file on disk
+ * (a temporary one by default, see {@link #setDegreeDirectory(java.io.File)}).
+ * The returned regions must be closed when they are no longer used. The
+ * resemblance operator is applied to the loaded tile images, so it must depend
+ * only on the pixel values (not on their absolute location).
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class TiledFuzzySegmentationOp {
+    /**
+     * The seeds of this segmentation.
+     */
+    private final List<Point> seeds;
+    /**
+     * Pixel resemblance operator used to compare adjacent pixels
+     */
+    PixelResemblanceOp resemblanceOp;
+    /**
+     * T-norm used to aggregate resemblances.
+     */
+    TNorm tnorm = TNorm.PRODUCT;
+    /**
+     * Directory where the membership degrees are stored. If it is
+     * <code>null</code>, they are stored in temporary files.
+     */
+    private File degreeDirectory = null;
+
+    /**
+     * Constructs a new tiled fuzzy segmentation operator. The resemblance
+     * operator {@link jfi.region.fuzzy.FuzzySegmentationOp.DefaultResemblanceOp}
+     * is used by default.
+     *
+     * @param seed the first seed.
+     * @param seeds the others seeds.
+     */
+    public TiledFuzzySegmentationOp(Point seed, Point... seeds) {
+        this.seeds = new ArrayList(Arrays.asList(seeds));
+        this.seeds.add(0, seed);
+        this.resemblanceOp = new FuzzySegmentationOp.DefaultResemblanceOp();
+    }
+
+    /**
+     * Constructs a new tiled fuzzy segmentation operator using as seeds the
+     * ones in the given collection. The resemblance operator
+     * {@link jfi.region.fuzzy.FuzzySegmentationOp.DefaultResemblanceOp} is used
+     * by default.
+     *
+     * @param seeds list of seeds.
+     */
+    public TiledFuzzySegmentationOp(Collection<Point> seeds) {
+        this.seeds = new ArrayList(seeds); //A copy is created
+        this.resemblanceOp = new FuzzySegmentationOp.DefaultResemblanceOp();
+    }
+
+    /**
+     * Apply this operator to the given tiled image. A tiled fuzzy region is
+     * calculated for each seed inside the image bounds. The caller must close
+     * the returned regions (see {@link TiledFuzzyRegion#close()}) in order to
+     * release their files (the temporary ones are deleted).
+     *
+     * @param image the tiled image to be segmented.
+     * @return the list of tiled fuzzy regions (one per seed).
+     * @throws IOException if an I/O error occurs (in that case, the regions
+     * already created are closed).
+     */
+    public List<TiledFuzzyRegion> apply(TileStore image) throws IOException {
+        List<TiledFuzzyRegion> regions = new ArrayList();
+        try {
+            for (Point seed : seeds) {
+                if (seed.x >= 0 && seed.x < image.getWidth() && seed.y >= 0 && seed.y < image.getHeight()) {
+                    File f = degreeDirectory != null
+                            ? new File(degreeDirectory, "region_" + regions.size() + ".deg")
+                            : null;
+                    TiledFuzzyRegion fRegion = new TiledFuzzyRegion(image.getWidth(), image.getHeight(),
+                            image.getTileWidth(), image.getTileHeight(), f);
+                    regions.add(fRegion);
+                    calculateFuzzyRegion(image, seed, fRegion);
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            for (TiledFuzzyRegion fRegion : regions) {
+                try {
+                    fRegion.close();
+                } catch (IOException closeEx) {
+                    ex.addSuppressed(closeEx);
+                }
+            }
+            throw ex;
+        }
+        return regions;
+    }
+
+    /**
+     * Calculates the fuzzy region associated to the given seed.
+     *
+     * @param image the tiled image to be segmented.
+     * @param seed the region seed.
+     * @param fRegion the region where the degrees are stored.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void calculateFuzzyRegion(TileStore image, Point seed, TiledFuzzyRegion fRegion) throws IOException {
+        int numXTiles = image.getNumXTiles(), numYTiles = image.getNumYTiles();
+        //Tiles whose border degrees have been stored in the region (the other
+        //ones have all their border degrees equal to zero)
+        boolean framed[] = new boolean[numXTiles * numYTiles];
+        boolean active[] = new boolean[numXTiles * numYTiles];
+        List<Integer> activeTiles = new ArrayList();
+        activeTiles.add((seed.y / image.getTileHeight()) * numXTiles + seed.x / image.getTileWidth());
+        try {
+            while (!activeTiles.isEmpty()) {
+                //All the tiles in a round read the border degrees of the
+                //previous one, so they can be processed in parallel; the new
+                //borders are stored apart and saved at the end of the round
+                final List<Integer> tiles = activeTiles;
+                final Map<Integer, float[]> frames = loadFrames(image, tiles, framed, fRegion);
+                float current[][] = new float[tiles.size()][];
+                try {
+                    IntStream.range(0, tiles.size()).parallel().forEach(i -> {
+                        int tile = tiles.get(i);
+                        try {
+                            current[i] = growTile(image, tile % numXTiles, tile / numXTiles,
+                                    seed, fRegion, frames);
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    });
+                } catch (UncheckedIOException ex) {
+                    throw ex.getCause();
+                }
+                //The neighbours of the tiles whose borders have changed are
+                //activated for the next round
+                List<Integer> nextTiles = new ArrayList();
+                for (int i = 0; i < tiles.size(); i++) {
+                    int tile = tiles.get(i);
+                    activateNeighbours(image, tile % numXTiles, tile / numXTiles,
+                            frames.get(tile), current[i], active, nextTiles);
+                    fRegion.writeFrame(tile % numXTiles, tile / numXTiles, current[i]);
+                    framed[tile] = true;
+                }
+                for (int tile : nextTiles) {
+                    active[tile] = false;
+                }
+                Collections.sort(nextTiles);
+                activeTiles = nextTiles;
+            }
+        } finally {
+            fRegion.discardFrames();
+        }
+    }
+
+    /**
+     * Loads the stored border degrees of the given tiles and their neighbours.
+     *
+     * @param image the tiled image.
+     * @param tiles the indices of the tiles (in row-major tile order).
+     * @param framed the flags of the tiles whose border degrees are stored.
+     * @param fRegion the region where the border degrees are stored.
+     * @return the border degrees, indexed by tile.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static Map<Integer, float[]> loadFrames(TileStore image, List<Integer> tiles,
+            boolean framed[], TiledFuzzyRegion fRegion) throws IOException {
+        int numXTiles = image.getNumXTiles(), numYTiles = image.getNumYTiles();
+        Map<Integer, float[]> frames = new HashMap();
+        for (int tile : tiles) {
+            int tx = tile % numXTiles, ty = tile / numXTiles;
+            for (int ny = Math.max(0, ty - 1); ny <= Math.min(numYTiles - 1, ty + 1); ny++) {
+                for (int nx = Math.max(0, tx - 1); nx <= Math.min(numXTiles - 1, tx + 1); nx++) {
+                    int ntile = ny * numXTiles + nx;
+                    if (framed[ntile] && !frames.containsKey(ntile)) {
+                        int w = Math.min(image.getTileWidth(), image.getWidth() - nx * image.getTileWidth());
+                        int h = Math.min(image.getTileHeight(), image.getHeight() - ny * image.getTileHeight());
+                        frames.put(ntile, fRegion.readFrame(nx, ny, 2 * w + 2 * h));
+                    }
+                }
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Grows the region inside the given tile from the seed (if it is inside
+     * the tile) and from the border degrees of the neighbour tiles.
+     *
+     * @param image the tiled image.
+     * @param tx the column of the tile.
+     * @param ty the row of the tile.
+     * @param seed the region seed.
+     * @param fRegion the region where the degrees are stored.
+     * @param frames the border degrees of the previous round (of the tile and
+     * its neighbours).
+     * @return the new border degrees of the tile (rounded to <code>float</code>,
+     * as the stored degrees).
+     * @throws IOException if an I/O error occurs.
+     */
+    private float[] growTile(TileStore image, int tx, int ty, Point seed,
+            TiledFuzzyRegion fRegion, Map<Integer, float[]> frames) throws IOException {
+        int tileWidth = image.getTileWidth(), tileHeight = image.getTileHeight();
+        int x0 = tx * tileWidth, y0 = ty * tileHeight;
+        int w = Math.min(tileWidth, image.getWidth() - x0);
+        int h = Math.min(tileHeight, image.getHeight() - y0);
+        //The tile is loaded with a one-pixel margin
+        int mx0 = Math.max(0, x0 - 1), my0 = Math.max(0, y0 - 1);
+        int mx1 = Math.min(image.getWidth(), x0 + w + 1), my1 = Math.min(image.getHeight(), y0 + h + 1);
+        BufferedImage tileImage = image.readRegion(mx0, my0, mx1 - mx0, my1 - my0);
+        //The new degrees are rounded to float (as the stored ones), so offers
+        //that only differ from the stored degrees in the rounding are ignored
+        double degrees[] = fRegion.readTile(tx, ty);
+        PixelPriorityQueue queue = new PixelPriorityQueue(2 * (w + h));
+        Point p = new Point(), q = new Point();
+        boolean changed = false;
+
+        //The seed, if it is inside this tile
+        if (seed.x >= x0 && seed.x < x0 + w && seed.y >= y0 && seed.y < y0 + h) {
+            int index = (seed.y - y0) * tileWidth + seed.x - x0;
+            if (degrees[index] < 1.0) {
+                degrees[index] = 1.0;
+                queue.push(index, 1.0, 0);
+                changed = true;
+            }
+        }
+        //Degrees offered from the margin pixels (in the neighbour tiles)
+        for (int gy = my0; gy < my1; gy++) {
+            for (int gx = mx0; gx < mx1; gx++) {
+                if (gx >= x0 && gx < x0 + w && gy >= y0 && gy < y0 + h) {
+                    continue; //Not a margin pixel
+                }
+                double mdegree = borderDegree(image, gx, gy, frames);
+                if (mdegree <= 0.0) continue;
+                p.setLocation(gx - mx0, gy - my0);
+                for (int ny = Math.max(y0, gy - 1); ny <= Math.min(y0 + h - 1, gy + 1); ny++) {
+                    for (int nx = Math.max(x0, gx - 1); nx <= Math.min(x0 + w - 1, gx + 1); nx++) {
+                        q.setLocation(nx - mx0, ny - my0);
+                        double degree = tnorm.apply(mdegree, resemblanceOp.apply(p, q, tileImage)).floatValue();
+                        int index = (ny - y0) * tileWidth + nx - x0;
+                        if (degree > degrees[index]) {
+                            degrees[index] = degree;
+                            queue.push(index, degree, 0);
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+        //Region growing process inside the tile
+        while (queue.poll()) {
+            int index = queue.lastPixel();
+            if (queue.lastDegree() < degrees[index]) {
+                continue; //Superseded by a better offer
+            }
+            int px = index % tileWidth, py = index / tileWidth;
+            p.setLocation(x0 + px - mx0, y0 + py - my0);
+            for (int ny = Math.max(0, py - 1); ny <= Math.min(h - 1, py + 1); ny++) {
+                for (int nx = Math.max(0, px - 1); nx <= Math.min(w - 1, px + 1); nx++) {
+                    int nindex = ny * tileWidth + nx;
+                    if (nindex == index) continue;
+                    q.setLocation(x0 + nx - mx0, y0 + ny - my0);
+                    double degree = tnorm.apply(degrees[index], resemblanceOp.apply(p, q, tileImage)).floatValue();
+                    if (degree > degrees[nindex]) {
+                        degrees[nindex] = degree;
+                        queue.push(nindex, degree, 0);
+                    }
+                }
+            }
+        }
+        if (changed) {
+            fRegion.writeTile(tx, ty, degrees);
+        }
+        //Border degrees: top row, bottom row, left column and right column
+        float frame[] = new float[2 * w + 2 * h];
+        for (int x = 0; x < w; x++) {
+            frame[x] = (float) degrees[x];
+            frame[w + x] = (float) degrees[(h - 1) * tileWidth + x];
+        }
+        for (int y = 0; y < h; y++) {
+            frame[2 * w + y] = (float) degrees[y * tileWidth];
+            frame[2 * w + h + y] = (float) degrees[y * tileWidth + w - 1];
+        }
+        return frame;
+    }
+
+    /**
+     * Returns the degree of a pixel located in the border of its tile, using
+     * the given border degrees.
+     *
+     * @param image the tiled image.
+     * @param x x-coordinate of the pixel.
+     * @param y y-coordinate of the pixel.
+     * @param frames the border degrees of the tiles, indexed by tile.
+     * @return the degree of the pixel.
+     */
+    private static double borderDegree(TileStore image, int x, int y, Map<Integer, float[]> frames) {
+        int tileWidth = image.getTileWidth(), tileHeight = image.getTileHeight();
+        int tx = x / tileWidth, ty = y / tileHeight;
+        float frame[] = frames.get(ty * image.getNumXTiles() + tx);
+        if (frame == null) return 0.0;
+        int w = Math.min(tileWidth, image.getWidth() - tx * tileWidth);
+        int h = Math.min(tileHeight, image.getHeight() - ty * tileHeight);
+        int lx = x - tx * tileWidth, ly = y - ty * tileHeight;
+        if (ly == 0) return frame[lx];
+        if (ly == h - 1) return frame[w + lx];
+        if (lx == 0) return frame[2 * w + ly];
+        return frame[2 * w + h + ly]; // lx == w-1
+    }
+
+    /**
+     * Activates the neighbour tiles adjacent to the sides of the given tile
+     * whose border degrees have changed.
+     *
+     * @param image the tiled image.
+     * @param tx the column of the tile.
+     * @param ty the row of the tile.
+     * @param before the border degrees before the round.
+     * @param after the border degrees after the round.
+     * @param active the activation flags of the tiles already activated.
+     * @param activated the list where the newly activated tiles are added.
+     */
+    private static void activateNeighbours(TileStore image, int tx, int ty,
+            float before[], float after[], boolean active[], List<Integer> activated) {
+        int w = Math.min(image.getTileWidth(), image.getWidth() - tx * image.getTileWidth());
+        int h = Math.min(image.getTileHeight(), image.getHeight() - ty * image.getTileHeight());
+        //Sides: top, bottom, left and right
+        int starts[] = {0, w, 2 * w, 2 * w + h}, lengths[] = {w, w, h, h};
+        int dxs[][] = {{-1, 0, 1}, {-1, 0, 1}, {-1}, {1}};
+        int dys[][] = {{-1}, {1}, {-1, 0, 1}, {-1, 0, 1}};
+        for (int side = 0; side < 4; side++) {
+            boolean changed = false;
+            for (int i = starts[side]; i < starts[side] + lengths[side] && !changed; i++) {
+                changed = after[i] != (before == null ? 0.0 : before[i]);
+            }
+            if (changed) {
+                for (int dx : dxs[side]) {
+                    for (int dy : dys[side]) {
+                        int nx = tx + dx, ny = ty + dy;
+                        int tile = ny * image.getNumXTiles() + nx;
+                        if (nx >= 0 && nx < image.getNumXTiles() && ny >= 0 && ny < image.getNumYTiles() && !active[tile]) {
+                            active[tile] = true;
+                            activated.add(tile);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the specified seed to the list of seeds.
+     *
+     * @param seed seed to be appended to this list
+     * @return <tt>true</tt> if added.
+     */
+    public boolean addSeed(Point seed) {
+        return seeds.add(seed);
+    }
+
+    /**
+     * Set the pixel resemblance operator for this object. It allows the use of
+     * lambda expressions
+     *
+     * @param op the new pixel resemblance operator.
+     */
+    final public void setPixelResemblanceOp(PixelResemblanceOp op) {
+        if (op != null) this.resemblanceOp = op;
+    }
+
+    /**
+     * Set the t-norm used to aggregate resemblances.
+     *
+     * @param tnorm t-norm used to aggregate resemblances.
+     */
+    public void setTNorm(TNorm tnorm) {
+        if (tnorm != null) this.tnorm = tnorm;
+    }
+
+    /**
+     * Set the directory where the membership degrees of the regions are
+     * stored (a file per region). If it is <code>null</code> (the default
+     * value), the degrees are stored in temporary files (in the default
+     * temporary-file directory), deleted when the regions are closed.
+     *
+     * @param directory the directory where the degrees are stored.
+     */
+    public void setDegreeDirectory(File directory) {
+        this.degreeDirectory = directory;
+    }
+}
@@ -1,8 +1,8 @@
 package jfi.texture;
 
-import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
-import jfi.color.GreyColorSpace;
+import jfi.image.GreyPlane;
+import jfi.utils.FFT;
 
 /**
  *
@@ -14,6 +14,12 @@ public class AbbadeniDirectionalityMeasure implements TextureMeasure<Double> {
     private int numBins;
 
     public static final int NUM_BINS = 30;
+    /**
+     * Relative cost of the FFT-based autocovariance (per element and
+     * logarithmic factor) with respect to the direct one (per product). It is
+     * used to choose the faster calculation for a given image size.
+     */
+    private static final long FFT_COST_FACTOR = 48;
 
     /**
      * Constructs the measure object using the default parameter.
@@ -34,36 +40,72 @@ public class AbbadeniDirectionalityMeasure implements TextureMeasure<Double> {
 
     @Override
     public Double apply(BufferedImage image) {
-        BufferedImage grayscaleImage;
-        if (image.getRaster().getNumBands() == 1)
-            grayscaleImage = image;        
-        else{
-            ColorSpace cs = new GreyColorSpace();
-            jfi.color.ColorConvertOp op = new jfi.color.ColorConvertOp(cs, null);  
-            grayscaleImage = op.filter(image, null, false);
+        return apply(GreyPlane.of(image));
+    }
+
+    @Override
+    public Double apply(GreyPlane plane) {
+        return abbadeniMeasure(plane);
+    }
+    
+    /**
+     * Indicates whether some other object is "equal to" this one, that is, if
+     * it is the same measure with the same parameters (so both measures give
+     * the same values).
+     *
+     * @param obj reference object with which to compare.
+     * @return {@code true} if this measure is the same as the argument;
+     * {@code false} otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof AbbadeniDirectionalityMeasure) {
+            AbbadeniDirectionalityMeasure m = (AbbadeniDirectionalityMeasure) obj;
+            return numBins == m.numBins;
         }
-        return abbadeniMeasure(grayscaleImage);
+        return false;
+    }
+    
+    /**
+     * Returns a hash code value for this measure, consistent with
+     * {@link #equals(java.lang.Object)}.
+     *
+     * @return a hash code value for this measure.
+     */
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 31 * hash + numBins;
+        return hash;
+    }
+    
+    /**
+     * Calculates the measure for every window of the given size in the plane
+     * (dense map). The output position <tt>y*(width-windowWidth+1)+x</tt>
+     * stores the measure of the window whose top-left pixel is <tt>(x,y)</tt>.
+     * The windows are processed in parallel (the autocovariance buffers are
+     * allocated for each window, so the measure can be applied
+     * concurrently).
+     *
+     * @param plane the grey plane.
+     * @param windowWidth the width of the windows.
+     * @param windowHeight the height of the windows.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @return the dense map.
+     */
+    @Override
+    public double[] applyDense(GreyPlane plane, int windowWidth, int windowHeight, double out[]) {
+        return DenseMaps.perWindow(this::abbadeniMeasure, plane, windowWidth, windowHeight, out, true);
     }
 
     
-    private double abbadeniMeasure(BufferedImage I) {
+    private double abbadeniMeasure(GreyPlane I) {
         int rows = I.getHeight();
         int cols = I.getWidth();
-        int[] img = null;
-        img = I.getRaster().getSamples(0, 0, cols, rows, 0, img);
-        double[] f = new double[rows * cols];
         double suma;
 
         // Compute the autocovariance according Abbadeni
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                suma = 0.f;
-                for (int k = 0; k < rows - i; k++)
-                    for (int m = 0; m < cols - j; m++) 
-                        suma += img[k * cols + m] * img[(k + i) * cols + j + m];
-                f[i * cols + j] = suma / ((rows - i) * (cols - j));
-            }
-        }
+        double[] f = useFFT(rows, cols) ? autocovarianceFFT(I) : autocovariance(I);
 
         // Compute the directionality according Abbadeni
         double dir_deltaH, dir_deltaV;
@@ -117,6 +159,73 @@ public class AbbadeniDirectionalityMeasure implements TextureMeasure<Double> {
         return directionality;
     }
 
+    /**
+     * Checks if the FFT-based autocovariance is expected to be faster than the
+     * direct one for the given image size.
+     */
+    private static boolean useFFT(int rows, int cols) {
+        long n = (long) FFT.nextPowerOfTwo(2 * cols - 1) * FFT.nextPowerOfTwo(2 * rows - 1);
+        long direct = (long) rows * cols * rows * cols;
+        return direct > FFT_COST_FACTOR * n * (63 - Long.numberOfLeadingZeros(n));
+    }
+
+    /**
+     * Computes the autocovariance of the given image directly from its
+     * definition (with cost <tt>O(rows<sup>2</sup>cols<sup>2</sup>)</tt>).
+     */
+    private double[] autocovariance(GreyPlane I) {
+        int rows = I.getHeight();
+        int cols = I.getWidth();
+        int[] img = I.getData();
+        int off = I.getOffset(), stride = I.getScanline();
+        double[] f = new double[rows * cols];
+        double suma;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                suma = 0.f;
+                for (int k = 0; k < rows - i; k++)
+                    for (int m = 0; m < cols - j; m++) 
+                        suma += img[off + k * stride + m] * img[off + (k + i) * stride + j + m];
+                f[i * cols + j] = suma / ((rows - i) * (cols - j));
+            }
+        }
+        return f;
+    }
+
+    /**
+     * Computes the autocovariance of the given image by means of the FFT (with
+     * cost <tt>O(n log n)</tt>). The image is zero-padded to avoid the
+     * circular overlapping, and its power spectrum is transformed back. Since
+     * the exact sums are integers, they are rounded in order to obtain the
+     * same values as the direct calculation.
+     */
+    private double[] autocovarianceFFT(GreyPlane I) {
+        int rows = I.getHeight();
+        int cols = I.getWidth();
+        int[] img = I.getData();
+        int off = I.getOffset(), stride = I.getScanline();
+        int pw = FFT.nextPowerOfTwo(2 * cols - 1);
+        int ph = FFT.nextPowerOfTwo(2 * rows - 1);
+        double[] re = new double[pw * ph];
+        double[] im = new double[pw * ph];
+        for (int k = 0; k < rows; k++)
+            for (int m = 0; m < cols; m++)
+                re[k * pw + m] = img[off + k * stride + m];
+        
+        FFT.transform2D(re, im, pw, ph, rows, false);
+        for (int n = 0; n < re.length; n++) {
+            re[n] = re[n] * re[n] + im[n] * im[n];
+            im[n] = 0.0;
+        }
+        FFT.transform2D(re, im, pw, ph, true);
+        
+        double[] f = new double[rows * cols];
+        for (int i = 0; i < rows; i++)
+            for (int j = 0; j < cols; j++)
+                f[i * cols + j] = Math.rint(re[i * pw + j]) / ((rows - i) * (cols - j));
+        return f;
+    }
+
     private double PrewittOperatorHd(double[] I, int cols, int y, int x) {
         double result = 0;
         result += (I[(y + 1) * cols + (x - 1)] - I[(y - 1) * cols + (x - 1)]);
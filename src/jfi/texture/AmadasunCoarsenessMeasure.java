@@ -1,10 +1,10 @@
 package jfi.texture;
 
-import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
 import java.security.InvalidParameterException;
-import jfi.color.ColorConvertOp;
-import jfi.color.GreyColorSpace;
+import java.util.Arrays;
+import jfi.image.GreyPlane;
+import jfi.image.IntegralImage;
 
 /**
  *
@@ -18,6 +18,11 @@ public class AmadasunCoarsenessMeasure implements TextureMeasure<Double> {
 
     public static final int DEFAULT_DISTANCE = 1;
     public static final int DEFAULT_GREY_LEVELS = 256;
+    /**
+     * Number of bins of the grey level histogram (whatever the number of grey
+     * levels).
+     */
+    public static final int NUM_BINS = 8;
 
     /**
      * Constructs the measure object using the default parameters.
@@ -39,45 +44,95 @@ public class AmadasunCoarsenessMeasure implements TextureMeasure<Double> {
      * Constructs the measure object using the parameters "distance" and "greyLevels".
      *
      * @param distance distance parameter of the Amadasun measure.
-     * @param greyLevels number of grey levels of the image (Only 256 grey levels supported).
+     * @param greyLevels number of grey levels used for the neighbourhood
+     * differences (a power of two between 8 and 256). The grey levels of the
+     * image are uniformly quantized to them; the histogram always has
+     * {@link #NUM_BINS} bins, so the differences (and the measure) scale with
+     * the number of levels.
+     * @throws InvalidParameterException if the number of grey levels is not
+     * supported.
      */
     public AmadasunCoarsenessMeasure(int distance, int greyLevels) {
-        if (greyLevels != DEFAULT_GREY_LEVELS)
-            throw new InvalidParameterException("Only 256 grey levels supported");
-        else{
-            this.distance = distance;
-            this.greyLevels = greyLevels;
-        }
+        Quantization.checkLevels(greyLevels);
+        this.distance = distance;
+        this.greyLevels = greyLevels;
+    }
+    
+    /**
+     * Returns the distance parameter of this measure.
+     *
+     * @return the distance.
+     */
+    public int getDistance() {
+        return distance;
+    }
+    
+    /**
+     * Returns the number of grey levels used by this measure.
+     *
+     * @return the number of grey levels.
+     */
+    public int getGreyLevels() {
+        return greyLevels;
     }
 
     @Override
     public Double apply(BufferedImage image) {
-        BufferedImage grayscaleImage;
-        if (image.getRaster().getNumBands() == 1)
-            grayscaleImage = image;        
-        else{
-            ColorSpace cs = new GreyColorSpace();
-            ColorConvertOp op = new ColorConvertOp(cs, null);  
-            grayscaleImage = op.filter(image, null, false);
+        return apply(GreyPlane.of(image));
+    }
+
+    @Override
+    public Double apply(GreyPlane plane) {
+        return amadasunMeasure(Quantization.quantize(plane, greyLevels));
+    }
+    
+    /**
+     * Indicates whether some other object is "equal to" this one, that is, if
+     * it is the same measure with the same parameters (so both measures give
+     * the same values).
+     *
+     * @param obj reference object with which to compare.
+     * @return {@code true} if this measure is the same as the argument;
+     * {@code false} otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof AmadasunCoarsenessMeasure) {
+            AmadasunCoarsenessMeasure m = (AmadasunCoarsenessMeasure) obj;
+            return distance == m.distance && greyLevels == m.greyLevels;
         }
-        return amadasunMeasure(grayscaleImage);
+        return false;
+    }
+    
+    /**
+     * Returns a hash code value for this measure, consistent with
+     * {@link #equals(java.lang.Object)}.
+     *
+     * @return a hash code value for this measure.
+     */
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 31 * hash + distance;
+        hash = 31 * hash + greyLevels;
+        return hash;
     }
 
     
-    private double amadasunMeasure(BufferedImage I) {
+    private double amadasunMeasure(GreyPlane I) {
         int d = distance;
         int rows = I.getHeight();
         int cols = I.getWidth();
-        int[] img = null;
-        img = I.getRaster().getSamples(0, 0, cols, rows, 0, img);
+        int[] img = I.getData();
+        int off = I.getOffset(), stride = I.getScanline();
         final double cte = java.lang.Double.MIN_VALUE;
         int suma, indice, pixel, n_2;
         double A_i, grosor;
         double W = Math.pow(2.0 * d + 1, 2);
 
         // This reduction is needed to make the measure independent to the image size.
-        int reduccion = 32;
-        int tam_p = greyLevels / reduccion;
+        int reduccion = greyLevels / NUM_BINS;
+        int tam_p = NUM_BINS;
         
         // These two vectors are initialized to 0.
         double[] s = new double[tam_p];
@@ -88,11 +143,11 @@ public class AmadasunCoarsenessMeasure implements TextureMeasure<Double> {
 
         for (int k = d; k < rows - d; k++) {
             for (int l = d; l < cols - d; l++) {
-                pixel = img[k * cols + l];
+                pixel = img[off + k * stride + l];
                 suma = 0;
                 for (int m = k - d; m <= k + d; m++) {
                     for (int j = l - d; j <= l + d; j++) {
-                        suma += img[m * cols + j];
+                        suma += img[off + m * stride + j];
                     }
                 }
                 A_i = ((double) (suma - pixel)) / (W - 1);
@@ -111,6 +166,98 @@ public class AmadasunCoarsenessMeasure implements TextureMeasure<Double> {
         return grosor;
     }
     
+    /**
+     * Calculates the measure for every window of the given size in the plane
+     * (dense map). The output position <tt>y*(width-windowWidth+1)+x</tt>
+     * stores the measure of the window whose top-left pixel is <tt>(x,y)</tt>.
+     * 
+     * <p>
+     * The neighbourhood sums are obtained from the integral image of the grey
+     * levels, and they are calculated once for each pixel (they do not depend
+     * on the window). The per-bin occurrences and deviations of each window
+     * are obtained from integral images too, so the cost per window depends
+     * on the number of bins but not on the window size. The values match the
+     * ones of {@link #apply(jfi.image.GreyPlane)} up to floating-point
+     * rounding.
+     *
+     * @param plane the grey plane.
+     * @param windowWidth the width of the windows.
+     * @param windowHeight the height of the windows.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @return the dense map.
+     */
+    @Override
+    public double[] applyDense(GreyPlane plane, int windowWidth, int windowHeight, double out[]) {
+        int d = distance;
+        int width = plane.getWidth(), height = plane.getHeight();
+        int outWidth = Math.max(0, width - windowWidth + 1);
+        int outHeight = Math.max(0, height - windowHeight + 1);
+        if (out == null) {
+            out = new double[outWidth * outHeight];
+        }
+        if (outWidth == 0 || outHeight == 0) {
+            return out;
+        }
+        if ((windowHeight - d < 0) || (windowWidth - d < 0))
+            throw new IllegalArgumentException("The image size is too small to apply the measure.");
+        final double cte = java.lang.Double.MIN_VALUE;
+        int reduccion = greyLevels / NUM_BINS;
+        int tam_p = NUM_BINS;
+        plane = Quantization.quantize(plane, greyLevels);
+        int side = 2 * d + 1, w_1 = side * side - 1;
+        
+        // Bin and deviation (multiplied by W-1, so it is an integer) of each
+        // pixel whose neighbourhood is inside the image
+        IntegralImage sums = new IntegralImage(plane, 1);
+        int tam = width * height;
+        int[] bins = new int[tam];
+        long[] deviations = new long[tam];
+        Arrays.fill(bins, -1);
+        for (int k = d; k < height - d; k++) {
+            for (int l = d; l < width - d; l++) {
+                int pixel = plane.getSample(l, k);
+                long suma = sums.sum(l - d, k - d, side, side);
+                bins[k * width + l] = pixel / reduccion;
+                deviations[k * width + l] = Math.abs((long) pixel * w_1 - (suma - pixel));
+            }
+        }
+        
+        // Accumulation of (p_i/n_2)*s_i for each window, bin by bin. The
+        // summed-area tables of the count and of the deviation of each bin
+        // are built in the same two tables (reused for all the bins)
+        int n_2 = (windowHeight - 2 * d) * (windowWidth - 2 * d);
+        int iw = Math.max(0, windowWidth - 2 * d), ih = Math.max(0, windowHeight - 2 * d);
+        int stride = width + 1;
+        long[] p_table = new long[stride * (height + 1)];
+        long[] s_table = new long[stride * (height + 1)];
+        Arrays.fill(out, 0, outWidth * outHeight, 0.0);
+        for (int b = 0; b < tam_p; b++) {
+            for (int y = 0; y < height; y++) {
+                long p_row = 0, s_row = 0;
+                for (int x = 0, i = y * width; x < width; x++, i++) {
+                    if (bins[i] == b) {
+                        p_row++;
+                        s_row += deviations[i];
+                    }
+                    p_table[(y + 1) * stride + x + 1] = p_table[y * stride + x + 1] + p_row;
+                    s_table[(y + 1) * stride + x + 1] = s_table[y * stride + x + 1] + s_row;
+                }
+            }
+            for (int y = 0, i = 0; y < outHeight; y++) {
+                int top = (y + d) * stride, bottom = (y + d + ih) * stride;
+                for (int x = 0; x < outWidth; x++, i++) {
+                    int left = x + d, right = x + d + iw;
+                    double p_i = p_table[bottom + right] - p_table[bottom + left] - p_table[top + right] + p_table[top + left];
+                    double s_i = (double) (s_table[bottom + right] - s_table[bottom + left] - s_table[top + right] + s_table[top + left]) / w_1;
+                    out[i] += (p_i / n_2) * s_i;
+                }
+            }
+        }
+        for (int i = 0; i < outWidth * outHeight; i++) {
+            out[i] = 1.0 / (out[i] / n_2 + cte);
+        }
+        return out;
+    }
     
     @Override
     public String toString(){
@@ -1,10 +1,8 @@
 package jfi.texture;
 
-import java.awt.Point;
-import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
 import java.security.InvalidParameterException;
-import jfi.color.GreyColorSpace;
+import jfi.image.GreyPlane;
 
 /**
  *
@@ -39,158 +37,111 @@ public class CorrelationCoarsenessMeasure implements TextureMeasure<Double> {
      * Constructs the measure object using the parameters "distance" and "greyLevels".
      *
      * @param distance distance parameter of the Haralick Correlation measure.
-     * @param greyLevels number of grey levels of the image (Only 256 grey levels supported).
+     * @param greyLevels number of grey levels of the co-occurrence matrices
+     * (a power of two between 8 and 256). The grey levels of the image are
+     * uniformly quantized to them, so smaller values reduce the size of the
+     * matrices (quadratically) and the cost of their statistics.
+     * @throws InvalidParameterException if the number of grey levels is not
+     * supported.
      */
     public CorrelationCoarsenessMeasure(int distance, int greyLevels) {
-        if (greyLevels != DEFAULT_GREY_LEVELS)
-            throw new InvalidParameterException("Only 256 grey levels supported");
-        else{
-            this.distance = distance;
-            this.greyLevels = greyLevels;
-        }
+        Quantization.checkLevels(greyLevels);
+        this.distance = distance;
+        this.greyLevels = greyLevels;
+    }
+    
+    /**
+     * Returns the distance parameter of this measure.
+     *
+     * @return the distance.
+     */
+    public int getDistance() {
+        return distance;
+    }
+    
+    /**
+     * Returns the number of grey levels of the co-occurrence matrices.
+     *
+     * @return the number of grey levels.
+     */
+    public int getGreyLevels() {
+        return greyLevels;
     }
 
     @Override
     public Double apply(BufferedImage image) {
-        BufferedImage grayscaleImage;
-        if (image.getRaster().getNumBands() == 1)
-            grayscaleImage = image;        
-        else{
-            ColorSpace cs = new GreyColorSpace();
-            jfi.color.ColorConvertOp op = new jfi.color.ColorConvertOp(cs, null);  
-            grayscaleImage = op.filter(image, null, false);
+        return apply(GreyPlane.of(image));
+    }
+
+    @Override
+    public Double apply(GreyPlane plane) {
+        return correlationMeasure(Quantization.quantize(plane, greyLevels));
+    }
+    
+    /**
+     * Indicates whether some other object is "equal to" this one, that is, if
+     * it is the same measure with the same parameters (so both measures give
+     * the same values).
+     *
+     * @param obj reference object with which to compare.
+     * @return {@code true} if this measure is the same as the argument;
+     * {@code false} otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof CorrelationCoarsenessMeasure) {
+            CorrelationCoarsenessMeasure m = (CorrelationCoarsenessMeasure) obj;
+            return distance == m.distance && greyLevels == m.greyLevels;
         }
-        return correlationMeasure(grayscaleImage);
+        return false;
     }
     
+    /**
+     * Returns a hash code value for this measure, consistent with
+     * {@link #equals(java.lang.Object)}.
+     *
+     * @return a hash code value for this measure.
+     */
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 31 * hash + distance;
+        hash = 31 * hash + greyLevels;
+        return hash;
+    }
     
-    private double correlationMeasure(BufferedImage I){
-        final Point[] angulos = new Point[4];
-        angulos[0] = new Point(0,1);   // Angle 0
-        angulos[1] = new Point(-1, 1);  // Angle 45
-        angulos[2] = new Point(-1, 0);  // Angle 90
-        angulos[3] = new Point(-1, -1); // Angle 135
-	ResultGLCM result_glcm;
+    /**
+     * Calculates the measure for every window of the given size in the plane
+     * (dense map). The output position <tt>y*(width-windowWidth+1)+x</tt>
+     * stores the measure of the window whose top-left pixel is <tt>(x,y)</tt>.
+     * The plane is quantized once, and the windows are processed in parallel
+     * (the co-occurrence matrices are not shared among threads).
+     *
+     * @param plane the grey plane.
+     * @param windowWidth the width of the windows.
+     * @param windowHeight the height of the windows.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @return the dense map.
+     */
+    @Override
+    public double[] applyDense(GreyPlane plane, int windowWidth, int windowHeight, double out[]) {
+        GreyPlane quantized = Quantization.quantize(plane, greyLevels);
+        return DenseMaps.perWindow(this::correlationMeasure, quantized, windowWidth, windowHeight, out, true);
+    }
+    
+    
+    private double correlationMeasure(GreyPlane I){
+        GLCM glcm = GLCM.getInstance(greyLevels, distance);
+        glcm.compute(I);
         double corr;
         double max_corr = java.lang.Double.MAX_VALUE;
 
-        for (Point angulo : angulos) {
-            result_glcm = calculateGLCM(I, angulo);
-            corr = calculateCorr(result_glcm);
+        for (int angle = 0; angle < GLCM.NUM_ANGLES; angle++) {
+            corr = glcm.correlation(angle, 0);
             if (Math.abs(corr) < Math.abs(max_corr))
                 max_corr = corr;
         }
         return max_corr;
     }
     
-    
-    private ResultGLCM calculateGLCM(BufferedImage I, Point angulo) {
-        int rows = I.getHeight();
-        int cols = I.getWidth();
-        int[] img = null;
-        img = I.getRaster().getSamples(0, 0, cols, rows, 0, img);
-        int df, dc, total = 0, fila, columna;
-        df = angulo.x;
-        dc = angulo.y;
-        
-        double[] glcm = new double[greyLevels * greyLevels];
-        int[] indices = new int[greyLevels * greyLevels];
-        int numind;
-
-        numind = 0;
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                if ((i + df * distance >= 0) && (i + df * distance < rows)
-                        && (j + dc * distance >= 0) && (j + dc * distance < cols)) {
-                    fila = img[i * cols + j];
-                    columna = img[(i + df * distance) * cols + j + dc * distance];
-                    if (glcm[fila * greyLevels + columna] == 0.0) {
-                        indices[numind] = fila * greyLevels + columna;
-                        numind++;
-                    }
-                    glcm[fila * greyLevels + columna]++;
-                    total++;
-
-                    //////////////// AÑADO ESTO
-                    columna = img[i * cols + j];
-                    fila = img[(i + df * distance) * cols + j + dc * distance];
-                    if (glcm[fila * greyLevels + columna] == 0.0) {
-                        indices[numind] = fila * greyLevels + columna;
-                        numind++;
-                    }
-                    glcm[fila * greyLevels + columna]++;
-                    total++;
-                }
-            }
-        }
-
-        for (int conta = 0; conta < numind; conta++)
-            glcm[indices[conta]] /= total;
-
-        return new ResultGLCM(glcm, indices, numind);
-    }
-
-        
-    private double calculateCorr(ResultGLCM result_glcm) {
-        double[] glcm = result_glcm.getGLCM();
-        int[] indices = result_glcm.getIndices();
-        int numind = result_glcm.getNumInd();
-        int i, j;
-        double suma = 0.0;
-        double mu_i = 0.0;
-        double mu_j = 0.0;
-        double sigma_i = 0.0;
-        double sigma_j = 0.0;
-
-        for (int conta = 0; conta < numind; conta++) {
-            i = (int) (indices[conta] / greyLevels);
-            j = indices[conta] % greyLevels;
-            mu_i += i * glcm[indices[conta]];
-            mu_j += j * glcm[indices[conta]];
-        }
-        for (int conta = 0; conta < numind; conta++) {
-            i = (int) (indices[conta] / greyLevels);
-            j = indices[conta] % greyLevels;
-            sigma_i += (i - mu_i) * (i - mu_i) * glcm[indices[conta]];
-            sigma_j += (j - mu_j) * (j - mu_j) * glcm[indices[conta]];
-            suma += (i - mu_i) * (j - mu_j) * glcm[indices[conta]];
-        }
-
-        sigma_i = Math.sqrt(sigma_i);
-        sigma_j = Math.sqrt(sigma_j);
-
-        double div = sigma_i * sigma_j;
-        if (div == 0) {
-            suma = 0;
-        } else {
-            suma /= div;
-        }
-        return suma;
-    }
-    
-    
-    private class ResultGLCM{
-        private final double[] glcm;
-        private final int[] indices;
-        private final int numind;
-        
-        public ResultGLCM(double[] glcm, int[] indices, int numind){
-            this.glcm = glcm;
-            this.indices = indices;
-            this.numind = numind;
-        }
-        
-        public double[] getGLCM(){
-            return this.glcm;
-        }
-        
-        public int[] getIndices(){
-            return this.indices;
-        }
-        
-        public int getNumInd(){
-            return numind;
-        }
-    }
-    
 }
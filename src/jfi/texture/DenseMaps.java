@@ -0,0 +1,48 @@
+package jfi.texture;
+
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+import jfi.image.GreyPlane;
+
+/**
+ * Helper class for the calculation of dense maps of texture measures, that
+ * is, the measure of every window of a given size in a grey plane. The map is
+ * stored in row-major order: the position <tt>y*(width-windowWidth+1)+x</tt>
+ * stores the measure of the window whose top-left pixel is <tt>(x,y)</tt>.
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+class DenseMaps {
+
+    /**
+     * Calculates the dense map of the given measure applying it to each window
+     * (as a view of the plane, so the grey levels are not copied).
+     *
+     * @param measure the function calculating the measure of a window.
+     * @param plane the grey plane.
+     * @param windowWidth the width of the windows.
+     * @param windowHeight the height of the windows.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param parallel if <tt>true</tt>, the rows of windows are processed in
+     * parallel (only for measures that can be applied concurrently).
+     * @return the dense map.
+     */
+    static double[] perWindow(ToDoubleFunction<GreyPlane> measure, GreyPlane plane, int windowWidth, int windowHeight, double out[], boolean parallel) {
+        if (plane == null) {
+            throw new NullPointerException("Grey plane is null");
+        }
+        int outWidth = Math.max(0, plane.getWidth() - windowWidth + 1);
+        int outHeight = Math.max(0, plane.getHeight() - windowHeight + 1);
+        if (out == null) {
+            out = new double[outWidth * outHeight];
+        }
+        final double map[] = out;
+        IntStream rows = IntStream.range(0, outHeight);
+        (parallel ? rows.parallel() : rows).forEach(y -> {
+            for (int x = 0, i = y * outWidth; x < outWidth; x++, i++) {
+                map[i] = measure.applyAsDouble(plane.getWindow(x, y, windowWidth, windowHeight));
+            }
+        });
+        return out;
+    }
+}
@@ -1,11 +1,8 @@
 package jfi.texture;
 
-import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
-import java.awt.Point;
-import java.util.ArrayList;
-import java.util.List;
-import jfi.color.GreyColorSpace;
+import java.util.Arrays;
+import jfi.image.GreyPlane;
 
 
 /**
@@ -54,19 +51,66 @@ public class FDCoarsenessMeasure implements TextureMeasure<Double> {
 
     @Override
     public Double apply(BufferedImage image) {
-        BufferedImage grayscaleImage;
-        if (image.getRaster().getNumBands() == 1)
-            grayscaleImage = image;        
-        else{
-            ColorSpace cs = new GreyColorSpace();
-            jfi.color.ColorConvertOp op = new jfi.color.ColorConvertOp(cs, null);  
-            grayscaleImage = op.filter(image, null, false);
+        return apply(GreyPlane.of(image));
+    }
+
+    @Override
+    public Double apply(GreyPlane plane) {
+        return FDMeasure(plane);
+    }
+    
+    /**
+     * Indicates whether some other object is "equal to" this one, that is, if
+     * it is the same measure with the same parameters (so both measures give
+     * the same values).
+     *
+     * @param obj reference object with which to compare.
+     * @return {@code true} if this measure is the same as the argument;
+     * {@code false} otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof FDCoarsenessMeasure) {
+            FDCoarsenessMeasure m = (FDCoarsenessMeasure) obj;
+            return distance == m.distance && epsilon == m.epsilon;
         }
-        return FDMeasure(grayscaleImage);
+        return false;
+    }
+    
+    /**
+     * Returns a hash code value for this measure, consistent with
+     * {@link #equals(java.lang.Object)}.
+     *
+     * @return a hash code value for this measure.
+     */
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 31 * hash + distance;
+        hash = 31 * hash + epsilon;
+        return hash;
     }
     
+    /**
+     * Calculates the measure for every window of the given size in the plane
+     * (dense map). The output position <tt>y*(width-windowWidth+1)+x</tt>
+     * stores the measure of the window whose top-left pixel is <tt>(x,y)</tt>.
+     * The windows are processed in parallel (the blankets are allocated for
+     * each window, so the measure can be applied concurrently).
+     *
+     * @param plane the grey plane.
+     * @param windowWidth the width of the windows.
+     * @param windowHeight the height of the windows.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @return the dense map.
+     */
+    @Override
+    public double[] applyDense(GreyPlane plane, int windowWidth, int windowHeight, double out[]) {
+        return DenseMaps.perWindow(this::FDMeasure, plane, windowWidth, windowHeight, out, true);
+    }
     
-    private double FDMeasure(BufferedImage I){
+    
+    private double FDMeasure(GreyPlane I){
         int rows = I.getHeight();
         int cols = I.getWidth();       
         int d = distance;
@@ -75,49 +119,36 @@ public class FDCoarsenessMeasure implements TextureMeasure<Double> {
         double[] v = new double[epsilon + 1];
         double[] epsilons = new double[epsilon];
         
-        int dto, ind, tam = rows * cols;
-        int[] u = new int[tam];
-        int[] b = new int[tam];
+        int tam = rows * cols;
+        int[] tmp;
+        // u and b are initialized to the same values of the image. In order to
+        // calculate both blankets with the same (dilation) operator, the lower
+        // one is stored with negated values
+        int[] u = I.getSamples(null);
+        int[] b = I.getSamples(null);
+        for (int ind = 0; ind < tam; ind++)
+            b[ind] = -b[ind];
         int[] u_act = new int[tam];
         int[] b_act = new int[tam];
-
-        List<Point> positions = buscaPosiciones(d);
+        Blanket blanket = new Blanket(rows, cols, d);
         
         v[0] = 0;
-        // u and b are initialized to the same values of the image
-        u = I.getRaster().getSamples(0, 0, cols, rows, 0, u);
-        b = I.getRaster().getSamples(0, 0, cols, rows, 0, b);
-
         // Go through all the possible values of epsilon (from 1 to the value of the parameter "epsilon")
         for (int eps = 1; eps <= epsilon; eps++) {
-             v[eps] = 0.0;
-            // Go through all the pixels in the image
-            for (int i = 0; i < rows; i++) {
-                for (int j = 0; j < cols; j++) {
-                    ind = i * cols + j;
-                     u_act[ind] =  u[ind] + 1;
-                     b_act[ind] =  b[ind] - 1;
-
-                    // Search for the extreme values of the blankets by examining the neighbours
-                    for (Point pos : positions) {
-                        if ((i +  pos.x >= 0) && (i +  pos.x < rows) && (j +  pos.y >= 0) && (j +  pos.y < cols)) {
-                            dto = (i +  pos.x) * cols + j +  pos.y;
-                            if (u[dto] >  u_act[ind]) 
-                                u_act[ind] = u[dto];
-                            if (b[dto] <  b_act[ind])
-                                b_act[ind] = b[dto];
-                        }
-                    }
-                    v[eps] +=  u_act[ind] -  b_act[ind];
-                }
-            }
+            // Search for the extreme values of the blankets in the neighbourhood
+            blanket.grow(u, u_act);
+            blanket.grow(b, b_act);
+            v[eps] = 0.0;
+            for (int ind = 0; ind < tam; ind++)
+                v[eps] +=  u_act[ind] +  b_act[ind];
 
             A[eps - 1] = Math.log((v[eps] -  v[eps - 1]) / 2);
             // Calculate the logarithm in order to perform the "fit"
             epsilons[eps - 1] = Math.log((float) eps);
             
-            System.arraycopy(u_act, 0, u, 0, tam);
-            System.arraycopy(b_act, 0, b, 0, tam);
+            // The buffers are swapped (the current blankets are the next input)
+            tmp = u; u = u_act; u_act = tmp;
+            tmp = b; b = b_act; b_act = tmp;
         }
 
         double pendiente = fit(epsilons, A, epsilon);
@@ -125,13 +156,124 @@ public class FDCoarsenessMeasure implements TextureMeasure<Double> {
     }
     
     
-    private List<Point> buscaPosiciones(int d){
-        List<Point> pos = new ArrayList<>();
-        for (int i = -d; i <= d; i++) 
-            for (int j = -d; j <= d; j++) 
-                if ((Math.sqrt((float) (i*i + j*j)) <= d) && !((i == 0) && (j == 0)))
-                    pos.add(new Point(i,j));
-        return pos;
+    /**
+     * Inner class calculating the growth of a blanket, that is, for each
+     * pixel, the maximum between its value plus one and the values of its
+     * neighbours (the pixels at a distance lower or equal to <tt>d</tt>).
+     * 
+     * <p>
+     * The circular neighbourhood is decomposed as a union of rectangles (one
+     * per different chord width), and the maximum in each rectangle is
+     * calculated separably by means of the van Herk/Gil-Werman algorithm. Thus,
+     * the cost per pixel depends on the number of rectangles (at most
+     * <tt>d+1</tt>), but not on the size of the neighbourhood. The buffers are
+     * allocated once and reused in each call.
+     */
+    private static class Blanket {
+        private final int rows, cols;
+        /**
+         * Half-height and half-width of each rectangle.
+         */
+        private final int halfHeights[], halfWidths[];
+        /**
+         * Buffers for the rectangle maxima and the 1D running maxima.
+         */
+        private final int column[], rect[], line[], prefix[], suffix[];
+        
+        private Blanket(int rows, int cols, int d) {
+            this.rows = rows;
+            this.cols = cols;
+            // Half-width of the neighbourhood chord at each row offset
+            int widths[] = new int[Math.max(0, d) + 1];
+            for (int i = 0; i <= Math.max(0, d); i++) {
+                widths[i] = -1;
+                for (int j = 0; j <= d; j++)
+                    if (Math.sqrt((float) (i*i + j*j)) <= d)
+                        widths[i] = j;
+            }
+            // A rectangle is needed for each offset where the chord narrows
+            int n = 0, hh[] = new int[widths.length], hw[] = new int[widths.length];
+            for (int i = 0; i < widths.length && widths[i] >= 0; i++) {
+                if (i == widths.length - 1 || widths[i + 1] != widths[i]) {
+                    hh[n] = i;
+                    hw[n] = widths[i];
+                    n++;
+                }
+            }
+            halfHeights = Arrays.copyOf(hh, n);
+            halfWidths = Arrays.copyOf(hw, n);
+            column = new int[rows * cols];
+            rect = new int[rows * cols];
+            int length = Math.max(rows, cols) + 2 * Math.max(0, d) + 1;
+            line = new int[length];
+            prefix = new int[length];
+            suffix = new int[length];
+        }
+        
+        private void grow(int in[], int out[]) {
+            int tam = rows * cols;
+            for (int ind = 0; ind < tam; ind++)
+                out[ind] = in[ind] + 1;
+            int vertical[];
+            for (int r = 0; r < halfHeights.length; r++) {
+                // Vertical maxima (over each column)...
+                vertical = in;
+                if (halfHeights[r] > 0) {
+                    for (int j = 0; j < cols; j++)
+                        runningMax(in, j, cols, rows, halfHeights[r], column);
+                    vertical = column;
+                }
+                // ...and horizontal maxima of the previous ones (over each row)
+                for (int i = 0; i < rows; i++)
+                    runningMax(vertical, i * cols, 1, cols, halfWidths[r], rect);
+                for (int ind = 0; ind < tam; ind++)
+                    if (rect[ind] > out[ind])
+                        out[ind] = rect[ind];
+            }
+        }
+        
+        /**
+         * Calculates the maximum in a window of size <tt>2h+1</tt> centered
+         * on each element of the given sequence (the elements outside the
+         * sequence are ignored), using the van Herk/Gil-Werman algorithm
+         * (three comparisons per element, regardless of the window size).
+         * Windows of size three or lower are calculated directly.
+         */
+        private void runningMax(int src[], int offset, int stride, int n, int h, int dst[]) {
+            int k = 2 * h + 1;
+            if (k > n || h <= 1) {
+                // Small windows (or short sequences): direct calculation
+                for (int i = 0, ind = offset; i < n; i++, ind += stride) {
+                    int max = Integer.MIN_VALUE;
+                    for (int w = Math.max(0, i - h), end = Math.min(n - 1, i + h); w <= end; w++)
+                        max = Math.max(max, src[offset + w * stride]);
+                    dst[ind] = max;
+                }
+                return;
+            }
+            // The sequence is padded with h elements in each side
+            int length = n + 2 * h;
+            for (int i = 0; i < h; i++) {
+                line[i] = Integer.MIN_VALUE;
+                line[length - 1 - i] = Integer.MIN_VALUE;
+            }
+            for (int i = 0, ind = offset; i < n; i++, ind += stride)
+                line[h + i] = src[ind];
+            // Prefix and suffix maxima within blocks of size k
+            for (int start = 0; start < length; start += k) {
+                int end = Math.min(length, start + k) - 1;
+                prefix[start] = line[start];
+                for (int i = start + 1; i <= end; i++)
+                    prefix[i] = Math.max(prefix[i - 1], line[i]);
+                suffix[end] = line[end];
+                for (int i = end - 1; i >= start; i--)
+                    suffix[i] = Math.max(suffix[i + 1], line[i]);
+            }
+            // The window [i, i+k-1] (in padded coordinates) covers, at most,
+            // the end of a block and the beginning of the next one
+            for (int i = 0, ind = offset; i < n; i++, ind += stride)
+                dst[ind] = Math.max(suffix[i], prefix[i + k - 1]);
+        }
     }
     
     
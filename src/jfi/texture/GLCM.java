@@ -0,0 +1,505 @@
+package jfi.texture;
+
+import java.awt.image.BufferedImage;
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import jfi.image.GreyPlane;
+
+/**
+ * Class implementing a grey level co-occurrence matrix (GLCM) engine.
+ *
+ * <p>
+ * For a given grey-level image (usually a window of a larger image), the
+ * symmetric co-occurrence counts of the four directions (0, 45, 90 and 135
+ * degrees) and of all the distances of the engine are calculated in a single
+ * pass over the pixels. From these counts, the Haralick statistics (contrast,
+ * correlation, energy, homogeneity, entropy, etc.) can be obtained for each
+ * direction and distance without building the matrices again.
+ *
+ * <p>
+ * The counts are stored as integers in buffers allocated once, and only the
+ * non-zero cells are visited (and cleared) in each window. Since the buffers
+ * are reused, an engine must not be shared among threads; the method
+ * {@link #getInstance(int, int...)} provides an engine per thread.
+ *
+ * <p>
+ * The direction offsets are given as (row, column) displacements:
+ * (0,1) for 0 degrees, (-1,1) for 45 degrees, (-1,0) for 90 degrees and
+ * (-1,-1) for 135 degrees, multiplied by the distance.
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class GLCM {
+    /**
+     * Direction indexes.
+     */
+    public static final int ANGLE_0 = 0;
+    public static final int ANGLE_45 = 1;
+    public static final int ANGLE_90 = 2;
+    public static final int ANGLE_135 = 3;
+    /**
+     * Number of directions.
+     */
+    public static final int NUM_ANGLES = 4;
+    /**
+     * Row and column offsets of each direction (for distance 1).
+     */
+    private static final int DROW[] = {0, -1, -1, -1};
+    private static final int DCOL[] = {1, 1, 0, -1};
+
+    /**
+     * Feature indexes in the vector returned by
+     * {@link #features(int, int, double[])}.
+     */
+    public static final int ENERGY = 0;
+    public static final int CONTRAST = 1;
+    public static final int CORRELATION = 2;
+    public static final int VARIANCE = 3;
+    public static final int HOMOGENEITY = 4;
+    public static final int SUM_AVERAGE = 5;
+    public static final int SUM_VARIANCE = 6;
+    public static final int SUM_ENTROPY = 7;
+    public static final int ENTROPY = 8;
+    public static final int DIFFERENCE_VARIANCE = 9;
+    public static final int DIFFERENCE_ENTROPY = 10;
+    public static final int INFORMATION_CORRELATION_1 = 11;
+    public static final int INFORMATION_CORRELATION_2 = 12;
+    public static final int DISSIMILARITY = 13;
+    public static final int CLUSTER_SHADE = 14;
+    public static final int CLUSTER_PROMINENCE = 15;
+    public static final int MAXIMUM_PROBABILITY = 16;
+    /**
+     * Number of features.
+     */
+    public static final int NUM_FEATURES = 17;
+
+    /**
+     * Engines of each thread, indexed by their parameters.
+     */
+    private static final ThreadLocal<Map<String, GLCM>> INSTANCES =
+            ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Number of grey levels.
+     */
+    private final int greyLevels;
+    /**
+     * Distances of the co-occurrence matrices.
+     */
+    private final int distances[];
+    /**
+     * Co-occurrence counts of each matrix (indexed by
+     * <tt>angle*distances.length+d</tt>). The cell <tt>(i,j)</tt> is stored
+     * in the position <tt>i*greyLevels+j</tt>.
+     */
+    private final int counts[][];
+    /**
+     * Non-zero cells of each matrix, in order of appearance.
+     */
+    private final int indices[][];
+    /**
+     * Number of non-zero cells of each matrix.
+     */
+    private final int numind[];
+    /**
+     * Total count of each matrix.
+     */
+    private final int totals[];
+    /**
+     * Buffer for the image samples.
+     */
+    private int samples[] = new int[0];
+    /**
+     * Buffers for the marginal, sum and difference distributions.
+     */
+    private final double px[], py[], psum[], pdiff[];
+
+    /**
+     * Constructs a new GLCM engine.
+     *
+     * @param greyLevels the number of grey levels of the images.
+     * @param distances the distances of the co-occurrence matrices (at least
+     * one). Each distance must be greater than zero.
+     */
+    public GLCM(int greyLevels, int... distances) {
+        if (greyLevels < 1) {
+            throw new InvalidParameterException("The number of grey levels must be greater than 0");
+        }
+        if (distances == null || distances.length == 0) {
+            throw new InvalidParameterException("At least one distance is needed");
+        }
+        for (int d : distances) {
+            if (d < 1) {
+                throw new InvalidParameterException("Distances must be greater than 0");
+            }
+        }
+        this.greyLevels = greyLevels;
+        this.distances = distances.clone();
+        int n = NUM_ANGLES * distances.length;
+        int size = greyLevels * greyLevels;
+        counts = new int[n][size];
+        indices = new int[n][size];
+        numind = new int[n];
+        totals = new int[n];
+        px = new double[greyLevels];
+        py = new double[greyLevels];
+        psum = new double[2 * greyLevels - 1];
+        pdiff = new double[greyLevels];
+    }
+
+    /**
+     * Returns the GLCM engine of the current thread for the given parameters.
+     * The engine is created the first time it is requested, and reused in the
+     * following calls of the same thread.
+     *
+     * @param greyLevels the number of grey levels of the images.
+     * @param distances the distances of the co-occurrence matrices.
+     * @return the GLCM engine of the current thread.
+     */
+    public static GLCM getInstance(int greyLevels, int... distances) {
+        String key = greyLevels + ":" + Arrays.toString(distances);
+        return INSTANCES.get().computeIfAbsent(key, k -> new GLCM(greyLevels, distances));
+    }
+
+    /**
+     * Returns the number of grey levels of this engine.
+     *
+     * @return the number of grey levels.
+     */
+    public int getGreyLevels() {
+        return greyLevels;
+    }
+
+    /**
+     * Returns the distances of this engine.
+     *
+     * @return a copy of the distances.
+     */
+    public int[] getDistances() {
+        return distances.clone();
+    }
+
+    /**
+     * Calculates the co-occurrence counts of the given grey-level image. The
+     * first band of the image is used; its samples must be between 0 and
+     * <tt>greyLevels-1</tt>.
+     *
+     * @param image the grey-level image.
+     */
+    public void compute(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (samples.length < width * height) {
+            samples = new int[width * height];
+        }
+        image.getRaster().getSamples(0, 0, width, height, 0, samples);
+        compute(samples, width, height);
+    }
+
+    /**
+     * Calculates the co-occurrence counts of the given grey plane (without
+     * copying its data).
+     *
+     * @param plane the grey plane. Its grey levels must be between 0 and
+     * <tt>greyLevels-1</tt>.
+     */
+    public void compute(GreyPlane plane) {
+        compute(plane.getData(), plane.getOffset(), plane.getScanline(),
+                plane.getWidth(), plane.getHeight());
+    }
+
+    /**
+     * Calculates the co-occurrence counts of the given grey-level data.
+     *
+     * @param img the grey levels in row-major order. They must be between 0
+     * and <tt>greyLevels-1</tt>.
+     * @param width the width of the image.
+     * @param height the height of the image.
+     */
+    public void compute(int img[], int width, int height) {
+        compute(img, 0, width, width, height);
+    }
+
+    /**
+     * Calculates the co-occurrence counts of the given grey-level data. The
+     * counts of all the directions and distances are calculated in a single
+     * pass over the pixels.
+     *
+     * @param img the grey levels in row-major order. They must be between 0
+     * and <tt>greyLevels-1</tt>.
+     * @param offset index of the top-left pixel in the array.
+     * @param scanline number of elements between two consecutive rows.
+     * @param width the width of the image.
+     * @param height the height of the image.
+     */
+    public void compute(int img[], int offset, int scanline, int width, int height) {
+        clear();
+        int nd = distances.length;
+        int a, b, m, count[], index[];
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                a = img[offset + i * scanline + j];
+                for (int angle = 0; angle < NUM_ANGLES; angle++) {
+                    for (int d = 0; d < nd; d++) {
+                        int r = i + DROW[angle] * distances[d];
+                        int c = j + DCOL[angle] * distances[d];
+                        if (r >= 0 && r < height && c >= 0 && c < width) {
+                            b = img[offset + r * scanline + c];
+                            m = angle * nd + d;
+                            count = counts[m];
+                            index = indices[m];
+                            //Symmetric matrix: both (a,b) and (b,a) are counted
+                            if (count[a * greyLevels + b]++ == 0) {
+                                index[numind[m]++] = a * greyLevels + b;
+                            }
+                            if (count[b * greyLevels + a]++ == 0) {
+                                index[numind[m]++] = b * greyLevels + a;
+                            }
+                            totals[m] += 2;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Resets the counts of all the matrices. Only the non-zero cells are
+     * cleared.
+     */
+    private void clear() {
+        for (int m = 0; m < counts.length; m++) {
+            int count[] = counts[m], index[] = indices[m];
+            for (int k = 0; k < numind[m]; k++) {
+                count[index[k]] = 0;
+            }
+            numind[m] = 0;
+            totals[m] = 0;
+        }
+    }
+
+    /**
+     * Returns the index of the matrix associated to the given direction and
+     * distance index.
+     */
+    private int matrix(int angle, int distanceIndex) {
+        if (angle < 0 || angle >= NUM_ANGLES) {
+            throw new InvalidParameterException("Invalid angle index");
+        }
+        if (distanceIndex < 0 || distanceIndex >= distances.length) {
+            throw new InvalidParameterException("Invalid distance index");
+        }
+        return angle * distances.length + distanceIndex;
+    }
+
+    /**
+     * Returns the co-occurrence count of the given cell.
+     *
+     * @param angle the direction index (see {@link #ANGLE_0}, etc.).
+     * @param distanceIndex the index of the distance in the engine.
+     * @param i the first grey level.
+     * @param j the second grey level.
+     * @return the co-occurrence count.
+     */
+    public int getCount(int angle, int distanceIndex, int i, int j) {
+        return counts[matrix(angle, distanceIndex)][i * greyLevels + j];
+    }
+
+    /**
+     * Returns the total count of the given matrix (twice the number of pixel
+     * pairs, since the matrix is symmetric).
+     *
+     * @param angle the direction index (see {@link #ANGLE_0}, etc.).
+     * @param distanceIndex the index of the distance in the engine.
+     * @return the total count.
+     */
+    public int getTotal(int angle, int distanceIndex) {
+        return totals[matrix(angle, distanceIndex)];
+    }
+
+    /**
+     * Returns the Haralick contrast of the given matrix.
+     *
+     * @param angle the direction index (see {@link #ANGLE_0}, etc.).
+     * @param distanceIndex the index of the distance in the engine.
+     * @return the contrast.
+     */
+    public double contrast(int angle, int distanceIndex) {
+        int m = matrix(angle, distanceIndex);
+        int count[] = counts[m], index[] = indices[m];
+        double total = totals[m];
+        int i, j;
+        double sum = 0.0;
+        for (int k = 0; k < numind[m]; k++) {
+            i = index[k] / greyLevels;
+            j = index[k] % greyLevels;
+            sum += (i - j) * (i - j) * (count[index[k]] / total);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the Haralick correlation of the given matrix. If the deviation
+     * of the grey levels is zero, zero is returned.
+     *
+     * @param angle the direction index (see {@link #ANGLE_0}, etc.).
+     * @param distanceIndex the index of the distance in the engine.
+     * @return the correlation.
+     */
+    public double correlation(int angle, int distanceIndex) {
+        int m = matrix(angle, distanceIndex);
+        int count[] = counts[m], index[] = indices[m];
+        double total = totals[m];
+        int i, j;
+        double p, mu_i = 0.0, mu_j = 0.0, sigma_i = 0.0, sigma_j = 0.0, sum = 0.0;
+        for (int k = 0; k < numind[m]; k++) {
+            i = index[k] / greyLevels;
+            j = index[k] % greyLevels;
+            p = count[index[k]] / total;
+            mu_i += i * p;
+            mu_j += j * p;
+        }
+        for (int k = 0; k < numind[m]; k++) {
+            i = index[k] / greyLevels;
+            j = index[k] % greyLevels;
+            p = count[index[k]] / total;
+            sigma_i += (i - mu_i) * (i - mu_i) * p;
+            sigma_j += (j - mu_j) * (j - mu_j) * p;
+            sum += (i - mu_i) * (j - mu_j) * p;
+        }
+        double div = Math.sqrt(sigma_i) * Math.sqrt(sigma_j);
+        return div == 0 ? 0.0 : sum / div;
+    }
+
+    /**
+     * Returns the Haralick feature vector of the given matrix. The features
+     * are stored in the positions given by the feature indexes
+     * ({@link #ENERGY}, {@link #CONTRAST}, etc.). Logarithms are natural.
+     *
+     * @param angle the direction index (see {@link #ANGLE_0}, etc.).
+     * @param distanceIndex the index of the distance in the engine.
+     * @param out the output vector (of length at least {@link #NUM_FEATURES}).
+     * If <tt>null</tt>, a new one is created.
+     * @return the feature vector.
+     */
+    public double[] features(int angle, int distanceIndex, double out[]) {
+        if (out == null) {
+            out = new double[NUM_FEATURES];
+        }
+        Arrays.fill(out, 0, NUM_FEATURES, 0.0);
+        int m = matrix(angle, distanceIndex);
+        int count[] = counts[m], index[] = indices[m], n = numind[m];
+        if (n == 0) {
+            return out;
+        }
+        double total = totals[m];
+        Arrays.fill(px, 0.0);
+        Arrays.fill(py, 0.0);
+        Arrays.fill(psum, 0.0);
+        Arrays.fill(pdiff, 0.0);
+
+        //First pass: means, marginals and the features depending only on p
+        int i, j;
+        double p, mu_i = 0.0, mu_j = 0.0, energy = 0.0, contrast = 0.0,
+                homogeneity = 0.0, entropy = 0.0, dissimilarity = 0.0, max = 0.0;
+        for (int k = 0; k < n; k++) {
+            i = index[k] / greyLevels;
+            j = index[k] % greyLevels;
+            p = count[index[k]] / total;
+            mu_i += i * p;
+            mu_j += j * p;
+            px[i] += p;
+            py[j] += p;
+            psum[i + j] += p;
+            pdiff[Math.abs(i - j)] += p;
+            energy += p * p;
+            contrast += (i - j) * (i - j) * p;
+            dissimilarity += Math.abs(i - j) * p;
+            homogeneity += p / (1.0 + (i - j) * (i - j));
+            entropy -= p * Math.log(p);
+            if (p > max) max = p;
+        }
+
+        //Second pass: features depending on the means and marginals
+        double sigma_i = 0.0, sigma_j = 0.0, cov = 0.0, shade = 0.0,
+                prominence = 0.0, hxy1 = 0.0, t;
+        for (int k = 0; k < n; k++) {
+            i = index[k] / greyLevels;
+            j = index[k] % greyLevels;
+            p = count[index[k]] / total;
+            sigma_i += (i - mu_i) * (i - mu_i) * p;
+            sigma_j += (j - mu_j) * (j - mu_j) * p;
+            cov += (i - mu_i) * (j - mu_j) * p;
+            t = i + j - mu_i - mu_j;
+            shade += t * t * t * p;
+            prominence += t * t * t * t * p;
+            hxy1 -= p * Math.log(px[i] * py[j]);
+        }
+        double div = Math.sqrt(sigma_i) * Math.sqrt(sigma_j);
+
+        //Sum and difference distributions
+        double sumAverage = 0.0, sumEntropy = 0.0, sumVariance = 0.0;
+        for (int s = 0; s < psum.length; s++) {
+            if (psum[s] > 0) {
+                sumAverage += s * psum[s];
+                sumEntropy -= psum[s] * Math.log(psum[s]);
+            }
+        }
+        for (int s = 0; s < psum.length; s++) {
+            if (psum[s] > 0) {
+                sumVariance += (s - sumAverage) * (s - sumAverage) * psum[s];
+            }
+        }
+        double diffMean = 0.0, diffVariance = 0.0, diffEntropy = 0.0;
+        for (int s = 0; s < pdiff.length; s++) {
+            if (pdiff[s] > 0) {
+                diffMean += s * pdiff[s];
+                diffEntropy -= pdiff[s] * Math.log(pdiff[s]);
+            }
+        }
+        for (int s = 0; s < pdiff.length; s++) {
+            if (pdiff[s] > 0) {
+                diffVariance += (s - diffMean) * (s - diffMean) * pdiff[s];
+            }
+        }
+
+        //Information measures of correlation
+        double hx = 0.0, hy = 0.0, hxy2 = 0.0;
+        for (int a = 0; a < greyLevels; a++) {
+            if (px[a] > 0) {
+                hx -= px[a] * Math.log(px[a]);
+                for (int b = 0; b < greyLevels; b++) {
+                    if (py[b] > 0) {
+                        t = px[a] * py[b];
+                        hxy2 -= t * Math.log(t);
+                    }
+                }
+            }
+            if (py[a] > 0) {
+                hy -= py[a] * Math.log(py[a]);
+            }
+        }
+        double hmax = Math.max(hx, hy);
+
+        out[ENERGY] = energy;
+        out[CONTRAST] = contrast;
+        out[CORRELATION] = div == 0 ? 0.0 : cov / div;
+        out[VARIANCE] = sigma_i;
+        out[HOMOGENEITY] = homogeneity;
+        out[SUM_AVERAGE] = sumAverage;
+        out[SUM_VARIANCE] = sumVariance;
+        out[SUM_ENTROPY] = sumEntropy;
+        out[ENTROPY] = entropy;
+        out[DIFFERENCE_VARIANCE] = diffVariance;
+        out[DIFFERENCE_ENTROPY] = diffEntropy;
+        out[INFORMATION_CORRELATION_1] = hmax == 0 ? 0.0 : (entropy - hxy1) / hmax;
+        out[INFORMATION_CORRELATION_2] = Math.sqrt(Math.max(0.0, 1.0 - Math.exp(-2.0 * (hxy2 - entropy))));
+        out[DISSIMILARITY] = dissimilarity;
+        out[CLUSTER_SHADE] = shade;
+        out[CLUSTER_PROMINENCE] = prominence;
+        out[MAXIMUM_PROBABILITY] = max;
+        return out;
+    }
+}
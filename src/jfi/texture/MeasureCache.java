@@ -0,0 +1,149 @@
+package jfi.texture;
+
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import jfi.image.GreyPlane;
+
+/**
+ * Class representing a cache of texture measure values, to be shared among
+ * several fuzzy textures (or any other texture-based operator) applied on the
+ * same image.
+ *
+ * <p>
+ * The values are stored as dense maps (see
+ * {@link TextureMeasure#applyDense(jfi.image.GreyPlane, int, int, double[])}),
+ * so the value of a window is identified by the measure (its type and
+ * parameters, as given by its <code>equals</code> method), the source grey
+ * plane, the window size and the window position (the index in the dense
+ * map). Thus, if several fuzzy textures use the same measure (for example,
+ * the Amadasun coarseness in its one- and two-dimensional versions), it is
+ * calculated only once for each window.
+ *
+ * <p>
+ * The grey planes of the source images are cached too (by image identity),
+ * so the cache must be cleared (or discarded) if the content of an image
+ * changes.
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class MeasureCache {
+    /**
+     * Grey planes of the source images.
+     */
+    private final Map<BufferedImage, GreyPlane> planes = Collections.synchronizedMap(new WeakHashMap());
+    /**
+     * Dense maps of the measures.
+     */
+    private final Map<Key, double[]> maps = new ConcurrentHashMap();
+
+    /**
+     * Returns the grey plane of the given image. It is calculated the first
+     * time, and shared in the next calls.
+     *
+     * @param image the source image.
+     * @return the grey plane of the image.
+     */
+    public GreyPlane plane(BufferedImage image) {
+        if (image == null) {
+            throw new NullPointerException("Source image is null");
+        }
+        return planes.computeIfAbsent(image, GreyPlane::of);
+    }
+
+    /**
+     * Returns the dense map of the given measure on the given plane. It is
+     * calculated the first time, and shared in the next calls with the same
+     * (equal) measure, the same plane and the same window size.
+     *
+     * @param measure the texture measure.
+     * @param plane the grey plane.
+     * @param windowWidth the width of the windows.
+     * @param windowHeight the height of the windows.
+     * @return the dense map. It is shared, so it must not be modified.
+     */
+    public double[] applyDense(TextureMeasure measure, GreyPlane plane, int windowWidth, int windowHeight) {
+        if (measure == null) {
+            throw new NullPointerException("Texture measure is null");
+        }
+        if (plane == null) {
+            throw new NullPointerException("Grey plane is null");
+        }
+        Key key = new Key(measure, plane, windowWidth, windowHeight);
+        return maps.computeIfAbsent(key, k -> measure.applyDense(plane, windowWidth, windowHeight, null));
+    }
+
+    /**
+     * Returns the value of the given measure on a window of the given plane,
+     * taken from the dense map of that measure.
+     *
+     * @param measure the texture measure.
+     * @param plane the grey plane.
+     * @param x the x-coordinate of the top-left pixel of the window.
+     * @param y the y-coordinate of the top-left pixel of the window.
+     * @param windowWidth the width of the window.
+     * @param windowHeight the height of the window.
+     * @return the value of the measure.
+     */
+    public double apply(TextureMeasure measure, GreyPlane plane, int x, int y, int windowWidth, int windowHeight) {
+        double map[] = applyDense(measure, plane, windowWidth, windowHeight);
+        return map[y * (plane.getWidth() - windowWidth + 1) + x];
+    }
+
+    /**
+     * Removes all the cached planes and values.
+     */
+    public void clear() {
+        planes.clear();
+        maps.clear();
+    }
+
+    /**
+     * Key of a dense map. The planes are compared by identity of their data
+     * and by their geometry.
+     */
+    private static final class Key {
+        private final TextureMeasure measure;
+        private final int data[];
+        private final int offset, scanline, width, height;
+        private final int windowWidth, windowHeight;
+
+        Key(TextureMeasure measure, GreyPlane plane, int windowWidth, int windowHeight) {
+            this.measure = measure;
+            this.data = plane.getData();
+            this.offset = plane.getOffset();
+            this.scanline = plane.getScanline();
+            this.width = plane.getWidth();
+            this.height = plane.getHeight();
+            this.windowWidth = windowWidth;
+            this.windowHeight = windowHeight;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) obj;
+            return data == k.data && offset == k.offset && scanline == k.scanline
+                    && width == k.width && height == k.height
+                    && windowWidth == k.windowWidth && windowHeight == k.windowHeight
+                    && measure.equals(k.measure);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 31 * hash + measure.hashCode();
+            hash = 31 * hash + System.identityHashCode(data);
+            hash = 31 * hash + offset;
+            hash = 31 * hash + width;
+            hash = 31 * hash + height;
+            hash = 31 * hash + windowWidth;
+            hash = 31 * hash + windowHeight;
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package jfi.texture;
+
+import java.security.InvalidParameterException;
+import jfi.image.GreyPlane;
+
+/**
+ * Helper class for the quantization of grey levels used by the texture
+ * measures based on grey level statistics (co-occurrence matrices,
+ * neighbourhood grey tone differences, etc.).
+ *
+ * <p>
+ * The source grey levels (between 0 and 255) are uniformly quantized to a
+ * number of levels that must be a power of two between {@link #MIN_LEVELS}
+ * and {@link #MAX_LEVELS}. The remap tables are precomputed for every valid
+ * number of levels.
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+class Quantization {
+    /**
+     * Minimum number of grey levels.
+     */
+    static final int MIN_LEVELS = 8;
+    /**
+     * Maximum number of grey levels (the ones of the source images).
+     */
+    static final int MAX_LEVELS = 256;
+    /**
+     * Remap tables; the table for <tt>2^k</tt> levels is stored at the
+     * position <tt>k</tt>.
+     */
+    private static final int TABLES[][] = new int[Integer.numberOfTrailingZeros(MAX_LEVELS) + 1][];
+
+    static {
+        for (int levels = MIN_LEVELS; levels <= MAX_LEVELS; levels <<= 1) {
+            int table[] = new int[MAX_LEVELS];
+            for (int v = 0; v < MAX_LEVELS; v++) {
+                table[v] = v * levels / MAX_LEVELS;
+            }
+            TABLES[Integer.numberOfTrailingZeros(levels)] = table;
+        }
+    }
+
+    /**
+     * Checks that the given number of grey levels is supported.
+     *
+     * @param levels the number of grey levels.
+     * @throws InvalidParameterException if the number of levels is not a power
+     * of two between {@link #MIN_LEVELS} and {@link #MAX_LEVELS}.
+     */
+    static void checkLevels(int levels) {
+        if (levels < MIN_LEVELS || levels > MAX_LEVELS || (levels & (levels - 1)) != 0) {
+            throw new InvalidParameterException("Grey levels must be a power of two between "
+                    + MIN_LEVELS + " and " + MAX_LEVELS);
+        }
+    }
+
+    /**
+     * Returns the remap table for the given number of grey levels, that is,
+     * the quantized level of each source grey level.
+     *
+     * @param levels the number of grey levels.
+     * @return the remap table (it must not be modified).
+     */
+    static int[] table(int levels) {
+        checkLevels(levels);
+        return TABLES[Integer.numberOfTrailingZeros(levels)];
+    }
+
+    /**
+     * Quantizes the given grey plane. If the number of levels is
+     * {@link #MAX_LEVELS}, the plane itself is returned; if not, a new
+     * (compact) plane with the quantized levels is created.
+     *
+     * @param plane the grey plane, with levels between 0 and 255.
+     * @param levels the number of grey levels.
+     * @return the quantized plane.
+     */
+    static GreyPlane quantize(GreyPlane plane, int levels) {
+        if (levels == MAX_LEVELS) {
+            return plane;
+        }
+        int table[] = table(levels);
+        int width = plane.getWidth(), height = plane.getHeight();
+        int data[] = plane.getData(), quantized[] = new int[width * height];
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0, j = plane.getOffset() + y * plane.getScanline(); x < width; x++, i++, j++) {
+                quantized[i] = table[data[j]];
+            }
+        }
+        return new GreyPlane(quantized, width, height);
+    }
+}
@@ -1,8 +1,8 @@
 package jfi.texture;
 
-import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
-import jfi.color.GreyColorSpace;
+import jfi.image.GreyPlane;
+import jfi.image.IntegralImage;
 
 /**
  *
@@ -20,23 +20,107 @@ public class TamuraContrastMeasure implements TextureMeasure<Double> {
 
     @Override
     public Double apply(BufferedImage image) {
-        BufferedImage grayscaleImage;
-        if (image.getRaster().getNumBands() == 1)
-            grayscaleImage = image;        
-        else{
-            ColorSpace cs = new GreyColorSpace();
-            jfi.color.ColorConvertOp op = new jfi.color.ColorConvertOp(cs, null);  
-            grayscaleImage = op.filter(image, null, false);
-        }
-        return tamuraMeasure(grayscaleImage);
+        return apply(GreyPlane.of(image));
     }
 
+    @Override
+    public Double apply(GreyPlane plane) {
+        return tamuraMeasure(plane);
+    }
+    
+    /**
+     * Indicates whether some other object is "equal to" this one, that is, if
+     * it is the same measure with the same parameters (so both measures give
+     * the same values).
+     *
+     * @param obj reference object with which to compare.
+     * @return {@code true} if this measure is the same as the argument;
+     * {@code false} otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof TamuraContrastMeasure;
+    }
+    
+    /**
+     * Returns a hash code value for this measure, consistent with
+     * {@link #equals(java.lang.Object)}.
+     *
+     * @return a hash code value for this measure.
+     */
+    @Override
+    public int hashCode() {
+        return TamuraContrastMeasure.class.hashCode();
+    }
+
+    /**
+     * Calculates the measure for every window of the given size in the plane
+     * (dense map). The output position <tt>y*(width-windowWidth+1)+x</tt>
+     * stores the measure of the window whose top-left pixel is <tt>(x,y)</tt>.
+     * 
+     * <p>
+     * The moments of each window are obtained from the integral images of the
+     * grey levels and their powers (up to the fourth one), so the cost is
+     * linear in the image size and does not depend on the window size. The
+     * sums are centred on the (rounded) window mean in integer arithmetic
+     * before computing the central moments, so the values match the ones of
+     * {@link #apply(jfi.image.GreyPlane)} up to floating-point rounding.
+     *
+     * @param plane the grey plane.
+     * @param windowWidth the width of the windows.
+     * @param windowHeight the height of the windows.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @return the dense map.
+     */
+    @Override
+    public double[] applyDense(GreyPlane plane, int windowWidth, int windowHeight, double out[]) {
+        int outWidth = Math.max(0, plane.getWidth() - windowWidth + 1);
+        int outHeight = Math.max(0, plane.getHeight() - windowHeight + 1);
+        if (out == null) {
+            out = new double[outWidth * outHeight];
+        }
+        if (outWidth == 0 || outHeight == 0) {
+            return out;
+        }
+        IntegralImage m[] = IntegralImage.moments(plane, 4);
+        long n = (long) windowWidth * windowHeight;
+        for (int y = 0, i = 0; y < outHeight; y++) {
+            for (int x = 0; x < outWidth; x++, i++) {
+                long s1 = m[0].sum(x, y, windowWidth, windowHeight);
+                long s2 = m[1].sum(x, y, windowWidth, windowHeight);
+                // n*variance is calculated exactly (integer arithmetic)
+                long nvar = n * s2 - s1 * s1;
+                if (nvar == 0) {
+                    out[i] = 0.0;
+                    continue;
+                }
+                long s3 = m[2].sum(x, y, windowWidth, windowHeight);
+                long s4 = m[3].sum(x, y, windowWidth, windowHeight);
+                double mean = (double) s1 / n;
+                double variance = Math.sqrt((double) nvar / ((double) n * n));
+                // The power sums are shifted (exactly, in integer arithmetic)
+                // by the rounded mean c, so the remaining expansion around the
+                // small offset d=mean-c does not suffer from cancellation
+                long c = Math.round(mean);
+                long t1 = s1 - n * c;
+                long t2 = s2 - 2 * c * s1 + n * c * c;
+                long t3 = s3 - 3 * c * s2 + 3 * c * c * s1 - n * c * c * c;
+                long t4 = s4 - 4 * c * s3 + 6 * c * c * s2 - 4 * c * c * c * s1 + n * c * c * c * c;
+                double d = (double) t1 / n;
+                double fourth_moment = (t4 - 4 * d * t3 + 6 * d * d * t2 - 3 * n * d * d * d * d) / n;
+                fourth_moment = Math.pow(Math.max(0.0, fourth_moment), 1.0/4.0);
+                double alfa = fourth_moment / Math.pow(variance, 4.0);
+                out[i] = variance / Math.pow(alfa, 1.0/4.0) / 1000;
+            }
+        }
+        return out;
+    }
     
-    private double tamuraMeasure(BufferedImage I) {
+    private double tamuraMeasure(GreyPlane I) {
         int rows = I.getHeight();
         int cols = I.getWidth();
-        int[] img = null;
-        img = I.getRaster().getSamples(0, 0, cols, rows, 0, img);
+        int[] img = I.getData();
+        int off = I.getOffset(), stride = I.getScanline();
            
         double mean = 0.0;
         double variance = 0.0;
@@ -45,14 +129,14 @@ public class TamuraContrastMeasure implements TextureMeasure<Double> {
         /*compute mean--average of grey level */   
         for (int y = 0; y < rows; y++){
             for (int x = 0; x < cols; x++)
-                mean += img[y*cols + x];
+                mean += img[off + y*stride + x];
         }   
         mean /= (rows * cols);
                
         /*compute variance*/   
         for (int y = 0; y < rows; y++ ){
             for (int x = 0; x < cols; x++)
-                variance += (Math.pow(img[y*cols + x] - mean, 2));
+                variance += (Math.pow(img[off + y*stride + x] - mean, 2));
         }   
         variance /= (rows * cols);
         variance  = Math.pow(variance, 1.0/2.0);
@@ -60,7 +144,7 @@ public class TamuraContrastMeasure implements TextureMeasure<Double> {
         /*compute the 4th moment*/   
         for (int y = 0; y < rows; y++ ) 
             for (int x = 0; x < cols; x++)  
-                fourth_moment += (Math.pow(img[y*cols + x] - mean, 4));
+                fourth_moment += (Math.pow(img[off + y*stride + x] - mean, 4));
  
         fourth_moment /= (cols * rows);   
         fourth_moment = Math.pow(fourth_moment, 1.0/4.0);   
@@ -1,8 +1,9 @@
 package jfi.texture;
 
-import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
-import jfi.color.GreyColorSpace;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import jfi.image.GreyPlane;
 
 /**
  *
@@ -18,6 +19,10 @@ public class TamuraDirectionalityMeasure implements TextureMeasure<Double> {
     public static final int TAMURA_DIR_N = 16;
     public static final int TAMURA_DIR_T = 12;
     public static final double TAMURA_DIR_R = 0.2;
+    /**
+     * Number of output rows of each band processed in parallel (dense maps).
+     */
+    private static final int BAND_HEIGHT = 64;
 
     /**
      * Constructs the measure object using the default parameters.
@@ -60,55 +65,207 @@ public class TamuraDirectionalityMeasure implements TextureMeasure<Double> {
 
     @Override
     public Double apply(BufferedImage image) {
-        BufferedImage grayscaleImage;
-        if (image.getRaster().getNumBands() == 1)
-            grayscaleImage = image;        
-        else{
-            ColorSpace cs = new GreyColorSpace();
-            jfi.color.ColorConvertOp op = new jfi.color.ColorConvertOp(cs, null);  
-            grayscaleImage = op.filter(image, null, false);
+        return apply(GreyPlane.of(image));
+    }
+
+    @Override
+    public Double apply(GreyPlane plane) {
+        return tamuraMeasure(plane);
+    }
+    
+    /**
+     * Indicates whether some other object is "equal to" this one, that is, if
+     * it is the same measure with the same parameters (so both measures give
+     * the same values).
+     *
+     * @param obj reference object with which to compare.
+     * @return {@code true} if this measure is the same as the argument;
+     * {@code false} otherwise.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof TamuraDirectionalityMeasure) {
+            TamuraDirectionalityMeasure m = (TamuraDirectionalityMeasure) obj;
+            return tamuDirN == m.tamuDirN && tamuDirT == m.tamuDirT && Double.compare(tamuDirR, m.tamuDirR) == 0;
         }
-        return tamuraMeasure(grayscaleImage);
+        return false;
+    }
+    
+    /**
+     * Returns a hash code value for this measure, consistent with
+     * {@link #equals(java.lang.Object)}.
+     *
+     * @return a hash code value for this measure.
+     */
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 31 * hash + tamuDirN;
+        hash = 31 * hash + tamuDirT;
+        hash = 31 * hash + Double.hashCode(tamuDirR);
+        return hash;
     }
 
     
-    private double tamuraMeasure(BufferedImage I) {
+    private double tamuraMeasure(GreyPlane I) {
         int rows = I.getHeight();
         int cols = I.getWidth();
-        int[] img = null;
-        img = I.getRaster().getSamples(0, 0, cols, rows, 0, img);
+        int[] img = I.getData();
+        int off = I.getOffset(), stride = I.getScanline();
+        int bin;
+
+        // This vector is initialized to 0.
+        int[] dir_N = new int[tamuDirN];
 
+        // Compute gradient at each pixel and count bins
+        for (int y = 1; y < rows - 1; y++) {
+            for (int x = 1; x < cols - 1; x++) {
+                bin = directionBin(img, stride, off + y * stride + x);
+                if (bin >= 0)
+                    dir_N[bin]++;
+            }
+        }
+        return directionality(dir_N, rows, cols);
+    }
+    
+    /**
+     * Calculates the measure for every window of the given size in the plane
+     * (dense map). The output position <tt>y*(width-windowWidth+1)+x</tt>
+     * stores the measure of the window whose top-left pixel is <tt>(x,y)</tt>.
+     * 
+     * <p>
+     * The direction bin of each pixel is calculated once (in parallel) for the
+     * whole plane. Then, the histogram of each window is obtained
+     * incrementally from the one of the previous window by means of column
+     * histograms, so the cost per window is proportional to the number of
+     * bins instead of to the window size. The values are the same as the ones
+     * of {@link #apply(jfi.image.GreyPlane)}.
+     *
+     * @param plane the grey plane.
+     * @param windowWidth the width of the windows.
+     * @param windowHeight the height of the windows.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @return the dense map.
+     */
+    @Override
+    public double[] applyDense(GreyPlane plane, int windowWidth, int windowHeight, double out[]) {
+        int width = plane.getWidth(), height = plane.getHeight();
+        int outWidth = Math.max(0, width - windowWidth + 1);
+        int outHeight = Math.max(0, height - windowHeight + 1);
+        final double map[] = out != null ? out : new double[outWidth * outHeight];
+        if (outWidth == 0 || outHeight == 0) {
+            return map;
+        }
+        // Direction bins of the whole plane (-1 if the pixel does not count).
+        // Only the inner pixels of a window are analyzed, so the border
+        // pixels of the plane are never needed
+        int bins[] = new int[width * height];
+        Arrays.fill(bins, -1);
+        int[] img = plane.getData();
+        int off = plane.getOffset(), stride = plane.getScanline();
+        IntStream.range(1, Math.max(1, height - 1)).parallel().forEach(y -> {
+            for (int x = 1; x < width - 1; x++) {
+                bins[y * width + x] = directionBin(img, stride, off + y * stride + x);
+            }
+        });
+        
+        // Window histograms, by bands of rows (processed in parallel). Each
+        // column histogram covers the inner rows of the current window
+        int innerWidth = Math.max(0, windowWidth - 2), innerHeight = Math.max(0, windowHeight - 2);
+        int bands = (outHeight + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            int columns[] = new int[width * tamuDirN];
+            int histogram[] = new int[tamuDirN];
+            int first = band * BAND_HEIGHT, last = Math.min(outHeight, first + BAND_HEIGHT);
+            for (int y = first + 1; y < first + 1 + innerHeight; y++) {
+                addRow(bins, width, y, columns, 1);
+            }
+            for (int ty = first; ty < last; ty++) {
+                if (ty > first) { // The column histograms move down one row
+                    addRow(bins, width, ty, columns, -1);
+                    addRow(bins, width, ty + innerHeight, columns, 1);
+                }
+                Arrays.fill(histogram, 0);
+                for (int x = 1; x < 1 + innerWidth; x++) {
+                    addColumn(columns, x, histogram, 1);
+                }
+                for (int tx = 0; tx < outWidth; tx++) {
+                    if (tx > 0) { // The window moves right one column
+                        addColumn(columns, tx, histogram, -1);
+                        addColumn(columns, tx + innerWidth, histogram, 1);
+                    }
+                    map[ty * outWidth + tx] = directionality(histogram, windowHeight, windowWidth);
+                }
+            }
+        });
+        return map;
+    }
+    
+    /**
+     * Adds (or removes) the bins of the given row to the column histograms.
+     */
+    private void addRow(int bins[], int width, int y, int columns[], int sign) {
+        for (int x = 0, i = y * width; x < width; x++, i++) {
+            if (bins[i] >= 0) {
+                columns[x * tamuDirN + bins[i]] += sign;
+            }
+        }
+    }
+    
+    /**
+     * Adds (or removes) the given column histogram to the window histogram.
+     */
+    private void addColumn(int columns[], int x, int histogram[], int sign) {
+        for (int k = 0, i = x * tamuDirN; k < tamuDirN; k++, i++) {
+            histogram[k] += sign * columns[i];
+        }
+    }
+    
+    /**
+     * Returns the direction bin of the given pixel, or -1 if its gradient
+     * magnitude is lower than the threshold.
+     * 
+     * @param img the grey levels.
+     * @param stride number of elements between two consecutive rows.
+     * @param c index of the pixel.
+     * @return the direction bin of the pixel.
+     */
+    private int directionBin(int[] img, int stride, int c) {
         double dir_delta, dir_theta, dir_deltaH, dir_deltaV;
+        dir_deltaH = (double) PrewittOperatorH(img, stride, c);
+        dir_deltaV = (double) PrewittOperatorV(img, stride, c);
+        dir_delta = (double) (Math.abs(dir_deltaH) + Math.abs(dir_deltaV)) / 2.0;
+        if (dir_delta < tamuDirT)
+            return -1;
+        if (dir_deltaH == 0)
+            dir_theta = 0;
+        else
+            dir_theta = Math.atan2(dir_deltaV, dir_deltaH) + Math.PI / 2.0;
 
+        if (dir_theta >= 0 && dir_theta < Math.PI)
+            return (int) Math.floor((double)tamuDirN * dir_theta / Math.PI);
+        return -1;
+    }
+    
+    /**
+     * Calculates the directionality from the histogram of directions.
+     * 
+     * @param dir_N the histogram of directions (it is not modified).
+     * @param rows the number of rows of the image.
+     * @param cols the number of columns of the image.
+     * @return the directionality.
+     */
+    private double directionality(int[] dir_N, int rows, int cols) {
         int vertex1;  // The largest bin's index, and usually the left one
         int vertex2;  // The second large bin's index, and usually  the right one
 
         // Bin value of corresponding index
         double vertex1_H, vertex2_H;
 
-        // These two vectors are initialized to 0.
-        int[] dir_N = new int[tamuDirN];
+        // This vector is initialized to 0.
         double[] dir_H = new double[tamuDirN];
         double directionality = 0.0;
 
-        // Compute gradient at each pixel and count bins
-        for (int y = 1; y < rows - 1; y++) {
-            for (int x = 1; x < cols - 1; x++) {
-                dir_deltaH = (double) PrewittOperatorH(img, cols, y, x);
-                dir_deltaV = (double) PrewittOperatorV(img, cols, y, x);
-                dir_delta = (double) (Math.abs(dir_deltaH) + Math.abs(dir_deltaV)) / 2.0;
-                if (dir_delta < tamuDirT)
-                    continue;
-                if (dir_deltaH == 0)
-                    dir_theta = 0;
-                else
-                    dir_theta = Math.atan2(dir_deltaV, dir_deltaH) + Math.PI / 2.0;
-                
-                if (dir_theta >= 0 && dir_theta < Math.PI)
-                    dir_N[(int) Math.floor((double)tamuDirN * dir_theta / Math.PI)]++;
-            }
-        }
-
         // Compute sum of values in all bins
         int SumofN = 0;
         for (int k = 0; k < tamuDirN; k++) 
@@ -185,19 +342,19 @@ public class TamuraDirectionalityMeasure implements TextureMeasure<Double> {
 
     }
     
-    int PrewittOperatorH(int[] I , int cols , int y , int x ){   
+    int PrewittOperatorH(int[] I , int stride , int c ){   
         int result = 0 ;   
-        result += ( I[(y+1)*cols + (x-1)] - I[(y-1)*cols + (x-1)]);
-        result += ( I[(y+1)*cols + (x)] - I[(y-1)*cols + (x)]);
-        result += ( I[(y+1)*cols + (x+1)] - I[(y-1)*cols + (x+1)]);
+        result += ( I[c+stride-1] - I[c-stride-1]);
+        result += ( I[c+stride] - I[c-stride]);
+        result += ( I[c+stride+1] - I[c-stride+1]);
         return result;   
     }   
                    
-    int PrewittOperatorV(int[] I , int cols , int y , int x ){   
+    int PrewittOperatorV(int[] I , int stride , int c ){   
         int result = 0 ;   
-        result += ( I[(y-1)*cols + (x-1)] - I[(y-1)*cols + (x+1)]);
-        result += ( I[(y)*cols + (x-1)] - I[(y)*cols + (x+1)]);
-        result += ( I[(y+1)*cols + (x-1)] - I[(y+1)*cols + (x+1)]);
+        result += ( I[c-stride-1] - I[c-stride+1]);
+        result += ( I[c-1] - I[c+1]);
+        result += ( I[c+stride-1] - I[c+stride+1]);
         return result;   
     }  
 
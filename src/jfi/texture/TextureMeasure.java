@@ -2,6 +2,7 @@ package jfi.texture;
 
 import java.awt.image.BufferedImage;
 import java.util.function.Function;
+import jfi.image.GreyPlane;
 
 /**
  *
@@ -18,4 +19,44 @@ public interface TextureMeasure<T> extends Function<BufferedImage, T>{
      */
     @Override
     public T apply(BufferedImage image);
+    
+    /**
+     * Applies the texture measure to the given grey plane (usually, a window
+     * of the grey plane of a source image calculated only once). The measures
+     * of this package work directly on the grey levels of the view, avoiding
+     * the color conversion of each window. By default, the view is copied to a
+     * grey level image and the {@link #apply(java.awt.image.BufferedImage)}
+     * method is used.
+     *
+     * @param plane the grey plane.
+     * @return the texture measure
+     */
+    public default T apply(GreyPlane plane) {
+        return apply(plane.toImage());
+    }
+    
+    /**
+     * Calculates the measure for every window of the given size in the plane
+     * (dense map). The output position <tt>y*(width-windowWidth+1)+x</tt>
+     * stores the measure of the window whose top-left pixel is <tt>(x,y)</tt>.
+     * 
+     * <p>
+     * By default, the measure is applied to each window by means of the
+     * {@link #apply(jfi.image.GreyPlane)} method, so it is only valid for
+     * numeric measures. Measures with a faster algorithm for calculating all
+     * the windows at once (for example, based on integral images or sliding
+     * histograms) override this method.
+     *
+     * @param plane the grey plane.
+     * @param windowWidth the width of the windows.
+     * @param windowHeight the height of the windows.
+     * @param out the output array (of length at least
+     * <tt>(width-windowWidth+1)*(height-windowHeight+1)</tt>). If
+     * <tt>null</tt>, a new one is created.
+     * @return the dense map.
+     * @throws ClassCastException if the values of the measure are not numbers.
+     */
+    public default double[] applyDense(GreyPlane plane, int windowWidth, int windowHeight, double out[]) {
+        return DenseMaps.perWindow(window -> ((Number) apply(window)).doubleValue(), plane, windowWidth, windowHeight, out, false);
+    }
 }
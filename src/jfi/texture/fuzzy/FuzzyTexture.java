@@ -2,6 +2,8 @@ package jfi.texture.fuzzy;
 
 import java.awt.image.BufferedImage;
 import jfi.fuzzy.FunctionBasedFuzzySet;
+import jfi.image.GreyPlane;
+import jfi.texture.MeasureCache;
 
 
 
@@ -23,4 +25,68 @@ public class FuzzyTexture extends FunctionBasedFuzzySet<BufferedImage> {
     public FuzzyTexture(TextureMembershipFunction mfunction) {
         super(mfunction);
     }
+    
+    /**
+     * Returns the membership degree of the given grey plane (usually, a window
+     * of the grey plane of a source image, calculated only once). The texture
+     * measures are applied directly on the grey levels of the view.
+     *
+     * @param plane the grey plane.
+     * @return the membership degree.
+     */
+    public double membershipDegree(GreyPlane plane) {
+        if (mfunction instanceof TextureMembershipFunction) {
+            return ((TextureMembershipFunction) mfunction).apply(plane);
+        }
+        return membershipDegree(plane.toImage());
+    }
+    
+    /**
+     * Calculates the membership degree of every window of the given size in
+     * the grey plane (dense map). The output position
+     * <tt>y*(width-windowWidth+1)+x</tt> stores the degree of the window whose
+     * top-left pixel is <tt>(x,y)</tt>. The dense algorithms of the texture
+     * measures are used if they are available.
+     *
+     * @param plane the grey plane.
+     * @param windowWidth the width of the windows.
+     * @param windowHeight the height of the windows.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @return the dense map of membership degrees.
+     */
+    public double[] membershipDegrees(GreyPlane plane, int windowWidth, int windowHeight, double out[]) {
+        return membershipDegrees(plane, windowWidth, windowHeight, out, null);
+    }
+    
+    /**
+     * Calculates the membership degree of every window of the given size in
+     * the grey plane (dense map), sharing the values of the texture measures
+     * through the given cache. This way, when several fuzzy textures are
+     * applied on the same plane, each measure is calculated only once for
+     * each window.
+     *
+     * @param plane the grey plane.
+     * @param windowWidth the width of the windows.
+     * @param windowHeight the height of the windows.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param cache the cache of measure values. If <tt>null</tt>, the measures
+     * are calculated without caching.
+     * @return the dense map of membership degrees.
+     */
+    public double[] membershipDegrees(GreyPlane plane, int windowWidth, int windowHeight, double out[], MeasureCache cache) {
+        if (mfunction instanceof TextureMembershipFunction) {
+            return ((TextureMembershipFunction) mfunction).applyDense(plane, windowWidth, windowHeight, out, cache);
+        }
+        int outWidth = Math.max(0, plane.getWidth() - windowWidth + 1);
+        int outHeight = Math.max(0, plane.getHeight() - windowHeight + 1);
+        if (out == null) {
+            out = new double[outWidth * outHeight];
+        }
+        for (int y = 0, i = 0; y < outHeight; y++) {
+            for (int x = 0; x < outWidth; x++, i++) {
+                out[i] = membershipDegree(plane.getWindow(x, y, windowWidth, windowHeight));
+            }
+        }
+        return out;
+    }
 }
\ No newline at end of file
@@ -31,9 +31,30 @@ public class FuzzyTextureFactory {
     public static final int TYPE_DIRECTIONALITY_TAMURA = 10;
     public static final int TYPE_DIRECTIONALITY_ABBADENI = 11;
     public static final int TYPE_DIRECTIONALITY_TAMURA_ABBADENI = 12;
+    /**
+     * Number of grey levels used by default (the one of the original fitting
+     * of the membership functions).
+     */
+    public static final int DEFAULT_GREY_LEVELS = 256;
 
     public static FuzzyTexture getInstance(int type) {
-        TextureMembershipFunction mfunction = FunctionFactory.getInstance(type);
+        return getInstance(type, DEFAULT_GREY_LEVELS);
+    }
+    
+    /**
+     * Create a new fuzzy texture of the specified type, where the measures
+     * based on grey level statistics (Amadasun, correlation and Haralick) use
+     * the given number of grey levels. The membership functions are
+     * recalibrated for that number of levels (see
+     * {@link FunctionFactory#getInstance(int, int)}).
+     *
+     * @param type type of fuzzy texture.
+     * @param greyLevels number of grey levels (a power of two between 8 and
+     * 256).
+     * @return a new fuzzy texture.
+     */
+    public static FuzzyTexture getInstance(int type, int greyLevels) {
+        TextureMembershipFunction mfunction = FunctionFactory.getInstance(type, greyLevels);
         if(mfunction==null)
             throw new InvalidParameterException("Invalid type."); 
         switch (type) {
@@ -79,32 +100,55 @@ public class FuzzyTextureFactory {
          * @return A new instance of <code>TextureMembershipFunction</code>
          */
         public static TextureMembershipFunction getInstance(int type) {
+            return getInstance(type, DEFAULT_GREY_LEVELS);
+        }
+        
+        /**
+         * Create a new texture membership function of the specified type, where
+         * the measures based on grey level statistics use the given number of
+         * grey levels.
+         * 
+         * <p>
+         * The polynomials were fitted to the values of the measures with 256
+         * grey levels. With a uniform quantization to <tt>L</tt> levels, the
+         * Haralick contrast is approximately scaled by <tt>(L/256)^2</tt>, the
+         * Amadasun measure by <tt>256/L</tt>, and the correlation does not
+         * change, so the polynomials are recalibrated undoing these scales
+         * (that is, <tt>p'(x) = p(k·x)</tt>).
+         *
+         * @param type type of texture membership function
+         * @param greyLevels number of grey levels (a power of two between 8 and
+         * 256).
+         *
+         * @return A new instance of <code>TextureMembershipFunction</code>
+         */
+        public static TextureMembershipFunction getInstance(int type, int greyLevels) {
 
             switch (type) {
                 case TYPE_COARSENESS_AMADASUN:
-                    return getCoarsenessAmadasunInstance();
+                    return getCoarsenessAmadasunInstance(greyLevels);
                 case TYPE_COARSENESS_CORRELATION:
-                    return getCoarsenessCorrelationInstance();
+                    return getCoarsenessCorrelationInstance(greyLevels);
                 case TYPE_COARSENESS_FD:
-                    return getCoarsenessFDInstance();
+                    return getCoarsenessFDInstance(greyLevels);
                 case TYPE_COARSENESS_AMADASUN_CORRELATION:
-                    return getCoarsenessAmadasunCorrelationInstance();
+                    return getCoarsenessAmadasunCorrelationInstance(greyLevels);
                 case TYPE_COARSENESS_FD_AMADASUN:
-                    return getCoarsenessFDAmadasunInstance();
+                    return getCoarsenessFDAmadasunInstance(greyLevels);
                 case TYPE_COARSENESS_CORRELATION_FD:
-                    return getCoarsenessCorrelationFDInstance();
+                    return getCoarsenessCorrelationFDInstance(greyLevels);
                 case TYPE_CONTRAST_TAMURA:
-                    return getContrastTamuraInstance();
+                    return getContrastTamuraInstance(greyLevels);
                 case TYPE_CONTRAST_HARALICK:
-                    return getContrastHaralickInstance();
+                    return getContrastHaralickInstance(greyLevels);
                 case TYPE_CONTRAST_TAMURA_HARALICK:
-                    return getContrastTamuraHaralickInstance();
+                    return getContrastTamuraHaralickInstance(greyLevels);
                 case TYPE_DIRECTIONALITY_TAMURA:
-                    return getDirectionalityTamuraInstance();
+                    return getDirectionalityTamuraInstance(greyLevels);
                 case TYPE_DIRECTIONALITY_ABBADENI:
-                    return getDirectionalityAbbadeniInstance();
+                    return getDirectionalityAbbadeniInstance(greyLevels);
                 case TYPE_DIRECTIONALITY_TAMURA_ABBADENI:
-                    return getDirectionalityTamuraAbbadeniInstance();
+                    return getDirectionalityTamuraAbbadeniInstance(greyLevels);
                 default:
                     return null;
             }
@@ -115,13 +159,14 @@ public class FuzzyTextureFactory {
          * measure. For this purpouse, the coeficients proposed in <cite> <\cite>
          * are used by default
          *
+         * @param greyLevels number of grey levels of the measures.
          * @return a default polynomial membership function for Amadasun coarseness
          * measure
          */
-        private static TextureMembershipFunction getCoarsenessAmadasunInstance() {
+        private static TextureMembershipFunction getCoarsenessAmadasunInstance(int greyLevels) {
             double coeficients[] = {1.87066736922147, -6.48351627234047, 9.49014397876514, -6.61278585052942};
-            PolynomialFunction mfunction = new PolynomialFunction(coeficients);
-            TextureMeasure measure = new AmadasunCoarsenessMeasure();
+            TextureMeasure measure = new AmadasunCoarsenessMeasure(AmadasunCoarsenessMeasure.DEFAULT_DISTANCE, greyLevels);
+            PolynomialFunction mfunction = new PolynomialFunction(calibrate(coeficients, measure));
             return new TextureMembershipFunction(mfunction, measure);
         }
 
@@ -130,13 +175,14 @@ public class FuzzyTextureFactory {
          * coarseness measure. For this purpouse, the coeficients proposed in
          * <cite> <\cite> are used by default
          *
+         * @param greyLevels number of grey levels of the measures.
          * @return a default polynomial membership function for Correlation
          * coarseness measure
          */
-        private static TextureMembershipFunction getCoarsenessCorrelationInstance() {
+        private static TextureMembershipFunction getCoarsenessCorrelationInstance(int greyLevels) {
             double coeficients[] = {1.04855239337754, -1.70133043615012, 2.99614780551409, -3.31098414030745};
-            PolynomialFunction mfunction = new PolynomialFunction(coeficients);
-            TextureMeasure measure = new CorrelationCoarsenessMeasure();
+            TextureMeasure measure = new CorrelationCoarsenessMeasure(CorrelationCoarsenessMeasure.DEFAULT_DISTANCE, greyLevels);
+            PolynomialFunction mfunction = new PolynomialFunction(calibrate(coeficients, measure));
             return new TextureMembershipFunction(mfunction, measure);
         }
         
@@ -145,12 +191,13 @@ public class FuzzyTextureFactory {
          * (FD) coarseness measure. For this purpouse, the coeficients proposed in
          * <cite> <\cite> are used by default.
          *
+         * @param greyLevels number of grey levels of the measures.
          * @return a default polynomial membership function for FD coarseness measure
          */
-        private static TextureMembershipFunction getCoarsenessFDInstance() {
+        private static TextureMembershipFunction getCoarsenessFDInstance(int greyLevels) {
             double coeficients[] = {-28.6901663311276, 24.491196501627, -6.8486819672468, 0.641828076149647};
-            PolynomialFunction mfunction = new PolynomialFunction(coeficients);
             TextureMeasure measure = new FDCoarsenessMeasure();
+            PolynomialFunction mfunction = new PolynomialFunction(calibrate(coeficients, measure));
             return new TextureMembershipFunction(mfunction, measure);
         }        
 
@@ -159,16 +206,17 @@ public class FuzzyTextureFactory {
          * Amadasun and Correlation coarseness measures. For this purpouse, the
          * coeficients proposed in <cite> <\cite> are used by default
          *
+         * @param greyLevels number of grey levels of the measures.
          * @return a default polynomial membership function of two variables for
          * the Amadasun and Correlation coarseness measures
          */
-        private static TextureMembershipFunction getCoarsenessAmadasunCorrelationInstance() {	
+        private static TextureMembershipFunction getCoarsenessAmadasunCorrelationInstance(int greyLevels) {	
             double coeficients[] = {1.47499105940904, -1.40315232203117, -2.36176232354071,
                                     2.18145639951272, 2.03894057701965, -0.593502374987317,
                                     -2.21467438820318, 0.0, 0.0, 0.0};
-            PolynomialFunction mfunction = new PolynomialFunction(coeficients, 2);
-            TextureMeasure measure1 = new AmadasunCoarsenessMeasure();
-            TextureMeasure measure2 = new CorrelationCoarsenessMeasure();
+            TextureMeasure measure1 = new AmadasunCoarsenessMeasure(AmadasunCoarsenessMeasure.DEFAULT_DISTANCE, greyLevels);
+            TextureMeasure measure2 = new CorrelationCoarsenessMeasure(CorrelationCoarsenessMeasure.DEFAULT_DISTANCE, greyLevels);
+            PolynomialFunction mfunction = new PolynomialFunction(calibrate(coeficients, measure1, measure2), 2);
             return new TextureMembershipFunction(mfunction, measure1, measure2);
         }
         
@@ -177,16 +225,17 @@ public class FuzzyTextureFactory {
          * Fractal Dimension (FD) and Amadasun coarseness measures. For this
          * purpouse, the coeficients proposed in <cite> <\cite> are used by default
          *
+         * @param greyLevels number of grey levels of the measures.
          * @return a default polynomial membership function of two variables for
          * the FD and Amadasun coarseness measures
          */
-        private static TextureMembershipFunction getCoarsenessFDAmadasunInstance() {
+        private static TextureMembershipFunction getCoarsenessFDAmadasunInstance(int greyLevels) {
             double coeficients[] = {-12.1564073984986, -27.3508169133145, 15.1935169107938,
                                     51.148613918219, 1.55839523317858, -4.51740426692254,
                                     -38.063965088385, -0.647538386874109, 0.0, 0.417530298268412};
-            PolynomialFunction mfunction = new PolynomialFunction(coeficients, 2);
             TextureMeasure measure1 = new FDCoarsenessMeasure();
-            TextureMeasure measure2 = new AmadasunCoarsenessMeasure();
+            TextureMeasure measure2 = new AmadasunCoarsenessMeasure(AmadasunCoarsenessMeasure.DEFAULT_DISTANCE, greyLevels);
+            PolynomialFunction mfunction = new PolynomialFunction(calibrate(coeficients, measure1, measure2), 2);
             return new TextureMembershipFunction(mfunction, measure1, measure2);
         }
         
@@ -195,16 +244,17 @@ public class FuzzyTextureFactory {
          * Correlation and Fractal Dimension (FD) coarseness measures. For this
          * purpouse, the coeficients proposed in <cite> <\cite> are used by default
          *
+         * @param greyLevels number of grey levels of the measures.
          * @return a default polynomial membership function of two variables for
          * the Correlation and FD coarseness measures
          */
-        private static TextureMembershipFunction getCoarsenessCorrelationFDInstance() {
+        private static TextureMembershipFunction getCoarsenessCorrelationFDInstance(int greyLevels) {
             double coeficients[] = {-14.002884725279, 13.0289019271327, 4.36543898439526,
                                     -3.8050189067351, -1.57795467281365, -4.62307282421302,
                                     0.372563573848496, 0.0, 1.33113686816522, 0.0};
-            PolynomialFunction mfunction = new PolynomialFunction(coeficients, 2);
-            TextureMeasure measure1 = new CorrelationCoarsenessMeasure();
+            TextureMeasure measure1 = new CorrelationCoarsenessMeasure(CorrelationCoarsenessMeasure.DEFAULT_DISTANCE, greyLevels);
             TextureMeasure measure2 = new FDCoarsenessMeasure();
+            PolynomialFunction mfunction = new PolynomialFunction(calibrate(coeficients, measure1, measure2), 2);
             return new TextureMembershipFunction(mfunction, measure1, measure2);
         }
         
@@ -214,13 +264,14 @@ public class FuzzyTextureFactory {
          * measure. For this purpouse, the coeficients proposed in <cite> <\cite>
          * are used by default
          *
+         * @param greyLevels number of grey levels of the measures.
          * @return a default polynomial membership function for Tamura contrast
          * measure
          */
-        private static TextureMembershipFunction getContrastTamuraInstance() {
+        private static TextureMembershipFunction getContrastTamuraInstance(int greyLevels) {
             double coeficients[] = {-0.572797975960776, 3.8763399205201, -3.95358266570628, 1.68772834619706};
-            PolynomialFunction mfunction = new PolynomialFunction(coeficients);
             TextureMeasure measure = new TamuraContrastMeasure();
+            PolynomialFunction mfunction = new PolynomialFunction(calibrate(coeficients, measure));
             return new TextureMembershipFunction(mfunction, measure);
         }
         
@@ -229,13 +280,14 @@ public class FuzzyTextureFactory {
          * measure. For this purpouse, the coeficients proposed in <cite> <\cite>
          * are used by default
          *
+         * @param greyLevels number of grey levels of the measures.
          * @return a default polynomial membership function for Haralick contrast
          * measure
          */
-        private static TextureMembershipFunction getContrastHaralickInstance() {
+        private static TextureMembershipFunction getContrastHaralickInstance(int greyLevels) {
             double coeficients[] = {-0.410013110132171, 2.06793922263109, -1.87136583491134, 0.623174661550225};
-            PolynomialFunction mfunction = new PolynomialFunction(coeficients);
-            TextureMeasure measure = new HaralickContrastMeasure();
+            TextureMeasure measure = new HaralickContrastMeasure(HaralickContrastMeasure.DEFAULT_DISTANCE, greyLevels);
+            PolynomialFunction mfunction = new PolynomialFunction(calibrate(coeficients, measure));
             return new TextureMembershipFunction(mfunction, measure);
         }
         
@@ -244,16 +296,17 @@ public class FuzzyTextureFactory {
          * Tamura and Haralick contrast measures. For this purpouse, the
          * coeficients proposed in <cite> <\cite> are used by default
          *
+         * @param greyLevels number of grey levels of the measures.
          * @return a default polynomial membership function of two variables for
          * Tamura and Haralick contrast measures
          */
-        private static TextureMembershipFunction getContrastTamuraHaralickInstance() {
+        private static TextureMembershipFunction getContrastTamuraHaralickInstance(int greyLevels) {
             double coeficients[] = {-0.763798479121629, -0.156200555711584, 6.06372176140489,
                                     0.0341192712377689, 0.515847371994987, -10.4566818022673,
                                     -0.0130882977049654, 0.0, -0.112520260691099, 6.17548971591803};
-            PolynomialFunction mfunction = new PolynomialFunction(coeficients, 2);
             TextureMeasure measure1 = new TamuraContrastMeasure();
-            TextureMeasure measure2 = new HaralickContrastMeasure();
+            TextureMeasure measure2 = new HaralickContrastMeasure(HaralickContrastMeasure.DEFAULT_DISTANCE, greyLevels);
+            PolynomialFunction mfunction = new PolynomialFunction(calibrate(coeficients, measure1, measure2), 2);
             return new TextureMembershipFunction(mfunction, measure1, measure2);
         }
         
@@ -263,13 +316,14 @@ public class FuzzyTextureFactory {
          * measure. For this purpouse, the coeficients proposed in <cite> <\cite>
          * are used by default
          *
+         * @param greyLevels number of grey levels of the measures.
          * @return a default polynomial membership function for Tamura directionality
          * measure
          */
-        private static TextureMembershipFunction getDirectionalityTamuraInstance() {
+        private static TextureMembershipFunction getDirectionalityTamuraInstance(int greyLevels) {
             double coeficients[] = {-511.968522225476, 1657.3455394384, -1792.31164934142, 648.139541015052};
-            PolynomialFunction mfunction = new PolynomialFunction(coeficients);
             TextureMeasure measure = new TamuraDirectionalityMeasure();
+            PolynomialFunction mfunction = new PolynomialFunction(calibrate(coeficients, measure));
             return new TextureMembershipFunction(mfunction, measure);
         }
         
@@ -278,13 +332,14 @@ public class FuzzyTextureFactory {
          * measure. For this purpouse, the coeficients proposed in <cite> <\cite>
          * are used by default
          *
+         * @param greyLevels number of grey levels of the measures.
          * @return a default polynomial membership function for Abbadeni directionality
          * measure
          */
-        private static TextureMembershipFunction getDirectionalityAbbadeniInstance() {
+        private static TextureMembershipFunction getDirectionalityAbbadeniInstance(int greyLevels) {
             double coeficients[] = {-5.85660764047519, 26.6931630330267, -38.9620785247236, 19.5973685907395};
-            PolynomialFunction mfunction = new PolynomialFunction(coeficients);
             TextureMeasure measure = new AbbadeniDirectionalityMeasure();
+            PolynomialFunction mfunction = new PolynomialFunction(calibrate(coeficients, measure));
             return new TextureMembershipFunction(mfunction, measure);
         }
         
@@ -293,18 +348,74 @@ public class FuzzyTextureFactory {
          * Tamura and Abbadeni directionality measures. For this purpouse, the
          * coeficients proposed in <cite> <\cite> are used by default
          *
+         * @param greyLevels number of grey levels of the measures.
          * @return a default polynomial membership function of two variables for
          * Tamura and Abbadeni directionality measures
          */
-        private static TextureMembershipFunction getDirectionalityTamuraAbbadeniInstance() {
+        private static TextureMembershipFunction getDirectionalityTamuraAbbadeniInstance(int greyLevels) {
             double coeficients[] = {-204.789238636328, -1.33549175271706, 648.462555731697,
                                     -5.7224187417743, 5.83078827470319, -686.199629240745,
                                     2.90474813082403, 0.0, 0.0, 242.0293116841};
-            PolynomialFunction mfunction = new PolynomialFunction(coeficients, 2);
             TextureMeasure measure1 = new TamuraDirectionalityMeasure();
             TextureMeasure measure2 = new AbbadeniDirectionalityMeasure();
+            PolynomialFunction mfunction = new PolynomialFunction(calibrate(coeficients, measure1, measure2), 2);
             return new TextureMembershipFunction(mfunction, measure1, measure2);
         }
+        
+        /**
+         * Returns the factor that scales the values of the given measure to
+         * the ones it would have with 256 grey levels.
+         *
+         * @param measure the texture measure.
+         * @return the scale factor.
+         */
+        private static double scaleFactor(TextureMeasure measure) {
+            if (measure instanceof HaralickContrastMeasure) {
+                double r = (double) DEFAULT_GREY_LEVELS / ((HaralickContrastMeasure) measure).getGreyLevels();
+                return r * r;
+            }
+            if (measure instanceof AmadasunCoarsenessMeasure) {
+                return ((AmadasunCoarsenessMeasure) measure).getGreyLevels() / (double) DEFAULT_GREY_LEVELS;
+            }
+            return 1.0;
+        }
+        
+        /**
+         * Recalibrates the coefficients of a polynomial of degree 3 (of one or
+         * two variables) fitted to the values of the given measures with 256
+         * grey levels, so it can be applied to the values of the measures with
+         * their actual number of grey levels. Each variable <tt>x_i</tt> is
+         * replaced by <tt>k_i·x_i</tt>, where <tt>k_i</tt> is the scale factor
+         * of its measure.
+         *
+         * @param coeficients the coefficients of the polynomial, in the order
+         * used by {@link PolynomialFunction}.
+         * @param measures the measures associated to each variable.
+         * @return the recalibrated coefficients (a new array if any scale factor
+         * is not 1).
+         */
+        private static double[] calibrate(double coeficients[], TextureMeasure... measures) {
+            double k1 = scaleFactor(measures[0]);
+            double k2 = measures.length > 1 ? scaleFactor(measures[1]) : 1.0;
+            if (k1 == 1.0 && k2 == 1.0) {
+                return coeficients;
+            }
+            double output[] = new double[coeficients.length];
+            if (measures.length == 1) {
+                for (int n = 0; n < coeficients.length; n++) {
+                    output[n] = coeficients[n] * Math.pow(k1, n);
+                }
+            } else {
+                // Term a(i,j)·x1^j·x2^(i-j), as in the bidimensional polynomial
+                int index = 0;
+                for (int i = 0; index < coeficients.length; i++) {
+                    for (int j = 0; j <= i; j++, index++) {
+                        output[index] = coeficients[index] * Math.pow(k1, j) * Math.pow(k2, i - j);
+                    }
+                }
+            }
+            return output;
+        }
 
     }
 
@@ -50,11 +50,19 @@ public class FuzzyTextureSpace extends FuzzySetCollection<FuzzyTexture,BufferedI
     static public class Factory{
         
         /**
-         * Creates a default fuzzy texture space. 
+         * Creates a default fuzzy texture space, with a fuzzy texture for each
+         * family of texture properties: coarseness (Amadasun measure),
+         * contrast (Tamura measure) and directionality (Tamura measure). The
+         * measures of these fuzzy textures have dense algorithms, so they can
+         * be efficiently mapped on whole images.
+         * 
          * @return a default fuzzy texture space.
          */
         static public FuzzyTextureSpace getDefault(){                       
-            return null;
+            return new FuzzyTextureSpace(
+                    FuzzyTextureFactory.getInstance(FuzzyTextureFactory.TYPE_COARSENESS_AMADASUN),
+                    FuzzyTextureFactory.getInstance(FuzzyTextureFactory.TYPE_CONTRAST_TAMURA),
+                    FuzzyTextureFactory.getInstance(FuzzyTextureFactory.TYPE_DIRECTIONALITY_TAMURA));
         }
         
         static public FuzzyTextureSpace getDefault2(){                       
@@ -4,6 +4,8 @@ import java.awt.image.BufferedImage;
 import jfi.fuzzy.membershipfunction.MembershipFunction;
 import jfi.fuzzy.membershipfunction.PolynomialFunction;
 import jfi.fuzzy.membershipfunction.TrapezoidalFunction;
+import jfi.image.GreyPlane;
+import jfi.texture.MeasureCache;
 import jfi.texture.TextureMeasure;
 
 /**
@@ -36,9 +38,21 @@ public class TextureMembershipFunction implements MembershipFunction<BufferedIma
     
     @Override
     public Double apply(BufferedImage image) {
+        // The grey levels are calculated once and shared by the measures
+        return apply(GreyPlane.of(image));
+    }
+    
+    /**
+     * Applies this membership function to the given grey plane. All the
+     * measures are calculated on the same view, without color conversions.
+     *
+     * @param plane the grey plane.
+     * @return the membership degree.
+     */
+    public Double apply(GreyPlane plane) {
         Double m1_value, m2_value, output;
-        m1_value = measure1.apply(image);
-        m2_value = measure2!=null? measure2.apply(image):null;
+        m1_value = measure1.apply(plane);
+        m2_value = measure2!=null? measure2.apply(plane):null;
         if(measure2==null) // 1D case
             output = ((PolynomialFunction)mfunction).apply(m1_value);
         else  // 2D case
@@ -46,9 +60,103 @@ public class TextureMembershipFunction implements MembershipFunction<BufferedIma
         return output;
     }
     
+    /**
+     * Calculates the membership degree of every window of the given size in
+     * the plane (dense map). The output position
+     * <tt>y*(width-windowWidth+1)+x</tt> stores the degree of the window whose
+     * top-left pixel is <tt>(x,y)</tt>. The dense maps of the measures are
+     * calculated first (see
+     * {@link jfi.texture.TextureMeasure#applyDense(jfi.image.GreyPlane, int, int, double[])}),
+     * and then the membership function is applied to each position.
+     *
+     * @param plane the grey plane.
+     * @param windowWidth the width of the windows.
+     * @param windowHeight the height of the windows.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @return the dense map of membership degrees.
+     */
+    public double[] applyDense(GreyPlane plane, int windowWidth, int windowHeight, double out[]) {
+        return applyDense(plane, windowWidth, windowHeight, out, null);
+    }
+    
+    /**
+     * Calculates the membership degree of every window of the given size in
+     * the plane (dense map), taking the values of the measures from the given
+     * cache. If other membership functions using the same measures are
+     * applied with the same cache, each measure is calculated only once.
+     *
+     * @param plane the grey plane.
+     * @param windowWidth the width of the windows.
+     * @param windowHeight the height of the windows.
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param cache the cache of measure values. If <tt>null</tt>, the measures
+     * are calculated without caching.
+     * @return the dense map of membership degrees.
+     */
+    public double[] applyDense(GreyPlane plane, int windowWidth, int windowHeight, double out[], MeasureCache cache) {
+        double m1[] = measureMap(measure1, plane, windowWidth, windowHeight, cache);
+        double m2[] = measure2!=null? measureMap(measure2, plane, windowWidth, windowHeight, cache):null;
+        // Batch evaluation of the polynomial on the measure maps
+        if(m2==null) // 1D case
+            return mfunction.apply(m1, out, m1.length);
+        else  // 2D case
+            return mfunction.apply(m1, m2, out, m1.length);
+    }
+    
+    /**
+     * Returns the dense map of the given measure, from the cache if available.
+     */
+    private static double[] measureMap(TextureMeasure<Double> measure, GreyPlane plane, int windowWidth, int windowHeight, MeasureCache cache) {
+        if (cache != null) {
+            return cache.applyDense(measure, plane, windowWidth, windowHeight);
+        }
+        return measure.applyDense(plane, windowWidth, windowHeight, null);
+    }
+    
     public Double apply(Double measureValue) {
         return ((PolynomialFunction)mfunction).apply(measureValue);
     }
     
+    /**
+     * Applies the membership function of two variables to the given values of
+     * the measures (see {@link #getMeasures()}).
+     *
+     * @param measureValue1 the value of the first measure.
+     * @param measureValue2 the value of the second measure.
+     * @return the membership degree.
+     */
+    public Double apply(Double measureValue1, Double measureValue2) {
+        return mfunction.apply(measureValue1, measureValue2);
+    }
+    
+    /**
+     * Applies the membership function to the first <tt>n</tt> values of the
+     * measures (see {@link #getMeasures()}), by means of the batch evaluation
+     * of the polynomial.
+     *
+     * @param values1 the values of the first measure.
+     * @param values2 the values of the second measure (<tt>null</tt> if the
+     * function has only one measure).
+     * @param out the output array. If <tt>null</tt>, a new one is created.
+     * @param n the number of values.
+     * @return the membership degrees.
+     */
+    public double[] apply(double values1[], double values2[], double out[], int n) {
+        if(values2==null) // 1D case
+            return mfunction.apply(values1, out, n);
+        else  // 2D case
+            return mfunction.apply(values1, values2, out, n);
+    }
+    
+    /**
+     * Returns the texture measures of this membership function (one or two,
+     * depending on the dimension of the polynomial).
+     *
+     * @return the texture measures.
+     */
+    public TextureMeasure[] getMeasures() {
+        return measure2 == null ? new TextureMeasure[]{measure1} : new TextureMeasure[]{measure1, measure2};
+    }
+    
 
 }
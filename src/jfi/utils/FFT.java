@@ -0,0 +1,179 @@
+package jfi.utils;
+
+import java.security.InvalidParameterException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class with the fast Fourier transform (FFT) of one- and two-dimensional
+ * complex signals. It implements the iterative radix-2 Cooley-Tukey
+ * algorithm, so the signal sizes must be powers of two (zero-padding must be
+ * used for other sizes; see {@link #nextPowerOfTwo(int)}).
+ *
+ * <p>
+ * The complex values are stored as two separate arrays (real and imaginary
+ * parts). The inverse transform is scaled by <tt>1/n</tt>, so applying the
+ * direct and the inverse transforms returns the original signal.
+ *
+ * @author Jesús Chamorro Martínez (jesus@decsai.ugr.es)
+ */
+public class FFT {
+    /**
+     * Twiddle factors (cosine and sine tables) of each signal length.
+     */
+    private static final ConcurrentHashMap<Integer, double[][]> TWIDDLES = new ConcurrentHashMap();
+
+    /**
+     * Returns the twiddle factors of the given signal length, that is, the
+     * values <tt>cos(2&pi;k/n)</tt> and <tt>sin(2&pi;k/n)</tt> for
+     * <tt>k</tt> between 0 and <tt>n/2-1</tt>.
+     *
+     * @param n the signal length.
+     * @return the cosine and sine tables.
+     */
+    private static double[][] twiddles(int n) {
+        return TWIDDLES.computeIfAbsent(n, k -> {
+            double table[][] = new double[2][Math.max(1, k / 2)];
+            for (int i = 0; i < k / 2; i++) {
+                table[0][i] = Math.cos(2.0 * Math.PI * i / k);
+                table[1][i] = Math.sin(2.0 * Math.PI * i / k);
+            }
+            return table;
+        });
+    }
+
+    /**
+     * Returns the smallest power of two greater than or equal to the given
+     * value.
+     *
+     * @param n the value.
+     * @return the smallest power of two greater than or equal to <tt>n</tt>.
+     */
+    public static int nextPowerOfTwo(int n) {
+        int p = 1;
+        while (p < n) {
+            p <<= 1;
+        }
+        return p;
+    }
+
+    /**
+     * Computes in place the FFT (or its inverse) of the given signal.
+     *
+     * @param re the real part of the signal.
+     * @param im the imaginary part of the signal.
+     * @param inverse <tt>true</tt> for the inverse transform.
+     * @throws InvalidParameterException if the length of the signal is not a
+     * power of two.
+     */
+    public static void transform(double re[], double im[], boolean inverse) {
+        transform(re, im, 0, 1, re.length, inverse);
+    }
+
+    /**
+     * Computes in place the FFT (or its inverse) of the signal stored in the
+     * given positions (<tt>offset + k*stride</tt>, with <tt>k</tt> between 0
+     * and <tt>n-1</tt>) of the arrays.
+     *
+     * @param re the real part of the signal.
+     * @param im the imaginary part of the signal.
+     * @param offset index of the first element of the signal.
+     * @param stride distance between two consecutive elements of the signal.
+     * @param n the length of the signal (a power of two).
+     * @param inverse <tt>true</tt> for the inverse transform.
+     * @throws InvalidParameterException if <tt>n</tt> is not a power of two.
+     */
+    public static void transform(double re[], double im[], int offset, int stride, int n, boolean inverse) {
+        if (n < 1 || (n & (n - 1)) != 0) {
+            throw new InvalidParameterException("The signal length must be a power of two");
+        }
+        //Bit-reversal permutation
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                int a = offset + i * stride, b = offset + j * stride;
+                double t = re[a]; re[a] = re[b]; re[b] = t;
+                t = im[a]; im[a] = im[b]; im[b] = t;
+            }
+        }
+        //Butterflies
+        double table[][] = twiddles(n);
+        double cos[] = table[0], sin[] = table[1];
+        double sign = inverse ? 1.0 : -1.0;
+        for (int len = 2; len <= n; len <<= 1) {
+            int half = len >> 1, step = n / len;
+            for (int i = 0; i < n; i += len) {
+                for (int k = 0; k < half; k++) {
+                    double cRe = cos[k * step], cIm = sign * sin[k * step];
+                    int a = offset + (i + k) * stride;
+                    int b = a + half * stride;
+                    double tRe = re[b] * cRe - im[b] * cIm;
+                    double tIm = re[b] * cIm + im[b] * cRe;
+                    re[b] = re[a] - tRe;
+                    im[b] = im[a] - tIm;
+                    re[a] += tRe;
+                    im[a] += tIm;
+                }
+            }
+        }
+        if (inverse) {
+            for (int k = 0; k < n; k++) {
+                re[offset + k * stride] /= n;
+                im[offset + k * stride] /= n;
+            }
+        }
+    }
+
+    /**
+     * Computes in place the two-dimensional FFT (or its inverse) of the given
+     * signal, stored in row-major order.
+     *
+     * @param re the real part of the signal.
+     * @param im the imaginary part of the signal.
+     * @param width the width of the signal (a power of two).
+     * @param height the height of the signal (a power of two).
+     * @param inverse <tt>true</tt> for the inverse transform.
+     * @throws InvalidParameterException if the width or the height is not a
+     * power of two.
+     */
+    public static void transform2D(double re[], double im[], int width, int height, boolean inverse) {
+        transform2D(re, im, width, height, height, inverse);
+    }
+
+    /**
+     * Computes in place the two-dimensional FFT (or its inverse) of the given
+     * signal, stored in row-major order, where only the first <tt>rows</tt>
+     * rows may be non-zero (as in zero-padded signals); the transform of the
+     * zero rows is not calculated.
+     *
+     * @param re the real part of the signal.
+     * @param im the imaginary part of the signal.
+     * @param width the width of the signal (a power of two).
+     * @param height the height of the signal (a power of two).
+     * @param rows the number of (possibly) non-zero rows.
+     * @param inverse <tt>true</tt> for the inverse transform.
+     * @throws InvalidParameterException if the width or the height is not a
+     * power of two.
+     */
+    public static void transform2D(double re[], double im[], int width, int height, int rows, boolean inverse) {
+        for (int y = 0; y < Math.min(rows, height); y++) {
+            transform(re, im, y * width, 1, width, inverse);
+        }
+        //The columns are copied to contiguous buffers (for cache efficiency)
+        double colRe[] = new double[height], colIm[] = new double[height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0, i = x; y < height; y++, i += width) {
+                colRe[y] = re[i];
+                colIm[y] = im[i];
+            }
+            transform(colRe, colIm, 0, 1, height, inverse);
+            for (int y = 0, i = x; y < height; y++, i += width) {
+                re[i] = colRe[y];
+                im[i] = colIm[y];
+            }
+        }
+    }
+}